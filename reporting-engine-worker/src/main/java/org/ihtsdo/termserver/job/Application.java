@@ -18,7 +18,9 @@ import org.springframework.jms.support.converter.MappingJackson2MessageConverter
 import org.springframework.jms.support.converter.MessageConverter;
 import org.springframework.jms.support.converter.MessageType;
 
+import java.net.InetAddress;
 import java.util.TimeZone;
+import java.util.UUID;
 
 @SpringBootApplication
 @ImportResource("classpath:services-context.xml")
@@ -28,6 +30,8 @@ public class Application  {
 	
 	static TermServerScript job;
 	
+	static final String WORKER_ID = "reporting.worker.id";
+	
 	@Bean
 	public ObjectMapper objectMapper() {
 		final ObjectMapper objectMapper = new ObjectMapper();
@@ -53,9 +57,21 @@ public class Application  {
 	}
 
 	public static void main(String[] args) {
+		//Identifies this worker to the schedule manager, which routes jobs to the worker already holding their snapshot
+		if (System.getProperty(WORKER_ID) == null) {
+			System.setProperty(WORKER_ID, getHostName() + "-" + UUID.randomUUID().toString().substring(0, 8));
+		}
 		new SpringApplicationBuilder(Application.class)
 		.web(WebApplicationType.NONE) // .REACTIVE, .SERVLET
 		.run(args);
 	}
 	
+	private static String getHostName() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (Exception e) {
+			return "worker";
+		}
+	}
+	
 }
@@ -1,11 +1,14 @@
 package org.ihtsdo.termserver.job;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 //import org.ihtsdo.otf.resourcemanager.*;
 import org.ihtsdo.termserver.job.mq.Transmitter;
+import org.ihtsdo.termserver.scripting.ArchiveManager;
 import org.ihtsdo.termserver.scripting.JobClass;
 import org.ihtsdo.termserver.scripting.TermServerScript;
 import org.reflections.Reflections;
@@ -13,6 +16,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.scheduler.domain.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.info.BuildProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
@@ -38,6 +42,19 @@ public class JobManager {
 	
 	@Autowired 
 	private ApplicationContext applicationContext;
+	
+	//More than one slot allows several jobs to run at once, sharing the snapshot where they're on the same project
+	@Value("${reporting.worker.slots:1}")
+	int slotCount;
+	
+	@Value("${reporting.worker.heap.snapshot.gb:12}")
+	double snapshotHeapGb;
+	
+	@Value("${reporting.worker.heap.job.gb:4}")
+	double heapPerJobGb;
+	
+	JobSlots jobSlots;
+	AtomicInteger activeJobs = new AtomicInteger();
 
 	@PostConstruct
 	public void init(){
@@ -71,6 +88,26 @@ public class JobManager {
 		if (buildProperties != null) {
 			buildVersion = buildProperties.getVersion();
 		}
+		
+		if (slotCount > 1) {
+			jobSlots = new JobSlots(slotCount, snapshotHeapGb, heapPerJobGb);
+			ArchiveManager.setSharedSnapshots(true);
+		}
+	}
+	
+	@PreDestroy
+	public void shutdown() {
+		if (jobSlots != null) {
+			jobSlots.shutdown();
+		}
+	}
+	
+	public int getActiveJobs() {
+		return activeJobs.get();
+	}
+	
+	public int getSlotCount() {
+		return jobSlots == null ? 1 : jobSlots.getSlotCount();
 	}
 	
 	public Job getJob (String jobName) {
@@ -86,8 +123,31 @@ public class JobManager {
 		return null;
 	}
 
+	/**
+	 * Runs the job on the calling thread, or - when the worker has several slots - waits
+	 * for a slot to be free and returns once the job has started in it.
+	 */
 	public void run(JobRun jobRun) {
+		if (jobSlots == null || jobRun.getJobName().equals(METADATA)) {
+			run(jobRun, null);
+			return;
+		}
+		
+		try {
+			jobSlots.submit(jobRun, this::run);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			jobRun.setStatus(JobStatus.Failed);
+			jobRun.setDebugInfo("Reporting engine worker interrupted while waiting for a free slot");
+			jobRun.setResultTime(new Date());
+			transmitter.send(jobRun);
+		}
+	}
+
+	private void run(JobRun jobRun, Integer slot) {
 		boolean metadataRequest = false;
+		boolean active = false;
+		JobClass thisJob = null;
 		Thread watcherThread = null;
 		try {
 			//Is this a special metadata request?
@@ -106,12 +166,14 @@ public class JobManager {
 				} else {
 					try {
 						if (ensureJobValid(jobRun, jobClass.newInstance().getJob())) {
-							JobClass thisJob = jobClass.newInstance();
+							thisJob = jobClass.newInstance();
+							activeJobs.incrementAndGet();
+							active = true;
 							jobRun.setStatus(JobStatus.Running);
 							transmitter.send(jobRun);
 							
-							JobWatcher watcher = new JobWatcher(expectedDurations.get(jobRun.getJobName()), jobRun, transmitter);
-							watcherThread = new Thread(watcher, jobRun.getJobName() + " watcher thread");
+							JobWatcher watcher = new JobWatcher(expectedDurations.get(jobRun.getJobName()), jobRun, transmitter, slot);
+							watcherThread = new Thread(watcher, jobRun.getJobName() + " watcher thread" + (slot == null ? "" : " for slot " + slot));
 							watcherThread.start();
 							
 							thisJob.instantiate(jobRun, applicationContext);
@@ -126,12 +188,19 @@ public class JobManager {
 			}
 		} finally {
 			if (!metadataRequest) {
+				if (active) {
+					//The schedule manager learns from this response that we're free to take another job
+					activeJobs.decrementAndGet();
+				}
 				jobRun.setResultTime(new Date());
 				transmitter.send(jobRun);
 			}
 			try {
 				watcherThread.interrupt();
 			} catch (Exception e) {}
+			if (jobSlots != null && thisJob instanceof TermServerScript) {
+				ArchiveManager.releaseSnapshot((TermServerScript) thisJob);
+			}
 		}
 	}
 
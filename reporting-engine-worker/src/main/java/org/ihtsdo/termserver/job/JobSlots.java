@@ -0,0 +1,89 @@
+package org.ihtsdo.termserver.job;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snomed.otf.scheduler.domain.JobRun;
+
+/**
+ * Allows a worker to run several jobs at once.  A job is only admitted to a slot when one is free
+ * and the heap can take another job alongside the snapshot held in memory, so the listener stops
+ * taking requests from the queue while the worker is full and other workers can pick them up.
+ */
+public class JobSlots {
+
+	protected Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private static final long GB = 1024L * 1024L * 1024L;
+
+	private final Deque<Integer> freeSlots = new ArrayDeque<>();
+	private final int slotCount;
+	private final long snapshotHeap;
+	private final long heapPerJob;
+	private final ExecutorService executor;
+
+	public JobSlots(int slotCount, double snapshotHeapGb, double heapPerJobGb) {
+		this.slotCount = slotCount;
+		this.snapshotHeap = (long)(snapshotHeapGb * GB);
+		this.heapPerJob = (long)(heapPerJobGb * GB);
+		for (int slot = 1; slot <= slotCount; slot++) {
+			freeSlots.add(slot);
+		}
+		executor = Executors.newFixedThreadPool(slotCount);
+		logger.info("Running up to {} jobs at once, allowing {}GB for the snapshot and {}GB per job within {}GB max heap",
+				slotCount, snapshotHeapGb, heapPerJobGb, Runtime.getRuntime().maxMemory() / GB);
+	}
+
+	/**
+	 * Waits for a slot to be free, then runs the job in it.  Returns once the job has started.
+	 */
+	public void submit(JobRun jobRun, BiConsumer<JobRun, Integer> job) throws InterruptedException {
+		int slot = admit(jobRun);
+		try {
+			executor.execute(() -> {
+				try {
+					job.accept(jobRun, slot);
+				} finally {
+					release(slot);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			release(slot);
+			throw e;
+		}
+	}
+
+	private synchronized int admit(JobRun jobRun) throws InterruptedException {
+		while (freeSlots.isEmpty() || !heapAvailable()) {
+			logger.info("{} waiting for a slot, {} of {} in use", jobRun.getJobName(), getRunning(), slotCount);
+			wait();
+		}
+		return freeSlots.pop();
+	}
+
+	private synchronized void release(int slot) {
+		freeSlots.push(slot);
+		notifyAll();
+	}
+
+	private boolean heapAvailable() {
+		//The snapshot is held once, however many jobs are sharing it.  We'll always run at least one job
+		int running = getRunning();
+		return running == 0 || snapshotHeap + ((running + 1) * heapPerJob) <= Runtime.getRuntime().maxMemory();
+	}
+
+	public synchronized int getRunning() {
+		return slotCount - freeSlots.size();
+	}
+
+	public int getSlotCount() {
+		return slotCount;
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
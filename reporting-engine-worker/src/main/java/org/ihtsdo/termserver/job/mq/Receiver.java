@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import org.snomed.otf.scheduler.domain.JobRun;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -15,15 +16,23 @@ public class Receiver {
 	@Autowired
 	JobManager jobManager;
 	
+	@Autowired
+	Transmitter transmitter;
+	
 	protected Logger logger = LoggerFactory.getLogger(this.getClass());
 	
-	@JmsListener(destination = "${schedule.manager.queue.request}")
-	public void receiveMessage(JobRun jobRun) {
+	//Jobs may be routed to the worker already holding their snapshot, otherwise any worker can take them
+	@JmsListener(destination = "${schedule.manager.queue.request}", selector = Transmitter.WORKER + " IS NULL OR " + Transmitter.WORKER + " = '${reporting.worker.id}'")
+	public void receiveMessage(JobRun jobRun, @Header(name = Transmitter.WORKER, required = false) String routedTo) {
 		String cookieStart = "AuthToken Missing";
 		if (!StringUtils.isEmpty(jobRun.getAuthToken()) && jobRun.getAuthToken().length() > 16) {
 			cookieStart = jobRun.getAuthToken().substring(0,15);
 		}
 		logger.info("Received request to run {} with parameters: {} and authToken starting: {}", jobRun, jobRun.getParameters(), cookieStart);
+		//A job routed to us is acknowledged straight away, as we may have to wait for a slot before it can start
+		if (routedTo != null) {
+			transmitter.acknowledge(jobRun);
+		}
 		jobManager.run(jobRun);
 	}
 
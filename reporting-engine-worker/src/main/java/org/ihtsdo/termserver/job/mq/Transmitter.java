@@ -6,6 +6,7 @@ import java.util.concurrent.*;
 import javax.annotation.PostConstruct;
 
 import org.ihtsdo.termserver.job.JobManager;
+import org.ihtsdo.termserver.scripting.ArchiveManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.snomed.otf.scheduler.domain.*;
@@ -34,6 +35,17 @@ public class Transmitter {
 	@Value("${reporting.worker.queue.service-alert}")
 	String serviceAlertQueueName;
 	
+	//Tells the schedule manager which snapshot we hold and whether we're free, so jobs can be routed to us
+	public static final String WORKER = "worker";
+	public static final String SNAPSHOT = "snapshot";
+	public static final String ACTIVE_JOBS = "activeJobs";
+	public static final String SLOTS = "slots";
+	//Marks the acknowledgement sent as soon as we take a job routed to us, before it waits for a slot
+	public static final String TAKEN = "taken";
+	
+	@Value("${reporting.worker.id}")
+	String workerId;
+	
 	ExecutorService executorService;
 	
 	@PostConstruct
@@ -42,6 +54,18 @@ public class Transmitter {
 	}
 	
 	public void send (JobRun run) {
+		send(run, false);
+	}
+	
+	/**
+	 * Tells the schedule manager that we've taken this job, which was routed to us, so that it
+	 * isn't sent to another worker while it waits here for a slot
+	 */
+	public void acknowledge (JobRun run) {
+		send(run, true);
+	}
+	
+	private void send (JobRun run, boolean taken) {
 		//We'll take out the authentication since it's not required by the client
 		//Modify a clone as the original is still needed elsewhere!
 		JobRun clone = run.clone();
@@ -66,9 +90,23 @@ public class Transmitter {
 
 		//Transmit in a new thread so that we receive a separate transaction.   Otherwise the 'running' status
 		//won't be sent until the job is complete
+		String snapshot = ArchiveManager.getProjectHeldInMemory();
+		int activeJobs = jobManager.getActiveJobs();
+		int slots = jobManager.getSlotCount();
 		executorService.execute(() -> {
 				logger.info("Transmitting response:" + run);
-				jmsTemplate.convertAndSend(responseQueueName, clone);
+				jmsTemplate.convertAndSend(responseQueueName, clone, message -> {
+					message.setStringProperty(WORKER, workerId);
+					if (snapshot != null) {
+						message.setStringProperty(SNAPSHOT, snapshot);
+					}
+					message.setIntProperty(ACTIVE_JOBS, activeJobs);
+					message.setIntProperty(SLOTS, slots);
+					if (taken) {
+						message.setBooleanProperty(TAKEN, true);
+					}
+					return message;
+				});
 		});
 	}
 	
@@ -104,8 +104,17 @@ public class ConceptsUsedAsDefiningAttributes extends TermServerReport implement
 		//First find the concepts that we're working with here
 		List<Concept> attributeValuesOfInterest = getAttributeValuesOfInterest();
 		info("Collected " + attributeValuesOfInterest.size() + " attribute values of interest");
+		Set<Concept> valuesOfInterest = new HashSet<>(attributeValuesOfInterest);
 		Set<Concept> reported = new HashSet<>();
-		List<Concept> activeConcepts = gl.getAllConcepts().stream()
+		CharacteristicType charType = statedViewOnly ? CharacteristicType.STATED_RELATIONSHIP : CharacteristicType.ALL ;
+		//Only the concepts that refer to one of our values need to be checked
+		Set<Concept> referringConcepts = new HashSet<>();
+		for (Concept value : attributeValuesOfInterest) {
+			for (Relationship r : gl.getIncomingRelationships(value, charType, ActiveState.ACTIVE)) {
+				referringConcepts.add(r.getSource());
+			}
+		}
+		List<Concept> activeConcepts = referringConcepts.stream()
 				.filter(Concept::isActive)
 				.sorted(Comparator.comparing(Concept::getFsn))
 				.collect(Collectors.toList());
@@ -115,13 +124,12 @@ public class ConceptsUsedAsDefiningAttributes extends TermServerReport implement
 				continue;
 			}
 			
-			CharacteristicType charType = statedViewOnly ? CharacteristicType.STATED_RELATIONSHIP : CharacteristicType.ALL ;
 			for (Relationship r : c.getRelationships(charType, ActiveState.ACTIVE)) {
 				if (r.getType().equals(IS_A)) {
 					continue;
 				}
 				Concept target = r.getTarget();
-				if (!reported.contains(target) && attributeValuesOfInterest.contains(target)) {
+				if (!reported.contains(target) && valuesOfInterest.contains(target)) {
 					if (statedViewOnly) {
 						report (c, r.getType(), target);
 					} else {
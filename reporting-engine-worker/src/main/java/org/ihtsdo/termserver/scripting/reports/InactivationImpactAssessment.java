@@ -4,6 +4,7 @@ import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.AtomicLongMap;
 import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.RefsetMembers;
 import org.ihtsdo.termserver.scripting.ReportClass;
 import org.ihtsdo.termserver.scripting.dao.ReportSheetManager;
 import org.ihtsdo.termserver.scripting.domain.AssociationEntry;
@@ -50,6 +51,8 @@ public class InactivationImpactAssessment extends TermServerReport implements Re
 	
 	public void init (JobRun run) throws TermServerScriptException {
 		getArchiveManager().setPopulateReleasedFlag(true);
+		//Hold refset membership so that usage can be checked without querying each refset
+		getArchiveManager().setLoadRefsetMembers(true);
 		ReportSheetManager.targetFolderId = "1F-KrAwXrXbKj5r-HBLM0qI5hTzv-JgnU"; //Ad-hoc reports
 		super.init(run);
 	}
@@ -106,7 +109,10 @@ public class InactivationImpactAssessment extends TermServerReport implements Re
 			} else {
 				refsetSummary.put(refset, 0);
 			}
-			try { Thread.sleep(1 * 1000); } catch (Exception e) {}
+			//Only pace ourselves if that count had to come from the terminology server
+			if (!gl.isRefsetMembershipHeld(refset.getId())) {
+				try { Thread.sleep(1 * 1000); } catch (Exception e) {}
+			}
 		}
 		referenceSets.removeAll(emptyReferenceSets);
 	}
@@ -154,13 +160,14 @@ public class InactivationImpactAssessment extends TermServerReport implements Re
 	}
 
 	private void checkAttributeUsage() throws TermServerScriptException {
-		for (Concept c : gl.getAllConcepts()) {
-			if (c.isActive() && !inactivatingConcepts.contains(c)) {
-				Set<Relationship> rels = includeInferred ? c.getRelationships() : c.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE);
-				for (Relationship r : rels) {
-					if (r.isNotConcrete() && r.isActive() && !r.getType().equals(IS_A) && inactivatingConcepts.contains(r.getTarget())) {
-						report(r.getTarget(), "used as attribute target value", c, r);
-					}
+		//Work from the concepts being inactivated, rather than checking every relationship held
+		Set<Concept> inactivating = new HashSet<>(inactivatingConcepts);
+		CharacteristicType charType = includeInferred ? CharacteristicType.ALL : CharacteristicType.STATED_RELATIONSHIP;
+		for (Concept target : inactivatingConcepts) {
+			for (Relationship r : gl.getIncomingRelationships(target, charType, ActiveState.ACTIVE)) {
+				Concept c = r.getSource();
+				if (c.isActive() && !inactivating.contains(c) && !r.getType().equals(IS_A)) {
+					report(target, "used as attribute target value", c, r);
 				}
 			}
 		}
@@ -177,6 +184,10 @@ public class InactivationImpactAssessment extends TermServerReport implements Re
 	private void checkRefsetUsage() throws TermServerScriptException {
 		debug ("Checking " + inactivatingConceptIds.size() + " inactivating concepts against " + referenceSets.size() + " refsets");
 		for (Concept refset : referenceSets) {
+			if (gl.isRefsetMembershipHeld(refset.getId())) {
+				checkRefsetUsageLocally(refset);
+				continue;
+			}
 			int conceptsProcessed = 0;
 			do {
 				String subsetList = "";
@@ -198,6 +209,16 @@ public class InactivationImpactAssessment extends TermServerReport implements Re
 		}
 	}
 	
+	private void checkRefsetUsageLocally(Concept refset) throws TermServerScriptException {
+		RefsetMembers refsetMembers = gl.getRefsetMembers();
+		long refsetId = Long.parseLong(refset.getId());
+		for (Concept c : inactivatingConcepts) {
+			if (refsetMembers.isMember(refsetId, Long.parseLong(c.getId()))) {
+				report (c, "active in refset", refset.getPreferredSynonym());
+			}
+		}
+	}
+	
 	private void checkRefsetUsageECL() throws TermServerScriptException {
 		debug ("Checking " + inactivatingConceptIds.size() + " inactivating concepts against " + referenceSets.size() + " refsets");
 		for (Concept refset : referenceSets) {
@@ -66,7 +66,7 @@ public class ListAllDescriptions extends TermServerReport implements ReportClass
 		incrementSummaryInformation("Concepts reported");
 		countIssue(c);
 		
-		List<Description> descriptions = c.getDescriptions(ActiveState.ACTIVE);
+		List<Description> descriptions = new ArrayList<>(c.getDescriptions(ActiveState.ACTIVE));
 		SnomedUtils.prioritise(descriptions);
 		for (Description d : descriptions) {
 			report ((Concept)null, "", "", "", d);
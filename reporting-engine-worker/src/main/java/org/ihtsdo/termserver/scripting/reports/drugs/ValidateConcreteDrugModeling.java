@@ -230,8 +230,8 @@ public class ValidateConcreteDrugModeling extends TermServerReport implements Re
 		//Before checking for equivalence
 		String issueStr = "Stated attributes not identical to inferred";
 		initialiseSummary(issueStr);
-		Set<Relationship> statedAttribs = c.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE);
-		Set<Relationship> inferredAttribs = c.getRelationships(CharacteristicType.INFERRED_RELATIONSHIP, ActiveState.ACTIVE);
+		Set<Relationship> statedAttribs = new HashSet<>(c.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE));
+		Set<Relationship> inferredAttribs = new HashSet<>(c.getRelationships(CharacteristicType.INFERRED_RELATIONSHIP, ActiveState.ACTIVE));
 		
 		Relationship isA = new Relationship(IS_A, null);
 		removeRels(isA, statedAttribs, true); //remove all instances
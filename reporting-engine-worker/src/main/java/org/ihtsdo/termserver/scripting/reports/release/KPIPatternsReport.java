@@ -89,7 +89,7 @@ public class KPIPatternsReport extends TermServerReport implements ReportClass {
 			checkRedundantlyStatedGroups();
 		
 			info ("Building current Transitive Closure");
-			tc = gl.generateTransativeClosure();
+			tc = gl.getCurrentTC();
 			
 			info("Checking for historical patterns");
 			if (previousPreviousRelease != null) {
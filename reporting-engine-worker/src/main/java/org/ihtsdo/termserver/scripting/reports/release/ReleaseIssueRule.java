@@ -0,0 +1,181 @@
+package org.ihtsdo.termserver.scripting.reports.release;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.domain.*;
+
+/**
+ * A single check made by the ReleaseIssuesReport, applied either to each concept, or to each of a
+ * concept's descriptions or relationships, as a ReleaseIssueRuleRunner passes over the concepts.
+ *
+ * Concepts are checked on several threads at once, so checks record the issues they find in the
+ * Issues given to them rather than reporting them directly.  Those issues are then reported, rule
+ * by rule, once all concepts have been checked.
+ */
+class ReleaseIssueRule implements RF2Constants {
+
+	interface ConceptCheck {
+		void check(Concept c, Issues issues) throws TermServerScriptException;
+	}
+
+	interface DescriptionCheck {
+		void check(Concept c, Description d, Issues issues) throws TermServerScriptException;
+	}
+
+	interface RelationshipCheck {
+		void check(Concept c, Relationship r, Issues issues) throws TermServerScriptException;
+	}
+
+	private final String name;
+	private final ConceptCheck conceptCheck;
+	private final DescriptionCheck descriptionCheck;
+	private final RelationshipCheck relationshipCheck;
+	private final CharacteristicType charType;
+	private final ActiveState activeState;
+
+	private Predicate<Concept> appliesTo = c -> true;
+	private boolean includeInactiveConcepts = false;
+	private boolean firstIssuePerConcept = false;
+
+	//Populated by the runner once all concepts have been checked
+	private final Issues issues = new Issues();
+	private long elapsedNanos = 0;
+
+	private ReleaseIssueRule(String name, ConceptCheck conceptCheck, DescriptionCheck descriptionCheck,
+			RelationshipCheck relationshipCheck, CharacteristicType charType, ActiveState activeState) {
+		this.name = name;
+		this.conceptCheck = conceptCheck;
+		this.descriptionCheck = descriptionCheck;
+		this.relationshipCheck = relationshipCheck;
+		this.charType = charType;
+		this.activeState = activeState;
+	}
+
+	static ReleaseIssueRule forConcepts(String name, ConceptCheck check) {
+		return new ReleaseIssueRule(name, check, null, null, null, null);
+	}
+
+	static ReleaseIssueRule forDescriptions(String name, ActiveState activeState, DescriptionCheck check) {
+		return new ReleaseIssueRule(name, null, check, null, null, activeState);
+	}
+
+	static ReleaseIssueRule forRelationships(String name, CharacteristicType charType, ActiveState activeState, RelationshipCheck check) {
+		return new ReleaseIssueRule(name, null, null, check, charType, activeState);
+	}
+
+	/**
+	 * Only check concepts (or their components) that meet this condition.
+	 * Must be safe to call from several threads at once.
+	 */
+	ReleaseIssueRule appliesTo(Predicate<Concept> appliesTo) {
+		this.appliesTo = appliesTo;
+		return this;
+	}
+
+	/**
+	 * By default only active concepts are checked
+	 */
+	ReleaseIssueRule includeInactiveConcepts(boolean includeInactiveConcepts) {
+		this.includeInactiveConcepts = includeInactiveConcepts;
+		return this;
+	}
+
+	/**
+	 * Stop checking a concept's descriptions or relationships once the first issue is found with one of them
+	 */
+	ReleaseIssueRule firstIssuePerConcept() {
+		this.firstIssuePerConcept = true;
+		return this;
+	}
+
+	void check(Concept c, Issues found) throws TermServerScriptException {
+		if ((!c.isActive() && !includeInactiveConcepts) || !appliesTo.test(c)) {
+			return;
+		}
+		int issuesBefore = found.size();
+		if (conceptCheck != null) {
+			conceptCheck.check(c, found);
+		} else if (descriptionCheck != null) {
+			for (Description d : c.getDescriptions(activeState)) {
+				descriptionCheck.check(c, d, found);
+				if (firstIssuePerConcept && found.size() > issuesBefore) {
+					return;
+				}
+			}
+		} else {
+			for (Relationship r : c.getRelationships(charType, activeState)) {
+				relationshipCheck.check(c, r, found);
+				if (firstIssuePerConcept && found.size() > issuesBefore) {
+					return;
+				}
+			}
+		}
+	}
+
+	void record(Issues chunkIssues, long chunkNanos) {
+		issues.addAll(chunkIssues);
+		elapsedNanos += chunkNanos;
+	}
+
+	void reset() {
+		issues.clear();
+		elapsedNanos = 0;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	Issues getIssues() {
+		return issues;
+	}
+
+	/**
+	 * @return the time spent in this rule, summed across all threads
+	 */
+	long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * The issues found by a rule, each held as the concept concerned and the details to be reported for it
+	 */
+	static class Issues {
+		private final List<Concept> concepts = new ArrayList<>();
+		private final List<Object[]> details = new ArrayList<>();
+
+		void report(Concept c, Object... issueDetails) {
+			concepts.add(c);
+			details.add(issueDetails);
+		}
+
+		int size() {
+			return concepts.size();
+		}
+
+		Concept getConcept(int idx) {
+			return concepts.get(idx);
+		}
+
+		Object[] getDetails(int idx) {
+			return details.get(idx);
+		}
+
+		private void addAll(Issues other) {
+			concepts.addAll(other.concepts);
+			details.addAll(other.details);
+		}
+
+		private void clear() {
+			concepts.clear();
+			details.clear();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package org.ihtsdo.termserver.scripting.reports.release;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.domain.Concept;
+
+/**
+ * Passes over the concepts once, giving each concept to every rule in turn, rather than each
+ * rule making its own pass.  The concepts are split into chunks which are checked on a pool of
+ * threads, and each rule's issues are then gathered together in the order the concepts were
+ * given, so the issues reported don't depend on which thread found them.
+ */
+class ReleaseIssueRuleRunner {
+
+	//Below this it's not worth starting a pool of threads
+	private static final int PARALLEL_THRESHOLD = 1000;
+
+	private final List<ReleaseIssueRule> rules = new ArrayList<>();
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	void add(ReleaseIssueRule rule) {
+		rules.add(rule);
+	}
+
+	List<ReleaseIssueRule> getRules() {
+		return Collections.unmodifiableList(rules);
+	}
+
+	void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	void run(Collection<Concept> concepts) throws TermServerScriptException {
+		for (ReleaseIssueRule rule : rules) {
+			rule.reset();
+		}
+		List<Concept> conceptList = new ArrayList<>(concepts);
+		if (conceptList.size() < PARALLEL_THRESHOLD || threads < 2) {
+			record(check(conceptList));
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			int chunkSize = (conceptList.size() / (threads * 4)) + 1;
+			List<Future<ChunkResult>> checking = new ArrayList<>();
+			for (int i = 0; i < conceptList.size(); i += chunkSize) {
+				List<Concept> chunk = conceptList.subList(i, Math.min(i + chunkSize, conceptList.size()));
+				checking.add(executor.submit(() -> check(chunk)));
+			}
+			//Gather results in chunk order so that each rule's issues are in concept order
+			for (Future<ChunkResult> future : checking) {
+				record(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TermServerScriptException("Interrupted while checking release issues", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TermServerScriptException) {
+				throw (TermServerScriptException) e.getCause();
+			}
+			throw new TermServerScriptException("Failed to check release issues due to " + e.getCause().getMessage(), e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private ChunkResult check(List<Concept> chunk) throws TermServerScriptException {
+		ChunkResult result = new ChunkResult(rules.size());
+		for (Concept c : chunk) {
+			for (int r = 0; r < rules.size(); r++) {
+				long start = System.nanoTime();
+				rules.get(r).check(c, result.issues[r]);
+				result.nanos[r] += System.nanoTime() - start;
+			}
+		}
+		return result;
+	}
+
+	private void record(ChunkResult result) {
+		for (int r = 0; r < rules.size(); r++) {
+			rules.get(r).record(result.issues[r], result.nanos[r]);
+		}
+	}
+
+	private static class ChunkResult {
+		final ReleaseIssueRule.Issues[] issues;
+		final long[] nanos;
+
+		ChunkResult(int ruleCount) {
+			issues = new ReleaseIssueRule.Issues[ruleCount];
+			for (int r = 0; r < ruleCount; r++) {
+				issues[r] = new ReleaseIssueRule.Issues();
+			}
+			nanos = new long[ruleCount];
+		}
+	}
+}
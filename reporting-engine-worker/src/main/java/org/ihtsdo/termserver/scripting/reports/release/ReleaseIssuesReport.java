@@ -16,6 +16,7 @@ import org.ihtsdo.termserver.scripting.dao.ReportSheetManager;
 import org.ihtsdo.termserver.scripting.domain.*;
 import org.ihtsdo.termserver.scripting.reports.TermServerReport;
 import org.ihtsdo.termserver.scripting.util.SnomedUtils;
+import org.snomed.otf.owltoolkit.conversion.AxiomRelationshipConversionService;
 import org.snomed.otf.owltoolkit.conversion.ConversionException;
 import org.snomed.otf.owltoolkit.domain.AxiomRepresentation;
 import org.snomed.otf.scheduler.domain.*;
@@ -83,6 +84,8 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 	boolean includeLegacyIssues = false;
 	private static final int MIN_TEXT_DEFN_LENGTH = 12;
 	private Map<String, Integer> issueSummaryMap = new HashMap<>();
+	private int issuesReported = 0;
+	private List<CheckTiming> checkTimings = new ArrayList<>();
 	DescendantsCache cache;
 	private Set<Concept> deprecatedHierarchies;
 	private String defaultModule = SCTID_CORE_MODULE;
@@ -206,465 +209,433 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 		info("Detecting recently touched concepts");
 		populateRecentlyTouched();
 		
-		info("...modules are appropriate (~10 seconds)");
-		parentsInSameModule();
+		//Checks that look at one concept at a time are made together in a single pass over the concepts
+		ReleaseIssueRuleRunner ruleRunner = new ReleaseIssueRuleRunner();
+
+		info("...modules are appropriate");
 		if (isMS()) {
-			unexpectedDescriptionModulesMS();
-			unexpectedRelationshipModulesMS();
-			unexpectedAxiomModulesMS();
+			ruleRunner.add(unexpectedDescriptionModulesMS());
+			ruleRunner.add(unexpectedRelationshipModulesMS());
+			ruleRunner.add(unexpectedAxiomModulesMS());
 		} else {
-			unexpectedDescriptionModules();
-			unexpectedRelationshipModules();
-			unexpectedAxiomModules();
+			ruleRunner.add(parentsInSameModule());
+			ruleRunner.add(unexpectedDescriptionModules());
+			ruleRunner.add(unexpectedRelationshipModules());
+			ruleRunner.add(unexpectedAxiomModules());
 		}
-		
+
 		info("...description rules");
-		fullStopInSynonym();
-		missingFSN_PT();
-		unexpectedCharacters();
-		spaceBracket();
-		missingSemanticTag();
-		semTagInCorrectHierarchy();
-		repeatedWordGroups();
-		reviewContractions();
-		wordsInReverse();
+		ruleRunner.add(fullStopInSynonym());
+		ruleRunner.add(missingFSN_PT());
+		unexpectedCharacters().forEach(ruleRunner::add);
+		ruleRunner.add(spaceBracket());
+		ruleRunner.add(missingSemanticTag());
+		ruleRunner.add(semTagInCorrectHierarchy());
+		ruleRunner.add(repeatedWordGroups());
+		ruleRunner.add(reviewContractions());
+		ruleRunner.add(wordsInReverse());
+		ruleRunner.add(nestedBracketCheck());
+
+		info("...parent hierarchies");
+		ruleRunner.add(parentsInSameTopLevelHierarchy());
 
-		info("...duplicate semantic tags");
-		duplicateSemanticTags();
-		
-		info("...parent hierarchies (~20 seconds)");
-		parentsInSameTopLevelHierarchy();
-		
 		info("...axiom integrity");
-		axiomIntegrity();
-		noStatedRelationships();
-		
+		ruleRunner.add(axiomIntegrity());
+		ruleRunner.add(noStatedRelationships());
+
+		info("...Modelling rules check");
+		ruleRunner.add(validateAttributeDomainModellingRules());
+		ruleRunner.add(validateAttributeTypeValueModellingRules());
+		neverGroupTogether().forEach(ruleRunner::add);
+
+		info("Checking " + ruleRunner.getRules().size() + " rules against each concept");
+		runRules(ruleRunner);
+
+		//The remaining checks work across concepts or down particular hierarchies
+		info("...duplicate semantic tags");
+		timeCheck("Duplicate semantic tags", this::duplicateSemanticTags);
+
 		info("...Disease semantic tag rule");
-		diseaseIntegrity();
-		
+		timeCheck("Disease integrity", this::diseaseIntegrity);
+
 		info("...Text definition dialect checks");
 		if (!isMS()) {
-			textDefinitionDialectChecks();
+			timeCheck("Text definition dialects", this::textDefinitionDialectChecks);
 		}
-		
-		info("...Nested brackets check");
-		nestedBracketCheck();
-		
-		info("...Modelling rules check");
-		validateAttributeDomainModellingRules();
-		validateAttributeTypeValueModellingRules();
-		neverGroupTogether();
-		domainMustNotUseType();
-		
+
+		info("...Domain attribute rules");
+		timeCheck("Domain must not use type", this::domainMustNotUseType);
+
 		info("...Deprecation rules");
-		checkDeprecatedHierarchies();
-		
+		timeCheck("Deprecated hierarchies", this::checkDeprecatedHierarchies);
+
 		info("...MRCM validation");
-		checkMRCMDomain();
-		checkMRCMAttributeRanges();
-		
+		timeCheck("MRCM domain terms", this::checkMRCMDomain);
+		timeCheck("MRCM attribute range terms", this::checkMRCMAttributeRanges);
+
 		info("Checks complete, creating summary tag");
 		populateSummaryTab();
-		
+
 		info("Summary tab complete, all done.");
 	}
 
+	private void runRules(ReleaseIssueRuleRunner ruleRunner) throws TermServerScriptException {
+		long start = System.currentTimeMillis();
+		ruleRunner.run(gl.getAllConcepts());
+		info("Rules checked in " + (System.currentTimeMillis() - start) + "ms, reporting issues found");
+
+		//Issues are reported rule by rule, in the order the rules were added
+		for (ReleaseIssueRule rule : ruleRunner.getRules()) {
+			ReleaseIssueRule.Issues issues = rule.getIssues();
+			for (int i = 0; i < issues.size(); i++) {
+				report(issues.getConcept(i), issues.getDetails(i));
+			}
+			checkTimings.add(new CheckTiming(rule.getName(), issues.size(), rule.getElapsedNanos()));
+		}
+	}
+
+	private void timeCheck(String checkName, Check check) throws TermServerScriptException {
+		int issuesBefore = issuesReported;
+		long start = System.nanoTime();
+		check.run();
+		checkTimings.add(new CheckTiming(checkName, issuesReported - issuesBefore, System.nanoTime() - start));
+	}
+
 	private void populateSummaryTab() throws TermServerScriptException {
 		issueSummaryMap.entrySet().stream()
 				.sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
 				.forEach(e -> reportSafely (SECONDARY_REPORT, (Component)null, e.getKey(), e.getValue()));
-		
+
 		int total = issueSummaryMap.entrySet().stream()
 				.map(e -> e.getValue())
 				.collect(Collectors.summingInt(Integer::intValue));
 		reportSafely (SECONDARY_REPORT, (Component)null, "TOTAL", total);
+
+		//Time spent by each check, slowest first.  Rules made in the single pass over concepts
+		//are timed across all threads, so may add up to more than the time the report took.
+		reportSafely (SECONDARY_REPORT, (Component)null, "");
+		reportSafely (SECONDARY_REPORT, (Component)null, "Check", "Issues", "Time (ms)");
+		checkTimings.stream()
+				.sorted((t1, t2) -> Long.compare(t2.nanos, t1.nanos))
+				.forEach(t -> reportSafely (SECONDARY_REPORT, (Component)null, t.checkName, t.issues, t.nanos / 1000000));
 	}
 
 	//ISRS-286 Ensure Parents in same module.
 	//This check does not apply to MS
-	private void parentsInSameModule() throws TermServerScriptException {
-		if (isMS()) {
-			return;
-		}
-		
+	private ReleaseIssueRule parentsInSameModule() {
 		String issueStr = "Mismatching parent moduleId";
 		initialiseSummary(issueStr);
-		for (Concept c : allActiveConcepts) {
+		return ReleaseIssueRule.forConcepts("Parents in same module", (c, issues) -> {
 			if (c.getModuleId() == null) {
 				warn ("Encountered concept with no module defined: " + c);
-				continue;
+				return;
 			}
 			if (!c.getModuleId().equals(SCTID_CORE_MODULE) && !c.getModuleId().equals(SCTID_MODEL_MODULE)) {
-				continue;
+				return;
 			}
 			
 			//Also skip the top of the metadata hierarchy - it has a core parent
 			//900000000000441003 |SNOMED CT Model Component (metadata)|
-			if (!c.isActive() || c.getConceptId().equals("900000000000441003")) {
-				continue;
+			if (c.getConceptId().equals("900000000000441003")) {
+				return;
 			}
 			
 			for (Concept p : c.getParents(CharacteristicType.STATED_RELATIONSHIP)) {
 				if (!p.getModuleId().equals(c.getModuleId())) {
-					report(c, issueStr,isLegacy(c), isActive(c,null), p);
-					if (isLegacy(c).equals("Y")) {
-						incrementSummaryInformation("Legacy Issues Reported");
-					}	else {
-						incrementSummaryInformation("Fresh Issues Reported");
-					}
+					issues.report(c, issueStr,isLegacy(c), isActive(c,null), p);
+					countLegacy(isLegacy(c));
 				}
 			}
-		}
+		});
 	}
 	
 
 	//ISRS-391 Descriptions whose module id does not match that of the component
 	//It's OK to add translations to core concepts, so does not apply to MS
-	private void unexpectedDescriptionModules() throws TermServerScriptException {
+	private ReleaseIssueRule unexpectedDescriptionModules() {
 		String issueStr ="Unexpected Description Module";
 		initialiseSummary(issueStr);
-		for (Concept c : allActiveConcepts) {
-			for (Description d : c.getDescriptions()) {
-				if (!d.getModuleId().equals(c.getModuleId())) {
-					String msg = "Concept module " + c.getModuleId() + " vs Desc module " + d.getModuleId();
-					report(c, issueStr, isLegacy(d), isActive(c,d), msg, d);
-					if (isLegacy(d).equals("Y")) {
-						incrementSummaryInformation("Legacy Issues Reported");
-					}	else {
-						incrementSummaryInformation("Fresh Issues Reported");
-					}
-				}
+		return ReleaseIssueRule.forDescriptions("Unexpected description modules", ActiveState.BOTH, (c, d, issues) -> {
+			if (!d.getModuleId().equals(c.getModuleId())) {
+				String msg = "Concept module " + c.getModuleId() + " vs Desc module " + d.getModuleId();
+				issues.report(c, issueStr, isLegacy(d), isActive(c,d), msg, d);
+				countLegacy(isLegacy(d));
 			}
-		}
+		});
 	}
 	
 	/* Since and extension is based on a release, any modified description should
 	 * belong to the default module
 	 */
-	private void unexpectedDescriptionModulesMS() throws TermServerScriptException {
+	private ReleaseIssueRule unexpectedDescriptionModulesMS() {
 		String issueStr ="Unexpected extension description module";
 		initialiseSummary(issueStr);
-		for (Concept c : allActiveConcepts) {
-			for (Description d : c.getDescriptions()) {
-				if (StringUtils.isEmpty(d.getEffectiveTime()) && !d.getModuleId().equals(defaultModule)) {
-					String msg = "Default module " + defaultModule + " vs Desc module " + d.getModuleId();
-					report(c, issueStr, isLegacy(d), isActive(c,d), msg, d);
-					if (isLegacy(d).equals("Y")) {
-						incrementSummaryInformation("Legacy Issues Reported");
-					}	else {
-						incrementSummaryInformation("Fresh Issues Reported");
-					}
-				}
+		return ReleaseIssueRule.forDescriptions("Unexpected extension description modules", ActiveState.BOTH, (c, d, issues) -> {
+			if (StringUtils.isEmpty(d.getEffectiveTime()) && !d.getModuleId().equals(defaultModule)) {
+				String msg = "Default module " + defaultModule + " vs Desc module " + d.getModuleId();
+				issues.report(c, issueStr, isLegacy(d), isActive(c,d), msg, d);
+				countLegacy(isLegacy(d));
 			}
-		}
+		});
 	}
 	
 	//ISRS-392 Part II Stated Relationships whose module id does not match that of the component
-	private void unexpectedRelationshipModules() throws TermServerScriptException {
+	private ReleaseIssueRule unexpectedRelationshipModules() {
 		String issueStr = "Unexpected Inf Rel Module";
 		initialiseSummary(issueStr);
-		for (Concept c : allActiveConcepts) {
-			for (Relationship r : c.getRelationships(CharacteristicType.INFERRED_RELATIONSHIP, ActiveState.ACTIVE)) {
-				if (!r.getModuleId().equals(c.getModuleId())) {
-					String msg = "Concept module " + c.getModuleId() + " vs Rel module " + r.getModuleId();
-					report(c, issueStr, isLegacy(r), isActive(c,r), msg, r);
-					if (isLegacy(r).equals("Y")) {
-						incrementSummaryInformation("Legacy Issues Reported");
-					}	else {
-						incrementSummaryInformation("Fresh Issues Reported");
-					}
-				}
+		return ReleaseIssueRule.forRelationships("Unexpected relationship modules", CharacteristicType.INFERRED_RELATIONSHIP, ActiveState.ACTIVE, (c, r, issues) -> {
+			if (!r.getModuleId().equals(c.getModuleId())) {
+				String msg = "Concept module " + c.getModuleId() + " vs Rel module " + r.getModuleId();
+				issues.report(c, issueStr, isLegacy(r), isActive(c,r), msg, r);
+				countLegacy(isLegacy(r));
 			}
-		}
+		});
 	}
 	
-	private void unexpectedAxiomModules() throws TermServerScriptException {
+	private ReleaseIssueRule unexpectedAxiomModules() {
 		String issueStr = "Unexpected Axiom Module";
 		initialiseSummary(issueStr);
-		for (Concept c : allActiveConcepts) {
+		return ReleaseIssueRule.forConcepts("Unexpected axiom modules", (c, issues) -> {
 			for (AxiomEntry a : c.getAxiomEntries()) {
 				if (!a.getModuleId().equals(c.getModuleId())) {
 					String msg = "Concept module " + c.getModuleId() + " vs Axiom module " + a.getModuleId();
-					report(c, issueStr, isLegacy(a), isActive(c,a), msg, a);
-					if (isLegacy(a).equals("Y")) {
-						incrementSummaryInformation("Legacy Issues Reported");
-					}	else {
-						incrementSummaryInformation("Fresh Issues Reported");
-					}
+					issues.report(c, issueStr, isLegacy(a), isActive(c,a), msg, a);
+					countLegacy(isLegacy(a));
 				}
 			}
-		}
+		});
 	}
 	
-	private void unexpectedRelationshipModulesMS() throws TermServerScriptException {
+	private ReleaseIssueRule unexpectedRelationshipModulesMS() {
 		String issueStr = "Unexpected extension inf rel module";
 		initialiseSummary(issueStr);
-		for (Concept c : allActiveConcepts) {
-			for (Relationship r : c.getRelationships(CharacteristicType.INFERRED_RELATIONSHIP, ActiveState.ACTIVE)) {
-				if (StringUtils.isEmpty(r.getEffectiveTime()) && !r.getModuleId().equals(defaultModule)) {
-					String msg = "Default module " + defaultModule + " vs Rel module " + r.getModuleId();
-					report(c, issueStr, isLegacy(r), isActive(c,r), msg, r);
-					if (isLegacy(r).equals("Y")) {
-						incrementSummaryInformation("Legacy Issues Reported");
-					}	else {
-						incrementSummaryInformation("Fresh Issues Reported");
-					}
-				}
+		return ReleaseIssueRule.forRelationships("Unexpected extension relationship modules", CharacteristicType.INFERRED_RELATIONSHIP, ActiveState.ACTIVE, (c, r, issues) -> {
+			if (StringUtils.isEmpty(r.getEffectiveTime()) && !r.getModuleId().equals(defaultModule)) {
+				String msg = "Default module " + defaultModule + " vs Rel module " + r.getModuleId();
+				issues.report(c, issueStr, isLegacy(r), isActive(c,r), msg, r);
+				countLegacy(isLegacy(r));
 			}
-		}
+		});
 	}
 	
-	private void unexpectedAxiomModulesMS() throws TermServerScriptException {
+	private ReleaseIssueRule unexpectedAxiomModulesMS() {
 		String issueStr = "Unexpected extension axiom module";
 		initialiseSummary(issueStr);
-		for (Concept c : allActiveConcepts) {
+		return ReleaseIssueRule.forConcepts("Unexpected extension axiom modules", (c, issues) -> {
 			for (AxiomEntry a : c.getAxiomEntries()) {
 				if (StringUtils.isEmpty(a.getEffectiveTime()) && !a.getModuleId().equals(defaultModule)) {
 					String msg = "Default module " + defaultModule + " vs Axiom module " + a.getModuleId();
-					report(c, issueStr, isLegacy(a), isActive(c,a), msg, a);
-					if (isLegacy(a).equals("Y")) {
-						incrementSummaryInformation("Legacy Issues Reported");
-					}	else {
-						incrementSummaryInformation("Fresh Issues Reported");
-					}
+					issues.report(c, issueStr, isLegacy(a), isActive(c,a), msg, a);
+					countLegacy(isLegacy(a));
 				}
 			}
-		}
+		});
 	}
 	
 	//MAINT-224 Synonyms created as TextDefinitions new content only
-	private void fullStopInSynonym() throws TermServerScriptException {
+	private ReleaseIssueRule fullStopInSynonym() {
 		String issueStr = "Possible TextDefn as Synonym";
 		String issue2Str = ">1 Text Definition per Dialect";
 		initialiseSummary(issueStr);
 		initialiseSummary(issue2Str);
-		for (Concept c : allActiveConcepts) {
-			if (whiteListedConcepts.contains(c)) {
-				continue;
-			}
-			//Only look at concepts that have been in some way edited in this release cycle
-			//Unless we're interested in legacy issues
-			if (c.isActive() && (includeLegacyIssues || SnomedUtils.hasNewChanges(c))) {
-				for (Description d : c.getDescriptions(Acceptability.BOTH, DescriptionType.SYNONYM, ActiveState.ACTIVE)) {
-					if (inScope(d)) {
-						if (d.getTerm().endsWith(FULL_STOP) && d.getTerm().length() > MIN_TEXT_DEFN_LENGTH) {
-							report(c, issueStr, isLegacy(d), isActive(c,d), d);
-							if (isLegacy(d).equals("Y")) {
-								incrementSummaryInformation("Legacy Issues Reported");
-							}	else {
-								incrementSummaryInformation("Fresh Issues Reported");
-							}
-						}
+		//Only look at concepts that have been in some way edited in this release cycle
+		//Unless we're interested in legacy issues
+		return ReleaseIssueRule.forConcepts("Full stop in synonym", (c, issues) -> {
+			for (Description d : c.getDescriptions(Acceptability.BOTH, DescriptionType.SYNONYM, ActiveState.ACTIVE)) {
+				if (inScope(d)) {
+					if (d.getTerm().endsWith(FULL_STOP) && d.getTerm().length() > MIN_TEXT_DEFN_LENGTH) {
+						issues.report(c, issueStr, isLegacy(d), isActive(c,d), d);
+						countLegacy(isLegacy(d));
 					}
 				}
-				
-				if (inScope(c)) {
-					//Check we've only got max 1 Text Defn for each dialect
-					if (c.getDescriptions(US_ENG_LANG_REFSET, Acceptability.BOTH, DescriptionType.TEXT_DEFINITION, ActiveState.ACTIVE).size() > 1 ||
-						c.getDescriptions(GB_ENG_LANG_REFSET, Acceptability.BOTH, DescriptionType.TEXT_DEFINITION, ActiveState.ACTIVE).size() > 1 ) {
-						report(c, issue2Str,"N", "Y");
-						incrementSummaryInformation("Fresh Issues Reported");
-					}
+			}
+			
+			if (inScope(c)) {
+				//Check we've only got max 1 Text Defn for each dialect
+				if (c.getDescriptions(US_ENG_LANG_REFSET, Acceptability.BOTH, DescriptionType.TEXT_DEFINITION, ActiveState.ACTIVE).size() > 1 ||
+					c.getDescriptions(GB_ENG_LANG_REFSET, Acceptability.BOTH, DescriptionType.TEXT_DEFINITION, ActiveState.ACTIVE).size() > 1 ) {
+					issues.report(c, issue2Str,"N", "Y");
+					incrementSummaryInformation("Fresh Issues Reported");
 				}
 			}
-		}
+		}).appliesTo(c -> !whiteListedConcepts.contains(c) && (includeLegacyIssues || SnomedUtils.hasNewChanges(c)));
 	}
 	
 	//INFRA-2580, MAINT-342 Inactivated concepts without active PT or synonym – new instances only
 	//RP-478 Broaden to take in all concepts - just in case!
-	private void missingFSN_PT() throws TermServerScriptException {
+	private ReleaseIssueRule missingFSN_PT() {
 		String issueStr = "Concept without active FSN";
 		String issue2Str = "Concept without active US PT";
 		String issue3Str = "Concept without active GB PT";
 		initialiseSummary(issueStr);
 		initialiseSummary(issue2Str);
 		initialiseSummary(issue3Str);
-		for (Concept c : gl.getAllConcepts()) {
-			if (inScope(c) && isInternational(c) && (includeLegacyIssues || recentlyTouched.contains(c))) {
-				boolean reported = false;
-				if (c.getFSNDescription() == null || !c.getFSNDescription().isActive()) {
-					report(c, issueStr, isLegacy(c), isActive(c,null));
-					reported = true;
-				}
-				
-				Description usPT = c.getPreferredSynonym(US_ENG_LANG_REFSET);
-				if (usPT == null || !usPT.isActive()) {
-					report(c, issue2Str, isLegacy(c), isActive(c,null));
-					reported = true;
-				}
-				
-				Description gbPT = c.getPreferredSynonym(GB_ENG_LANG_REFSET);
-				if (gbPT == null || !gbPT.isActive()) {
-					report(c, issue3Str, isLegacy(c), isActive(c,null));
-					reported = true;
-				}
-				
-				if (reported) {
-					if (isLegacy(c).equals("Y")) {
-						incrementSummaryInformation("Legacy Issues Reported");
-					}	else {
-						incrementSummaryInformation("Fresh Issues Reported");
-					}
-				}
+		return ReleaseIssueRule.forConcepts("Missing FSN or PT", (c, issues) -> {
+			boolean reported = false;
+			if (c.getFSNDescription() == null || !c.getFSNDescription().isActive()) {
+				issues.report(c, issueStr, isLegacy(c), isActive(c,null));
+				reported = true;
 			}
-		}
+			
+			Description usPT = c.getPreferredSynonym(US_ENG_LANG_REFSET);
+			if (usPT == null || !usPT.isActive()) {
+				issues.report(c, issue2Str, isLegacy(c), isActive(c,null));
+				reported = true;
+			}
+			
+			Description gbPT = c.getPreferredSynonym(GB_ENG_LANG_REFSET);
+			if (gbPT == null || !gbPT.isActive()) {
+				issues.report(c, issue3Str, isLegacy(c), isActive(c,null));
+				reported = true;
+			}
+			
+			if (reported) {
+				countLegacy(isLegacy(c));
+			}
+		}).includeInactiveConcepts(true)
+		.appliesTo(c -> inScope(c) && isInternational(c) && (includeLegacyIssues || recentlyTouched.contains(c)));
 	}
 	
-	private void missingSemanticTag() throws TermServerScriptException {
+	private ReleaseIssueRule missingSemanticTag() {
 		String issueStr = "Concept (recently touched) with invalid FSN";
 		initialiseSummary(issueStr);
-		for (Concept c : gl.getAllConcepts()) {
-			if (inScope(c) && recentlyTouched.contains(c) && c.getFsn() != null) {
-				if (SnomedUtils.deconstructFSN(c.getFsn(), includeLegacyIssues)[1] == null) {
-					report(c, issueStr, "N", isActive(c,c.getFSNDescription()), c.getFsn());
-				}
+		return ReleaseIssueRule.forConcepts("Missing semantic tag", (c, issues) -> {
+			if (SnomedUtils.deconstructFSN(c.getFsn(), includeLegacyIssues)[1] == null) {
+				issues.report(c, issueStr, "N", isActive(c,c.getFSNDescription()), c.getFsn());
 			}
-		}
+		}).includeInactiveConcepts(true)
+		.appliesTo(c -> inScope(c) && recentlyTouched.contains(c) && c.getFsn() != null);
 	}
 	
-	private void semTagInCorrectHierarchy() throws TermServerScriptException {
+	private ReleaseIssueRule semTagInCorrectHierarchy() {
 		String issueStr = "SemTag used outside of expected hierarchy";
 		initialiseSummary(issueStr);
-		for (Concept c : allActiveConcepts) {
-			if (inScope(c) && !semTagHierarchyMap.containsValue(c)) {
-				for (Map.Entry<String, Concept> entry : semTagHierarchyMap.entrySet()) {
-					String semTag = SnomedUtils.deconstructFSN(c.getFsn(), true)[1];
-					if (semTag != null && semTag.equals(entry.getKey())) {
-						//Are we in the appropriate Hierarchy?
-						if (!c.getAncestors(NOT_SET).contains(entry.getValue())) {
-							report(c, issueStr, "-", isActive(c,c.getFSNDescription()), entry.getValue());
-						}
+		return ReleaseIssueRule.forConcepts("Semantic tag in correct hierarchy", (c, issues) -> {
+			for (Map.Entry<String, Concept> entry : semTagHierarchyMap.entrySet()) {
+				String semTag = SnomedUtils.deconstructFSN(c.getFsn(), true)[1];
+				if (semTag != null && semTag.equals(entry.getKey())) {
+					//Are we in the appropriate Hierarchy?
+					if (!c.getAncestors(NOT_SET).contains(entry.getValue())) {
+						issues.report(c, issueStr, "-", isActive(c,c.getFSNDescription()), entry.getValue());
 					}
 				}
 			}
-		}
+		}).appliesTo(c -> inScope(c) && !semTagHierarchyMap.containsValue(c));
 	}
 
-	private void repeatedWordGroups() throws TermServerScriptException {
+	private ReleaseIssueRule repeatedWordGroups() {
 		String wordGroupIssueStr = "Description uses repeating word group";
 		String wordIssueStr = "Description uses repeating words";
 		initialiseSummary(wordGroupIssueStr);
 		initialiseSummary(wordIssueStr);
 
-		final Collection<Concept> concepts = includeLegacyIssues ? gl.getAllConcepts() : allActiveConcepts;
-		nextConcept:
-		for (Concept c : concepts) {
-			if (inScope(c) && (includeLegacyIssues || recentlyTouched.contains(c))) {
-				//We're going to skip concepts with clinical drugs
-				String fsn = c.getFsnSafely();
-				if (fsn.contains("(medicinal") ||
-						fsn.contains("(clinical") ||
-						fsn.contains("(product")) {
-					continue nextConcept;
-				}
+		return ReleaseIssueRule.forConcepts("Repeated word groups", (c, issues) -> {
+			//We're going to skip concepts with clinical drugs
+			String fsn = c.getFsnSafely();
+			if (fsn.contains("(medicinal") ||
+					fsn.contains("(clinical") ||
+					fsn.contains("(product")) {
+				return;
+			}
+
+			boolean compoundCounted = false;
+			for (Description d : c.getDescriptions(ActiveState.ACTIVE)) {
+				boolean descriptionNotChecked = true;
+				boolean includeLegacyIssuesOrNonReleasedIssues = includeLegacyIssues ? true : !d.isReleased();
+				if (includeLegacyIssuesOrNonReleasedIssues) {
+					int concern = 0;
+					//If this is a text definition, that's less concerning
+					if (d.getType().equals(DescriptionType.TEXT_DEFINITION)) {
+						//Turning down the sensitivity here, lots of words makes for more repetition.
+						concern -= 2;
+					}
 
-				boolean compoundCounted = false;
-				for (Description d : c.getDescriptions(ActiveState.ACTIVE)) {
-					boolean descriptionNotChecked = true;
-					boolean includeLegacyIssuesOrNonReleasedIssues = includeLegacyIssues ? true : !d.isReleased();
-					if (includeLegacyIssuesOrNonReleasedIssues) {
-						int concern = 0;
-						//If this is a text definition, that's less concerning
-						if (d.getType().equals(DescriptionType.TEXT_DEFINITION)) {
-							//Turning down the sensitivity here, lots of words makes for more repetition.
-							concern -= 2;
+					String[] words = d.getTerm().split(" ");
+					for (int x = 0; x < words.length; x++) {
+						if (stopWords.contains(words[x]) || words[x].length() <= 2) {
+							continue;
 						}
 
-						String[] words = d.getTerm().split(" ");
-						for (int x = 0; x < words.length; x++) {
-							if (stopWords.contains(words[x]) || words[x].length() <= 2) {
-								continue;
+						for (int y = 0; y < words.length; y++) {
+							//Check for duplicate words that are side-by-side.
+							if (y + 1 < words.length) {
+								String currentWord = words[y];
+								String nextWord = words[y + 1];
+								boolean wordsEqual = currentWord.equalsIgnoreCase(nextWord);
+								boolean wordOftenTypedTwice = wordsOftenTypedTwice.contains(currentWord);
+								if (descriptionNotChecked && wordsEqual && wordOftenTypedTwice) {
+									descriptionNotChecked = false;
+									issues.report(c, wordIssueStr, isLegacy(d), isActive(c, d), "Repeated word: " + currentWord, d);
+								}
 							}
 
-							for (int y = 0; y < words.length; y++) {
-								//Check for duplicate words that are side-by-side.
-								if (y + 1 < words.length) {
-									String currentWord = words[y];
-									String nextWord = words[y + 1];
-									boolean wordsEqual = currentWord.equalsIgnoreCase(nextWord);
-									boolean wordOftenTypedTwice = wordsOftenTypedTwice.contains(currentWord);
-									if (descriptionNotChecked && wordsEqual && wordOftenTypedTwice) {
-										descriptionNotChecked = false;
-										report(c, wordIssueStr, isLegacy(d), isActive(c, d), "Repeated word: " + currentWord, d);
+							//Check for duplicated word groups.
+							if (x != y && words[x].equalsIgnoreCase(words[y])) {
+								concern++;
+								//If we have an 'and' or 'width' to the left that we haven't counted, that's 
+								//less of a concern
+								if (compoundToTheLeftOf(words, x)) {
+									if (!compoundCounted) {
+										concern--;
+									} else {
+										compoundCounted = true;
 									}
 								}
 
-								//Check for duplicated word groups.
-								if (x != y && words[x].equalsIgnoreCase(words[y])) {
-									concern++;
-									//If we have an 'and' or 'width' to the left that we haven't counted, that's 
-									//less of a concern
-									if (compoundToTheLeftOf(words, x)) {
-										if (!compoundCounted) {
-											concern--;
-										} else {
-											compoundCounted = true;
-										}
-									}
-
-									//We'll also check a word left or right 
-									//of X to be the same as a word to the left or right of Y
-									if (!alsoHasSameWordToLeftOrRight(words, x, y)) {
-										concern--;
-									}
+								//We'll also check a word left or right 
+								//of X to be the same as a word to the left or right of Y
+								if (!alsoHasSameWordToLeftOrRight(words, x, y)) {
+									concern--;
+								}
 
-									if (concern > 2) {
-										report(c, wordGroupIssueStr, isLegacy(d), isActive(c, d), "Repeated word: " + words[x], d);
-										continue nextConcept;
-									}
+								if (concern > 2) {
+									issues.report(c, wordGroupIssueStr, isLegacy(d), isActive(c, d), "Repeated word: " + words[x], d);
+									return;
 								}
 							}
 						}
 					}
 				}
 			}
-		}
+		}).includeInactiveConcepts(includeLegacyIssues)
+		.appliesTo(c -> inScope(c) && (includeLegacyIssues || recentlyTouched.contains(c)));
 	}
 
-	private void reviewContractions() throws TermServerScriptException {
+	private ReleaseIssueRule reviewContractions() {
 		String issueStr = "Contraction(s) to be reviewed for Concept";
 		String detailStr = "Option to add/remove contraction(s)";
 		initialiseSummary(issueStr);
 
-		nextConcept:
-		for (Concept c : allActiveConcepts) {
-			if (inScope(c) && (includeLegacyIssues || recentlyTouched.contains(c))) {
-				for (Description d : c.getDescriptions(ActiveState.ACTIVE)) {
-					String[] words = d.getTerm().split(" ");
-					int wordsLength = words.length;
-					for (int x = 0; x < wordsLength; x++) {
-						String currentWord = words[x];
-						if ("cannot".equalsIgnoreCase(currentWord) || (x + 1 < wordsLength && "can".equalsIgnoreCase(currentWord) && "not".equalsIgnoreCase(words[x + 1]))) {
-							report(c, issueStr, isLegacy(d), isActive(c, d), detailStr, d);
-							continue nextConcept;
-						}
-					}
+		return ReleaseIssueRule.forDescriptions("Review contractions", ActiveState.ACTIVE, (c, d, issues) -> {
+			String[] words = d.getTerm().split(" ");
+			int wordsLength = words.length;
+			for (int x = 0; x < wordsLength; x++) {
+				String currentWord = words[x];
+				if ("cannot".equalsIgnoreCase(currentWord) || (x + 1 < wordsLength && "can".equalsIgnoreCase(currentWord) && "not".equalsIgnoreCase(words[x + 1]))) {
+					issues.report(c, issueStr, isLegacy(d), isActive(c, d), detailStr, d);
+					return;
 				}
 			}
-		}
+		}).firstIssuePerConcept()
+		.appliesTo(c -> inScope(c) && (includeLegacyIssues || recentlyTouched.contains(c)));
 	}
 
-	private void wordsInReverse() throws TermServerScriptException {
+	private ReleaseIssueRule wordsInReverse() {
 		String issueStr = "Potential mistyped word in Description";
 		initialiseSummary(issueStr);
 
-		for (Concept c : allActiveConcepts) {
-			if (inScope(c) && (includeLegacyIssues || recentlyTouched.contains(c))) {
-				nextDescription:
-				for (Description d : c.getDescriptions(ActiveState.ACTIVE)) {
-					String[] words = d.getTerm().split(" ");
-					for (String currentWord : words) {
-						String currentWordInReverse = new StringBuilder(currentWord).reverse().toString();
-						int indexOf = wordsOftenTypedInReverse.indexOf(currentWordInReverse);
-						if (indexOf != -1) {
-							String detailStr = String.format("The word '%s' looks to be '%s' in reverse.", currentWord, wordsOftenTypedInReverse.get(indexOf));
-							report(c, issueStr, isLegacy(d), isActive(c, d), detailStr, d);
-							continue nextDescription;
-						}
-					}
+		return ReleaseIssueRule.forDescriptions("Words in reverse", ActiveState.ACTIVE, (c, d, issues) -> {
+			String[] words = d.getTerm().split(" ");
+			for (String currentWord : words) {
+				String currentWordInReverse = new StringBuilder(currentWord).reverse().toString();
+				int indexOf = wordsOftenTypedInReverse.indexOf(currentWordInReverse);
+				if (indexOf != -1) {
+					String detailStr = String.format("The word '%s' looks to be '%s' in reverse.", currentWord, wordsOftenTypedInReverse.get(indexOf));
+					issues.report(c, issueStr, isLegacy(d), isActive(c, d), detailStr, d);
+					return;
 				}
 			}
-		}
+		}).appliesTo(c -> inScope(c) && (includeLegacyIssues || recentlyTouched.contains(c)));
 	}
 	
 	private boolean alsoHasSameWordToLeftOrRight(String[] words, int x, int y) {
@@ -814,7 +785,7 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 	}
 	
 	//ISRS-414 Descriptions which contain a non-breaking space
-	private void unexpectedCharacters () throws TermServerScriptException {
+	private List<ReleaseIssueRule> unexpectedCharacters () {
 		String [][] unwantedChars = new String[][] {
 			{ NBSPSTR , "Non-breaking space" },
 			{ LONG_DASH , "MsWord style dash" },
@@ -827,29 +798,24 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 			{ ACUTE_ACCENT , "Acute accent" }
 		};
 		
+		List<ReleaseIssueRule> rules = new ArrayList<>();
 		for (String unwantedChar[] : unwantedChars) {
 			String issueStr = "Unexpected character(s) - " + unwantedChar[1];
 			initialiseSummary(issueStr);
 			
-			for (Concept c : allActiveConcepts) {
-				for (Description d : c.getDescriptions(ActiveState.ACTIVE)) {
-					if (inScope(d)) {
-						if (d.getTerm().indexOf(unwantedChar[0]) != NOT_SET && !allowableException(c, unwantedChar[0], d.getTerm())) {
-							String legacy = isLegacy(d);
-							String msg = "At position: " + d.getTerm().indexOf(unwantedChar[0]);
-							report(c, issueStr, legacy, isActive(c,d),msg, d);
-							if (legacy.equals("Y")) {
-								incrementSummaryInformation("Legacy Issues Reported");
-							}	else {
-								incrementSummaryInformation("Fresh Issues Reported");
-							}
-							//Only report the first violation for each concept
-							break;
-						}
+			//Only report the first violation for each concept
+			rules.add(ReleaseIssueRule.forDescriptions(issueStr, ActiveState.ACTIVE, (c, d, issues) -> {
+				if (inScope(d)) {
+					if (d.getTerm().indexOf(unwantedChar[0]) != NOT_SET && !allowableException(c, unwantedChar[0], d.getTerm())) {
+						String legacy = isLegacy(d);
+						String msg = "At position: " + d.getTerm().indexOf(unwantedChar[0]);
+						issues.report(c, issueStr, legacy, isActive(c,d),msg, d);
+						countLegacy(legacy);
 					}
 				}
-			}
+			}).firstIssuePerConcept());
 		}
+		return rules;
 	}
 
 	private boolean allowableException(Concept c, String unwantedChars, String term) {
@@ -872,26 +838,20 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 	}
 
 	//RP-201
-	private void spaceBracket() throws TermServerScriptException {
+	private ReleaseIssueRule spaceBracket() {
 		String issueStr = "Extraneous space inside bracket";
 		initialiseSummary(issueStr);
-		nextConcept:
-		for (Concept c : allActiveConcepts) {
-			if (c.isActive() || includeLegacyIssues) {
-				for (Description d : c.getDescriptions(ActiveState.ACTIVE)) {
-					if (inScope(d)) {
-						if (d.getTerm().contains("( ") || d.getTerm().contains(" )")) {
-							report(c, issueStr, isLegacy(d), isActive(c,d), d);
-							continue nextConcept;
-						}
-					}
+		return ReleaseIssueRule.forDescriptions("Space inside bracket", ActiveState.ACTIVE, (c, d, issues) -> {
+			if (inScope(d)) {
+				if (d.getTerm().contains("( ") || d.getTerm().contains(" )")) {
+					issues.report(c, issueStr, isLegacy(d), isActive(c,d), d);
 				}
 			}
-		}
+		}).firstIssuePerConcept();
 	}
 	
 	//Active concept parents should not belong to more than one top-level hierarchy – please check NEW and LEGACY content for issues
-	private void parentsInSameTopLevelHierarchy() throws TermServerScriptException {
+	private ReleaseIssueRule parentsInSameTopLevelHierarchy() throws TermServerScriptException {
 		String issueStr = "Parent has multiple top level ancestors";
 		String issue2Str = "Mixed TopLevel Parents";
 		initialiseSummary(issueStr);
@@ -900,66 +860,56 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 		Set<Concept> whiteList = new HashSet<>();
 		whiteList.add(gl.getConcept("411115002 |Drug-device combination product (product)|")); 
 				
-		nextConcept:
-		for (Concept c : allActiveConcepts) {
-			if (!inScope(c)) {
-				continue;
-			}
+		return ReleaseIssueRule.forConcepts("Parents in same top level hierarchy", (c, issues) -> {
 			if (whiteListedConcepts.contains(c)) {
 				incrementSummaryInformation(WHITE_LISTED_COUNT);
-				continue;
+				return;
 			}
-			if (c.isActive()) {
-				String legacy = isLegacy(c);
-				
-				//Skip root concept - has no highest ancestor
-				if (c.equals(ROOT_CONCEPT)) {
-					continue;
+			String legacy = isLegacy(c);
+			
+			//Skip root concept - has no highest ancestor
+			if (c.equals(ROOT_CONCEPT)) {
+				return;
+			}
+			
+			//If this concept - or any of its ancestors - are whitelisted, then skip
+			for (Concept a : gl.getAncestorsCache().getAncestorsOrSelf(c)){
+				if (whiteList.contains(a)) {
+					return;
+				}
+			}
+			
+			Concept lastTopLevel = null;
+			for (Concept p : c.getParents(CharacteristicType.INFERRED_RELATIONSHIP)) {
+				//If we are a top level, skip also
+				if (p.equals(ROOT_CONCEPT)) {
+					return;
 				}
+				//What top level hierarchy is this parent in?
+				Set<Concept> topLevels = SnomedUtils.getHighestAncestorsBefore(p, ROOT_CONCEPT);
 				
-				//If this concept - or any of its ancestors - are whitelisted, then skip
-				for (Concept a : gl.getAncestorsCache().getAncestorsOrSelf(c)){
-					if (whiteList.contains(a)) {
-						continue nextConcept;
-					}
+				if (topLevels.size() > 1) {
+					String topLevelStr = topLevels.stream().map(cp -> cp.toString()).collect(Collectors.joining(",\n"));
+					issues.report(c, issueStr, legacy, isActive(c,null), topLevelStr);
+					return;
+				} else if (topLevels.size() == 0) {
+					issues.report(c, "Failed to find top level of parent ", legacy, isActive(c,null), p);
+					return;
 				}
 				
-				Concept lastTopLevel = null;
-				for (Concept p : c.getParents(CharacteristicType.INFERRED_RELATIONSHIP)) {
-					//If we are a top level, skip also
-					if (p.equals(ROOT_CONCEPT)) {
-						continue nextConcept;
-					}
-					//What top level hierarchy is this parent in?
-					Set<Concept> topLevels = SnomedUtils.getHighestAncestorsBefore(p, ROOT_CONCEPT);
-					
-					if (topLevels.size() > 1) {
-						String topLevelStr = topLevels.stream().map(cp -> cp.toString()).collect(Collectors.joining(",\n"));
-						report(c, issueStr, legacy, isActive(c,null), topLevelStr);
-						continue nextConcept;
-					} else if (topLevels.size() == 0) {
-						report(c, "Failed to find top level of parent ", legacy, isActive(c,null), p);
-						continue nextConcept;
-					}
-					
-					Concept thisTopLevel = topLevels.iterator().next();
-					if (lastTopLevel == null) {
-						lastTopLevel = thisTopLevel;
-					} else if ( !lastTopLevel.equals(thisTopLevel)) {
-						report(c, issue2Str, legacy, isActive(c,null), thisTopLevel, lastTopLevel);
-						if (legacy.equals("Y")) {
-							incrementSummaryInformation("Legacy Issues Reported");
-						}	else {
-							incrementSummaryInformation("Fresh Issues Reported");
-						}
-					}
+				Concept thisTopLevel = topLevels.iterator().next();
+				if (lastTopLevel == null) {
+					lastTopLevel = thisTopLevel;
+				} else if ( !lastTopLevel.equals(thisTopLevel)) {
+					issues.report(c, issue2Str, legacy, isActive(c,null), thisTopLevel, lastTopLevel);
+					countLegacy(legacy);
 				}
 			}
-		}
+		}).appliesTo(c -> inScope(c));
 	}
 	
 	//RP-128
-	private void axiomIntegrity() throws TermServerScriptException {
+	private ReleaseIssueRule axiomIntegrity() {
 		String issueStr = "Axiom contains inactive type";
 		String issue2Str = "Axiom contains inactive target";
 		String issue3Str = "GCI Axiom contains inactive type";
@@ -969,66 +919,62 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 		initialiseSummary(issue3Str);
 		initialiseSummary(issue4Str);
 		
+		//The conversion service isn't known to be thread safe, so each thread converts with its own
+		ThreadLocal<AxiomRelationshipConversionService> axiomService = ThreadLocal.withInitial(() -> new AxiomRelationshipConversionService(null));
+		
 		//Check all concepts referenced in relationships are valid
-		for (Concept c : allActiveConcepts) {
-			if (c.isActive() && inScope(c)) {
-				//Check all RHS relationships are active
-				for (Relationship r : c.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE)) {
-					String legacy = isLegacy(r);
-					if (!r.getType().isActive()) {
-						report(c, issueStr, legacy, isActive(c,r), r);
-					}
-					if (r.isNotConcrete() && !r.getTarget().isActive()) {
-						report(c, issue2Str, legacy, isActive(c,r), r);
-					}
+		return ReleaseIssueRule.forConcepts("Axiom integrity", (c, issues) -> {
+			//Check all RHS relationships are active
+			for (Relationship r : c.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE)) {
+				String legacy = isLegacy(r);
+				if (!r.getType().isActive()) {
+					issues.report(c, issueStr, legacy, isActive(c,r), r);
 				}
-				
-				//Check all LHS relationships are active
-				for (AxiomEntry a : c.getAxiomEntries()) {
-					try {
-						String legacy = isLegacy(a);
-						AxiomRepresentation axiom = gl.getAxiomService().convertAxiomToRelationships(a.getOwlExpression());
-						//Things like property chains give us a null axiom
-						if (axiom == null) {
-							continue;
+				if (r.isNotConcrete() && !r.getTarget().isActive()) {
+					issues.report(c, issue2Str, legacy, isActive(c,r), r);
+				}
+			}
+			
+			//Check all LHS relationships are active
+			for (AxiomEntry a : c.getAxiomEntries()) {
+				try {
+					String legacy = isLegacy(a);
+					AxiomRepresentation axiom = axiomService.get().convertAxiomToRelationships(a.getOwlExpression());
+					//Things like property chains give us a null axiom
+					if (axiom == null) {
+						continue;
+					}
+					
+					for (Relationship r : AxiomUtils.getLHSRelationships(c, axiom)) {
+						if (!r.getType().isActive()) {
+							issues.report(c, issue3Str, legacy, isActive(c,r), r);
 						}
-						
-						for (Relationship r : AxiomUtils.getLHSRelationships(c, axiom)) {
-							if (!r.getType().isActive()) {
-								report(c, issue3Str, legacy, isActive(c,r), r);
-							}
-							if (r.isNotConcrete() && !r.getTarget().isActive()) {
-								report(c, issue4Str, legacy, isActive(c,r), r);
-							}
+						if (r.isNotConcrete() && !r.getTarget().isActive()) {
+							issues.report(c, issue4Str, legacy, isActive(c,r), r);
 						}
-					} catch (ConversionException e) {
-						error ("Failed to convert: " + a, e);
 					}
+				} catch (ConversionException e) {
+					error ("Failed to convert: " + a, e);
 				}
 			}
-		}
+		}).appliesTo(c -> inScope(c));
 	}
 	
 	/**
 	 * This will not spot many stated relationships because the axiom equivalents
 	 * will override these rows.
-	 * @throws TermServerScriptException
 	 */
-	private void noStatedRelationships() throws TermServerScriptException {
+	private ReleaseIssueRule noStatedRelationships() {
 		String issueStr = "Active stated relationship";
 		initialiseSummary(issueStr);
 		
 		//Check no active relationship is non-axiom
-		for (Concept c : allActiveConcepts) {
-			if (c.isActive() && inScope(c)) {
-				for (Relationship r : c.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE)) {
-					String legacy = isLegacy(r);
-					if (!r.fromAxiom()) {
-						report(c, issueStr, legacy, isActive(c,r), r);
-					}
-				}
+		return ReleaseIssueRule.forRelationships("No stated relationships", CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE, (c, r, issues) -> {
+			String legacy = isLegacy(r);
+			if (!r.fromAxiom()) {
+				issues.report(c, issueStr, legacy, isActive(c,r), r);
 			}
-		}
+		}).appliesTo(c -> inScope(c));
 	}
 	
 	//RP-127
@@ -1146,30 +1092,28 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 	}
 	
 
-	private void nestedBracketCheck() throws TermServerScriptException {
+	private ReleaseIssueRule nestedBracketCheck() {
 		String issueStr = "Active description on inactive concept contains nested brackets";
 		initialiseSummary(issueStr);
 		Character[][] bracketPairs = new Character[][] {{'(', ')'},
 			{'[',']'}};
 			
-		nextConcept:
-		for (Concept c : allActiveConcepts) {
-			if (!c.isActive()) {
-				for (Description d : c.getDescriptions(ActiveState.ACTIVE)) {
-					if (inScope(d)) {
-						for (Character[] bracketPair : bracketPairs) {
-							if (containsNestedBracket(c, d, bracketPair)) {
-								report (c, issueStr, isLegacy(c), isActive(c,d), d);
-								continue nextConcept;
-							}
+		return ReleaseIssueRule.forConcepts("Nested brackets", (c, issues) -> {
+			for (Description d : c.getDescriptions(ActiveState.ACTIVE)) {
+				if (inScope(d)) {
+					for (Character[] bracketPair : bracketPairs) {
+						if (containsNestedBracket(c, d, bracketPair, issues)) {
+							issues.report(c, issueStr, isLegacy(c), isActive(c,d), d);
+							return;
 						}
 					}
 				}
 			}
-		}
+		}).includeInactiveConcepts(true)
+		.appliesTo(c -> !c.isActive());
 	}
 	
-	private boolean containsNestedBracket(Concept c, Description d, Character[] bracketPair) throws TermServerScriptException {
+	private boolean containsNestedBracket(Concept c, Description d, Character[] bracketPair, ReleaseIssueRule.Issues issues) {
 		Stack<Character> brackets = new Stack<>();
 		for (Character ch: d.getTerm().toCharArray()) {
 			if (ch.equals(bracketPair[0])) {  //Opening bracket
@@ -1179,7 +1123,7 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 				}
 			} else if (ch.equals(bracketPair[1])) {  //Closing bracket
 				if (brackets.size() == 0) {
-					report (c,"Closing bracket found without matching opening", isLegacy(c), isActive(c,d), d);
+					issues.report(c,"Closing bracket found without matching opening", isLegacy(c), isActive(c,d), d);
 				} else {
 					brackets.pop();
 				}
@@ -1189,34 +1133,31 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 	}
 	
 
-	private void validateAttributeDomainModellingRules() throws TermServerScriptException {
+	private ReleaseIssueRule validateAttributeDomainModellingRules() throws TermServerScriptException {
 		//RP-179 concepts using surgical approach must be surgical procedures
 		String issueStr = "Concepts using |Surgical approach| must be subtypes of |surgical procedure|";
 		initialiseSummary(issueStr);
 		Concept type = gl.getConcept("424876005 |Surgical approach (attribute)|");
 		Concept subHierarchy = gl.getConcept("387713003 |Surgical procedure (procedure)|");
 		Set<Concept> subHierarchyList = cache.getDescendentsOrSelf(subHierarchy);
-		for (Concept c : allActiveConcepts) {
-			if (c.isActive() && inScope(c)) {
-				validateTypeUsedInDomain(c, type, subHierarchyList, issueStr);
-			}
-		}
+		return ReleaseIssueRule.forConcepts("Attribute domain modelling", (c, issues) -> {
+			validateTypeUsedInDomain(c, type, subHierarchyList, issueStr, issues);
+		}).appliesTo(c -> inScope(c));
 	}
 
 	/**
 	 * Where a concept uses the specified attribute type in its modelling, 
 	 * ensure that it is a descendant of the specified subhierarchy
-	 * @throws TermServerScriptException 
 	 */
-	private void validateTypeUsedInDomain(Concept c, Concept type, Set<Concept> subHierarchyList, String issueStr) throws TermServerScriptException {
+	private void validateTypeUsedInDomain(Concept c, Concept type, Set<Concept> subHierarchyList, String issueStr, ReleaseIssueRule.Issues issues) {
 		if (SnomedUtils.hasType(CharacteristicType.INFERRED_RELATIONSHIP, c, type)) {
 			if (!subHierarchyList.contains(c)) {
-				report (c, issueStr, isLegacy(c), isActive(c, null));
+				issues.report(c, issueStr, isLegacy(c), isActive(c, null));
 			}
 		}
 	}
 
-	private void validateAttributeTypeValueModellingRules() throws TermServerScriptException {
+	private ReleaseIssueRule validateAttributeTypeValueModellingRules() throws TermServerScriptException {
 		String issueStr = "Finding/Procedure site cannot take a combined site value";
 		initialiseSummary(issueStr);
 		
@@ -1227,13 +1168,11 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 		typesOfInterest.addAll(procSiteTypes);
 		Set<Concept> invalidValues = cache.getDescendentsOrSelf(gl.getConcept("116007004 |Combined site (body structure)|"));
 		
-		for (Concept c : allActiveConcepts) {
-			if (c.isActive() && inScope(c)) {
-				for (Concept type : typesOfInterest) {
-					validateTypeValueCombo(c, type, invalidValues, issueStr, false);
-				}
+		return ReleaseIssueRule.forConcepts("Attribute type value modelling", (c, issues) -> {
+			for (Concept type : typesOfInterest) {
+				validateTypeValueCombo(c, type, invalidValues, issueStr, false, issues);
 			}
-		}
+		}).appliesTo(c -> inScope(c));
 	}
 	
 	private void checkDeprecatedHierarchies() throws TermServerScriptException {
@@ -1307,40 +1246,39 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 	/**
 	 * If the given concept uses the particular type, checks if that type is in (or must not be in)
 	 * the list of specified values
-	 * @throws TermServerScriptException 
 	 */
 	private void validateTypeValueCombo(Concept c, Concept type, Set<Concept> values, String issueStr,
-			boolean mustBeIn) throws TermServerScriptException {
+			boolean mustBeIn, ReleaseIssueRule.Issues issues) {
 		Set<Relationship> relsWithType = c.getRelationships(CharacteristicType.INFERRED_RELATIONSHIP, type, ActiveState.ACTIVE);
 		for (Relationship relWithType : relsWithType) {
 			//Must the value be in, or must the value be NOT in our list of values?
 			boolean isIn = values.contains(relWithType.getTarget());
 			if (!isIn == mustBeIn) {
-				report (c, issueStr, isLegacy(relWithType), isActive(c, relWithType), relWithType);
+				issues.report(c, issueStr, isLegacy(relWithType), isActive(c, relWithType), relWithType);
 			}
 		}
 	}
 	
 	
 	//RP-180
-	private void neverGroupTogether() throws TermServerScriptException {
+	private List<ReleaseIssueRule> neverGroupTogether() throws TermServerScriptException {
 		Concept[][] neverTogetherList = new Concept[][] 
 				{
 					{ gl.getConcept("363589002 |Associated procedure|"), gl.getConcept("408729009 |Finding context|")},
 					{ gl.getConcept("408730004 |Procedure context|"), gl.getConcept("246090004 |Associated finding|")}
 				};
 			
+		List<ReleaseIssueRule> rules = new ArrayList<>();
 		for (Concept[] neverTogether : neverTogetherList) {
 			String issueStr = "Attributes " + neverTogether[0].toStringPref() + " and " + neverTogether[1].toStringPref() + " must not appear in same group";
 			initialiseSummary(issueStr);
-			for (Concept c : allActiveConcepts) {
-				if (c.isActive() && inScope(c)) {
-					if (appearInSameGroup(c, neverTogether[0], neverTogether[1])) {
-						report (c, issueStr, isLegacy(c), isActive(c, null));
-					}
+			rules.add(ReleaseIssueRule.forConcepts(issueStr, (c, issues) -> {
+				if (appearInSameGroup(c, neverTogether[0], neverTogether[1])) {
+					issues.report(c, issueStr, isLegacy(c), isActive(c, null));
 				}
-			}
+			}).appliesTo(c -> inScope(c)));
 		}
+		return rules;
 	}
 	
 	//RP-180
@@ -1390,10 +1328,19 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 	protected void report (Concept c, Object...details) throws TermServerScriptException {
 		//First detail is the issue
 		issueSummaryMap.merge(details[0].toString(), 1, Integer::sum);
+		issuesReported++;
 		countIssue(c);
 		super.report (PRIMARY_REPORT, c, details);
 	}
 
+	private void countLegacy(String legacy) {
+		if (legacy.equals("Y")) {
+			incrementSummaryInformation("Legacy Issues Reported");
+		}	else {
+			incrementSummaryInformation("Fresh Issues Reported");
+		}
+	}
+
 	private Object isActive(Component c1, Component c2) {
 		return (c1.isActive() ? "Y":"N") + "/" + (c2 == null?"" : (c2.isActive() ? "Y":"N"));
 	}
@@ -1413,4 +1360,19 @@ public class ReleaseIssuesReport extends TermServerReport implements ReportClass
 		}
 	}
 
+	private interface Check {
+		void run() throws TermServerScriptException;
+	}
+
+	private static class CheckTiming {
+		final String checkName;
+		final int issues;
+		final long nanos;
+		CheckTiming (String checkName, int issues, long nanos) {
+			this.checkName = checkName;
+			this.issues = issues;
+			this.nanos = nanos;
+		}
+	}
+
 }
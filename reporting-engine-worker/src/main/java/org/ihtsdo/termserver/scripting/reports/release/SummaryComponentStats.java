@@ -233,7 +233,7 @@ public class SummaryComponentStats extends TermServerReport implements ReportCla
 	}
 
 	private void analyzeConcepts() throws TermServerScriptException {
-		TransitiveClosure tc = gl.generateTransativeClosure();
+		TransitiveClosure tc = gl.getCurrentTC();
 		info ("Analysing concepts");
 		Concept topLevel;
 		for (Concept c : gl.getAllConcepts()) {
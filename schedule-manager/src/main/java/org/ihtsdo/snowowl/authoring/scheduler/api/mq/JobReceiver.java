@@ -6,6 +6,7 @@ import org.slf4j.LoggerFactory;
 import org.snomed.otf.scheduler.domain.JobRun;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -15,9 +16,27 @@ public class JobReceiver {
 	
 	@Autowired
 	ScheduleService service;
+	
+	@Autowired
+	WorkerRegistry workerRegistry;
+	
+	@Autowired
+	Transmitter transmitter;
 
 	@JmsListener(destination = "${schedule.manager.queue.response}")
-	public void receiveMessage(JobRun jobRun) {
+	public void receiveMessage(JobRun jobRun,
+			@Header(name = Transmitter.WORKER, required = false) String worker,
+			@Header(name = Transmitter.SNAPSHOT, required = false) String snapshot,
+			@Header(name = Transmitter.ACTIVE_JOBS, required = false) Integer activeJobs,
+			@Header(name = Transmitter.SLOTS, required = false) Integer slots,
+			@Header(name = Transmitter.TAKEN, required = false) Boolean taken) {
+		transmitter.acknowledge(jobRun);
+		//An acknowledgement carries the job as we sent it, so there's nothing to record until the worker reports on it
+		if (Boolean.TRUE.equals(taken)) {
+			logger.info("Worker {} has taken {}", worker, jobRun.getJobName());
+			return;
+		}
+		workerRegistry.update(worker, snapshot, activeJobs, slots);
 		service.processResponse(jobRun);
 	}
 }
@@ -1,22 +1,125 @@
 package org.ihtsdo.snowowl.authoring.scheduler.api.mq;
 
+import java.util.*;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.snomed.otf.scheduler.domain.JobRun;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
 
 @Component
 public class Transmitter {
-	
+
+	//Message properties set by the workers on their responses, and by us to route a job to a worker
+	public static final String WORKER = "worker";
+	public static final String SNAPSHOT = "snapshot";
+	public static final String ACTIVE_JOBS = "activeJobs";
+	public static final String SLOTS = "slots";
+	//Set by a worker on the acknowledgement it sends as soon as it takes a job routed to it
+	public static final String TAKEN = "taken";
+
+	protected Logger logger = LoggerFactory.getLogger(this.getClass());
+
 	@Autowired
 	private JmsTemplate jmsTemplate;
-	
+
+	@Autowired
+	private WorkerRegistry workerRegistry;
+
+	@Autowired
+	private TaskScheduler engineScheduler;
+
 	@Value("${schedule.manager.queue.request}")
 	String requestQueueName;
-	
+
+	//How long a job routed to a worker may wait for it before going to whichever worker is free
+	@Value("${schedule.manager.affinity.wait.seconds:60}")
+	int affinityWaitSeconds;
+
+	private JmsTemplate routedJmsTemplate;
+
+	//Jobs routed to a particular worker, which it has not yet told us it has taken
+	private final Map<UUID, RoutedJob> routedJobs = new HashMap<>();
+
+	@PostConstruct
+	public void init() {
+		//Routed messages expire so that they can't be picked up after we've sent the job elsewhere
+		routedJmsTemplate = new JmsTemplate(jmsTemplate.getConnectionFactory());
+		routedJmsTemplate.setMessageConverter(jmsTemplate.getMessageConverter());
+		routedJmsTemplate.setExplicitQosEnabled(true);
+		routedJmsTemplate.setTimeToLive(affinityWaitSeconds * 1000L);
+		if (affinityWaitSeconds > 0) {
+			engineScheduler.scheduleWithFixedDelay(this::rerouteExpired, affinityWaitSeconds * 1000L);
+		}
+	}
+
 	public void send (JobRun run) {
-		jmsTemplate.convertAndSend(requestQueueName, run);
+		String worker = affinityWaitSeconds > 0 ? workerRegistry.selectWorker(run.getProject()) : null;
+		if (worker == null) {
+			jmsTemplate.convertAndSend(requestQueueName, run);
+			return;
+		}
+
+		logger.info("Routing {} to worker {} which already holds {}", run.getJobName(), worker, run.getProject());
+		synchronized (routedJobs) {
+			routedJobs.put(run.getId(), new RoutedJob(run, worker));
+		}
+		routedJmsTemplate.convertAndSend(requestQueueName, run, message -> {
+			message.setStringProperty(WORKER, worker);
+			return message;
+		});
+	}
+
+	/**
+	 * The worker has taken this job, so it mustn't be rerouted, even if it has yet to start
+	 */
+	public void acknowledge (JobRun run) {
+		if (run.getId() != null) {
+			synchronized (routedJobs) {
+				routedJobs.remove(run.getId());
+			}
+		}
+	}
+
+	/**
+	 * Routed messages expire, so once a job's message has expired without the worker acknowledging
+	 * that it took it, it can no longer be taken and is safe to send elsewhere.
+	 */
+	private void rerouteExpired() {
+		//Allow time for the acknowledgement of a message taken just before it expired to reach us
+		long cutOff = System.currentTimeMillis() - (affinityWaitSeconds * 2000L);
+		List<RoutedJob> expired = new ArrayList<>();
+		synchronized (routedJobs) {
+			for (Iterator<RoutedJob> i = routedJobs.values().iterator(); i.hasNext();) {
+				RoutedJob routedJob = i.next();
+				if (routedJob.sent < cutOff) {
+					expired.add(routedJob);
+					i.remove();
+				}
+			}
+		}
+		for (RoutedJob routedJob : expired) {
+			workerRegistry.forget(routedJob.worker);
+			logger.warn("{} was not picked up by worker {}, sending to any worker", routedJob.run.getJobName(), routedJob.worker);
+			jmsTemplate.convertAndSend(requestQueueName, routedJob.run);
+		}
+	}
+
+	private static class RoutedJob {
+		final JobRun run;
+		final String worker;
+		final long sent = System.currentTimeMillis();
+
+		RoutedJob(JobRun run, String worker) {
+			this.run = run;
+			this.worker = worker;
+		}
 	}
 
 }
@@ -0,0 +1,71 @@
+package org.ihtsdo.snowowl.authoring.scheduler.api.mq;
+
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps track of the snapshot each worker last reported holding in memory, and whether it
+ * has a free slot, so that jobs can be sent to a worker that won't need to reload.
+ */
+@Component
+public class WorkerRegistry {
+
+	protected Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final Map<String, Worker> workers = new HashMap<>();
+
+	public synchronized void update(String workerId, String snapshot, Integer activeJobs, Integer slots) {
+		if (workerId == null) {
+			return;
+		}
+		Worker worker = workers.computeIfAbsent(workerId, Worker::new);
+		worker.snapshot = snapshot;
+		worker.activeJobs = activeJobs == null ? 0 : activeJobs;
+		worker.slots = slots == null ? 1 : slots;
+		worker.lastHeard = new Date();
+	}
+
+	/**
+	 * @return a worker with a free slot that already holds the project's snapshot, or null
+	 * if there's no such worker and the job should go to whichever worker is free.
+	 * The worker chosen is assumed busy until we hear otherwise.
+	 */
+	public synchronized String selectWorker(String project) {
+		if (project == null) {
+			return null;
+		}
+		Worker selected = workers.values().stream()
+				.filter(w -> project.equals(w.snapshot) && w.activeJobs < w.slots)
+				.max(Comparator.comparing(w -> w.lastHeard))
+				.orElse(null);
+		if (selected == null) {
+			return null;
+		}
+		selected.activeJobs++;
+		return selected.id;
+	}
+
+	/**
+	 * A job sent to this worker was not picked up, so it has probably been scaled away.
+	 */
+	public synchronized void forget(String workerId) {
+		if (workers.remove(workerId) != null) {
+			logger.info("Worker {} did not pick up the job routed to it, no longer routing jobs to it", workerId);
+		}
+	}
+
+	private static class Worker {
+		final String id;
+		String snapshot;
+		int activeJobs;
+		int slots;
+		Date lastHeard;
+
+		Worker(String id) {
+			this.id = id;
+		}
+	}
+}
@@ -13,8 +13,9 @@ public class AncestorsCache implements RF2Constants {
 	private static AncestorsCache singleton = null;
 	private static AncestorsCache singletonStated = null;
 	
-	Map<Concept, Set<Concept>> ancestorsCache = new HashMap<>();
 	CharacteristicType charType = CharacteristicType.INFERRED_RELATIONSHIP;
+	private long maxCachedEntries = ConceptClosureCache.DEFAULT_MAX_ENTRIES;
+	private ConceptClosureCache ancestorsCache = createCache();
 	
 	public static AncestorsCache getAncestorsCache() {
 		if (singleton == null) {
@@ -39,15 +40,16 @@ public class AncestorsCache implements RF2Constants {
 		return getAncestors(c, false);
 	}
 	
+	private ConceptClosureCache createCache() {
+		//Each concept's ancestors are its parents plus their (cached) ancestors
+		return new ConceptClosureCache(c -> c.getParents(charType), maxCachedEntries);
+	}
+	
 	private Set<Concept> getAncestors (Concept c, boolean mutable) throws TermServerScriptException {
-		Set<Concept> ancestors = ancestorsCache.get(c);
-		if (ancestors == null) {
-			//Ensure we're working with the local copy rather than TS JSON
-			Concept localConcept = GraphLoader.getGraphLoader().getConcept(c.getConceptId());
-			ancestors = localConcept.getAncestors(NOT_SET, charType, false);
-			ancestorsCache.put(localConcept, ancestors);
-		}
-		return mutable ? ancestors : Collections.unmodifiableSet(ancestors);
+		//Ensure we're working with the local copy rather than TS JSON
+		Concept localConcept = GraphLoader.getGraphLoader().getConcept(c.getConceptId());
+		Set<Concept> ancestors = ancestorsCache.get(localConcept);
+		return mutable ? new HashSet<>(ancestors) : ancestors;
 	}
 	
 	public Set<Concept> getAncestorsOrSelf (Concept c) throws TermServerScriptException {
@@ -71,6 +73,20 @@ public class AncestorsCache implements RF2Constants {
 	}
 
 	public void reset() {
-		ancestorsCache = new HashMap<>();
+		ancestorsCache = createCache();
+	}
+	
+	/**
+	 * Limits the total number of ancestors held across all cached concepts, 
+	 * evicting the oldest entries when exceeded.  NOT_SET for no limit.
+	 * Defaults to ConceptClosureCache.DEFAULT_MAX_ENTRIES
+	 */
+	public void setMaxCachedEntries(long maxCachedEntries) {
+		this.maxCachedEntries = maxCachedEntries;
+		ancestorsCache.setMaxEntries(maxCachedEntries);
+	}
+	
+	public long getMaxCachedEntries() {
+		return maxCachedEntries;
 	}
 }
@@ -9,6 +9,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.*;
@@ -16,10 +17,14 @@ import java.util.zip.*;
 import org.apache.commons.io.FileUtils;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Project;
 import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.client.TermServerClient;
 import org.ihtsdo.termserver.scripting.client.TermServerClient.*;
 import org.ihtsdo.termserver.scripting.dao.ArchiveDataLoader;
+import org.ihtsdo.termserver.scripting.dao.RF2RowSource;
+import org.ihtsdo.termserver.scripting.dao.RF2Tokenizer;
 import org.ihtsdo.termserver.scripting.domain.*;
 import org.ihtsdo.termserver.scripting.snapshot.SnapshotGenerator;
+import org.ihtsdo.termserver.scripting.snapshot.SnapshotImage;
 import org.ihtsdo.termserver.scripting.util.ExceptionUtils;
 import org.ihtsdo.termserver.scripting.util.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,18 +51,38 @@ public class ArchiveManager implements RF2Constants {
 	private boolean populateHierarchyDepth = true;  //Term contains X needs this
 	private boolean populateReleasedFlag = false;
 	private boolean populatePreviousTransativeClosure = false;
-	private boolean releasedFlagPopulated = false;
+	private static boolean releasedFlagPopulated = false;
+	private boolean runParallelLoad = false;
+	private boolean streamDelta = false;
+	private boolean useSnapshotImage = false;
+	private boolean lazyDescriptions = false;
+	private boolean indexingDescriptions = false;
+	private boolean loadRefsetMembers = false;
+	private int parallelLoadThreads = Runtime.getRuntime().availableProcessors();
 	
-	private Project currentlyHeldInMemory;
+	private static Project currentlyHeldInMemory;
+	//When a worker runs several jobs at once, those on the same project share the snapshot held in memory
+	private static boolean sharedSnapshots = false;
+	//The jobs currently working from the snapshot held in memory.  Held by job rather than by thread, since
+	//a job may load and release its snapshot on different threads
+	private static final Set<TermServerScript> snapshotUsers = Collections.newSetFromMap(new IdentityHashMap<>());
+	//The options the snapshot held in memory was loaded with, when shared
+	private static LoadOptions heldOptions;
+	//When sharing snapshots, each job sets its load flags on its own archive manager
+	private static final Map<TermServerScript, ArchiveManager> jobArchiveManagers = new IdentityHashMap<>();
 	ZoneId utcZoneID= ZoneId.of("Etc/UTC");
 	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 	
-	public static ArchiveManager getArchiveManager(TermServerScript ts, ApplicationContext appContext) {
+	public static synchronized ArchiveManager getArchiveManager(TermServerScript ts, ApplicationContext appContext) {
 		if (singleton == null) {
 			singleton = new ArchiveManager();
 			singleton.appContext = appContext;
 		}
 		
+		if (sharedSnapshots) {
+			return getJobArchiveManager(ts);
+		}
+		
 		if (singleton.ts == null || !singleton.ts.getClass().getSimpleName().equals(ts.getClass().getSimpleName())) {
 			TermServerScript.info("Archive manager under first or new ownership: " + ts.getClass().getSimpleName() + ".  Resetting load flags");
 			singleton.gl = ts.getGraphLoader();
@@ -72,6 +97,22 @@ public class ArchiveManager implements RF2Constants {
 		return singleton;
 	}
 	
+	/**
+	 * Jobs running alongside each other can't share the singleton's load flags, so each is given 
+	 * its own archive manager, configured as the singleton is, for as long as it runs.
+	 */
+	private static ArchiveManager getJobArchiveManager(TermServerScript ts) {
+		ArchiveManager am = jobArchiveManagers.get(ts);
+		if (am == null) {
+			TermServerScript.info("Archive manager created for job: " + ts.getClass().getSimpleName());
+			am = new ArchiveManager(singleton);
+			am.ts = ts;
+			am.gl = ts.getGraphLoader();
+			jobArchiveManagers.put(ts, am);
+		}
+		return am;
+	}
+	
 	@EventListener(ApplicationReadyEvent.class)
 	public void init() {
 		singleton = this;
@@ -81,6 +122,18 @@ public class ArchiveManager implements RF2Constants {
 		//Only access via singleton above
 	}
 	
+	private ArchiveManager (ArchiveManager template) {
+		archiveDataLoader = template.archiveDataLoader;
+		dataStoreRoot = template.dataStoreRoot;
+		appContext = template.appContext;
+		allowStaleData = template.allowStaleData;
+		runParallelLoad = template.runParallelLoad;
+		streamDelta = template.streamDelta;
+		useSnapshotImage = template.useSnapshotImage;
+		indexingDescriptions = template.indexingDescriptions;
+		parallelLoadThreads = template.parallelLoadThreads;
+	}
+	
 	protected void info(String msg) {
 		TermServerScript.info(msg);
 	}
@@ -179,6 +232,84 @@ public class ArchiveManager implements RF2Constants {
 	}
 
 	public void loadProjectSnapshot(boolean fsnOnly) throws TermServerScriptException {
+		if (sharedSnapshots) {
+			loadSharedSnapshot(fsnOnly);
+		} else {
+			loadSnapshot(fsnOnly);
+		}
+	}
+	
+	/**
+	 * Jobs on the project already held in memory, loaded with exactly the same options, join those 
+	 * working from it, treating it as read-only.  Jobs on another project - or needing it loaded 
+	 * differently - wait until it is no longer in use and then reload it.
+	 */
+	private void loadSharedSnapshot(boolean fsnOnly) throws TermServerScriptException {
+		synchronized (ArchiveManager.class) {
+			//Taken as the job asks to load, so that nothing set afterwards can change what it's given
+			LoadOptions options = new LoadOptions(this, fsnOnly);
+			//A job loading a second time gives up its existing share first
+			releaseShare(ts);
+			try {
+				while (!snapshotUsers.isEmpty() && !canShareSnapshot(options)) {
+					info (ts.getProject() + " waiting for " + snapshotUsers.size() + " job(s) to finish with " + currentlyHeldInMemory);
+					ArchiveManager.class.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TermServerScriptException("Interrupted while waiting to load " + ts.getProject(), e);
+			}
+			if (snapshotUsers.isEmpty()) {
+				if (currentlyHeldInMemory != null && !options.equals(heldOptions)) {
+					info (currentlyHeldInMemory.getKey() + " was loaded with different options, being wiped to reload for " + ts.getProject());
+					gl.reset();
+					currentlyHeldInMemory = null;
+					releasedFlagPopulated = false;
+				}
+				heldOptions = null;
+				loadSnapshot(fsnOnly);
+				heldOptions = options;
+			} else {
+				info (ts.getProject() + " already held in memory, sharing with " + snapshotUsers.size() + " running job(s)");
+			}
+			snapshotUsers.add(ts);
+		}
+	}
+	
+	private boolean canShareSnapshot(LoadOptions options) {
+		return currentlyHeldInMemory != null && options.equals(heldOptions);
+	}
+	
+	/**
+	 * Called once a job has finished with the snapshot it loaded, so that jobs waiting
+	 * on a different project can have it replaced.
+	 */
+	public static void releaseSnapshot(TermServerScript job) {
+		synchronized (ArchiveManager.class) {
+			jobArchiveManagers.remove(job);
+			releaseShare(job);
+		}
+	}
+	
+	private static void releaseShare(TermServerScript job) {
+		if (snapshotUsers.remove(job)) {
+			ArchiveManager.class.notifyAll();
+		}
+	}
+	
+	/**
+	 * @return the key of the project whose snapshot is loaded, if any
+	 */
+	public static String getProjectHeldInMemory() {
+		Project held = currentlyHeldInMemory;
+		return held == null ? null : held.getKey();
+	}
+	
+	public static void setSharedSnapshots(boolean sharedSnapshots) {
+		ArchiveManager.sharedSnapshots = sharedSnapshots;
+	}
+	
+	private void loadSnapshot(boolean fsnOnly) throws TermServerScriptException {
 		try {
 			if (loadDependencyPlusExtensionArchive) {
 				if (StringUtils.isEmpty(ts.getDependencyArchive())) {
@@ -253,6 +384,11 @@ public class ArchiveManager implements RF2Constants {
 				}
 			}
 
+			//Parsed axioms are only worth keeping while we're reloading the same project
+			if (currentlyHeldInMemory != null && !currentlyHeldInMemory.equals(ts.getProject())) {
+				gl.clearParsedAxioms();
+			}
+			
 			if (!snapshot.exists() || 
 					(isStale && !allowStaleData) || 
 					(populateReleasedFlag && !releasedFlagPopulated && !loadEditionArchive) ||
@@ -270,7 +406,8 @@ public class ArchiveManager implements RF2Constants {
 				//We don't need to load the snapshot if we've just generated it
 			} else {
 				//We might already have this project in memory
-				if (currentlyHeldInMemory != null && currentlyHeldInMemory.equals(ts.getProject())) {
+				if (currentlyHeldInMemory != null && currentlyHeldInMemory.equals(ts.getProject())
+						&& !(loadRefsetMembers && gl.getRefsetMembers() == null)) {
 					info (ts.getProject() + " already held in memory, no need to reload.  Resetting any issues held against components...");
 					gl.makeReady();
 				} else {
@@ -301,6 +438,7 @@ public class ArchiveManager implements RF2Constants {
 							throw unrecoverable;
 						} catch (Exception e) {
 							TermServerScript.error ("Non-viable snapshot encountered (Exception: " + e.getMessage()  +").", e);
+							new SnapshotImage(snapshot).delete();
 							if (!snapshot.getName().startsWith("releases/")) {
 								TermServerScript.info ("Deleting " + snapshot);
 								try {
@@ -321,7 +459,7 @@ public class ArchiveManager implements RF2Constants {
 							//Next time round the snapshot on disk won't be detected and we'll take a different code path
 							if (!loadEditionArchive) {
 								TermServerScript.warn("Attempting to regenerate...");
-								loadProjectSnapshot(fsnOnly);
+								loadSnapshot(fsnOnly);
 							} 
 						}
 					}
@@ -352,6 +490,7 @@ public class ArchiveManager implements RF2Constants {
 	private void generateSnapshot(Project project) throws TermServerScriptException, IOException {
 		File snapshot = getSnapshotPath();
 		//Delete the current snapshot if it exists - will be stale
+		new SnapshotImage(snapshot).delete();
 		if (snapshot.isDirectory()) {
 			FileUtils.deleteDirectory(snapshot);
 		} else {
@@ -376,13 +515,19 @@ public class ArchiveManager implements RF2Constants {
 			TermServerScript.info("Building Extension snapshot release also based on dependency: " + dependency);
 		}
 		
-		//Now we need a recent delta to add to it
-		File delta = generateDelta(project);
 		SnapshotGenerator snapshotGenerator = new SnapshotGenerator();
 		snapshotGenerator.setProject(ts.getProject());
 		snapshotGenerator.leaveArchiveUncompressed();
 		snapshotGenerator.setOutputDirName(snapshot.getPath());
-		snapshotGenerator.generateSnapshot(dependency, previous, delta, snapshot);
+		//Now we need a recent delta to add to it
+		if (streamDelta) {
+			//Hold onto the client, the snapshot generator takes ownership of this archive manager while loading
+			TermServerClient tsClient = ts.getTSClient();
+			snapshotGenerator.generateSnapshot(dependency, previous, () -> loadDelta(project, tsClient), snapshot);
+		} else {
+			File delta = generateDelta(project);
+			snapshotGenerator.generateSnapshot(dependency, previous, delta, snapshot);
+		}
 	}
 	
 	private ArchiveDataLoader getArchiveDataLoader() throws TermServerScriptException {
@@ -404,6 +549,15 @@ public class ArchiveManager implements RF2Constants {
 		return delta;
 	}
 
+	/**
+	 * Loads the project's delta into memory as the export downloads, rather than saving it to disk 
+	 * and reading it back in.
+	 */
+	private void loadDelta(Project project, TermServerClient tsClient) throws TermServerScriptException {
+		tsClient.export(project.getBranchPath(), null, ExportType.UNPUBLISHED, ExtractType.DELTA, 
+				archive -> loadArchive(archive, project.getKey() + " delta export", false, DELTA, false));
+	}
+
 	private void ensureProjectMetadataPopulated(Project project) throws TermServerScriptException {
 		if (project.getMetadata() == null || project.getMetadata().getPreviousPackage() == null) {
 			boolean metadataPopulated = false;
@@ -456,8 +610,24 @@ public class ArchiveManager implements RF2Constants {
 	protected void loadArchive(File archive, boolean fsnOnly, String fileType, Boolean isReleased) throws TermServerScriptException {
 		try {
 			boolean isDelta = (fileType.equals(DELTA));
+			//Descriptions held on disk must be read back from the RF2 text, so not from an image
+			boolean loadLazily = lazyDescriptions && fileType.equals(SNAPSHOT);
+			//A binary image of a snapshot saves us from parsing the RF2 text again
+			SnapshotImage image = null;
+			boolean loadedFromImage = false;
+			if (useSnapshotImage && fileType.equals(SNAPSHOT) && !loadLazily) {
+				image = new SnapshotImage(archive);
+				loadedFromImage = image.isAvailable();
+			}
+			
 			//Are we loading an expanded or compressed archive?
-			if (archive.isDirectory()) {
+			if (loadLazily) {
+				loadArchiveLazily(archive, fsnOnly, fileType, isReleased);
+			} else if (loadedFromImage) {
+				loadArchiveImage(image, fsnOnly, fileType, isDelta, isReleased);
+			} else if (runParallelLoad) {
+				loadArchiveParallel(archive, fsnOnly, fileType, isDelta, isReleased);
+			} else if (archive.isDirectory()) {
 				loadArchiveDirectory(archive, fsnOnly, fileType, isDelta, isReleased);
 			} else if (archive.getPath().endsWith(".zip")) {
 				TermServerScript.debug("Loading archive file: " + archive);
@@ -466,47 +636,15 @@ public class ArchiveManager implements RF2Constants {
 				throw new TermServerScriptException("Unrecognised archive : " + archive);
 			}
 			
-			if (gl.getAllConcepts().size() < 300000) {
-				throw new TermServerScriptException("Insufficient number of concepts loaded " + gl.getAllConcepts().size() + " - Snapshot archive damaged?");
-			}
-			
-			//Ensure that every active parent other than root has at least one parent in both views
-			debug("Ensuring all concepts have parents...");
-			String integrityFailureMessage = "";
-			boolean firstFailure = true;
-			for (Concept c : gl.getAllConcepts()) {
-				/*if (c.getId().equals("551000220107")) {
-					debug("here");
-				}*/
-				if (c.isActive() && !c.equals(ROOT_CONCEPT)) {
-					if (c.getParents(CharacteristicType.INFERRED_RELATIONSHIP).size() == 0) {
-						integrityFailureMessage += (firstFailure ? "":",\n") + c + " has no inferred parents";
-						firstFailure = false;
-					}
-					
-					if (c.getParents(CharacteristicType.STATED_RELATIONSHIP).size() == 0) {
-						integrityFailureMessage += (firstFailure ? "":",\n") + c + " has no stated parents";
-						firstFailure = false;
-					}
-				}
-			}
-			if (integrityFailureMessage.length() > 0) {
-				throw new UnrecoverableTermServerScriptException(integrityFailureMessage);
-			}
+			checkArchiveLoaded(archive.getName(), fsnOnly);
 			
-			if (!fsnOnly) {  
-				//Check that we've got some descriptions to be sure we've not been given
-				//a malformed, or classification style archive.
-				debug("Checking first 100 concepts for integrity");
-				List<Description> first100Descriptions = gl.getAllConcepts()
-						.stream()
-						.limit(100)
-						.flatMap(c -> c.getDescriptions().stream())
-						.collect(Collectors.toList());
-				if (first100Descriptions.size() < 100) {
-					throw new TermServerScriptException("Failed to find sufficient number of descriptions - classification archive used? Deleting snapshot, please retry.");
+			//Archive has passed integrity checks, so next time we can load it from an image
+			if (image != null && !loadedFromImage) {
+				try {
+					image.write();
+				} catch (TermServerScriptException e) {
+					TermServerScript.warn("Continuing without snapshot image: " + e.getMessage());
 				}
-				debug("Integrity check complete");
 			}
 			
 			//Are we generating the transitive closure?
@@ -518,17 +656,83 @@ public class ArchiveManager implements RF2Constants {
 		}
 	}
 
+	private void checkArchiveLoaded(String archiveName, boolean fsnOnly) throws TermServerScriptException {
+		Runtime runtime = Runtime.getRuntime();
+		debug("Heap in use after loading " + archiveName + ": " + ((runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024)) + "MB" 
+				+ (gl.isUsePrimitiveStore() ? " using primitive concept store" : ""));
+		
+		if (gl.getAllConcepts().size() < 300000) {
+			throw new TermServerScriptException("Insufficient number of concepts loaded " + gl.getAllConcepts().size() + " - Snapshot archive damaged?");
+		}
+		
+		//Ensure that every active parent other than root has at least one parent in both views
+		debug("Ensuring all concepts have parents...");
+		String integrityFailureMessage = "";
+		boolean firstFailure = true;
+		for (Concept c : gl.getAllConcepts()) {
+			/*if (c.getId().equals("551000220107")) {
+				debug("here");
+			}*/
+			if (c.isActive() && !c.equals(ROOT_CONCEPT)) {
+				if (c.getParents(CharacteristicType.INFERRED_RELATIONSHIP).size() == 0) {
+					integrityFailureMessage += (firstFailure ? "":",\n") + c + " has no inferred parents";
+					firstFailure = false;
+				}
+				
+				if (c.getParents(CharacteristicType.STATED_RELATIONSHIP).size() == 0) {
+					integrityFailureMessage += (firstFailure ? "":",\n") + c + " has no stated parents";
+					firstFailure = false;
+				}
+			}
+		}
+		if (integrityFailureMessage.length() > 0) {
+			throw new UnrecoverableTermServerScriptException(integrityFailureMessage);
+		}
+		
+		if (!fsnOnly) {  
+			//Check that we've got some descriptions to be sure we've not been given
+			//a malformed, or classification style archive.
+			debug("Checking first 100 concepts for integrity");
+			List<Description> first100Descriptions = gl.getAllConcepts()
+					.stream()
+					.limit(100)
+					.flatMap(c -> c.getDescriptions().stream())
+					.collect(Collectors.toList());
+			if (first100Descriptions.size() < 100) {
+				throw new TermServerScriptException("Failed to find sufficient number of descriptions - classification archive used? Deleting snapshot, please retry.");
+			}
+			debug("Integrity check complete");
+		}
+	}
+
+	/**
+	 * Loads the archive with the description and language refset files indexed rather than loaded,
+	 * so that each concept's descriptions are only read from disk when first required.  
+	 * FSNs are populated as normal.  A zip archive is expanded to a temporary directory which is
+	 * retained until the GraphLoader is next reset.
+	 */
+	private void loadArchiveLazily(File archive, boolean fsnOnly, String fileType, Boolean isReleased) throws IOException, TermServerScriptException {
+		File archiveDir = archive;
+		if (!archive.isDirectory()) {
+			archiveDir = Files.createTempDirectory("archive_lazy-").toFile();
+			info("Staging " + archive + " to " + archiveDir);
+			stageArchiveZip(archive, archiveDir);
+			gl.getLazyDescriptionStore().addStagingDir(archiveDir);
+		}
+		
+		indexingDescriptions = true;
+		try {
+			loadArchiveDirectory(archiveDir, fsnOnly, fileType, false, isReleased);
+		} finally {
+			indexingDescriptions = false;
+		}
+		gl.getLazyDescriptionStore().complete();
+	}
+	
 	private void loadArchiveZip(File archive, boolean fsnOnly, String fileType, boolean isDelta, Boolean isReleased) throws IOException, TermServerScriptException {
 		ZipInputStream zis = new ZipInputStream(new FileInputStream(archive));
-		ZipEntry ze = zis.getNextEntry();
 		try {
-			while (ze != null) {
-				if (!ze.isDirectory()) {
-					Path path = Paths.get(ze.getName());
-					loadFile(path, zis, fileType, isDelta, fsnOnly, isReleased);
-				}
-				ze = zis.getNextEntry();
-			}
+			loadArchiveEntries(zis, fsnOnly, fileType, isDelta, isReleased);
 		}  finally {
 			try{
 				zis.closeEntry();
@@ -537,6 +741,45 @@ public class ArchiveManager implements RF2Constants {
 		}
 	}
 	
+	private int loadArchiveEntries(ZipInputStream zis, boolean fsnOnly, String fileType, boolean isDelta, Boolean isReleased) throws IOException {
+		int entriesLoaded = 0;
+		ZipEntry ze = zis.getNextEntry();
+		while (ze != null) {
+			if (!ze.isDirectory()) {
+				Path path = Paths.get(ze.getName());
+				loadFile(path, zis, fileType, isDelta, fsnOnly, isReleased);
+				entriesLoaded++;
+			}
+			ze = zis.getNextEntry();
+		}
+		return entriesLoaded;
+	}
+	
+	/**
+	 * Loads a zip archive as it is read from the stream - typically while it's still being downloaded - 
+	 * so that nothing has to be written to or read back from disk.  The stream is not closed.
+	 */
+	protected void loadArchive(InputStream archive, String archiveName, boolean fsnOnly, String fileType, Boolean isReleased) throws TermServerScriptException {
+		try {
+			long start = System.currentTimeMillis();
+			//Don't let the zip stream close the underlying stream, that belongs to the caller
+			ZipInputStream zis = new ZipInputStream(new BufferedInputStream(archive) {
+				@Override
+				public void close() {
+					//Left for the owner of the stream to close
+				}
+			});
+			int entriesLoaded = loadArchiveEntries(zis, fsnOnly, fileType, fileType.equals(DELTA), isReleased);
+			if (entriesLoaded == 0) {
+				throw new TermServerScriptException("No files found in " + archiveName);
+			}
+			info("Streamed " + entriesLoaded + " files from " + archiveName + " in " + ((System.currentTimeMillis() - start) / 1000f) + "s");
+			checkArchiveLoaded(archiveName, fsnOnly);
+		} catch (IOException e) {
+			throw new TermServerScriptException("Failed to extract project state from archive " + archiveName, e);
+		}
+	}
+	
 	private void loadArchiveDirectory(File dir, boolean fsnOnly, String fileType, boolean isDelta, Boolean isReleased) throws IOException {
 		try (Stream<Path> paths = Files.walk(dir.toPath())) {
 			paths.filter(Files::isRegularFile)
@@ -552,6 +795,153 @@ public class ArchiveManager implements RF2Constants {
 		} 
 	}
 	
+	/**
+	 * Loads the RF2 files of an archive on a pool of threads.  Files are loaded in phases 
+	 * (concepts, then descriptions, then everything else) and within each phase, files that
+	 * modify the same parts of a concept are kept together in a lane which is loaded sequentially.
+	 * Zip archives are first expanded to a temporary directory so that the files can be read independently.
+	 */
+	private void loadArchiveParallel(File archive, boolean fsnOnly, String fileType, boolean isDelta, Boolean isReleased) throws IOException, TermServerScriptException {
+		long start = System.currentTimeMillis();
+		File stagingDir = null;
+		File archiveDir = archive;
+		if (!archive.isDirectory()) {
+			stagingDir = Files.createTempDirectory("archive_staging-").toFile();
+			info("Staging " + archive + " to " + stagingDir);
+			stageArchiveZip(archive, stagingDir);
+			archiveDir = stagingDir;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(parallelLoadThreads);
+		Map<String, Long> fileTimings = new ConcurrentHashMap<>();
+		try {
+			//Sort the files into lanes, each of which belongs to a phase
+			Map<LoadLane, List<Path>> lanes = new TreeMap<>();
+			try (Stream<Path> paths = Files.walk(archiveDir.toPath())) {
+				paths.filter(Files::isRegularFile)
+				.sorted()
+				.forEach(path -> {
+					LoadLane lane = LoadLane.forFile(path.getFileName().toString(), fileType, fsnOnly, loadRefsetMembers);
+					if (lane != null) {
+						lanes.computeIfAbsent(lane, k -> new ArrayList<>()).add(path);
+					}
+				});
+			}
+			
+			for (int phase = 0; phase <= LoadLane.MAX_PHASE; phase++) {
+				List<Future<?>> running = new ArrayList<>();
+				for (Map.Entry<LoadLane, List<Path>> entry : lanes.entrySet()) {
+					if (entry.getKey().phase == phase) {
+						List<Path> laneFiles = entry.getValue();
+						running.add(executor.submit(() -> {
+							for (Path path : laneFiles) {
+								long fileStart = System.currentTimeMillis();
+								try (InputStream is = toInputStream(path)) {
+									loadFile(path, is, fileType, isDelta, fsnOnly, isReleased);
+								} catch (IOException e) {
+									throw new IllegalStateException("Unable to load " + path, e);
+								}
+								fileTimings.put(path.getFileName().toString(), System.currentTimeMillis() - fileStart);
+							}
+						}));
+					}
+				}
+				//Wait for this phase to complete before allowing dependent files to be loaded
+				for (Future<?> future : running) {
+					try {
+						future.get();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new TermServerScriptException("Interrupted while loading " + archive, e);
+					} catch (ExecutionException e) {
+						throw new TermServerScriptException("Failed to load " + archive + " due to " + e.getCause().getMessage(), e);
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			if (stagingDir != null) {
+				FileUtils.deleteDirectory(stagingDir);
+			}
+		}
+		
+		long totalFileTime = 0;
+		for (Map.Entry<String, Long> timing : new TreeMap<>(fileTimings).entrySet()) {
+			info("\t" + timing.getKey() + " loaded in " + (timing.getValue() / 1000f) + "s");
+			totalFileTime += timing.getValue();
+		}
+		info("Parallel load of " + archive.getName() + " completed in " + ((System.currentTimeMillis() - start) / 1000f) 
+				+ "s wall clock, " + (totalFileTime / 1000f) + "s of file loading");
+	}
+	
+	private void stageArchiveZip(File archive, File stagingDir) throws IOException {
+		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(archive))) {
+			ZipEntry ze = zis.getNextEntry();
+			while (ze != null) {
+				if (!ze.isDirectory()) {
+					//Flatten the structure, we only use the file name to identify the content
+					Path target = stagingDir.toPath().resolve(Paths.get(ze.getName()).getFileName());
+					Files.copy(zis, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+				ze = zis.getNextEntry();
+			}
+		}
+	}
+	
+	/**
+	 * Groups RF2 files that may be loaded concurrently with the files of other lanes in the same phase.
+	 * Files in the same lane modify the same structures within a concept or description, so must be 
+	 * loaded one at a time.
+	 */
+	private enum LoadLane {
+		CONCEPT(0), 
+		DESCRIPTION(1), 
+		RELATIONSHIP(2), 
+		LANGUAGE(2), 
+		INACTIVATION_INDICATOR(2), 
+		HISTORICAL_ASSOCIATION(2), 
+		MRCM(2),
+		REFSET_MEMBERS(2);
+		
+		static final int MAX_PHASE = 2;
+		final int phase;
+		
+		LoadLane (int phase) {
+			this.phase = phase;
+		}
+		
+		//Mirrors the file selection made in loadFile
+		static LoadLane forFile(String fileName, String fileType, boolean fsnOnly, boolean loadRefsetMembers) {
+			if (!fileName.contains(fileType)) {
+				return null;
+			}
+			if (fileName.contains("sct2_Concept_")) {
+				return CONCEPT;
+			} else if (fileName.contains("sct2_Relationship_") || 
+					fileName.contains("sct2_StatedRelationship_") ||
+					fileName.contains("sct2_RelationshipConcrete") ||
+					fileName.contains("sct2_sRefset_OWLExpression") ||
+					fileName.contains("sct2_sRefset_OWLAxiom")) {
+				return RELATIONSHIP;
+			} else if (fileName.contains("sct2_Description_") || fileName.contains("sct2_TextDefinition_")) {
+				return DESCRIPTION;
+			} else if (fileName.contains("der2_cRefset_ConceptInactivationIndicatorReferenceSet") ||
+					fileName.contains("der2_cRefset_DescriptionInactivationIndicatorReferenceSet") ||
+					fileName.contains("der2_cRefset_AttributeValue")) {
+				return INACTIVATION_INDICATOR;
+			} else if (fileName.contains("Association")) {
+				return HISTORICAL_ASSOCIATION;
+			} else if (fileName.contains("MRCMDomain") || fileName.contains("MRCMAttributeRange")) {
+				return MRCM;
+			} else if (loadRefsetMembers && RefsetMembers.isMembershipFile(fileName)) {
+				return REFSET_MEMBERS;
+			} else if (!fsnOnly && (fileName.contains("English") || fileName.contains("Language"))) {
+				return LANGUAGE;
+			}
+			return null;
+		}
+	}
+	
 	private InputStream toInputStream(Path path) {
 		InputStream is;
 		try {
@@ -563,64 +953,131 @@ public class ArchiveManager implements RF2Constants {
 	}
 
 	private void loadFile(Path path, InputStream is, String fileType, boolean isDelta, boolean fsnOnly, Boolean isReleased)  {
+		String fileName = path.getFileName().toString();
+		if (indexingDescriptions && fileName.contains(fileType)) {
+			try {
+				if (fileName.contains("sct2_Description_") || fileName.contains("sct2_TextDefinition_")) {
+					info("Indexing Description " + fileType + " file - " + fileName);
+					gl.getLazyDescriptionStore().indexDescriptionFile(path.toFile(), isReleased);
+					return;
+				} else if (fileName.contains("English") || fileName.contains("Language")) {
+					gl.getLazyDescriptionStore().addLanguageFile(path.toFile(), isReleased);
+					return;
+				}
+			} catch (TermServerScriptException | IOException e) {
+				throw new IllegalStateException("Unable to index " + fileName + " due to " + e.getMessage(), e);
+			}
+		}
+		loadFile(fileName, new RF2Tokenizer(is), fileType, isDelta, fsnOnly, isReleased);
+	}
+	
+	private void loadFile(String fileName, RF2RowSource rows, String fileType, boolean isDelta, boolean fsnOnly, Boolean isReleased)  {
 		try {
-			String fileName = path.getFileName().toString();
 			if (fileName.contains(fileType)) {
 				if (fileName.contains("sct2_Concept_" )) {
 					info("Loading Concept " + fileType + " file.");
-					gl.loadConceptFile(is, isReleased);
+					gl.loadConceptFile(rows, isReleased);
 				} else if (fileName.contains("sct2_Relationship_" )) {
 					info("Loading Relationship " + fileType + " file.");
-					gl.loadRelationships(CharacteristicType.INFERRED_RELATIONSHIP, is, true, isDelta, isReleased);
+					gl.loadRelationships(CharacteristicType.INFERRED_RELATIONSHIP, rows, true, isDelta, isReleased);
 					if (populateHierarchyDepth) {
 						info("Calculating concept depth...");
 						gl.populateHierarchyDepth(ROOT_CONCEPT, 0);
 					}
 				} else if (fileName.contains("sct2_StatedRelationship_" )) {
 					info("Loading StatedRelationship " + fileType + " file.");
-					gl.loadRelationships(CharacteristicType.STATED_RELATIONSHIP, is, true, isDelta, isReleased);
+					gl.loadRelationships(CharacteristicType.STATED_RELATIONSHIP, rows, true, isDelta, isReleased);
 				} else if (fileName.contains("sct2_RelationshipConcrete" )) {
 					info("Loading Concrete Relationship " + fileType + " file.");
-					gl.loadRelationships(CharacteristicType.INFERRED_RELATIONSHIP, is, true, isDelta, isReleased);
+					gl.loadRelationships(CharacteristicType.INFERRED_RELATIONSHIP, rows, true, isDelta, isReleased);
 				} else if (fileName.contains("sct2_sRefset_OWLExpression" ) ||
 						   fileName.contains("sct2_sRefset_OWLAxiom" )) {
 					info("Loading Axiom " + fileType + " refset file.");
-					gl.loadAxioms(is, isDelta, isReleased);
+					gl.loadAxioms(rows, isDelta, isReleased);
 				} else if (fileName.contains("sct2_Description_" )) {
 					info("Loading Description " + fileType + " file.");
-					gl.loadDescriptionFile(is, fsnOnly, isReleased);
+					gl.loadDescriptionFile(rows, fsnOnly, isReleased);
 				} else if (fileName.contains("sct2_TextDefinition_" )) {
 					info("Loading Text Definition " + fileType + " file.");
-					gl.loadDescriptionFile(is, fsnOnly, isReleased);
+					gl.loadDescriptionFile(rows, fsnOnly, isReleased);
 				} else if (fileName.contains("der2_cRefset_ConceptInactivationIndicatorReferenceSet" )) {
 					info("Loading Concept Inactivation Indicator " + fileType + " file.");
-					gl.loadInactivationIndicatorFile(is, isReleased);
+					gl.loadInactivationIndicatorFile(rows, isReleased);
 				} else if (fileName.contains("der2_cRefset_DescriptionInactivationIndicatorReferenceSet" )) {
 					info("Loading Description Inactivation Indicator " + fileType + " file.");
-					gl.loadInactivationIndicatorFile(is, isReleased);
+					gl.loadInactivationIndicatorFile(rows, isReleased);
 				} else if (fileName.contains("der2_cRefset_AttributeValue" )) {
 					info("Loading Concept/Description Inactivation Indicators " + fileType + " file.");
-					gl.loadInactivationIndicatorFile(is, isReleased);
+					gl.loadInactivationIndicatorFile(rows, isReleased);
 				} else if (fileName.contains("Association" ) || fileName.contains("AssociationReferenceSet" )) {
 					info("Loading Historical Association File: " + fileName);
-					gl.loadHistoricalAssociationFile(is, isReleased);
+					gl.loadHistoricalAssociationFile(rows, isReleased);
 				} else if (fileName.contains("MRCMDomain")) {
 					info("Loading MRCM Domain File: " + fileName);
-					gl.loadMRCMDomainFile(is, isReleased);
+					gl.loadMRCMDomainFile(rows, isReleased);
 				} else if (fileName.contains("MRCMAttributeRange")) {
 					info("Loading MRCM AttributeRange File: " + fileName);
-					gl.loadMRCMAttributeRangeFile(is, isReleased);
+					gl.loadMRCMAttributeRangeFile(rows, isReleased);
+				} else if (loadRefsetMembers && RefsetMembers.isMembershipFile(fileName)) {
+					info("Loading Refset Members File: " + fileName);
+					gl.loadRefsetMemberFile(rows);
 				}
 				//If we're loading all terms, load the language refset as well
 				if (!fsnOnly && (fileName.contains("English" ) || fileName.contains("Language"))) {
 					info("Loading " + fileType + " Language Reference Set File - " + fileName);
-					gl.loadLanguageFile(is, isReleased);
+					gl.loadLanguageFile(rows, isReleased);
 				}
 			}
 		} catch (TermServerScriptException | IOException e) {
-			throw new IllegalStateException("Unable to load " + path + " due to " + e.getMessage(), e);
+			throw new IllegalStateException("Unable to load " + fileName + " due to " + e.getMessage(), e);
 		}
 	}
+	
+	private void loadArchiveImage(SnapshotImage image, boolean fsnOnly, String fileType, boolean isDelta, Boolean isReleased) throws TermServerScriptException {
+		info("Loading snapshot image " + image.getImageDir());
+		long start = System.currentTimeMillis();
+		//Concepts must be in place before descriptions, and both before relationships, so
+		//load the sections lane by lane, as a parallel load would
+		Map<String, RF2RowSource> sections = image.getSections();
+		Map<LoadLane, List<String>> lanes = new TreeMap<>();
+		for (String fileName : sections.keySet()) {
+			LoadLane lane = LoadLane.forFile(fileName, fileType, fsnOnly, loadRefsetMembers);
+			if (lane != null) {
+				lanes.computeIfAbsent(lane, k -> new ArrayList<>()).add(fileName);
+			}
+		}
+		for (List<String> laneFiles : lanes.values()) {
+			for (String fileName : laneFiles) {
+				loadFile(fileName, sections.get(fileName), fileType, isDelta, fsnOnly, isReleased);
+			}
+		}
+		info("Snapshot image loaded in " + ((System.currentTimeMillis() - start) / 1000f) + "s");
+	}
+
+	public boolean isLazyDescriptions() {
+		return lazyDescriptions;
+	}
+
+	/**
+	 * When set, snapshots are loaded with only the FSN of each concept held in memory.
+	 * Other descriptions and their langrefset entries are read from disk as each 
+	 * concept's descriptions are first accessed.
+	 */
+	public void setLazyDescriptions(boolean lazyDescriptions) {
+		this.lazyDescriptions = lazyDescriptions;
+	}
+
+	public boolean isLoadRefsetMembers() {
+		return loadRefsetMembers;
+	}
+
+	/**
+	 * When set, the members of simple and map refsets are held so that member-of
+	 * queries can be answered locally.  See GraphLoader.getRefsetMembers()
+	 */
+	public void setLoadRefsetMembers(boolean loadRefsetMembers) {
+		this.loadRefsetMembers = loadRefsetMembers;
+	}
 
 	public boolean isAllowStaleData() {
 		return allowStaleData;
@@ -670,11 +1127,104 @@ public class ArchiveManager implements RF2Constants {
 		this.populatePreviousTransativeClosure = populatePreviousTransativeClosure;
 	}
 
+	public boolean isRunParallelLoad() {
+		return runParallelLoad;
+	}
+
+	public void setRunParallelLoad(boolean runParallelLoad) {
+		this.runParallelLoad = runParallelLoad;
+	}
+
+	public boolean isStreamDelta() {
+		return streamDelta;
+	}
+
+	/**
+	 * When set, the delta used to bring a stale snapshot up to date is loaded directly 
+	 * from the Terminology Server's export as it downloads, rather than via a temporary file.
+	 */
+	public void setStreamDelta(boolean streamDelta) {
+		this.streamDelta = streamDelta;
+	}
+
+	public boolean isUseSnapshotImage() {
+		return useSnapshotImage;
+	}
+
+	public void setUseSnapshotImage(boolean useSnapshotImage) {
+		this.useSnapshotImage = useSnapshotImage;
+	}
+
+	public int getParallelLoadThreads() {
+		return parallelLoadThreads;
+	}
+
+	public void setParallelLoadThreads(int parallelLoadThreads) {
+		this.parallelLoadThreads = parallelLoadThreads;
+	}
+
 	public boolean isReleasedFlagPopulated() {
 		return releasedFlagPopulated;
 	}
 
 	public void setReleasedFlagPopulated(boolean releasedFlagPopulated) {
-		this.releasedFlagPopulated = releasedFlagPopulated;
+		ArchiveManager.releasedFlagPopulated = releasedFlagPopulated;
+	}
+	
+	/**
+	 * The options a job asked for its snapshot to be loaded with.  A snapshot held in memory
+	 * is only shared with jobs asking for exactly the options it was loaded with.
+	 */
+	private static final class LoadOptions {
+		private final String projectKey;
+		private final String dependencyArchive;
+		private final boolean fsnOnly;
+		private final boolean loadDependencyPlusExtensionArchive;
+		private final boolean loadEditionArchive;
+		private final boolean populateHierarchyDepth;
+		private final boolean populateReleasedFlag;
+		private final boolean populatePreviousTransativeClosure;
+		private final boolean loadRefsetMembers;
+		private final boolean lazyDescriptions;
+		
+		private LoadOptions(ArchiveManager am, boolean fsnOnly) {
+			this.projectKey = am.ts.getProject().getKey();
+			this.dependencyArchive = am.loadDependencyPlusExtensionArchive ? am.ts.getDependencyArchive() : null;
+			this.fsnOnly = fsnOnly;
+			this.loadDependencyPlusExtensionArchive = am.loadDependencyPlusExtensionArchive;
+			this.loadEditionArchive = am.loadEditionArchive;
+			this.populateHierarchyDepth = am.populateHierarchyDepth;
+			this.populateReleasedFlag = am.populateReleasedFlag;
+			this.populatePreviousTransativeClosure = am.populatePreviousTransativeClosure;
+			this.loadRefsetMembers = am.loadRefsetMembers;
+			this.lazyDescriptions = am.lazyDescriptions;
+		}
+		
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof LoadOptions)) {
+				return false;
+			}
+			LoadOptions o = (LoadOptions) other;
+			return Objects.equals(projectKey, o.projectKey)
+					&& Objects.equals(dependencyArchive, o.dependencyArchive)
+					&& fsnOnly == o.fsnOnly
+					&& loadDependencyPlusExtensionArchive == o.loadDependencyPlusExtensionArchive
+					&& loadEditionArchive == o.loadEditionArchive
+					&& populateHierarchyDepth == o.populateHierarchyDepth
+					&& populateReleasedFlag == o.populateReleasedFlag
+					&& populatePreviousTransativeClosure == o.populatePreviousTransativeClosure
+					&& loadRefsetMembers == o.loadRefsetMembers
+					&& lazyDescriptions == o.lazyDescriptions;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hash(projectKey, dependencyArchive, fsnOnly, loadDependencyPlusExtensionArchive, loadEditionArchive,
+					populateHierarchyDepth, populateReleasedFlag, populatePreviousTransativeClosure, loadRefsetMembers, lazyDescriptions);
+		}
 	}
 }
@@ -0,0 +1,137 @@
+package org.ihtsdo.termserver.scripting;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.domain.Concept;
+
+/**
+ * Holds the ancestors or descendants of concepts for AncestorsCache and DescendantsCache.
+ * A concept's closure is built from the closures of its parents (or children) which are
+ * themselves cached, so each part of the hierarchy is only walked once.
+ *
+ * Safe for concurrent use.  Two threads asking for the same concept at the same time may
+ * both calculate it, but will arrive at the same answer.  If a limit is set on the total
+ * number of concepts held across all closures, the least recently used closures are evicted
+ * first.  Those near the root are used in building every closure beneath them, so are kept,
+ * and anything evicted will simply be recalculated, from its neighbours, if requested again.
+ */
+class ConceptClosureCache {
+
+	//Roughly 50 bytes a set entry, so a couple of hundred MB per cache.  A full inferred closure of
+	//the International Edition runs to several times this, so without a limit it would grow to GBs
+	static final long DEFAULT_MAX_ENTRIES = 4_000_000;
+
+	private final Map<Concept, Closure> cache = new ConcurrentHashMap<>();
+	//Ticks on every use of a closure, to give the order in which they were last used
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicLong entriesHeld = new AtomicLong();
+	private final Function<Concept, Set<Concept>> neighbours;
+	private volatile long maxEntries;
+
+	/**
+	 * @param neighbours the parents (for ancestors) or children (for descendants) of a concept
+	 * @param maxEntries limit on the total size of all closures held, or NOT_SET for no limit
+	 */
+	ConceptClosureCache(Function<Concept, Set<Concept>> neighbours, long maxEntries) {
+		this.neighbours = neighbours;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return the unmodifiable closure for this concept, not including the concept itself
+	 * @throws TermServerScriptException if the concept is its own ancestor (or descendant)
+	 */
+	Set<Concept> get(Concept c) throws TermServerScriptException {
+		return get(c, new LinkedHashSet<>());
+	}
+
+	private Set<Concept> get(Concept c, Set<Concept> inProgress) throws TermServerScriptException {
+		Closure cached = cache.get(c);
+		if (cached != null) {
+			cached.lastUsed = clock.incrementAndGet();
+			return cached.concepts;
+		}
+
+		if (!inProgress.add(c)) {
+			throw new TermServerScriptException("Cycle detected in hierarchy at " + c + " via " + inProgress);
+		}
+		Set<Concept> direct = neighbours.apply(c);
+		Set<Concept> closure;
+		if (direct.isEmpty()) {
+			closure = Collections.emptySet();
+		} else {
+			Set<Concept> working = new HashSet<>();
+			for (Concept neighbour : direct) {
+				working.add(neighbour);
+				working.addAll(get(neighbour, inProgress));
+			}
+			closure = Collections.unmodifiableSet(working);
+		}
+		inProgress.remove(c);
+
+		Closure existing = cache.putIfAbsent(c, new Closure(closure, clock.incrementAndGet()));
+		if (existing != null) {
+			return existing.concepts;
+		}
+		if (entriesHeld.addAndGet(closure.size()) > maxEntries && maxEntries > 0) {
+			evict();
+		}
+		return closure;
+	}
+
+	private synchronized void evict() {
+		//Bring the cache down to 3/4 of its limit so we're not evicting on every call
+		long target = maxEntries - (maxEntries >> 2);
+		if (entriesHeld.get() <= target) {
+			return;
+		}
+		//Take the time each was last used up front, as other threads may be using them while we sort
+		List<Map.Entry<Concept, Long>> byLastUsed = new ArrayList<>(cache.size());
+		for (Map.Entry<Concept, Closure> entry : cache.entrySet()) {
+			byLastUsed.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().lastUsed));
+		}
+		byLastUsed.sort(Map.Entry.comparingByValue());
+		for (Map.Entry<Concept, Long> entry : byLastUsed) {
+			if (entriesHeld.get() <= target) {
+				break;
+			}
+			Closure removed = cache.remove(entry.getKey());
+			if (removed != null) {
+				entriesHeld.addAndGet(-removed.concepts.size());
+			}
+		}
+	}
+
+	void setMaxEntries(long maxEntries) {
+		this.maxEntries = maxEntries;
+		if (maxEntries > 0 && entriesHeld.get() > maxEntries) {
+			evict();
+		}
+	}
+
+	long getMaxEntries() {
+		return maxEntries;
+	}
+
+	int size() {
+		return cache.size();
+	}
+
+	long getEntriesHeld() {
+		return entriesHeld.get();
+	}
+
+	private static class Closure {
+		final Set<Concept> concepts;
+		volatile long lastUsed;
+
+		Closure(Set<Concept> concepts, long lastUsed) {
+			this.concepts = concepts;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
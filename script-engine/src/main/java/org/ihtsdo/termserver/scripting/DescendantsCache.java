@@ -13,7 +13,9 @@ public class DescendantsCache implements RF2Constants {
 
 	private static DescendantsCache singleton = null;
 	
-	Map<Concept, Set<Concept>> descendentCache = new HashMap<>();
+	private long maxCachedEntries = ConceptClosureCache.DEFAULT_MAX_ENTRIES;
+	//Each concept's descendants are its children plus their (cached) descendants
+	private ConceptClosureCache descendentCache = createCache();
 	
 	public static DescendantsCache getDescendentsCache() {
 		if (singleton == null) {
@@ -26,8 +28,26 @@ public class DescendantsCache implements RF2Constants {
 		//Force use of singleton;
 	}
 	
+	private ConceptClosureCache createCache() {
+		return new ConceptClosureCache(c -> c.getChildren(CharacteristicType.INFERRED_RELATIONSHIP), maxCachedEntries);
+	}
+	
 	public void reset() {
-		descendentCache = new HashMap<>();
+		descendentCache = createCache();
+	}
+	
+	/**
+	 * Limits the total number of descendants held across all cached concepts, 
+	 * evicting the oldest entries when exceeded.  NOT_SET for no limit.
+	 * Defaults to ConceptClosureCache.DEFAULT_MAX_ENTRIES
+	 */
+	public void setMaxCachedEntries(long maxCachedEntries) {
+		this.maxCachedEntries = maxCachedEntries;
+		descendentCache.setMaxEntries(maxCachedEntries);
+	}
+	
+	public long getMaxCachedEntries() {
+		return maxCachedEntries;
 	}
 	
 	public Set<Concept> getDescendents(Concept c) throws TermServerScriptException {
@@ -44,13 +64,9 @@ public class DescendantsCache implements RF2Constants {
 		if (!localConcept.isActive()) {
 			throw new TermServerScriptException(c + " is inactive. Unlikely you want to find its decendants");
 		}
+		//Cached sets are unmodifiable, so no-one can change them
 		Set<Concept> descendents = descendentCache.get(localConcept);
-		if (descendents == null) {
-			descendents = localConcept.getDescendents(NOT_SET);
-			//Don't allow anyone to change this!
-			descendentCache.put(localConcept, descendents);
-		}
-		return mutable ? new HashSet<>(descendents) : Collections.unmodifiableSet(descendents);
+		return mutable ? new HashSet<>(descendents) : descendents;
 	}
 
 	public Set<Concept> getDescendentsOrSelf(Concept c) throws TermServerScriptException {
@@ -1,5 +1,7 @@
 package org.ihtsdo.termserver.scripting;
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.ihtsdo.otf.exception.TermServerScriptException;
@@ -12,68 +14,69 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
 
-import com.google.gson.Gson;
-
+/**
+ * Holds the ECL expansions for one branch, for the duration of a job.  A worker may run several
+ * jobs at once, so each job holds its own caches (see TermServerScript.findConcepts) rather than
+ * sharing them, while expansions recovered from the TS are shared between jobs via the disk cache.
+ */
 public class EclCache implements RF2Constants {
 	
 	static Logger logger = LoggerFactory.getLogger(EclCache.class);
 	
-	private static Map <String, EclCache> branchCaches;
 	private static int PAGING_LIMIT = 1000;
-	private TermServerClient tsClient;
-	private GraphLoader gl;
-	boolean quiet = false;
-	
-	Map <String, Collection<Concept>> expansionCache = new HashMap<>();
+	private static final long DEFAULT_DISK_CACHE_BYTES = 256 * 1024 * 1024;
+	//Expansions recovered from the TS are kept on disk, for reuse by later jobs until the branch moves
+	private static EclDiskCache diskCache = new EclDiskCache(new File("ecl_cache"), DEFAULT_DISK_CACHE_BYTES);
+	private final TermServerClient tsClient;
+	private final GraphLoader gl;
+	private LocalEclEvaluator localEvaluator;
+	private Long headTimestamp;
+	private boolean headTimestampUnavailable = false;
 	
-	static EclCache getCache(String branch, TermServerClient tsClient, Gson gson, GraphLoader gl, boolean quiet) {
-		if (branchCaches == null) {
-			branchCaches  = new HashMap<>();
-		}
-		
-		EclCache branchCache = branchCaches.get(branch);
-		if (branchCache == null) {
-			branchCache = new EclCache(tsClient, gson);
-			branchCaches.put(branch, branchCache);
-		}
-		branchCache.gl = gl;
-		branchCache.quiet = quiet;
-		return branchCache;
-	}
+	//A job may look up ECL from several threads
+	Map <String, Collection<Concept>> expansionCache = new ConcurrentHashMap<>();
 	
-	EclCache (TermServerClient tsClient,Gson gson) {
+	EclCache (TermServerClient tsClient, GraphLoader gl) {
 		this.tsClient = tsClient;
+		this.gl = gl;
 	}
 	
-	public static void reset() {
-		TermServerScript.info("Resetting ECL Cache - all branches wipe");
-		branchCaches = new HashMap<>();
+	/**
+	 * @param cache where to hold ECL expansions between jobs, or null to only hold them in memory
+	 */
+	public static void setDiskCache(EclDiskCache cache) {
+		diskCache = cache;
 	}
 	
 	protected Collection<Concept> findConcepts(String branch, String ecl) throws TermServerScriptException {
-		return findConcepts(branch, ecl, true);
+		return findConcepts(branch, ecl, true, false);
 	}
 	
 	protected boolean isCached(String ecl) {
-		return expansionCache.containsKey(ecl);
+		return !StringUtils.isEmpty(ecl) && expansionCache.containsKey(normalise(ecl));
 	}
 	
-	protected Collection<Concept> findConcepts(String branch, String ecl, boolean useLocalStoreIfSimple) throws TermServerScriptException {
-		if (StringUtils.isEmpty(ecl)) {
-			TermServerScript.warn("EclCache asked to find concepts but not ecl specified.  Returning empty set");
-			return new ArrayList<>();
-		}
-		
+	private String normalise(String ecl) {
 		ecl = ecl.trim();
-		String machineEcl = SnomedUtils.makeMachineReadable(ecl);
-		Collection<Concept> allConcepts;
-		
 		//Have we been passed some partial ecl that begins and ends with a bracket?
 		//However if we contain OR or MINUS then this is not safe to do
 		if ( (ecl.startsWith("(") && ecl.endsWith(")")) && 
 				!(ecl.contains("AND") || ecl.contains("OR") || ecl.contains("MINUS") )) {
 			ecl = ecl.substring(1, ecl.length() -1).trim();
 		}
+		return ecl;
+	}
+	
+	protected Collection<Concept> findConcepts(String branch, String ecl, boolean useLocalStoreIfSimple, boolean quiet) throws TermServerScriptException {
+		if (StringUtils.isEmpty(ecl)) {
+			TermServerScript.warn("EclCache asked to find concepts but not ecl specified.  Returning empty set");
+			return new ArrayList<>();
+		}
+		
+		String machineEcl = SnomedUtils.makeMachineReadable(ecl.trim());
+		Collection<Concept> allConcepts;
+		boolean fromTermServer = false;
+		ecl = normalise(ecl);
 		
 		//Have we already recovered this ECL?
 		if (expansionCache.containsKey(ecl)) {
@@ -96,7 +99,7 @@ public class EclCache implements RF2Constants {
 			Collection<Concept> combinedSet = new HashSet<>();
 			for (String eclFragment : machineEcl.split(" OR ")) {
 				TermServerScript.debug("Combining request for: " + eclFragment);
-				combinedSet.addAll(findConcepts(branch, eclFragment, useLocalStoreIfSimple));
+				combinedSet.addAll(findConcepts(branch, eclFragment, useLocalStoreIfSimple, quiet));
 			}
 			allConcepts = combinedSet;
 			expansionCache.put(ecl, combinedSet);
@@ -127,17 +130,23 @@ public class EclCache implements RF2Constants {
 				}
 				TermServerScript.debug("Recovered " + allConcepts.size() + " concepts for simple ecl from local memory: " + ecl);
 			} else {
-				allConcepts = recoverConceptsFromTS(branch, ecl);
+				allConcepts = useLocalStoreIfSimple ? evaluateLocally(ecl, quiet) : null;
+				if (allConcepts == null) {
+					allConcepts = recoverConcepts(branch, ecl, quiet);
+					fromTermServer = true;
+				}
 			}
 		}
 		
 		if (allConcepts.size() == 0) {
 			TermServerScript.warn ("ECL " + ecl + " recovered 0 concepts.  Check?");
+		}
+		if (allConcepts.size() == 0 && fromTermServer) {
+			//Seeing a transient issue where we're getting 0 concepts back on the first call, and the concepts back on a 
+			//subsequent call.  So for now, don't cache a null response from the TS and we'll sleep / retry
 			expansionCache.remove(ecl);
 		} else {
-			//Seeing a transient issue where we're getting 0 concepts back on the first call, and the concepts back on a 
-			//subsequent call.  So for now, don't cache a null response and we'll sleep / retry
-			//Cache this result
+			//Cache this result.  An empty result from the local graph won't change on asking again
 			expansionCache.put(ecl, allConcepts);
 		}
 		return allConcepts;
@@ -159,6 +168,72 @@ public class EclCache implements RF2Constants {
 		return isSimple;
 	}
 
+	/**
+	 * Evaluates the ECL against the locally held graph
+	 * @return null if the ECL uses constructs the local evaluator does not support, so must be
+	 * requested from the terminology server instead
+	 */
+	private Set<Concept> evaluateLocally(String ecl, boolean quiet) throws TermServerScriptException {
+		LocalEclEvaluator evaluator = getLocalEvaluator();
+		try {
+			long start = System.currentTimeMillis();
+			Set<Concept> concepts = evaluator.evaluate(ecl);
+			if (!quiet) {
+				TermServerScript.debug("Evaluated " + concepts.size() + " concepts locally in " + (System.currentTimeMillis() - start) + "ms for ecl: " + ecl);
+			}
+			return concepts;
+		} catch (LocalEclEvaluator.UnsupportedEclException e) {
+			TermServerScript.debug(e.getMessage() + ".  Requesting from terminology server instead.");
+			return null;
+		}
+	}
+	
+	private synchronized LocalEclEvaluator getLocalEvaluator() {
+		if (localEvaluator == null || !localEvaluator.isCurrent()) {
+			localEvaluator = new LocalEclEvaluator(gl);
+		}
+		return localEvaluator;
+	}
+
+	/**
+	 * Recovers the expansion of this ECL from disk if we've already had it from the TS for
+	 * this version of the branch, otherwise from the TS
+	 */
+	private Set<Concept> recoverConcepts(String branch, String ecl, boolean quiet) throws TermServerScriptException {
+		Long timestamp = diskCache == null ? null : getHeadTimestamp(branch);
+		if (timestamp != null) {
+			long[] sctIds = diskCache.get(branch, timestamp, ecl);
+			if (sctIds != null) {
+				Set<Concept> allConcepts = new HashSet<>();
+				for (long sctId : sctIds) {
+					allConcepts.add(gl.getConceptSafely(Long.toString(sctId)));
+				}
+				if (!quiet) {
+					TermServerScript.debug("Recovered " + allConcepts.size() + " concepts from disk cache matching '" + ecl + "'");
+				}
+				return allConcepts;
+			}
+		}
+		Set<Concept> allConcepts = recoverConceptsFromTS(branch, ecl);
+		//As with the in memory cache, don't hold on to an empty response
+		if (timestamp != null && !allConcepts.isEmpty()) {
+			diskCache.put(branch, timestamp, ecl, allConcepts);
+		}
+		return allConcepts;
+	}
+	
+	private synchronized Long getHeadTimestamp(String branch) {
+		if (headTimestamp == null && !headTimestampUnavailable) {
+			try {
+				headTimestamp = tsClient.getBranch(branch).getHeadTimestamp();
+			} catch (Exception e) {
+				TermServerScript.warn("Unable to recover head timestamp of " + branch + ", so ECL expansions will not be cached on disk: " + e.getMessage());
+			}
+			headTimestampUnavailable = headTimestamp == null;
+		}
+		return headTimestamp;
+	}
+
 	private Set<Concept> recoverConceptsFromTS(String branch, String ecl) throws TermServerScriptException {
 		Set<Concept> allConcepts = new HashSet<>();
 		boolean allRecovered = false;
@@ -0,0 +1,235 @@
+package org.ihtsdo.termserver.scripting;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import org.ihtsdo.termserver.scripting.domain.Concept;
+import org.ihtsdo.termserver.scripting.util.SnomedUtils;
+
+/**
+ * Holds ECL expansions recovered from the terminology server on disk, so that they can be reused
+ * by later jobs - and after a restart - until the branch moves on.  Each expansion is keyed on
+ * branch path, branch head timestamp and machine readable ECL, and is stored as a sorted,
+ * delta encoded list of SCTIDs in a file of its own.  When the total size of the files held
+ * exceeds the limit, the least recently used are removed.
+ *
+ * Files are written to a temporary name and moved into place, so several processes can share
+ * the same directory.  Temporary files left behind by a process that died mid write are removed
+ * once they're old enough not to belong to a write in progress.  Any problem reading or writing
+ * the cache is logged and treated as a miss, and a file that can't be read is removed.
+ */
+public class EclDiskCache {
+
+	private static final int MAGIC = 0x45434C31;  //ECL1
+	private static final String FILE_EXT = ".ecl";
+	private static final String TMP_PREFIX = "expansion-";
+	private static final String TMP_EXT = ".tmp";
+	//No write takes this long, so a temporary file this old was left by a process that died
+	private static final long STALE_TMP_MILLIS = 60 * 60 * 1000L;
+
+	private final File cacheDir;
+	private final long maxBytes;
+	private long bytesHeld = -1;
+
+	public EclDiskCache(File cacheDir, long maxBytes) {
+		this.cacheDir = cacheDir;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @return the SCTIDs held for this ECL on this version of the branch, or null if not held
+	 */
+	public synchronized long[] get(String branch, long headTimestamp, String ecl) {
+		initialise();
+		String key = getKey(branch, headTimestamp, ecl);
+		File file = getFile(key);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not an ECL expansion");
+			}
+			//A different key would be a hash collision, which leaves the file valid for that key
+			if (!in.readUTF().equals(key)) {
+				return null;
+			}
+			int count = in.readInt();
+			//Each SCTID takes at least one byte, which guards against allocating for a corrupt count
+			if (count < 0 || count > file.length()) {
+				throw new IOException("Invalid count of " + count + " SCTIDs");
+			}
+			long[] sctIds = new long[count];
+			long previous = 0;
+			for (int i = 0; i < sctIds.length; i++) {
+				previous += readVarLong(in);
+				sctIds[i] = previous;
+			}
+			//Mark as recently used
+			file.setLastModified(System.currentTimeMillis());
+			return sctIds;
+		} catch (IOException | RuntimeException e) {
+			TermServerScript.warn("Unable to read cached expansion of '" + ecl + "' from " + file + " due to " + e + ".  Removing.");
+			remove(file);
+			return null;
+		}
+	}
+
+	public synchronized void put(String branch, long headTimestamp, String ecl, Collection<Concept> concepts) {
+		initialise();
+		String key = getKey(branch, headTimestamp, ecl);
+		//writeUTF is limited to 64K bytes, and ECL that long is unlikely to be reused anyway
+		if (key.length() > 16000) {
+			return;
+		}
+		long[] sctIds = new long[concepts.size()];
+		int count = 0;
+		for (Concept c : concepts) {
+			sctIds[count++] = Long.parseLong(c.getConceptId());
+		}
+		Arrays.sort(sctIds);
+
+		File file = getFile(key);
+		File tmp = null;
+		try {
+			Files.createDirectories(cacheDir.toPath());
+			tmp = File.createTempFile(TMP_PREFIX, TMP_EXT, cacheDir);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeUTF(key);
+				out.writeInt(count);
+				long previous = 0;
+				for (long sctId : sctIds) {
+					writeVarLong(out, sctId - previous);
+					previous = sctId;
+				}
+			}
+			long size = tmp.length();
+			//Any file being replaced no longer counts towards what we hold
+			long replaced = file.length();
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			addBytesHeld(size - replaced);
+		} catch (IOException e) {
+			TermServerScript.warn("Unable to cache expansion of '" + ecl + "' to " + cacheDir + " due to " + e.getMessage());
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * On first use, removes temporary files left by earlier processes and totals what is held
+	 */
+	private void initialise() {
+		if (bytesHeld != -1) {
+			return;
+		}
+		removeStaleTempFiles();
+		bytesHeld = 0;
+		for (File file : listCacheFiles()) {
+			bytesHeld += file.length();
+		}
+	}
+
+	private void removeStaleTempFiles() {
+		long staleBefore = System.currentTimeMillis() - STALE_TMP_MILLIS;
+		File[] tmpFiles = cacheDir.listFiles((dir, name) -> name.startsWith(TMP_PREFIX) && name.endsWith(TMP_EXT));
+		if (tmpFiles == null) {
+			return;
+		}
+		int removed = 0;
+		for (File tmp : tmpFiles) {
+			if (tmp.lastModified() < staleBefore && tmp.delete()) {
+				removed++;
+			}
+		}
+		if (removed > 0) {
+			TermServerScript.info("Removed " + removed + " temporary files left in " + cacheDir + " by incomplete writes");
+		}
+	}
+
+	private void remove(File file) {
+		long size = file.length();
+		if (file.delete()) {
+			bytesHeld -= size;
+		}
+	}
+
+	private void addBytesHeld(long size) {
+		bytesHeld += size;
+		if (bytesHeld > maxBytes) {
+			evict();
+		}
+	}
+
+	private void evict() {
+		//Bring the cache down to 3/4 of its limit so we're not evicting on every put
+		long target = maxBytes - (maxBytes >> 2);
+		//Other processes sharing the directory may have died mid write since we started
+		removeStaleTempFiles();
+		List<File> files = listCacheFiles();
+		files.sort(Comparator.comparingLong(File::lastModified));
+		int removed = 0;
+		bytesHeld = 0;
+		for (File file : files) {
+			bytesHeld += file.length();
+		}
+		for (File file : files) {
+			if (bytesHeld <= target) {
+				break;
+			}
+			long size = file.length();
+			if (file.delete()) {
+				bytesHeld -= size;
+				removed++;
+			}
+		}
+		TermServerScript.debug("Removed " + removed + " least recently used ECL expansions from " + cacheDir);
+	}
+
+	private List<File> listCacheFiles() {
+		File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(FILE_EXT));
+		return files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+	}
+
+	private String getKey(String branch, long headTimestamp, String ecl) {
+		return branch + "@" + headTimestamp + ":" + SnomedUtils.makeMachineReadable(ecl);
+	}
+
+	private File getFile(String key) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			StringBuilder name = new StringBuilder();
+			for (byte b : digest.digest(key.getBytes(StandardCharsets.UTF_8))) {
+				name.append(String.format("%02x", b));
+			}
+			return new File(cacheDir, name.append(FILE_EXT).toString());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	private static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed SCTID");
+	}
+}
@@ -1,8 +1,8 @@
 package org.ihtsdo.termserver.scripting;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 import java.util.zip.ZipInputStream;
 
@@ -10,7 +10,12 @@ import org.apache.commons.io.IOUtils;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Component;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Component.ComponentType;
 import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.dao.LazyDescriptionStore;
+import org.ihtsdo.termserver.scripting.dao.RF2RowSource;
+import org.ihtsdo.termserver.scripting.dao.RF2SplitRowSource;
+import org.ihtsdo.termserver.scripting.dao.RF2Tokenizer;
 import org.ihtsdo.termserver.scripting.domain.*;
+import org.ihtsdo.termserver.scripting.util.SctIdMap;
 import org.ihtsdo.termserver.scripting.util.SnomedUtils;
 import org.snomed.otf.owltoolkit.conversion.AxiomRelationshipConversionService;
 import org.snomed.otf.owltoolkit.conversion.ConversionException;
@@ -20,8 +25,9 @@ import org.springframework.util.StringUtils;
 public class GraphLoader implements RF2Constants {
 
 	private static GraphLoader singleton = null;
-	private Map<String, Concept> concepts = new HashMap<String, Concept>();
-	private Map<String, Description> descriptions = new HashMap<String, Description>();
+	//Concurrent maps so that RF2 files can be loaded in parallel - see ArchiveManager.loadArchiveParallel
+	private Map<String, Concept> concepts = new ConcurrentHashMap<String, Concept>();
+	private Map<String, Description> descriptions = new ConcurrentHashMap<String, Description>();
 	private Map<String, Component> allComponents = null;
 	private Map<Component, Concept> componentOwnerMap = null;
 	private Map<String, Concept> fsnMap = null;
@@ -29,24 +35,58 @@ public class GraphLoader implements RF2Constants {
 	private Map<String, Concept> gbptMap = null;
 	private Set<String> excludedModules;
 	public static int MAX_DEPTH = 1000;
+	private static final int EXPECTED_CONCEPTS = 600000;
+	private static final int EXPECTED_DESCRIPTIONS = 2000000;
 	private Set<Concept> orphanetConcepts;
 	private AxiomRelationshipConversionService axiomService;
 	
+	//OWL expressions already parsed.  Kept across resets so that reloads of the same project don't parse
+	//them again, but cleared by the ArchiveManager when a different project is loaded
+	private final Map<String, ParsedAxiom> parsedAxioms = new ConcurrentHashMap<>();
+	//Roughly the number of OWL expressions in one edition snapshot plus its delta.  Beyond this we're holding
+	//expressions that are no longer in use, so start again
+	private static final int MAX_PARSED_AXIOMS = 500000;
+	//Below this it's not worth starting a pool of threads to parse them
+	private static final int PARALLEL_AXIOM_PARSE_THRESHOLD = 1000;
+	private int axiomParseThreads = Runtime.getRuntime().availableProcessors();
+	
 	private DescendantsCache descendantsCache = DescendantsCache.getDescendentsCache();
 	private AncestorsCache ancestorsCache = AncestorsCache.getAncestorsCache();
 	private AncestorsCache statedAncestorsCache = AncestorsCache.getStatedAncestorsCache();
 	
 	//Watch that this map is of the TARGET of the association, ie all concepts used in a historical association
 	private Map<Concept, List<AssociationEntry>> historicalAssociations =  new HashMap<Concept, List<AssociationEntry>>();
+	//Similarly keyed on the TARGET, the concepts having relationships of each characteristic type that point to it
+	private Map<CharacteristicType, Map<Concept, Set<Concept>>> incomingRelationshipSources = createIncomingRelationshipIndex();
 	private TransitiveClosure previousTransativeClosure;
+	//Kept up to date as deltas are applied, once the previous TC has been populated.  Shares
+	//unchanged rows with the previous TC, and is dropped if the hierarchy changes in any other way
+	private volatile TransitiveClosure currentTransativeClosure;
+	//Descriptions and langrefset entries held on disk until their concept is accessed
+	private LazyDescriptionStore lazyDescriptionStore;
 	private Map<Concept, Set<DuplicatePair>> duplicateLangRefsetEntriesMap;
 	private Set<LangRefsetEntry> duplicateLangRefsetIdsReported = new HashSet<>();
 	
+	//Members of simple and map refsets, only held when ArchiveManager is asked to load them
+	private RefsetMembers refsetMembers;
+	
 	private Map<Concept, MRCMAttributeRange> mrcmAttributeRangeMap = new HashMap<>();
 	private Map<Concept, MRCMDomain> mrcmDomainMap = new HashMap<>();
 
 	private boolean detectNoChangeDelta = false;
 	
+	//Hold concepts and descriptions keyed on primitive SCTIDs.  Takes effect on reset().  Components already
+	//hold their id String, so this only saves on the map itself, and only when the table is well filled - 
+	//see SctIdMapHeapBenchmark.  Off by default
+	private boolean usePrimitiveStore = false;
+	
+	//Module ids, effective times, refset ids etc are repeated across millions of rows, so we only hold one copy of each
+	private final Map<String, String> internedValues = new ConcurrentHashMap<>();
+	//Only those fields held on to as Strings.  Active flags, type ids etc are translated to booleans, enums and concepts
+	private static final int[] REFSET_INTERNED_FIELDS = { REF_IDX_EFFECTIVETIME, REF_IDX_MODULEID, REF_IDX_REFSETID };
+	//Langrefset acceptability and inactivation reason are both held in the first additional field
+	private static final int[] REFSET_VALUE_INTERNED_FIELDS = { REF_IDX_EFFECTIVETIME, REF_IDX_MODULEID, REF_IDX_REFSETID, REF_IDX_FIRST_ADDITIONAL };
+	
 	public StringBuffer log = new StringBuffer();
 	
 	public static GraphLoader getGraphLoader() {
@@ -115,8 +155,13 @@ public class GraphLoader implements RF2Constants {
 	
 	public void reset() {
 		TermServerScript.info("Resetting Graph Loader");
-		concepts = new HashMap<String, Concept>();
-		descriptions = new HashMap<String, Description>();
+		if (usePrimitiveStore) {
+			concepts = new SctIdMap<Concept>(EXPECTED_CONCEPTS);
+			descriptions = new SctIdMap<Description>(EXPECTED_DESCRIPTIONS);
+		} else {
+			concepts = new ConcurrentHashMap<String, Concept>();
+			descriptions = new ConcurrentHashMap<String, Description>();
+		}
 		allComponents = null;
 		componentOwnerMap = null;
 		fsnMap = null;
@@ -125,175 +170,317 @@ public class GraphLoader implements RF2Constants {
 		ancestorsCache.reset();
 		statedAncestorsCache.reset();
 		historicalAssociations =  new HashMap<Concept, List<AssociationEntry>>();
+		incomingRelationshipSources = createIncomingRelationshipIndex();
 		
 		excludedModules = new HashSet<>();;
 		duplicateLangRefsetEntriesMap = new HashMap<>();
 		duplicateLangRefsetIdsReported = new HashSet<>();
 		
-		//We'll reset the ECL cache during TS Init
+		//ECL caches are held by each job, so don't need resetting here
 		populateKnownConcepts();
 		previousTransativeClosure = null;
+		currentTransativeClosure = null;
+		refsetMembers = null;
+		if (lazyDescriptionStore != null) {
+			lazyDescriptionStore.close();
+			lazyDescriptionStore = null;
+		}
 	}
 	
 	public Set<Concept> loadRelationships(CharacteristicType characteristicType, InputStream relStream, boolean addRelationshipsToConcepts, boolean isDelta, Boolean isReleased) 
 			throws IOException, TermServerScriptException {
+		return loadRelationships(characteristicType, new RF2Tokenizer(relStream), addRelationshipsToConcepts, isDelta, isReleased);
+	}
+	
+	public Set<Concept> loadRelationships(CharacteristicType characteristicType, RF2RowSource rows, boolean addRelationshipsToConcepts, boolean isDelta, Boolean isReleased) 
+			throws IOException, TermServerScriptException {
+		rows.setInterner(this::intern);
 		Set<Concept> concepts = new HashSet<Concept>();
-		BufferedReader br = new BufferedReader(new InputStreamReader(relStream, StandardCharsets.UTF_8));
-		String line;
-		boolean isHeaderLine = true;
 		long relationshipsLoaded = 0;
-		while ((line = br.readLine()) != null) {
-			if (!isHeaderLine) {
-				String[] lineItems = line.split(FIELD_DELIMITER);
-				
-				//Exclude LOINC
-				if (isExcluded(lineItems[IDX_MODULEID])) {
-					continue;
-				}
-				
-				//Might need to modify the characteristic type for Additional Relationships
-				characteristicType = SnomedUtils.translateCharacteristicType(lineItems[REL_IDX_CHARACTERISTICTYPEID]);
-				
-				if (!isConcept(lineItems[REL_IDX_SOURCEID])) {
-					TermServerScript.debug (characteristicType + " relationship " + lineItems[REL_IDX_ID] + " referenced a non concept identifier: " + lineItems[REL_IDX_SOURCEID]);
-				}
-				Concept thisConcept = getConcept(lineItems[REL_IDX_SOURCEID]);
-				
-				/*if (thisConcept.getId().equals("551000220107") && lineItems[REL_IDX_TYPEID].equals("116680003")) {
-					TermServerScript.debug ("here");
-				}*/
-				
-				//If we've already received a newer version of this component, say
-				//by loading INT first and a published MS 2nd, then skip
-				Relationship existing = thisConcept.getRelationship(lineItems[IDX_ID]);
+		while (rows.next()) {
+			
+			//Exclude LOINC
+			if (isExcluded(rows.getCachedString(IDX_MODULEID))) {
+				continue;
+			}
+			
+			//Might need to modify the characteristic type for Additional Relationships
+			characteristicType = SnomedUtils.translateCharacteristicType(rows.getCachedString(REL_IDX_CHARACTERISTICTYPEID));
+			
+			if (!isConcept(rows.getLong(REL_IDX_SOURCEID))) {
+				TermServerScript.debug (characteristicType + " relationship " + rows.getString(REL_IDX_ID) + " referenced a non concept identifier: " + rows.getString(REL_IDX_SOURCEID));
+			}
+			Concept thisConcept = getConcept(rows, REL_IDX_SOURCEID);
+			
+			/*if (thisConcept.getId().equals("551000220107") && rows.getString(REL_IDX_TYPEID).equals("116680003")) {
+				TermServerScript.debug ("here");
+			}*/
+			
+			//If we've already received a newer version of this component, say
+			//by loading INT first and a published MS 2nd, then skip
+			if (isReleased != null && isReleased && !rows.isEmpty(IDX_ID)) {
+				Relationship existing = thisConcept.getRelationship(rows.getString(IDX_ID));
 				if (existing != null &&
 						!StringUtils.isEmpty(existing.getEffectiveTime()) 
-						&& (isReleased != null && isReleased)
-						&& (existing.getEffectiveTime().compareTo(lineItems[IDX_EFFECTIVETIME]) >= 1)) {
+						&& (existing.getEffectiveTime().compareTo(rows.getCachedString(IDX_EFFECTIVETIME)) >= 1)) {
 					//System.out.println("Skipping incoming published relationship row, older than that held");
 					continue;
 				}
-				
-				if (addRelationshipsToConcepts) {
-					addRelationshipToConcept(characteristicType, lineItems, isDelta, isReleased);
-				}
-				concepts.add(thisConcept);
-				relationshipsLoaded++;
-			} else {
-				isHeaderLine = false;
 			}
+			
+			if (addRelationshipsToConcepts) {
+				addRelationshipToConcept(characteristicType, rows, isDelta, isReleased);
+			}
+			concepts.add(thisConcept);
+			relationshipsLoaded++;
 		}
 		log.append("\tLoaded " + relationshipsLoaded + " relationships of type " + characteristicType + " which were " + (addRelationshipsToConcepts?"":"not ") + "added to concepts\n");
 		return concepts;
 	}
 	
-	private boolean isExcluded(String moduleId) {
+	public boolean isExcluded(String moduleId) {
 		return excludedModules.contains(moduleId);
 	}
+	
+	/**
+	 * @return the single copy held of this value, so that equal values can be compared by reference.
+	 * Only intended for values with few distinct occurrences, such as module ids and effective times.
+	 */
+	public String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		String interned = internedValues.get(value);
+		if (interned == null) {
+			interned = internedValues.putIfAbsent(value, value);
+			if (interned == null) {
+				interned = value;
+			}
+		}
+		return interned;
+	}
+	
+	private void internFields(String[] lineItems, int[] fields) {
+		for (int field : fields) {
+			//Trailing empty fields will have been dropped
+			if (field < lineItems.length) {
+				lineItems[field] = intern(lineItems[field]);
+			}
+		}
+	}
 
 	public void loadAxioms(InputStream axiomStream, boolean isDelta, Boolean isReleased) 
 			throws IOException, TermServerScriptException {
-		BufferedReader br = new BufferedReader(new InputStreamReader(axiomStream, StandardCharsets.UTF_8));
-		String line;
-		boolean isHeaderLine = true;
-		int axiomsLoaded = 0;
-		while ((line = br.readLine()) != null) {
-			if (!isHeaderLine) {
-				String[] lineItems = line.split(FIELD_DELIMITER);
-				
-				//Only load OWL Expressions
-				if (!lineItems[REF_IDX_REFSETID].equals(SCTID_OWL_AXIOM_REFSET)) {
-					continue;
+		loadAxioms(new RF2Tokenizer(axiomStream), isDelta, isReleased);
+	}
+	
+	/**
+	 * Loads in two phases.  First the OWL expressions not seen before are parsed on a pool of threads,
+	 * then the axioms are applied to their concepts one at a time in file order, since a later row
+	 * may replace an earlier one.
+	 */
+	public void loadAxioms(RF2RowSource rows, boolean isDelta, Boolean isReleased) 
+			throws IOException, TermServerScriptException {
+		long start = System.currentTimeMillis();
+		List<String[]> axiomRows = new ArrayList<>();
+		String[] lineItems;
+		while ((lineItems = rows.nextRow()) != null) {
+			//Only load OWL Expressions
+			if (lineItems[REF_IDX_REFSETID].equals(SCTID_OWL_AXIOM_REFSET)) {
+				internFields(lineItems, REFSET_INTERNED_FIELDS);
+				axiomRows.add(lineItems);
+			}
+		}
+		int parsed = parseAxioms(axiomRows);
+		long parseTime = System.currentTimeMillis() - start;
+		
+		for (String[] axiomRow : axiomRows) {
+			loadAxiom(axiomRow, isDelta, isReleased);
+		}
+		log.append("\tLoaded " + axiomRows.size() + " axioms");
+		TermServerScript.debug("Loaded " + axiomRows.size() + " axioms, parsing " + parsed + " expressions in " + (parseTime / 1000f) 
+				+ "s and applying them in " + ((System.currentTimeMillis() - start - parseTime) / 1000f) + "s");
+	}
+	
+	private void loadAxiom(String[] lineItems, boolean isDelta, Boolean isReleased) throws TermServerScriptException {
+		if (!isConcept(lineItems[REF_IDX_REFCOMPID])) {
+			TermServerScript.debug("Axiom " + lineItems[REL_IDX_ID] + " referenced a non concept identifier: " + lineItems[REF_IDX_REFCOMPID]);
+		}
+		
+		Long conceptId = Long.parseLong(lineItems[REF_IDX_REFCOMPID]);
+		Concept c = getConcept(conceptId);
+		
+		try {
+			//Also save data in RF2 form so we can build Snapshot
+			AxiomEntry axiomEntry = AxiomEntry.fromRf2(lineItems);
+			//Are we overwriting an existing axiom?
+			if (c.getAxiomEntries().contains(axiomEntry)) {
+				AxiomEntry replacedAxiomEntry = c.getAxiom(axiomEntry.getId());
+				if (detectNoChangeDelta && !isReleased) {
+					detectNoChangeDelta(c, replacedAxiomEntry, lineItems);
 				}
-				
-				if (!isConcept(lineItems[REF_IDX_REFCOMPID])) {
-					TermServerScript.debug("Axiom " + lineItems[REL_IDX_ID] + " referenced a non concept identifier: " + lineItems[REF_IDX_REFCOMPID]);
+				c.getAxiomEntries().remove(axiomEntry);
+				//We'll inactivate all these relationships and allow them to be replaced
+				AxiomRepresentation replacedAxiom = getParsedAxiom(replacedAxiomEntry.getOwlExpression());
+				//Filter out any additional statements such as TransitiveObjectProperty(:123005000)]
+				if (replacedAxiom != null) {
+					Set<Relationship> replacedRelationships = AxiomUtils.getRHSRelationships(c, replacedAxiom);
+					alignAxiomRelationships(c, replacedRelationships, replacedAxiomEntry, false);
+					for (Relationship r : replacedRelationships) {
+						addRelationshipToConcept(CharacteristicType.STATED_RELATIONSHIP, r, isDelta);
+					}
 				}
-				
-				Long conceptId = Long.parseLong(lineItems[REF_IDX_REFCOMPID]);
-				Concept c = getConcept(conceptId);
-				
-				/*if (c.getId().equals("373120008")) {
-					TermServerScript.debug ("here");
+			}
+			c.getAxiomEntries().add(axiomEntry);
+			
+			//Only set the released flag if it's not set already
+			if (axiomEntry.isReleased() == null) {
+				axiomEntry.setReleased(isReleased);
+			}
+		
+			AxiomRepresentation axiom = getParsedAxiom(lineItems[REF_IDX_AXIOM_STR]);
+			//Filter out any additional statements such as TransitiveObjectProperty(:123005000)]
+			if (axiom != null) {
+				Long LHS = axiom.getLeftHandSideNamedConcept();
+				if (LHS == null) {
+					//Is this a CGI?
+					Long RHS = axiom.getRightHandSideNamedConcept();
+					if (!conceptId.equals(RHS)) {
+						throw new IllegalArgumentException("GCI Axiom RHS != RefCompId: " + String.join(FIELD_DELIMITER, lineItems));
+					}
+					c.getGciAxioms().add(AxiomUtils.toAxiom(c, axiomEntry, axiom));
+					axiomEntry.setGCI(true);
+				} else if (!conceptId.equals(LHS)) {
+					throw new IllegalArgumentException("Axiom LHS != RefCompId: " + String.join(FIELD_DELIMITER, lineItems));
 				}
 				
-				if (lineItems[IDX_ID].equals("a4271895-d420-4209-9487-57bb361905bd")) {
-					TermServerScript.debug ("here");
-				}*/
+				Set<Relationship> relationships = AxiomUtils.getRHSRelationships(c, axiom);
+				if (relationships.size() == 0) {
+					log.append("Check here - zero RHS relationships");
+				}
 				
-				try {
-					//Also save data in RF2 form so we can build Snapshot
-					AxiomEntry axiomEntry = AxiomEntry.fromRf2(lineItems);
-					//Are we overwriting an existing axiom?
-					if (c.getAxiomEntries().contains(axiomEntry)) {
-						AxiomEntry replacedAxiomEntry = c.getAxiom(axiomEntry.getId());
-						if (detectNoChangeDelta && !isReleased) {
-							detectNoChangeDelta(c, replacedAxiomEntry, lineItems);
-						}
-						c.getAxiomEntries().remove(axiomEntry);
-						//We'll inactivate all these relationships and allow them to be replaced
-						AxiomRepresentation replacedAxiom = axiomService.convertAxiomToRelationships(replacedAxiomEntry.getOwlExpression());
-						//Filter out any additional statements such as TransitiveObjectProperty(:123005000)]
-						if (replacedAxiom != null) {
-							Set<Relationship> replacedRelationships = AxiomUtils.getRHSRelationships(c, replacedAxiom);
-							alignAxiomRelationships(c, replacedRelationships, replacedAxiomEntry, false);
-							for (Relationship r : replacedRelationships) {
-								addRelationshipToConcept(CharacteristicType.STATED_RELATIONSHIP, r, isDelta);
-							}
-						}
-					}
-					c.getAxiomEntries().add(axiomEntry);
-					
-					//Only set the released flag if it's not set already
-					if (axiomEntry.isReleased() == null) {
-						axiomEntry.setReleased(isReleased);
-					}
+				//If we already have relationships loaded from this axiom then it may be that 
+				//a subsequent version does not feature them, and we'll have to remove them.
+				removeRelsNoLongerFeaturedInAxiom(c, axiomEntry.getId(), relationships);
 				
-					AxiomRepresentation axiom = axiomService.convertAxiomToRelationships(lineItems[REF_IDX_AXIOM_STR]);
-					//Filter out any additional statements such as TransitiveObjectProperty(:123005000)]
-					if (axiom != null) {
-						Long LHS = axiom.getLeftHandSideNamedConcept();
-						if (LHS == null) {
-							//Is this a CGI?
-							Long RHS = axiom.getRightHandSideNamedConcept();
-							if (!conceptId.equals(RHS)) {
-								throw new IllegalArgumentException("GCI Axiom RHS != RefCompId: " + line);
-							}
-							c.getGciAxioms().add(AxiomUtils.toAxiom(c, axiomEntry, axiom));
-							axiomEntry.setGCI(true);
-						} else if (!conceptId.equals(LHS)) {
-							throw new IllegalArgumentException("Axiom LHS != RefCompId: " + line);
-						}
-						
-						Set<Relationship> relationships = AxiomUtils.getRHSRelationships(c, axiom);
-						if (relationships.size() == 0) {
-							log.append("Check here - zero RHS relationships");
-						}
-						
-						//If we already have relationships loaded from this axiom then it may be that 
-						//a subsequent version does not feature them, and we'll have to remove them.
-						removeRelsNoLongerFeaturedInAxiom(c, axiomEntry.getId(), relationships);
-						
-						//Now we might need to adjust the active flag if the axiom is being inactivated
-						//Or juggle the groupId, since individual axioms don't know about each other's existence
-						alignAxiomRelationships(c, relationships, axiomEntry, axiomEntry.isActive());
-						for (Relationship r : relationships) {
-							addRelationshipToConcept(CharacteristicType.STATED_RELATIONSHIP, r, isDelta);
-						}
-					} else {
-						//Are we looking at a special axiom: Transitive, Reflexive or RoleChain?
-						if (lineItems[IDX_ACTIVE].equals("1")) {
-							c.mergeObjectPropertyAxiomRepresentation(axiomService.asObjectPropertyAxiom(lineItems[REF_IDX_AXIOM_STR]));
-						}
-					}
-				} catch (ConversionException e) {
-					throw new TermServerScriptException("Failed to load axiom: " + line, e);
+				//Now we might need to adjust the active flag if the axiom is being inactivated
+				//Or juggle the groupId, since individual axioms don't know about each other's existence
+				alignAxiomRelationships(c, relationships, axiomEntry, axiomEntry.isActive());
+				for (Relationship r : relationships) {
+					addRelationshipToConcept(CharacteristicType.STATED_RELATIONSHIP, r, isDelta);
 				}
 			} else {
-				isHeaderLine = false;
+				//Are we looking at a special axiom: Transitive, Reflexive or RoleChain?
+				if (lineItems[IDX_ACTIVE].equals("1")) {
+					c.mergeObjectPropertyAxiomRepresentation(axiomService.asObjectPropertyAxiom(lineItems[REF_IDX_AXIOM_STR]));
+				}
+			}
+		} catch (ConversionException e) {
+			throw new TermServerScriptException("Failed to load axiom: " + String.join(FIELD_DELIMITER, lineItems), e);
+		}
+	}
+	
+	/**
+	 * Parses those expressions not already held, and points each row at the held copy of its 
+	 * expression so that we only keep one copy of it in memory
+	 * @return the number of expressions parsed
+	 */
+	private int parseAxioms(List<String[]> axiomRows) throws TermServerScriptException {
+		if (parsedAxioms.size() > MAX_PARSED_AXIOMS) {
+			parsedAxioms.clear();
+		}
+		
+		Set<String> unparsed = new LinkedHashSet<>();
+		for (String[] lineItems : axiomRows) {
+			ParsedAxiom parsedAxiom = parsedAxioms.get(lineItems[REF_IDX_AXIOM_STR]);
+			if (parsedAxiom == null) {
+				unparsed.add(lineItems[REF_IDX_AXIOM_STR]);
+			} else {
+				lineItems[REF_IDX_AXIOM_STR] = parsedAxiom.expression;
+			}
+		}
+		
+		if (unparsed.size() < PARALLEL_AXIOM_PARSE_THRESHOLD || axiomParseThreads < 2) {
+			for (String expression : unparsed) {
+				parsedAxioms.put(expression, new ParsedAxiom(expression, axiomService));
+			}
+			return unparsed.size();
+		}
+		
+		//The conversion service isn't known to be thread safe, so each thread parses with its own
+		ThreadLocal<AxiomRelationshipConversionService> threadAxiomService = ThreadLocal.withInitial(() -> new AxiomRelationshipConversionService(null));
+		ExecutorService executor = Executors.newFixedThreadPool(axiomParseThreads);
+		try {
+			List<String> expressions = new ArrayList<>(unparsed);
+			int chunkSize = (expressions.size() / (axiomParseThreads * 4)) + 1;
+			List<Future<?>> parsing = new ArrayList<>();
+			for (int i = 0; i < expressions.size(); i += chunkSize) {
+				List<String> chunk = expressions.subList(i, Math.min(i + chunkSize, expressions.size()));
+				parsing.add(executor.submit(() -> {
+					for (String expression : chunk) {
+						parsedAxioms.put(expression, new ParsedAxiom(expression, threadAxiomService.get()));
+					}
+				}));
+			}
+			for (Future<?> future : parsing) {
+				future.get();
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TermServerScriptException("Interrupted while parsing axioms", e);
+		} catch (ExecutionException e) {
+			throw new TermServerScriptException("Failed to parse axioms due to " + e.getCause().getMessage(), e);
+		} finally {
+			executor.shutdownNow();
+		}
+		return unparsed.size();
+	}
+	
+	private AxiomRepresentation getParsedAxiom(String expression) throws ConversionException {
+		ParsedAxiom parsedAxiom = parsedAxioms.get(expression);
+		if (parsedAxiom == null) {
+			parsedAxiom = new ParsedAxiom(expression, axiomService);
+			parsedAxioms.put(expression, parsedAxiom);
+		}
+		return parsedAxiom.getAxiom();
+	}
+	
+	public void setAxiomParseThreads(int axiomParseThreads) {
+		this.axiomParseThreads = axiomParseThreads;
+	}
+	
+	public void clearParsedAxioms() {
+		parsedAxioms.clear();
+	}
+	
+	/**
+	 * The result of parsing an OWL expression, held so that the expression only needs parsing once.
+	 * Expressions which fail to parse hold their failure, to be reported when the axiom is loaded.
+	 */
+	private static class ParsedAxiom {
+		final String expression;
+		final AxiomRepresentation axiom;
+		final ConversionException failure;
+		
+		ParsedAxiom(String expression, AxiomRelationshipConversionService axiomService) {
+			AxiomRepresentation axiom = null;
+			ConversionException failure = null;
+			try {
+				axiom = axiomService.convertAxiomToRelationships(expression);
+			} catch (ConversionException e) {
+				failure = e;
+			}
+			this.expression = expression;
+			this.axiom = axiom;
+			this.failure = failure;
+		}
+		
+		AxiomRepresentation getAxiom() throws ConversionException {
+			if (failure != null) {
+				throw failure;
+			}
+			return axiom;
 		}
-		log.append("\tLoaded " + axiomsLoaded + " axioms");
 	}
 	
 	private void removeRelsNoLongerFeaturedInAxiom(Concept c, String axiomId, Set<Relationship> currentAxiomRels) {
@@ -337,6 +524,10 @@ public class GraphLoader implements RF2Constants {
 		return sctId.charAt(sctId.length()-2) == '0';
 	}
 	
+	private boolean isConcept(long sctId) {
+		return (sctId / 10) % 10 == 0;
+	}
+	
 	private boolean isDescription(String sctId) {
 		return sctId.charAt(sctId.length()-2) == '1';
 	}
@@ -382,41 +573,44 @@ public class GraphLoader implements RF2Constants {
 	}
 	
 	private Relationship createRelationshipFromRF2(CharacteristicType charType, String[] lineItems) throws TermServerScriptException {
-		String sourceId = lineItems[REL_IDX_SOURCEID];
-		Concept source = getConcept(sourceId);
-		String typeId = lineItems[REL_IDX_TYPEID];
+		return createRelationshipFromRF2(charType, RF2SplitRowSource.of(lineItems));
+	}
+	
+	private Relationship createRelationshipFromRF2(CharacteristicType charType, RF2RowSource row) throws TermServerScriptException {
+		long sourceId = row.getLong(REL_IDX_SOURCEID);
+		Concept source = getConcept(row, REL_IDX_SOURCEID);
+		long typeId = row.getLong(REL_IDX_TYPEID);
 		
-		if (sourceId.length() < 4 || typeId.length() < 4 ) {
-			TermServerScript.debug("*** Invalid SCTID encountered in relationship " + lineItems[REL_IDX_ID] + ": s" + sourceId + " t" + typeId);
+		if (sourceId < 100 || typeId < 100) {
+			TermServerScript.debug("*** Invalid SCTID encountered in relationship " + row.getString(REL_IDX_ID) + ": s" + sourceId + " t" + typeId);
 		}
-		Concept type = getConcept(typeId);
-		int groupNum = Integer.parseInt(lineItems[REL_IDX_RELATIONSHIPGROUP]);
+		Concept type = getConcept(row, REL_IDX_TYPEID);
+		int groupNum = (int) row.getLong(REL_IDX_RELATIONSHIPGROUP);
 		
 		Relationship r;
-		if (lineItems[REL_IDX_VALUE].startsWith("#")) {
+		//Concrete values are held in the same column as the destination would be
+		String value = row.getString(REL_IDX_VALUE);
+		if (value.startsWith("#")) {
 			//Trim leading hash symbol. Leave as string to preserve DPs
-			String value = lineItems[REL_IDX_VALUE].substring(1);
-			r = new Relationship(source, type, value, groupNum, Relationship.CdType.DECIMAL);
-		} else if (lineItems[REL_IDX_VALUE].startsWith("\"")) {
+			r = new Relationship(source, type, value.substring(1), groupNum, Relationship.CdType.DECIMAL);
+		} else if (value.startsWith("\"")) {
 			//Trim of start and ending quote
-			String value = lineItems[REL_IDX_VALUE].substring(1, lineItems[REL_IDX_VALUE].length()-1);
-			r = new Relationship(source, type, value, groupNum, Relationship.CdType.STRING);
+			r = new Relationship(source, type, value.substring(1, value.length()-1), groupNum, Relationship.CdType.STRING);
 		} else {
-			String destId = lineItems[REL_IDX_DESTINATIONID];
-			if (destId.length() < 4 ) {
-				TermServerScript.debug("*** Invalid SCTID encountered in relationship " + lineItems[REL_IDX_ID] + ": d" + destId );
+			if (row.getLong(REL_IDX_DESTINATIONID) < 100) {
+				TermServerScript.debug("*** Invalid SCTID encountered in relationship " + row.getString(REL_IDX_ID) + ": d" + row.getString(REL_IDX_DESTINATIONID));
 			}
-			Concept destination = getConcept(lineItems[REL_IDX_DESTINATIONID]);
+			Concept destination = getConcept(row, REL_IDX_DESTINATIONID);
 			r = new Relationship(source, type, destination, groupNum);
 		}
-		r.setRelationshipId(lineItems[REL_IDX_ID].isEmpty()?null:lineItems[REL_IDX_ID]);
+		r.setRelationshipId(row.isEmpty(REL_IDX_ID)?null:row.getString(REL_IDX_ID));
 		r.setCharacteristicType(charType);
-		r.setActive(lineItems[REL_IDX_ACTIVE].equals("1"));
-		r.setModifier(SnomedUtils.translateModifier(lineItems[REL_IDX_MODIFIERID]));
-		r.setModuleId(lineItems[REL_IDX_MODULEID]);
+		r.setActive(row.isActive(REL_IDX_ACTIVE));
+		r.setModifier(SnomedUtils.translateModifier(row.getCachedString(REL_IDX_MODIFIERID)));
+		r.setModuleId(row.getCachedString(REL_IDX_MODULEID));
 		
 		//Set the effectiveTime last because changing the other fields from defaults causes it to null out
-		r.setEffectiveTime(lineItems[REL_IDX_EFFECTIVETIME].isEmpty()?null:lineItems[REL_IDX_EFFECTIVETIME]);
+		r.setEffectiveTime(row.isEmpty(REL_IDX_EFFECTIVETIME)?null:row.getCachedString(REL_IDX_EFFECTIVETIME));
 		
 		//Changing those values after the defaults were set in the constructor will incorrectly mark dirty
 		r.setClean();
@@ -428,7 +622,11 @@ public class GraphLoader implements RF2Constants {
 	 * @throws TermServerScriptException
 	 */
 	public void addRelationshipToConcept(CharacteristicType charType, String[] lineItems, boolean isDelta, Boolean isReleased) throws TermServerScriptException {
-		Relationship r = createRelationshipFromRF2(charType, lineItems);
+		addRelationshipToConcept(charType, RF2SplitRowSource.of(lineItems), isDelta, isReleased);
+	}
+	
+	private void addRelationshipToConcept(CharacteristicType charType, RF2RowSource row, boolean isDelta, Boolean isReleased) throws TermServerScriptException {
+		Relationship r = createRelationshipFromRF2(charType, row);
 		r.setReleased(isReleased);
 		
 		String revertEffectiveTime = null;
@@ -436,7 +634,7 @@ public class GraphLoader implements RF2Constants {
 			//Do we already have this relationship from the snapshot?  
 			//Only interested if we have an id as axioms handled separately
 			Relationship existing = r.getSource().getRelationship(r.getId());
-			revertEffectiveTime = detectNoChangeDelta(r.getSource(), existing, lineItems);
+			revertEffectiveTime = detectNoChangeDelta(r.getSource(), existing, row.getRow());
 		}
 		
 		if (revertEffectiveTime != null) {
@@ -451,6 +649,7 @@ public class GraphLoader implements RF2Constants {
 	
 	public void addRelationshipToConcept(CharacteristicType charType, Relationship r, boolean isDelta) throws TermServerScriptException {
 		r.getSource().addRelationship(r);
+		recordIncomingRelationship(r);
 		
 		//Consider adding or removing parents if the relationship is ISA
 		//But only remove items if we're processing a delta and there aren't any remaining
@@ -478,6 +677,16 @@ public class GraphLoader implements RF2Constants {
 					//TermServerScript.warn("Not removing parent/child relationship as exists in other axiom / alternative relationship: " + r);
 				}
 			}
+			
+			//Only deltas are applied to the maintained TC.  Anything else means it can no longer be trusted
+			if (currentTransativeClosure != null && 
+					r.getCharacteristicType().equals(CharacteristicType.INFERRED_RELATIONSHIP)) {
+				if (isDelta) {
+					currentTransativeClosure.updateAncestors(source);
+				} else {
+					inferredHierarchyChanged();
+				}
+			}
 		} 
 	}
 	
@@ -494,9 +703,30 @@ public class GraphLoader implements RF2Constants {
 	}
 	
 	public Concept getConcept(Long sctId) throws TermServerScriptException {
+		//Save creating a String if we already hold this concept
+		if (concepts instanceof SctIdMap) {
+			Concept c = ((SctIdMap<Concept>)concepts).get(sctId.longValue());
+			if (c != null) {
+				return c;
+			}
+		}
 		return getConcept(sctId.toString(), true, true);
 	}
 	
+	/**
+	 * Looks up the concept whose id is held in the given field of the current row, saving
+	 * the creation of a String for the id if we already hold that concept
+	 */
+	private Concept getConcept(RF2RowSource row, int field) throws TermServerScriptException {
+		if (concepts instanceof SctIdMap) {
+			Concept c = ((SctIdMap<Concept>)concepts).get(row.getLong(field));
+			if (c != null) {
+				return c;
+			}
+		}
+		return getConcept(row.getString(field));
+	}
+	
 	public boolean conceptKnown(String sctId) {
 		return concepts.containsKey(sctId);
 	}
@@ -530,8 +760,8 @@ public class GraphLoader implements RF2Constants {
 		Concept c = concepts.get(sctId);
 		if (c == null) {
 			if (createIfRequired) {
-				c = new Concept(sctId);
-				concepts.put(sctId, c);
+				//Another loader thread may be creating this same concept
+				c = concepts.computeIfAbsent(sctId, Concept::new);
 			} else if (validateExists) {
 				throw new TermServerScriptException("Expected Concept '" + sctId + "' has not been loaded from archive");
 			}
@@ -549,10 +779,14 @@ public class GraphLoader implements RF2Constants {
 	
 	public Description getDescription(String sctId, boolean createIfRequired, boolean validateExists) throws TermServerScriptException {
 		Description d = descriptions.get(sctId);
+		if ((d == null || d.getConceptId() == null) && lazyDescriptionStore != null) {
+			//This description might be waiting on disk for its concept to be accessed
+			lazyDescriptionStore.materialiseOwner(sctId);
+			d = descriptions.get(sctId);
+		}
 		if (d == null) {
 			if (createIfRequired) {
-				d = new Description(sctId);
-				descriptions.put(sctId, d);
+				d = descriptions.computeIfAbsent(sctId, Description::new);
 			} else if (validateExists) {
 				throw new TermServerScriptException("Expected Description " + sctId + " has not been loaded from archive");
 			}
@@ -562,121 +796,123 @@ public class GraphLoader implements RF2Constants {
 	
 	public void loadConceptFile(InputStream is, Boolean isReleased) throws IOException, TermServerScriptException {
 		//Not putting this in a try resource block otherwise it will close the stream on completion and we've got more to read!
-		BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-		String line;
-		boolean isHeaderLine = true;
-		while ((line = br.readLine()) != null) {
-			if (!isHeaderLine) {
-				String[] lineItems = line.split(FIELD_DELIMITER);
-				//Exclude LOINC
-				if (isExcluded(lineItems[IDX_MODULEID])) {
-					continue;
-				}
-				
-				/*if (lineItems[IDX_ID].equals("59748008")) {
-					TermServerScript.debug("here");
-				}*/
+		loadConceptFile(new RF2Tokenizer(is), isReleased);
+	}
+	
+	public void loadConceptFile(RF2RowSource rows, Boolean isReleased) throws IOException, TermServerScriptException {
+		rows.setInterner(this::intern);
+		while (rows.next()) {
+			//Exclude LOINC
+			if (isExcluded(rows.getCachedString(IDX_MODULEID))) {
+				continue;
+			}
+			
+			/*if (rows.getString(IDX_ID).equals("59748008")) {
+				TermServerScript.debug("here");
+			}*/
 
-				//We might already have received some details about this concept
-				Concept c = getConcept(lineItems[IDX_ID]);
-				
-				//If the concept's module isn't known, then it wasn't loaded in the snapshot
-				String revertEffectiveTime = null;
-				if (detectNoChangeDelta && !isReleased && c.getModuleId() != null) {
-					revertEffectiveTime = detectNoChangeDelta(c, c, lineItems);
-				}
-				
-				//If we've already received a newer version of this component, say
-				//by loading INT first and a published MS 2nd, then skip
-				if (!StringUtils.isEmpty(c.getEffectiveTime()) 
-						&& isReleased
-						&& (c.getEffectiveTime().compareTo(lineItems[IDX_EFFECTIVETIME]) >= 1)) {
-					//System.out.println("Skipping incoming published concept row, older than that held");
-					continue;
-				}
-				
-				Concept.fillFromRf2(c, lineItems);
-				//Now we might have changed the moduleId if the delta is in another module, but this 
-				//doesn't make the RF2 "dirty" because that change hasn't been made by THIS process
-				c.setClean();
-				
-				if (revertEffectiveTime != null) {
-					c.setEffectiveTime(revertEffectiveTime);
-				}
-				
-				//Only set the released flag if it's not set already
-				if (c.isReleased() == null) {
-					c.setReleased(isReleased);
-				}
-				
-				if (c.getDefinitionStatus() == null) {
-					throw new TermServerScriptException("Concept " + c + " did not define definition status");
-				}
-			} else {
-				isHeaderLine = false;
+			//We might already have received some details about this concept
+			Concept c = getConcept(rows, IDX_ID);
+			
+			//If the concept's module isn't known, then it wasn't loaded in the snapshot
+			String revertEffectiveTime = null;
+			if (detectNoChangeDelta && !isReleased && c.getModuleId() != null) {
+				revertEffectiveTime = detectNoChangeDelta(c, c, rows.getRow());
+			}
+			
+			//If we've already received a newer version of this component, say
+			//by loading INT first and a published MS 2nd, then skip
+			if (!StringUtils.isEmpty(c.getEffectiveTime()) 
+					&& isReleased
+					&& (c.getEffectiveTime().compareTo(rows.getCachedString(IDX_EFFECTIVETIME)) >= 1)) {
+				//System.out.println("Skipping incoming published concept row, older than that held");
+				continue;
+			}
+			
+			Concept.fillFromRf2(c, rows);
+			//Now we might have changed the moduleId if the delta is in another module, but this 
+			//doesn't make the RF2 "dirty" because that change hasn't been made by THIS process
+			c.setClean();
+			
+			if (revertEffectiveTime != null) {
+				c.setEffectiveTime(revertEffectiveTime);
+			}
+			
+			//Only set the released flag if it's not set already
+			if (c.isReleased() == null) {
+				c.setReleased(isReleased);
+			}
+			
+			if (c.getDefinitionStatus() == null) {
+				throw new TermServerScriptException("Concept " + c + " did not define definition status");
 			}
 		}
 	}
 	
 	public void loadDescriptionFile(InputStream descStream, boolean fsnOnly, Boolean isReleased) throws IOException, TermServerScriptException {
 		//Not putting this in a try resource block otherwise it will close the stream on completion and we've got more to read!
-		BufferedReader br = new BufferedReader(new InputStreamReader(descStream, StandardCharsets.UTF_8));
-		String line;
-		boolean isHeader = true;
-		while ((line = br.readLine()) != null) {
-			if (!isHeader) {
-				String[] lineItems = line.split(FIELD_DELIMITER);
-				//Exclude LOINC
-				if (isExcluded(lineItems[IDX_MODULEID])) {
-					continue;
-				}
-				
-				/*if (lineItems[DES_IDX_ID].equals("3770564011")) {
-					TermServerScript.debug("Debug Here");
-				}*/
-				
-				Concept c = getConcept(lineItems[DES_IDX_CONCEPTID]);
-				if (lineItems[DES_IDX_ACTIVE].equals(ACTIVE_FLAG) && lineItems[DES_IDX_TYPEID].equals(FULLY_SPECIFIED_NAME)) {
-					c.setFsn(lineItems[DES_IDX_TERM]);
-				}
-				
-				if (!fsnOnly) {
-					//We might already have information about this description, eg langrefset entries
-					Description d = getDescription(lineItems[DES_IDX_ID]);
-					
-					//If we've already received a newer version of this component, say
-					//by loading INT first and a published MS 2nd, then skip
-					if (!StringUtils.isEmpty(d.getEffectiveTime()) 
-							&& isReleased
-							&& (d.getEffectiveTime().compareTo(lineItems[IDX_EFFECTIVETIME]) >= 1)) {
-						//System.out.println("Skipping incoming published description row, older than that held");
-						continue;
-					}
-					
-					//But if the module is not known, it's new
-					String revertEffectiveTime = null;
-					if (detectNoChangeDelta && !isReleased && d.getModuleId() != null) {
-						revertEffectiveTime = detectNoChangeDelta(c, d, lineItems);
-					}
-					Description.fillFromRf2(d,lineItems);
-					//Now we might have changed the moduleId if the delta is in another module, but this 
-					//doesn't make the RF2 "dirty" because that change hasn't been made by THIS process
-					d.setClean();
-					
-					if (revertEffectiveTime != null) {
-						d.setEffectiveTime(revertEffectiveTime);
-					}
-					
-					//Only set the released flag if it's not set already
-					if (d.isReleased() == null) {
-						d.setReleased(isReleased);
-					}
-					
-					c.addDescription(d);
-				}
-			} else {
-				isHeader = false;
+		loadDescriptionFile(new RF2Tokenizer(descStream), fsnOnly, isReleased);
+	}
+	
+	public void loadDescriptionFile(RF2RowSource rows, boolean fsnOnly, Boolean isReleased) throws IOException, TermServerScriptException {
+		rows.setInterner(this::intern);
+		while (rows.next()) {
+			loadDescriptionRow(rows, fsnOnly, isReleased);
+		}
+	}
+
+	public void loadDescriptionRow(String[] lineItems, boolean fsnOnly, Boolean isReleased) throws TermServerScriptException {
+		loadDescriptionRow(RF2SplitRowSource.of(lineItems), fsnOnly, isReleased);
+	}
+	
+	private void loadDescriptionRow(RF2RowSource row, boolean fsnOnly, Boolean isReleased) throws TermServerScriptException {
+		//Exclude LOINC
+		if (isExcluded(row.getCachedString(IDX_MODULEID))) {
+			return;
+		}
+		
+		/*if (row.getString(DES_IDX_ID).equals("3770564011")) {
+			TermServerScript.debug("Debug Here");
+		}*/
+		
+		Concept c = getConcept(row, DES_IDX_CONCEPTID);
+		if (row.isActive(DES_IDX_ACTIVE) && row.getCachedString(DES_IDX_TYPEID).equals(FULLY_SPECIFIED_NAME)) {
+			c.setFsn(row.getString(DES_IDX_TERM));
+		}
+		
+		if (!fsnOnly) {
+			//We might already have information about this description, eg langrefset entries
+			Description d = getDescription(row.getString(DES_IDX_ID));
+			
+			//If we've already received a newer version of this component, say
+			//by loading INT first and a published MS 2nd, then skip
+			if (!StringUtils.isEmpty(d.getEffectiveTime()) 
+					&& isReleased
+					&& (d.getEffectiveTime().compareTo(row.getCachedString(IDX_EFFECTIVETIME)) >= 1)) {
+				//System.out.println("Skipping incoming published description row, older than that held");
+				return;
+			}
+			
+			//But if the module is not known, it's new
+			String revertEffectiveTime = null;
+			if (detectNoChangeDelta && !isReleased && d.getModuleId() != null) {
+				revertEffectiveTime = detectNoChangeDelta(c, d, row.getRow());
+			}
+			Description.fillFromRf2(d, row);
+			//Now we might have changed the moduleId if the delta is in another module, but this 
+			//doesn't make the RF2 "dirty" because that change hasn't been made by THIS process
+			d.setClean();
+			
+			if (revertEffectiveTime != null) {
+				d.setEffectiveTime(revertEffectiveTime);
 			}
+			
+			//Only set the released flag if it's not set already
+			if (d.isReleased() == null) {
+				d.setReleased(isReleased);
+			}
+			
+			c.addDescription(d);
 		}
 	}
 
@@ -690,114 +926,116 @@ public class GraphLoader implements RF2Constants {
 	}
 
 	public void loadLanguageFile(InputStream is, Boolean isReleased) throws IOException, TermServerScriptException {
-		BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-		boolean isHeaderLine = true;
-		String line;
-		while ((line = br.readLine()) != null) {
-			if (!isHeaderLine) {
-				String[] lineItems = line.split(FIELD_DELIMITER);
-				//Exclude LOINC
-				if (isExcluded(lineItems[IDX_MODULEID])) {
-					continue;
-				}
-				Description d = getDescription(lineItems[LANG_IDX_REFCOMPID]);
-				LangRefsetEntry langRefsetEntry = LangRefsetEntry.fromRf2(lineItems);
-				
-				/*if (langRefsetEntry.getId().equals("1ee09ebd-f9cc-57f6-9850-ceea87310e68")) {
-					TermServerScript.debug("here");
-				}*/
-				/*if (langRefsetEntry.getReferencedComponentId().equals("2643877015") || langRefsetEntry.getReferencedComponentId().equals("2643878013")) {
-					TermServerScript.debug("here");
-				}*/
-				//Are we adding or replacing this entry?
-				if (d.getLangRefsetEntries().contains(langRefsetEntry)) {
-					LangRefsetEntry original = d.getLangRefsetEntry(langRefsetEntry.getId());
-					
-					//If we've already received a newer version of this component, say
-					//by loading INT first and a published MS 2nd, then skip
-					if (!StringUtils.isEmpty(original.getEffectiveTime()) 
-							&& (isReleased != null && isReleased)
-							&& (original.getEffectiveTime().compareTo(lineItems[IDX_EFFECTIVETIME]) >= 1)) {
-						//System.out.println("Skipping incoming published langrefset row, older than that held");
-						continue;
-					}
-					
-					//Set Released Flag if our existing entry has it
-					if (original.isReleased()) {
-						langRefsetEntry.setReleased(true);
-					}
-					//If we're working with not-released data and we already have a not-released entry
-					//then there's two copies of this langrefset entry in a delta
-					//We don't have to worry about this when loading a pre-created snapshot as the duplicates
-					//will already have been removed.
-					if (isReleased != null && !isReleased && StringUtils.isEmpty(original.getEffectiveTime())) {
-						//Have we already reported this duplicate?
-						if (duplicateLangRefsetIdsReported.contains(original)) {
-							TermServerScript.warn("Seeing additional duplication for " + original.getId());
-						} else {
-							TermServerScript.warn("Seeing duplicate langrefset entry in a delta: \n" + original.toString(true) + "\n" + langRefsetEntry.toString(true));
-							duplicateLangRefsetIdsReported.add(original);
-						}
-					}
-					d.getLangRefsetEntries().remove(original);
-				}
-				
-				if (langRefsetEntry.isReleased() == null) {
-					langRefsetEntry.setReleased(isReleased);
-				}
-				
-				//Complexity here that we've historically had language refset entries
-				//for the same description which attempt to cancel each other out using
-				//different UUIDs.  Therefore if we get a later entry inactivating a given
-				//dialect, then allow that to overwrte an earlier value with a different UUUID
-				
-				//Do we have an existing entry for this description & dialect that is later and inactive?
-				boolean clearToAdd = true;
-				String issue = "";
-				List<LangRefsetEntry> allExisting = d.getLangRefsetEntries(ActiveState.BOTH, langRefsetEntry.getRefsetId());
-				for (LangRefsetEntry existing : allExisting) {
-					//If we have two active for the same description, and neither has an effectiveTime delete the one that hasn't been published
-					//Only if we're loading a delta, otherwise it's published
-					if (isReleased != null && !isReleased) {
-						checkForActiveDuplication(d, existing, langRefsetEntry);
-					}
-					
-					if (existing.getEffectiveTime().compareTo(langRefsetEntry.getEffectiveTime()) <= 1) {
-						clearToAdd = false;
-						//issue = "Existing " + (existing.isActive()? "active":"inactive") +  " langrefset entry taking priority over incoming " + (langRefsetEntry.isActive()? "active":"inactive") + " as later : " + existing;
-					} else if (existing.getEffectiveTime().equals(langRefsetEntry.getEffectiveTime())) {
-						//As long as they have different UUIDs, it's OK to have the same effective time
-						//But we'll ignore the inactivation
-						if (!langRefsetEntry.isActive()) {
-							clearToAdd = false;
-							//issue = "Ignoring inactive langrefset entry with same effective time as active : " + existing;
-						}
-					} else {
-						//New entry is later or same effective time as one we already know about
-						d.getLangRefsetEntries().remove(existing);
-						//issue = "Existing " + (existing.isActive()? "active":"inactive") + " langrefset entry being overwritten by subsequent " + (langRefsetEntry.isActive()? "active":"inactive") + " value " + existing;
-						//System.err.println(issue);
-					}
-				}
-				
-				if (!issue.isEmpty()) {
-					//TermServerScript.warn(issue);
+		loadLanguageFile(new RF2Tokenizer(is), isReleased);
+	}
+	
+	public void loadLanguageFile(RF2RowSource rows, Boolean isReleased) throws IOException, TermServerScriptException {
+		String[] lineItems;
+		while ((lineItems = rows.nextRow()) != null) {
+			loadLanguageRow(lineItems, isReleased);
+		}
+	}
+
+	public void loadLanguageRow(String[] lineItems, Boolean isReleased) throws TermServerScriptException {
+		//Exclude LOINC
+		if (isExcluded(lineItems[IDX_MODULEID])) {
+			return;
+		}
+		internFields(lineItems, REFSET_VALUE_INTERNED_FIELDS);
+		Description d = getDescription(lineItems[LANG_IDX_REFCOMPID]);
+		LangRefsetEntry langRefsetEntry = LangRefsetEntry.fromRf2(lineItems);
+		
+		/*if (langRefsetEntry.getId().equals("1ee09ebd-f9cc-57f6-9850-ceea87310e68")) {
+			TermServerScript.debug("here");
+		}*/
+		/*if (langRefsetEntry.getReferencedComponentId().equals("2643877015") || langRefsetEntry.getReferencedComponentId().equals("2643878013")) {
+			TermServerScript.debug("here");
+		}*/
+		//Are we adding or replacing this entry?
+		if (d.getLangRefsetEntries().contains(langRefsetEntry)) {
+			LangRefsetEntry original = d.getLangRefsetEntry(langRefsetEntry.getId());
+			
+			//If we've already received a newer version of this component, say
+			//by loading INT first and a published MS 2nd, then skip
+			if (!StringUtils.isEmpty(original.getEffectiveTime()) 
+					&& (isReleased != null && isReleased)
+					&& (original.getEffectiveTime().compareTo(lineItems[IDX_EFFECTIVETIME]) >= 1)) {
+				//System.out.println("Skipping incoming published langrefset row, older than that held");
+				return;
+			}
+			
+			//Set Released Flag if our existing entry has it
+			if (original.isReleased()) {
+				langRefsetEntry.setReleased(true);
+			}
+			//If we're working with not-released data and we already have a not-released entry
+			//then there's two copies of this langrefset entry in a delta
+			//We don't have to worry about this when loading a pre-created snapshot as the duplicates
+			//will already have been removed.
+			if (isReleased != null && !isReleased && StringUtils.isEmpty(original.getEffectiveTime())) {
+				//Have we already reported this duplicate?
+				if (duplicateLangRefsetIdsReported.contains(original)) {
+					TermServerScript.warn("Seeing additional duplication for " + original.getId());
+				} else {
+					TermServerScript.warn("Seeing duplicate langrefset entry in a delta: \n" + original.toString(true) + "\n" + langRefsetEntry.toString(true));
+					duplicateLangRefsetIdsReported.add(original);
 				}
-				
-				//INFRA-5274 We're going to add the entry in all cases so we can detect duplicates,
-				//but we'll only set the acceptability on the description if the above code decided it was safe
-				d.getLangRefsetEntries().add(langRefsetEntry);
-				
-				if (clearToAdd) {
-					if (lineItems[LANG_IDX_ACTIVE].equals("1")) {
-						Acceptability a = SnomedUtils.translateAcceptability(lineItems[LANG_IDX_ACCEPTABILITY_ID]);
-						d.setAcceptablity(lineItems[LANG_IDX_REFSETID], a);
-					} else {
-						d.removeAcceptability(lineItems[LANG_IDX_REFSETID]);
-					}
+			}
+			d.getLangRefsetEntries().remove(original);
+		}
+		
+		if (langRefsetEntry.isReleased() == null) {
+			langRefsetEntry.setReleased(isReleased);
+		}
+		
+		//Complexity here that we've historically had language refset entries
+		//for the same description which attempt to cancel each other out using
+		//different UUIDs.  Therefore if we get a later entry inactivating a given
+		//dialect, then allow that to overwrte an earlier value with a different UUUID
+		
+		//Do we have an existing entry for this description & dialect that is later and inactive?
+		boolean clearToAdd = true;
+		String issue = "";
+		List<LangRefsetEntry> allExisting = d.getLangRefsetEntries(ActiveState.BOTH, langRefsetEntry.getRefsetId());
+		for (LangRefsetEntry existing : allExisting) {
+			//If we have two active for the same description, and neither has an effectiveTime delete the one that hasn't been published
+			//Only if we're loading a delta, otherwise it's published
+			if (isReleased != null && !isReleased) {
+				checkForActiveDuplication(d, existing, langRefsetEntry);
+			}
+			
+			if (existing.getEffectiveTime().compareTo(langRefsetEntry.getEffectiveTime()) <= 1) {
+				clearToAdd = false;
+				//issue = "Existing " + (existing.isActive()? "active":"inactive") +  " langrefset entry taking priority over incoming " + (langRefsetEntry.isActive()? "active":"inactive") + " as later : " + existing;
+			} else if (existing.getEffectiveTime().equals(langRefsetEntry.getEffectiveTime())) {
+				//As long as they have different UUIDs, it's OK to have the same effective time
+				//But we'll ignore the inactivation
+				if (!langRefsetEntry.isActive()) {
+					clearToAdd = false;
+					//issue = "Ignoring inactive langrefset entry with same effective time as active : " + existing;
 				}
 			} else {
-				isHeaderLine = false;
+				//New entry is later or same effective time as one we already know about
+				d.getLangRefsetEntries().remove(existing);
+				//issue = "Existing " + (existing.isActive()? "active":"inactive") + " langrefset entry being overwritten by subsequent " + (langRefsetEntry.isActive()? "active":"inactive") + " value " + existing;
+				//System.err.println(issue);
+			}
+		}
+		
+		if (!issue.isEmpty()) {
+			//TermServerScript.warn(issue);
+		}
+		
+		//INFRA-5274 We're going to add the entry in all cases so we can detect duplicates,
+		//but we'll only set the acceptability on the description if the above code decided it was safe
+		d.getLangRefsetEntries().add(langRefsetEntry);
+		
+		if (clearToAdd) {
+			if (lineItems[LANG_IDX_ACTIVE].equals("1")) {
+				Acceptability a = SnomedUtils.translateAcceptability(lineItems[LANG_IDX_ACCEPTABILITY_ID]);
+				d.setAcceptablity(lineItems[LANG_IDX_REFSETID], a);
+			} else {
+				d.removeAcceptability(lineItems[LANG_IDX_REFSETID]);
 			}
 		}
 	}
@@ -848,53 +1086,51 @@ public class GraphLoader implements RF2Constants {
 	}
 
 	public void loadInactivationIndicatorFile(InputStream is, Boolean isReleased) throws IOException, TermServerScriptException {
-		BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-		boolean isHeaderLine = true;
-		String line;
-		while ((line = br.readLine()) != null) {
-			if (!isHeaderLine) {
-				String[] lineItems = line.split(FIELD_DELIMITER);
-				//Exclude LOINC
-				if (isExcluded(lineItems[IDX_MODULEID])) {
-					continue;
-				}
-				
-				String revertEffectiveTime = null;
-				if (detectNoChangeDelta && isReleased != null && !isReleased) {
-					//Recover this entry for the component - concept or description
-					InactivationIndicatorEntry i = getInactivationIndicatorEntry(lineItems[REF_IDX_REFCOMPID], lineItems[IDX_ID]);
-					if (i != null) {
-						Component c = SnomedUtils.getParentComponent(i, this);
-						revertEffectiveTime = detectNoChangeDelta(c, i, lineItems);
-					}
+		loadInactivationIndicatorFile(new RF2Tokenizer(is), isReleased);
+	}
+	
+	public void loadInactivationIndicatorFile(RF2RowSource rows, Boolean isReleased) throws IOException, TermServerScriptException {
+		String[] lineItems;
+		while ((lineItems = rows.nextRow()) != null) {
+			//Exclude LOINC
+			if (isExcluded(lineItems[IDX_MODULEID])) {
+				continue;
+			}
+			internFields(lineItems, REFSET_VALUE_INTERNED_FIELDS);
+			
+			String revertEffectiveTime = null;
+			if (detectNoChangeDelta && isReleased != null && !isReleased) {
+				//Recover this entry for the component - concept or description
+				InactivationIndicatorEntry i = getInactivationIndicatorEntry(lineItems[REF_IDX_REFCOMPID], lineItems[IDX_ID]);
+				if (i != null) {
+					Component c = SnomedUtils.getParentComponent(i, this);
+					revertEffectiveTime = detectNoChangeDelta(c, i, lineItems);
 				}
+			}
 
-				InactivationIndicatorEntry inactivation = InactivationIndicatorEntry.fromRf2(lineItems);
-				
-				//Only set the released flag if it's not set already
-				if (inactivation.isReleased() == null) {
-					inactivation.setReleased(isReleased);
-				}
-				
-				if (revertEffectiveTime != null) {
-					inactivation.setEffectiveTime(revertEffectiveTime);
-				}
-				
-				if (inactivation.getRefsetId().equals(SCTID_CON_INACT_IND_REFSET)) {
-					Concept c = getConcept(lineItems[INACT_IDX_REFCOMPID]);
-					/*if (c.getConceptId().equals("198308002")) {
-						TermServerScript.debug("Check Here");
-					}*/
-					c.addInactivationIndicator(inactivation);
-				} else if (inactivation.getRefsetId().equals(SCTID_DESC_INACT_IND_REFSET)) {
-					Description d = getDescription(lineItems[INACT_IDX_REFCOMPID]);
-					/*if (d.getDescriptionId().equals("1221136011")) {
-						TermServerScript.debug("Check here");
-					}*/
-					d.addInactivationIndicator(inactivation);
-				}
-			} else {
-				isHeaderLine = false;
+			InactivationIndicatorEntry inactivation = InactivationIndicatorEntry.fromRf2(lineItems);
+			
+			//Only set the released flag if it's not set already
+			if (inactivation.isReleased() == null) {
+				inactivation.setReleased(isReleased);
+			}
+			
+			if (revertEffectiveTime != null) {
+				inactivation.setEffectiveTime(revertEffectiveTime);
+			}
+			
+			if (inactivation.getRefsetId().equals(SCTID_CON_INACT_IND_REFSET)) {
+				Concept c = getConcept(lineItems[INACT_IDX_REFCOMPID]);
+				/*if (c.getConceptId().equals("198308002")) {
+					TermServerScript.debug("Check Here");
+				}*/
+				c.addInactivationIndicator(inactivation);
+			} else if (inactivation.getRefsetId().equals(SCTID_DESC_INACT_IND_REFSET)) {
+				Description d = getDescription(lineItems[INACT_IDX_REFCOMPID]);
+				/*if (d.getDescriptionId().equals("1221136011")) {
+					TermServerScript.debug("Check here");
+				}*/
+				d.addInactivationIndicator(inactivation);
 			}
 		}
 	}
@@ -914,68 +1150,107 @@ public class GraphLoader implements RF2Constants {
 		return null;
 	}
 
-	public void loadHistoricalAssociationFile(InputStream is, Boolean isReleased) throws IOException, TermServerScriptException {
-		BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-		boolean isHeaderLine = true;
-		String line;
-		while ((line = br.readLine()) != null) {
-			if (!isHeaderLine) {
-				String[] lineItems = line.split(FIELD_DELIMITER);
-				//Exclude LOINC
-				if (isExcluded(lineItems[IDX_MODULEID])) {
-					continue;
+	public void loadRefsetMemberFile(RF2RowSource rows) throws IOException, TermServerScriptException {
+		if (refsetMembers == null) {
+			refsetMembers = new RefsetMembers();
+		}
+		rows.setInterner(this::intern);
+		while (rows.next()) {
+			refsetMembers.load(rows);
+		}
+	}
+	
+	/**
+	 * @return the members of simple and map refsets, or null if they have not been loaded
+	 */
+	public RefsetMembers getRefsetMembers() {
+		return refsetMembers;
+	}
+	
+	public boolean isRefsetMembershipHeld(String refsetId) {
+		return refsetMembers != null && refsetMembers.isHeld(Long.parseLong(refsetId));
+	}
+	
+	/**
+	 * @return the active concepts that are members of a refset whose membership we hold
+	 */
+	public Set<Concept> getRefsetMemberConcepts(String refsetId) throws TermServerScriptException {
+		if (!isRefsetMembershipHeld(refsetId)) {
+			throw new TermServerScriptException("Members of refset " + refsetId + " are not held locally");
+		}
+		Set<Concept> members = new HashSet<>();
+		for (long componentId : refsetMembers.getMembers(Long.parseLong(refsetId))) {
+			String sctId = Long.toString(componentId);
+			if (isConcept(sctId)) {
+				Concept c = getConcept(sctId, false, false);
+				if (c != null && c.isActive()) {
+					members.add(c);
 				}
-				String referencedComponent = lineItems[INACT_IDX_REFCOMPID];
-				if (isConcept(referencedComponent)) {
-					Concept c = getConcept(referencedComponent);
-					
-					/*if (c.getId().equals("140506004")) {
-						System.out.println("here");
-					}*/
-					
-					String revertEffectiveTime = null;
-					if (detectNoChangeDelta && isReleased != null && !isReleased) {
-						//Recover this entry for the component - concept or description
-						AssociationEntry a = getAssociationEntry(lineItems[REF_IDX_REFCOMPID], lineItems[IDX_ID]);
-						if (a != null) {
-							Component comp = SnomedUtils.getParentComponent(a, this);
-							revertEffectiveTime = detectNoChangeDelta(comp, a, lineItems);
-						}
+			}
+		}
+		return members;
+	}
+	
+	public void loadHistoricalAssociationFile(InputStream is, Boolean isReleased) throws IOException, TermServerScriptException {
+		loadHistoricalAssociationFile(new RF2Tokenizer(is), isReleased);
+	}
+	
+	public void loadHistoricalAssociationFile(RF2RowSource rows, Boolean isReleased) throws IOException, TermServerScriptException {
+		String[] lineItems;
+		while ((lineItems = rows.nextRow()) != null) {
+			//Exclude LOINC
+			if (isExcluded(lineItems[IDX_MODULEID])) {
+				continue;
+			}
+			internFields(lineItems, REFSET_INTERNED_FIELDS);
+			String referencedComponent = lineItems[INACT_IDX_REFCOMPID];
+			if (isConcept(referencedComponent)) {
+				Concept c = getConcept(referencedComponent);
+				
+				/*if (c.getId().equals("140506004")) {
+					System.out.println("here");
+				}*/
+				
+				String revertEffectiveTime = null;
+				if (detectNoChangeDelta && isReleased != null && !isReleased) {
+					//Recover this entry for the component - concept or description
+					AssociationEntry a = getAssociationEntry(lineItems[REF_IDX_REFCOMPID], lineItems[IDX_ID]);
+					if (a != null) {
+						Component comp = SnomedUtils.getParentComponent(a, this);
+						revertEffectiveTime = detectNoChangeDelta(comp, a, lineItems);
 					}
+				}
 
-					AssociationEntry association = AssociationEntry.fromRf2(lineItems);
-					
-					//Only set the released flag if it's not set already
-					if (association.isReleased() == null) {
-						association.setReleased(isReleased);
-					}
-					
-					if (revertEffectiveTime != null) {
-						association.setEffectiveTime(revertEffectiveTime);
-					}
-					
-					//Remove first in case we're replacing
-					c.getAssociationEntries().remove(association);
-					c.getAssociationEntries().add(association);
-					if (association.isActive()) {
-						SnomedUtils.addHistoricalAssociationInTsForm(c, association);
-						recordHistoricalAssociation(association);
-					}
-				} else if (isDescription(referencedComponent)) {
-					Description d = getDescription(referencedComponent);
-					AssociationEntry association = AssociationEntry.fromRf2(lineItems);
-					
-					//Only set the released flag if it's not set already
-					if (association.isReleased() == null) {
-						association.setReleased(isReleased);
-					}
-					
-					//Remove first in case we're replacing
-					d.getAssociationEntries().remove(association);
-					d.getAssociationEntries().add(association);
+				AssociationEntry association = AssociationEntry.fromRf2(lineItems);
+				
+				//Only set the released flag if it's not set already
+				if (association.isReleased() == null) {
+					association.setReleased(isReleased);
 				}
-			} else {
-				isHeaderLine = false;
+				
+				if (revertEffectiveTime != null) {
+					association.setEffectiveTime(revertEffectiveTime);
+				}
+				
+				//Remove first in case we're replacing
+				c.getAssociationEntries().remove(association);
+				c.getAssociationEntries().add(association);
+				if (association.isActive()) {
+					SnomedUtils.addHistoricalAssociationInTsForm(c, association);
+					recordHistoricalAssociation(association);
+				}
+			} else if (isDescription(referencedComponent)) {
+				Description d = getDescription(referencedComponent);
+				AssociationEntry association = AssociationEntry.fromRf2(lineItems);
+				
+				//Only set the released flag if it's not set already
+				if (association.isReleased() == null) {
+					association.setReleased(isReleased);
+				}
+				
+				//Remove first in case we're replacing
+				d.getAssociationEntries().remove(association);
+				d.getAssociationEntries().add(association);
 			}
 		}
 	}
@@ -1017,45 +1292,85 @@ public class GraphLoader implements RF2Constants {
 		return new ArrayList<AssociationEntry>();
 	}
 	
-	public void loadMRCMAttributeRangeFile(InputStream is, Boolean isReleased) throws IOException, TermServerScriptException {
-		BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-		boolean isHeaderLine = true;
-		String line;
-		while ((line = br.readLine()) != null) {
-			if (!isHeaderLine) {
-				String[] lineItems = line.split(FIELD_DELIMITER);
-				MRCMAttributeRange ar = MRCMAttributeRange.fromRf2(lineItems);
-				
-				//Only set the released flag if it's not set already
-				if (ar.isReleased() == null) {
-					ar.setReleased(isReleased);
+	private static Map<CharacteristicType, Map<Concept, Set<Concept>>> createIncomingRelationshipIndex() {
+		Map<CharacteristicType, Map<Concept, Set<Concept>>> index = new EnumMap<>(CharacteristicType.class);
+		for (CharacteristicType charType : CharacteristicType.values()) {
+			if (charType != CharacteristicType.ALL) {
+				index.put(charType, new ConcurrentHashMap<>());
+			}
+		}
+		return index;
+	}
+	
+	private void recordIncomingRelationship(Relationship r) {
+		if (r.isConcrete() || r.getTarget() == null || r.getCharacteristicType() == null) {
+			return;
+		}
+		//Sources are recorded whatever the state of the relationship, which is checked when we're asked
+		incomingRelationshipSources.get(r.getCharacteristicType())
+				.computeIfAbsent(r.getTarget(), k -> ConcurrentHashMap.newKeySet(4))
+				.add(r.getSource());
+	}
+	
+	/**
+	 * @return the relationships, from any concept, that have this concept as their target.
+	 * Found via an index maintained as relationships are loaded, so only the concepts that
+	 * refer to the target are examined rather than every concept held.
+	 */
+	public List<Relationship> getIncomingRelationships(Concept target, CharacteristicType charType, ActiveState activeState) {
+		List<Relationship> incoming = new ArrayList<>();
+		if (charType == CharacteristicType.ALL) {
+			for (CharacteristicType type : incomingRelationshipSources.keySet()) {
+				incoming.addAll(getIncomingRelationships(target, type, activeState));
+			}
+			return incoming;
+		}
+		Set<Concept> sources = incomingRelationshipSources.get(charType).get(target);
+		if (sources != null) {
+			for (Concept source : sources) {
+				for (Relationship r : source.getRelationships(charType, activeState)) {
+					if (r.isNotConcrete() && target.equals(r.getTarget())) {
+						incoming.add(r);
+					}
 				}
-				Concept refComp = getConcept(ar.getReferencedComponentId());
-				mrcmAttributeRangeMap.put(refComp, ar);
-			} else {
-				isHeaderLine = false;
 			}
 		}
+		return incoming;
+	}
+	
+	public void loadMRCMAttributeRangeFile(InputStream is, Boolean isReleased) throws IOException, TermServerScriptException {
+		loadMRCMAttributeRangeFile(new RF2Tokenizer(is), isReleased);
+	}
+	
+	public void loadMRCMAttributeRangeFile(RF2RowSource rows, Boolean isReleased) throws IOException, TermServerScriptException {
+		String[] lineItems;
+		while ((lineItems = rows.nextRow()) != null) {
+			MRCMAttributeRange ar = MRCMAttributeRange.fromRf2(lineItems);
+			
+			//Only set the released flag if it's not set already
+			if (ar.isReleased() == null) {
+				ar.setReleased(isReleased);
+			}
+			Concept refComp = getConcept(ar.getReferencedComponentId());
+			mrcmAttributeRangeMap.put(refComp, ar);
+		}
 	}
 	
 	public void loadMRCMDomainFile(InputStream is, Boolean isReleased) throws IOException, TermServerScriptException {
-		BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
-		boolean isHeaderLine = true;
-		String line;
-		while ((line = br.readLine()) != null) {
-			if (!isHeaderLine) {
-				String[] lineItems = line.split(FIELD_DELIMITER);
-				MRCMDomain d = MRCMDomain.fromRf2(lineItems);
-				
-				//Only set the released flag if it's not set already
-				if (d.isReleased() == null) {
-					d.setReleased(isReleased);
-				}
-				Concept refComp = getConcept(d.getReferencedComponentId());
-				mrcmDomainMap.put(refComp, d);
-			} else {
-				isHeaderLine = false;
+		loadMRCMDomainFile(new RF2Tokenizer(is), isReleased);
+	}
+	
+	public void loadMRCMDomainFile(RF2RowSource rows, Boolean isReleased) throws IOException, TermServerScriptException {
+		String[] lineItems;
+		while ((lineItems = rows.nextRow()) != null) {
+			MRCMDomain d = MRCMDomain.fromRf2(lineItems);
+			
+			//Only set the released flag if it's not set already
+			if (d.isReleased() == null) {
+				d.setReleased(isReleased);
 			}
+			Concept refComp = getConcept(d.getReferencedComponentId());
+			mrcmDomainMap.put(refComp, d);
 		}
 	}
 
@@ -1257,28 +1572,71 @@ public class GraphLoader implements RF2Constants {
 
 	public void populatePreviousTransativeClosure() throws TermServerScriptException {
 		TermServerScript.info("Populating PREVIOUS transitive closure");
+		currentTransativeClosure = null;
 		previousTransativeClosure = generateTransativeClosure();
+		//Any delta subsequently loaded will be applied to this overlay, so that we don't have to
+		//recalculate the TC from scratch to obtain the current one
+		currentTransativeClosure = TransitiveClosure.overlay(previousTransativeClosure);
+	}
+	
+	/**
+	 * @return the transitive closure of the hierarchy as currently loaded.  This is the closure 
+	 * maintained since the previous TC was populated if it is still valid, otherwise it is 
+	 * calculated from scratch.  Either way, the closure returned must not be modified.
+	 */
+	public TransitiveClosure getCurrentTC() throws TermServerScriptException {
+		if (currentTransativeClosure != null) {
+			TermServerScript.info ("Using transative closure maintained since previous release");
+			return currentTransativeClosure;
+		}
+		return generateTransativeClosure();
+	}
+	
+	/**
+	 * Any change to the inferred hierarchy, other than via a delta load, must be 
+	 * reported here so that the maintained transitive closure is no longer used 
+	 */
+	public void inferredHierarchyChanged() {
+		if (currentTransativeClosure != null) {
+			TermServerScript.debug("Inferred hierarchy modified, dropping maintained transative closure");
+			currentTransativeClosure = null;
+		}
 	}
 	
 	public TransitiveClosure generateTransativeClosure() throws TermServerScriptException {
 		TermServerScript.info ("Calculating transative closure...");
-		TransitiveClosure tc = new TransitiveClosure();
-		//For all active concepts, populate their ancestors into the TC
-		getAllConcepts().parallelStream().forEach(c->{
-			try {
-				tc.addConcept(c);
-			} catch (TermServerScriptException e) {
-				e.printStackTrace();
-			} 
-		});
+		TransitiveClosure tc = new TransitiveClosure(getAllConcepts());
+		tc.build();
 		TermServerScript.info ("Completed transative closure: " + tc.size() + " relationships mapped");
 		return tc;
 	}
 
+	public LazyDescriptionStore getLazyDescriptionStore() {
+		if (lazyDescriptionStore == null) {
+			lazyDescriptionStore = new LazyDescriptionStore(this);
+		}
+		return lazyDescriptionStore;
+	}
+
 	public TransitiveClosure getPreviousTC() {
 		return previousTransativeClosure;
 	}
 
+	public boolean isUsePrimitiveStore() {
+		return usePrimitiveStore;
+	}
+
+	/**
+	 * Switches between HashMap and primitive long keyed storage of concepts and descriptions.  
+	 * Any currently loaded content is discarded.
+	 */
+	public void setUsePrimitiveStore(boolean usePrimitiveStore) {
+		if (this.usePrimitiveStore != usePrimitiveStore) {
+			this.usePrimitiveStore = usePrimitiveStore;
+			reset();
+		}
+	}
+
 	public void setExcludedModules(HashSet<String> excludedModules) {
 		this.excludedModules = excludedModules;
 	}
@@ -0,0 +1,720 @@
+package org.ihtsdo.termserver.scripting;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.domain.Concept;
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+import org.ihtsdo.termserver.scripting.domain.Relationship;
+import org.ihtsdo.termserver.scripting.util.SctIdMap;
+
+/**
+ * Evaluates ECL against the inferred form of the concepts held in the GraphLoader, so that
+ * EclCache only needs to go to the terminology server for constructs not supported here.
+ *
+ * The ECL is parsed into an expression tree which is then evaluated as bitsets over a dense
+ * index of every concept, with refinements tested against each candidate's inferred
+ * relationships (in parallel) and attribute groups against its relationship groups.
+ * As with the terminology server's concept search, only active concepts are returned.
+ *
+ * Supported: concept references, *, descendant / ancestor / child / parent operators,
+ * AND / OR / MINUS, bracketed sub-expressions, attribute refinements with = and !=,
+ * cardinality, attribute groups and member of a refset whose members are held locally.
+ * Anything else - reverse and dotted attributes, concrete values, filters - raises
+ * UnsupportedEclException, as does reference to a concept or refset we do not hold.
+ */
+public class LocalEclEvaluator implements RF2Constants {
+
+	private final GraphLoader gl;
+	private final SctIdMap<Concept> conceptIndex;
+	private final int rootIdx;
+
+	public LocalEclEvaluator(GraphLoader gl) {
+		this.gl = gl;
+		Collection<Concept> allConcepts = gl.getAllConcepts();
+		conceptIndex = new SctIdMap<>(allConcepts.size());
+		for (Concept c : allConcepts) {
+			conceptIndex.put(c.getConceptId(), c);
+		}
+		rootIdx = conceptIndex.indexOf(SCTID_ROOT_CONCEPT);
+	}
+
+	/**
+	 * @return false if the GraphLoader has been reset or had concepts added since this evaluator was created
+	 */
+	public boolean isCurrent() {
+		Collection<Concept> allConcepts = gl.getAllConcepts();
+		if (allConcepts.size() != conceptIndex.size()) {
+			return false;
+		}
+		if (allConcepts.isEmpty()) {
+			return true;
+		}
+		//A reset GraphLoader will hold new concept objects
+		Concept sample = allConcepts.iterator().next();
+		return conceptIndex.get(sample.getConceptId()) == sample;
+	}
+
+	/**
+	 * @return a new, modifiable set of the active concepts matching this ECL
+	 * @throws UnsupportedEclException if the ECL uses a construct which can only be evaluated by the terminology server
+	 */
+	public Set<Concept> evaluate(String ecl) throws TermServerScriptException {
+		if (conceptIndex.size() == 0) {
+			throw new UnsupportedEclException("No concepts held locally");
+		}
+		Expression expression = new Parser(ecl).parse();
+		BitSet matches = expression.evaluate();
+		matches.and(activeConcepts());
+		Set<Concept> concepts = new HashSet<>(matches.cardinality() * 4 / 3 + 1);
+		for (int idx = matches.nextSetBit(0); idx >= 0; idx = matches.nextSetBit(idx + 1)) {
+			concepts.add(conceptIndex.valueAt(idx));
+		}
+		return concepts;
+	}
+
+	/**
+	 * @return the concepts active now, since scripts may inactivate concepts after this evaluator was created
+	 */
+	private BitSet activeConcepts() {
+		BitSet active = new BitSet(conceptIndex.size());
+		for (int idx = 0; idx < conceptIndex.size(); idx++) {
+			if (conceptIndex.valueAt(idx).isActive()) {
+				active.set(idx);
+			}
+		}
+		return active;
+	}
+
+	private int indexOf(Concept c) {
+		return conceptIndex.indexOf(Long.parseLong(c.getConceptId()));
+	}
+
+	private BitSet toBitSet(Collection<Concept> concepts) {
+		BitSet bits = new BitSet(conceptIndex.size());
+		for (Concept c : concepts) {
+			int idx = indexOf(c);
+			if (idx != -1) {
+				bits.set(idx);
+			}
+		}
+		return bits;
+	}
+
+	public static class UnsupportedEclException extends TermServerScriptException {
+		private static final long serialVersionUID = 1L;
+
+		public UnsupportedEclException(String msg) {
+			super(msg);
+		}
+	}
+
+	/*
+	 * Expression tree
+	 */
+
+	private abstract class Expression {
+		/**
+		 * @return a new bitset of the matching concepts, active or otherwise
+		 */
+		abstract BitSet evaluate() throws TermServerScriptException;
+	}
+
+	private class ConceptReference extends Expression {
+		private final int idx;
+
+		ConceptReference(int idx) {
+			this.idx = idx;
+		}
+
+		@Override
+		BitSet evaluate() {
+			BitSet bits = new BitSet(conceptIndex.size());
+			bits.set(idx);
+			return bits;
+		}
+	}
+
+	private class MemberOf extends Expression {
+		private final long[] members;
+
+		MemberOf(long[] members) {
+			this.members = members;
+		}
+
+		@Override
+		BitSet evaluate() {
+			BitSet bits = new BitSet(conceptIndex.size());
+			for (long sctId : members) {
+				//Refsets may also have descriptions as members
+				int idx = conceptIndex.indexOf(sctId);
+				if (idx != -1) {
+					bits.set(idx);
+				}
+			}
+			return bits;
+		}
+	}
+
+	private class AnyConcept extends Expression {
+		@Override
+		BitSet evaluate() {
+			return activeConcepts();
+		}
+	}
+
+	private enum HierarchyOperator { DESCENDANT_OR_SELF, DESCENDANT, CHILD_OR_SELF, CHILD, ANCESTOR_OR_SELF, ANCESTOR, PARENT_OR_SELF, PARENT }
+
+	private class Hierarchy extends Expression {
+		private final HierarchyOperator operator;
+		private final Expression focus;
+
+		Hierarchy(HierarchyOperator operator, Expression focus) {
+			this.operator = operator;
+			this.focus = focus;
+		}
+
+		@Override
+		BitSet evaluate() throws TermServerScriptException {
+			if (focus instanceof AnyConcept) {
+				return evaluateForAny();
+			}
+			BitSet focusConcepts = focus.evaluate();
+			BitSet result = new BitSet(conceptIndex.size());
+			for (int idx = focusConcepts.nextSetBit(0); idx >= 0; idx = focusConcepts.nextSetBit(idx + 1)) {
+				Concept c = conceptIndex.valueAt(idx);
+				//Inactive concepts have no inferred hierarchy
+				if (!c.isActive()) {
+					continue;
+				}
+				switch (operator) {
+					case DESCENDANT_OR_SELF : result.set(idx);
+						//and fall through
+					case DESCENDANT : result.or(toBitSet(gl.getDescendantsCache().getDescendents(c)));
+										break;
+					case CHILD_OR_SELF : result.set(idx);
+						//and fall through
+					case CHILD : result.or(toBitSet(c.getChildren(CharacteristicType.INFERRED_RELATIONSHIP)));
+										break;
+					case ANCESTOR_OR_SELF : result.set(idx);
+						//and fall through
+					case ANCESTOR : result.or(toBitSet(gl.getAncestorsCache().getAncestors(c)));
+										break;
+					case PARENT_OR_SELF : result.set(idx);
+						//and fall through
+					case PARENT : result.or(toBitSet(c.getParents(CharacteristicType.INFERRED_RELATIONSHIP)));
+										break;
+				}
+			}
+			return result;
+		}
+
+		private BitSet evaluateForAny() {
+			BitSet result = activeConcepts();
+			switch (operator) {
+				case DESCENDANT :
+				case CHILD :
+					//Everything but the root
+					if (rootIdx != -1) {
+						result.clear(rootIdx);
+					}
+					break;
+				case ANCESTOR :
+				case PARENT :
+					//Everything with a child
+					for (int idx = result.nextSetBit(0); idx >= 0; idx = result.nextSetBit(idx + 1)) {
+						if (conceptIndex.valueAt(idx).getChildren(CharacteristicType.INFERRED_RELATIONSHIP).isEmpty()) {
+							result.clear(idx);
+						}
+					}
+					break;
+				default :
+			}
+			return result;
+		}
+	}
+
+	private enum BooleanOperator { AND, OR, MINUS }
+
+	private class Compound extends Expression {
+		private final BooleanOperator operator;
+		private final List<Expression> operands;
+
+		Compound(BooleanOperator operator, List<Expression> operands) {
+			this.operator = operator;
+			this.operands = operands;
+		}
+
+		@Override
+		BitSet evaluate() throws TermServerScriptException {
+			BitSet result = operands.get(0).evaluate();
+			for (Expression operand : operands.subList(1, operands.size())) {
+				BitSet next = operand.evaluate();
+				switch (operator) {
+					case AND : result.and(next);
+								break;
+					case OR : result.or(next);
+								break;
+					case MINUS : result.andNot(next);
+								break;
+				}
+			}
+			return result;
+		}
+	}
+
+	private class Refined extends Expression {
+		private final Expression focus;
+		private final Refinement refinement;
+
+		Refined(Expression focus, Refinement refinement) {
+			this.focus = focus;
+			this.refinement = refinement;
+		}
+
+		@Override
+		BitSet evaluate() throws TermServerScriptException {
+			BitSet candidates = focus.evaluate();
+			candidates.and(activeConcepts());
+			//Attribute names and values are worked out once, up front, and then every candidate checked in parallel
+			refinement.prepare();
+			int[] matches = IntStream.of(candidates.stream().toArray())
+					.parallel()
+					.filter(idx -> refinement.matches(ConceptAttributes.of(conceptIndex.valueAt(idx))))
+					.toArray();
+			BitSet result = new BitSet(conceptIndex.size());
+			for (int idx : matches) {
+				result.set(idx);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The active inferred relationships of a concept (or of one of its groups), and the groups they form.
+	 * Ungrouped relationships are each considered to be in a group of their own.
+	 */
+	private static class ConceptAttributes {
+		private final List<Relationship> relationships;
+		private Collection<List<Relationship>> groups;
+
+		ConceptAttributes(List<Relationship> relationships) {
+			this.relationships = relationships;
+		}
+
+		static ConceptAttributes of(Concept c) {
+			List<Relationship> relationships = new ArrayList<>();
+			for (Relationship r : c.getRelationships()) {
+				if (r.isActive() && r.getCharacteristicType() == CharacteristicType.INFERRED_RELATIONSHIP) {
+					relationships.add(r);
+				}
+			}
+			return new ConceptAttributes(relationships);
+		}
+
+		Collection<List<Relationship>> getGroups() {
+			if (groups == null) {
+				Map<Integer, List<Relationship>> grouped = new HashMap<>();
+				List<List<Relationship>> allGroups = new ArrayList<>();
+				for (Relationship r : relationships) {
+					if (r.getGroupId() == 0) {
+						allGroups.add(Collections.singletonList(r));
+					} else {
+						grouped.computeIfAbsent(r.getGroupId(), g -> new ArrayList<>()).add(r);
+					}
+				}
+				allGroups.addAll(grouped.values());
+				groups = allGroups;
+			}
+			return groups;
+		}
+	}
+
+	private abstract class Refinement {
+		abstract void prepare() throws TermServerScriptException;
+
+		/**
+		 * @param attributes the concept's attributes, or the attributes of one group when within a group
+		 */
+		abstract boolean matches(ConceptAttributes attributes);
+	}
+
+	private class AttributeConstraint extends Refinement {
+		private final int min;
+		private final int max;
+		private final Expression name;
+		private final boolean equals;
+		private final Expression value;
+		private BitSet names;
+		private BitSet values;
+
+		AttributeConstraint(int min, int max, Expression name, boolean equals, Expression value) {
+			this.min = min;
+			this.max = max;
+			this.name = name;
+			this.equals = equals;
+			this.value = value;
+		}
+
+		@Override
+		void prepare() throws TermServerScriptException {
+			names = name.evaluate();
+			values = value.evaluate();
+		}
+
+		@Override
+		boolean matches(ConceptAttributes attributes) {
+			return inRange(count(attributes.relationships), min, max);
+		}
+
+		int count(List<Relationship> relationships) {
+			int count = 0;
+			for (Relationship r : relationships) {
+				if (r.isConcrete()) {
+					continue;
+				}
+				int typeIdx = indexOf(r.getType());
+				if (typeIdx == -1 || !names.get(typeIdx)) {
+					continue;
+				}
+				int targetIdx = indexOf(r.getTarget());
+				if (targetIdx != -1 && values.get(targetIdx) == equals) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	private class AttributeGroupConstraint extends Refinement {
+		private final int min;
+		private final int max;
+		private final Refinement attributeSet;
+
+		AttributeGroupConstraint(int min, int max, Refinement attributeSet) {
+			this.min = min;
+			this.max = max;
+			this.attributeSet = attributeSet;
+		}
+
+		@Override
+		void prepare() throws TermServerScriptException {
+			attributeSet.prepare();
+		}
+
+		@Override
+		boolean matches(ConceptAttributes attributes) {
+			int count = 0;
+			for (List<Relationship> group : attributes.getGroups()) {
+				if (attributeSet.matches(new ConceptAttributes(group))) {
+					count++;
+				}
+			}
+			return inRange(count, min, max);
+		}
+	}
+
+	private class CompoundRefinement extends Refinement {
+		private final boolean isConjunction;
+		private final List<Refinement> refinements;
+
+		CompoundRefinement(boolean isConjunction, List<Refinement> refinements) {
+			this.isConjunction = isConjunction;
+			this.refinements = refinements;
+		}
+
+		@Override
+		void prepare() throws TermServerScriptException {
+			for (Refinement refinement : refinements) {
+				refinement.prepare();
+			}
+		}
+
+		@Override
+		boolean matches(ConceptAttributes attributes) {
+			for (Refinement refinement : refinements) {
+				if (refinement.matches(attributes) != isConjunction) {
+					return !isConjunction;
+				}
+			}
+			return isConjunction;
+		}
+	}
+
+	private static boolean inRange(int count, int min, int max) {
+		return count >= min && (max == NOT_SET || count <= max);
+	}
+
+	/*
+	 * Recursive descent parser over the tokens of the ECL
+	 */
+	private class Parser {
+		private final String ecl;
+		private final List<String> tokens;
+		private int pos = 0;
+
+		Parser(String ecl) throws UnsupportedEclException {
+			this.ecl = ecl;
+			this.tokens = tokenize(ecl);
+		}
+
+		Expression parse() throws TermServerScriptException {
+			Expression expression = parseExpression();
+			if (pos < tokens.size()) {
+				throw unsupported("unexpected '" + peek() + "'");
+			}
+			return expression;
+		}
+
+		private Expression parseExpression() throws TermServerScriptException {
+			Expression first = parseSubExpression();
+			if (":".equals(peek())) {
+				pos++;
+				return new Refined(first, parseRefinement(true));
+			}
+			BooleanOperator operator = toBooleanOperator(peek());
+			if (operator == null) {
+				return first;
+			}
+			List<Expression> operands = new ArrayList<>();
+			operands.add(first);
+			while (toBooleanOperator(peek()) != null) {
+				//Different operators cannot be mixed without brackets
+				if (toBooleanOperator(peek()) != operator) {
+					throw unsupported("mixed " + operator + " and " + peek() + " without brackets");
+				}
+				pos++;
+				operands.add(parseSubExpression());
+			}
+			return new Compound(operator, operands);
+		}
+
+		private Expression parseSubExpression() throws TermServerScriptException {
+			String token = next();
+			HierarchyOperator operator = toHierarchyOperator(token);
+			if (operator != null) {
+				token = next();
+			}
+			Expression focus;
+			if (token.equals("*")) {
+				focus = new AnyConcept();
+			} else if (token.equals("(")) {
+				focus = parseExpression();
+				expect(")");
+			} else if (token.equals("^")) {
+				focus = parseMemberOf();
+			} else if (isSctId(token)) {
+				int idx = conceptIndex.indexOf(Long.parseLong(token));
+				if (idx == -1) {
+					throw new UnsupportedEclException("Concept " + token + " is not held locally");
+				}
+				focus = new ConceptReference(idx);
+			} else {
+				throw unsupported("'" + token + "'");
+			}
+			return operator == null ? focus : new Hierarchy(operator, focus);
+		}
+
+		private Expression parseMemberOf() throws TermServerScriptException {
+			String token = next();
+			if (!isSctId(token)) {
+				throw unsupported("member of '" + token + "'");
+			}
+			RefsetMembers refsetMembers = gl.getRefsetMembers();
+			long refsetId = Long.parseLong(token);
+			if (refsetMembers == null || !refsetMembers.isHeld(refsetId)) {
+				throw new UnsupportedEclException("Members of refset " + token + " are not held locally");
+			}
+			return new MemberOf(refsetMembers.getMembers(refsetId));
+		}
+
+		/**
+		 * @param allowGroups false when we're already within an attribute group
+		 */
+		private Refinement parseRefinement(boolean allowGroups) throws TermServerScriptException {
+			List<Refinement> refinements = new ArrayList<>();
+			refinements.add(parseSubRefinement(allowGroups));
+			Boolean isConjunction = null;
+			while (true) {
+				String token = peek();
+				boolean conjunction = ",".equals(token) || "AND".equals(token);
+				if (!conjunction && !"OR".equals(token)) {
+					break;
+				}
+				if (isConjunction != null && isConjunction != conjunction) {
+					throw unsupported("mixed conjunction and disjunction in refinement without brackets");
+				}
+				isConjunction = conjunction;
+				pos++;
+				refinements.add(parseSubRefinement(allowGroups));
+			}
+			return refinements.size() == 1 ? refinements.get(0) : new CompoundRefinement(isConjunction, refinements);
+		}
+
+		private Refinement parseSubRefinement(boolean allowGroups) throws TermServerScriptException {
+			int min = 1;
+			int max = NOT_SET;
+			if ("[".equals(peek())) {
+				pos++;
+				min = parseCardinality(false);
+				expect("..");
+				max = parseCardinality(true);
+				expect("]");
+			}
+			String token = peek();
+			if ("{".equals(token)) {
+				if (!allowGroups) {
+					throw unsupported("nested attribute groups");
+				}
+				pos++;
+				Refinement attributeSet = parseRefinement(false);
+				expect("}");
+				return new AttributeGroupConstraint(min, max, attributeSet);
+			} else if ("(".equals(token)) {
+				pos++;
+				Refinement bracketed = parseRefinement(allowGroups);
+				expect(")");
+				return bracketed;
+			} else if ("R".equals(token)) {
+				throw unsupported("reverse attributes");
+			}
+			Expression name = parseSubExpression();
+			String comparator = next();
+			if (!comparator.equals("=") && !comparator.equals("!=")) {
+				throw unsupported("comparator '" + comparator + "'");
+			}
+			Expression value = parseSubExpression();
+			return new AttributeConstraint(min, max, name, comparator.equals("="), value);
+		}
+
+		private int parseCardinality(boolean allowMany) throws UnsupportedEclException {
+			String token = next();
+			if (allowMany && token.equals("*")) {
+				return NOT_SET;
+			}
+			try {
+				return Integer.parseInt(token);
+			} catch (NumberFormatException e) {
+				throw unsupported("cardinality '" + token + "'");
+			}
+		}
+
+		private String peek() {
+			return pos < tokens.size() ? tokens.get(pos) : null;
+		}
+
+		private String next() throws UnsupportedEclException {
+			if (pos >= tokens.size()) {
+				throw unsupported("unexpected end");
+			}
+			return tokens.get(pos++);
+		}
+
+		private void expect(String expected) throws UnsupportedEclException {
+			String token = next();
+			if (!token.equals(expected)) {
+				throw unsupported("expected '" + expected + "' but found '" + token + "'");
+			}
+		}
+
+		private UnsupportedEclException unsupported(String detail) {
+			return new UnsupportedEclException("Unable to evaluate '" + ecl + "' locally: " + detail);
+		}
+
+		private BooleanOperator toBooleanOperator(String token) {
+			if (token == null) {
+				return null;
+			}
+			switch (token) {
+				case "AND" : return BooleanOperator.AND;
+				case "OR" : return BooleanOperator.OR;
+				case "MINUS" : return BooleanOperator.MINUS;
+				default : return null;
+			}
+		}
+
+		private HierarchyOperator toHierarchyOperator(String token) {
+			switch (token) {
+				case "<<" : return HierarchyOperator.DESCENDANT_OR_SELF;
+				case "<" : return HierarchyOperator.DESCENDANT;
+				case "<<!" : return HierarchyOperator.CHILD_OR_SELF;
+				case "<!" : return HierarchyOperator.CHILD;
+				case ">>" : return HierarchyOperator.ANCESTOR_OR_SELF;
+				case ">" : return HierarchyOperator.ANCESTOR;
+				case ">>!" : return HierarchyOperator.PARENT_OR_SELF;
+				case ">!" : return HierarchyOperator.PARENT;
+				default : return null;
+			}
+		}
+
+		private boolean isSctId(String token) {
+			if (token.length() < 6 || token.length() > 18) {
+				return false;
+			}
+			for (int i = 0; i < token.length(); i++) {
+				if (!Character.isDigit(token.charAt(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Splits the ECL into identifiers, keywords and operators, dropping any terms and comments
+		 */
+		private List<String> tokenize(String ecl) throws UnsupportedEclException {
+			List<String> tokens = new ArrayList<>();
+			int i = 0;
+			int len = ecl.length();
+			while (i < len) {
+				char c = ecl.charAt(i);
+				if (Character.isWhitespace(c)) {
+					i++;
+				} else if (c == '|') {
+					int end = ecl.indexOf('|', i + 1);
+					if (end == -1) {
+						throw unsupported("unterminated term");
+					}
+					i = end + 1;
+				} else if (ecl.startsWith("/*", i)) {
+					int end = ecl.indexOf("*/", i + 2);
+					if (end == -1) {
+						throw unsupported("unterminated comment");
+					}
+					i = end + 2;
+				} else if (Character.isDigit(c)) {
+					int start = i;
+					while (i < len && Character.isDigit(ecl.charAt(i))) {
+						i++;
+					}
+					tokens.add(ecl.substring(start, i));
+				} else if (Character.isLetter(c)) {
+					int start = i;
+					while (i < len && Character.isLetter(ecl.charAt(i))) {
+						i++;
+					}
+					String word = ecl.substring(start, i);
+					//The reverse flag is case sensitive, but keywords are not
+					tokens.add(word.equals("R") ? word : word.toUpperCase());
+				} else if (ecl.startsWith("<<!", i) || ecl.startsWith(">>!", i)) {
+					tokens.add(ecl.substring(i, i + 3));
+					i += 3;
+				} else if (ecl.startsWith("{{", i) || ecl.startsWith("!!", i)) {
+					throw unsupported("'" + ecl.substring(i, i + 2) + "'");
+				} else if (ecl.startsWith("<<", i) || ecl.startsWith(">>", i) || ecl.startsWith("<!", i)
+						|| ecl.startsWith(">!", i) || ecl.startsWith("!=", i) || ecl.startsWith("..", i)) {
+					tokens.add(ecl.substring(i, i + 2));
+					i += 2;
+				} else if ("<>*(){}[]:,=^".indexOf(c) != -1) {
+					tokens.add(String.valueOf(c));
+					i++;
+				} else {
+					//eg dotted attributes, concrete values
+					throw unsupported("'" + c + "'");
+				}
+			}
+			return tokens;
+		}
+	}
+}
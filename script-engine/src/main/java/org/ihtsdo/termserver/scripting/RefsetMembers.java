@@ -0,0 +1,294 @@
+package org.ihtsdo.termserver.scripting;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import org.ihtsdo.termserver.scripting.dao.RF2RowSource;
+import org.ihtsdo.termserver.scripting.dao.RF2SplitRowSource;
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+
+/**
+ * The active members of simple and map refsets, so that member-of questions can be answered
+ * without going to the terminology server.  Each refset's members are held in primitive arrays
+ * sorted by member id, with rows loaded since - including delta rows that update or inactivate
+ * an existing member - held in a small overlay which is merged into the arrays once it grows,
+ * or when the refset is next read.  The referenced components of each refset are compacted
+ * into a sorted array of SCTIDs the first time they're asked about.
+ *
+ * Only refsets that have had rows loaded are held - isHeld() should be checked before
+ * treating an empty result as meaning the refset has no members.
+ */
+public class RefsetMembers implements RF2Constants {
+
+	//The overlay of changes is merged into a refset's arrays when it exceeds this, or a quarter of their size
+	private static final int MIN_CHANGES_BEFORE_MERGE = 1024;
+	private static final long[] NO_LONGS = new long[0];
+	private static final int[] NO_INTS = new int[0];
+	//Rows not yet published have no effectiveTime
+	private static final int NO_EFFECTIVE_TIME = 0;
+
+	private final Map<Long, MemberTable> refsets = new HashMap<>();
+	//Shared instances of the values in map columns, which repeat heavily eg mapRule, mapAdvice
+	private final Map<String, String> values = new HashMap<>();
+
+	public void load(String[] lineItems) {
+		load(RF2SplitRowSource.of(lineItems));
+	}
+	
+	/**
+	 * Loads the current row of the source
+	 */
+	public synchronized void load(RF2RowSource row) {
+		long refsetId = row.getLong(REF_IDX_REFSETID);
+		UUID memberId = UUID.fromString(row.getString(REF_IDX_ID));
+		MemberTable members = refsets.computeIfAbsent(refsetId, k -> new MemberTable());
+		if (row.isActive(REF_IDX_ACTIVE)) {
+			int fieldCount = row.getFieldCount();
+			String[] additional = null;
+			if (fieldCount > REF_IDX_FIRST_ADDITIONAL) {
+				additional = new String[fieldCount - REF_IDX_FIRST_ADDITIONAL];
+				for (int i = 0; i < additional.length; i++) {
+					String value = row.getString(REF_IDX_FIRST_ADDITIONAL + i);
+					additional[i] = values.computeIfAbsent(value, v -> v);
+				}
+			}
+			int effectiveTime = row.isEmpty(REF_IDX_EFFECTIVETIME) ? NO_EFFECTIVE_TIME : (int) row.getLong(REF_IDX_EFFECTIVETIME);
+			members.put(memberId, new Member(row.getLong(REF_IDX_REFCOMPID), effectiveTime,
+					row.getLong(REF_IDX_MODULEID), additional));
+		} else {
+			members.put(memberId, null);
+		}
+	}
+
+	/**
+	 * @return true if rows for this refset have been loaded, even if none are active
+	 */
+	public synchronized boolean isHeld(long refsetId) {
+		return refsets.containsKey(refsetId);
+	}
+
+	public synchronized Set<Long> getRefsetIds() {
+		return new HashSet<>(refsets.keySet());
+	}
+
+	public synchronized boolean isMember(long refsetId, long componentId) {
+		return Arrays.binarySearch(getReferencedComponents(refsetId), componentId) >= 0;
+	}
+
+	/**
+	 * @return the number of distinct components with an active member in the refset
+	 */
+	public synchronized int getMemberCount(long refsetId) {
+		return getReferencedComponents(refsetId).length;
+	}
+
+	/**
+	 * @return the sorted, distinct components with an active member in the refset
+	 */
+	public synchronized long[] getMembers(long refsetId) {
+		long[] members = getReferencedComponents(refsetId);
+		return Arrays.copyOf(members, members.length);
+	}
+
+	/**
+	 * @return the refsets in which this component has an active member
+	 */
+	public synchronized List<Long> getRefsetsContaining(long componentId) {
+		List<Long> containing = new ArrayList<>();
+		for (Long refsetId : refsets.keySet()) {
+			if (Arrays.binarySearch(getReferencedComponents(refsetId), componentId) >= 0) {
+				containing.add(refsetId);
+			}
+		}
+		return containing;
+	}
+
+	/**
+	 * Passes each active member as a row of the refset it was loaded from, including any
+	 * additional columns such as a map's target, so that a snapshot generated from what we hold
+	 * can be loaded back with the same members.  Rows of the same refset have the same width.
+	 */
+	public synchronized void forEachMemberRow(Consumer<String[]> consumer) {
+		for (Map.Entry<Long, MemberTable> refset : refsets.entrySet()) {
+			String refsetId = refset.getKey().toString();
+			MemberTable members = refset.getValue();
+			members.merge();
+			for (int i = 0; i < members.size; i++) {
+				String[] row = new String[REF_IDX_FIRST_ADDITIONAL + members.additionalColumns];
+				row[REF_IDX_ID] = new UUID(members.idHigh[i], members.idLow[i]).toString();
+				row[REF_IDX_EFFECTIVETIME] = members.effectiveTimes[i] == NO_EFFECTIVE_TIME ? "" : Integer.toString(members.effectiveTimes[i]);
+				row[REF_IDX_ACTIVE] = "1";
+				row[REF_IDX_MODULEID] = Long.toString(members.modules[i]);
+				row[REF_IDX_REFSETID] = refsetId;
+				row[REF_IDX_REFCOMPID] = Long.toString(members.components[i]);
+				for (int col = 0; col < members.additionalColumns; col++) {
+					//Trailing empty fields may have been dropped when the row was loaded
+					String[] additional = members.additional[i];
+					row[REF_IDX_FIRST_ADDITIONAL + col] = additional != null && col < additional.length ? additional[col] : "";
+				}
+				consumer.accept(row);
+			}
+		}
+	}
+
+	private long[] getReferencedComponents(long refsetId) {
+		MemberTable members = refsets.get(refsetId);
+		return members == null ? NO_LONGS : members.getReferencedComponents();
+	}
+
+	/**
+	 * @return the refset if this ECL asks only for its members eg ^ 447562003 |ICD-10 complex map|
+	 */
+	public static Long getMemberOfRefset(String ecl) {
+		String expression = ecl.replaceAll("\\|[^|]*\\|", "").trim();
+		if (!expression.startsWith("^")) {
+			return null;
+		}
+		expression = expression.substring(1).trim();
+		if (expression.isEmpty() || expression.length() > 18 || !expression.chars().allMatch(Character::isDigit)) {
+			return null;
+		}
+		return Long.parseLong(expression);
+	}
+
+	/**
+	 * Files whose members we hold - simple refsets and the various forms of map
+	 */
+	public static boolean isMembershipFile(String fileName) {
+		return fileName.contains("Refset_Simple") || fileName.contains("ComplexMap")
+				|| fileName.contains("ExtendedMap") || fileName.contains("MapCorrelation");
+	}
+
+	private static class Member {
+		final long referencedComponentId;
+		final int effectiveTime;
+		final long moduleId;
+		final String[] additional;
+
+		Member(long referencedComponentId, int effectiveTime, long moduleId, String[] additional) {
+			this.referencedComponentId = referencedComponentId;
+			this.effectiveTime = effectiveTime;
+			this.moduleId = moduleId;
+			this.additional = additional;
+		}
+	}
+
+	/**
+	 * The members of one refset, as parallel arrays sorted by member id
+	 */
+	private static class MemberTable {
+		long[] idHigh = NO_LONGS;
+		long[] idLow = NO_LONGS;
+		long[] components = NO_LONGS;
+		long[] modules = NO_LONGS;
+		int[] effectiveTimes = NO_INTS;
+		//Only allocated for refsets whose rows have columns beyond referencedComponentId
+		String[][] additional;
+		int additionalColumns = 0;
+		int size = 0;
+		//Members loaded since the arrays were last merged, with null for those inactivated
+		final Map<UUID, Member> changes = new HashMap<>();
+		//Sorted, distinct referenced components, built as required
+		long[] referencedComponents;
+
+		void put(UUID memberId, Member member) {
+			changes.put(memberId, member);
+			referencedComponents = null;
+			if (changes.size() > Math.max(MIN_CHANGES_BEFORE_MERGE, size / 4)) {
+				merge();
+			}
+		}
+
+		long[] getReferencedComponents() {
+			merge();
+			if (referencedComponents == null) {
+				//Map refsets may have several members for the same component
+				referencedComponents = Arrays.stream(components, 0, size)
+						.sorted()
+						.distinct()
+						.toArray();
+			}
+			return referencedComponents;
+		}
+
+		void merge() {
+			if (changes.isEmpty()) {
+				return;
+			}
+			List<Map.Entry<UUID, Member>> sorted = new ArrayList<>(changes.entrySet());
+			sorted.sort(Map.Entry.comparingByKey(MemberTable::compare));
+			boolean hasAdditional = additional != null || sorted.stream().anyMatch(e -> e.getValue() != null && e.getValue().additional != null);
+
+			int capacity = size + sorted.size();
+			long[] newIdHigh = new long[capacity];
+			long[] newIdLow = new long[capacity];
+			long[] newComponents = new long[capacity];
+			long[] newModules = new long[capacity];
+			int[] newEffectiveTimes = new int[capacity];
+			String[][] newAdditional = hasAdditional ? new String[capacity][] : null;
+			int n = 0;
+			int existing = 0;
+			int change = 0;
+			while (existing < size || change < sorted.size()) {
+				int cmp;
+				if (existing == size) {
+					cmp = 1;
+				} else if (change == sorted.size()) {
+					cmp = -1;
+				} else {
+					UUID changeId = sorted.get(change).getKey();
+					cmp = compare(idHigh[existing], idLow[existing], changeId.getMostSignificantBits(), changeId.getLeastSignificantBits());
+				}
+				if (cmp < 0) {
+					newIdHigh[n] = idHigh[existing];
+					newIdLow[n] = idLow[existing];
+					newComponents[n] = components[existing];
+					newModules[n] = modules[existing];
+					newEffectiveTimes[n] = effectiveTimes[existing];
+					if (additional != null) {
+						newAdditional[n] = additional[existing];
+					}
+					n++;
+					existing++;
+				} else {
+					//A change replaces, or removes, any existing member with the same id
+					if (cmp == 0) {
+						existing++;
+					}
+					UUID memberId = sorted.get(change).getKey();
+					Member member = sorted.get(change).getValue();
+					if (member != null) {
+						newIdHigh[n] = memberId.getMostSignificantBits();
+						newIdLow[n] = memberId.getLeastSignificantBits();
+						newComponents[n] = member.referencedComponentId;
+						newModules[n] = member.moduleId;
+						newEffectiveTimes[n] = member.effectiveTime;
+						if (member.additional != null) {
+							newAdditional[n] = member.additional;
+							additionalColumns = Math.max(additionalColumns, member.additional.length);
+						}
+						n++;
+					}
+					change++;
+				}
+			}
+			idHigh = Arrays.copyOf(newIdHigh, n);
+			idLow = Arrays.copyOf(newIdLow, n);
+			components = Arrays.copyOf(newComponents, n);
+			modules = Arrays.copyOf(newModules, n);
+			effectiveTimes = Arrays.copyOf(newEffectiveTimes, n);
+			additional = hasAdditional ? Arrays.copyOf(newAdditional, n) : null;
+			size = n;
+			changes.clear();
+		}
+
+		private static int compare(UUID a, UUID b) {
+			return compare(a.getMostSignificantBits(), a.getLeastSignificantBits(), b.getMostSignificantBits(), b.getLeastSignificantBits());
+		}
+
+		private static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+			int cmp = Long.compare(aHigh, bHigh);
+			return cmp != 0 ? cmp : Long.compare(aLow, bLow);
+		}
+	}
+}
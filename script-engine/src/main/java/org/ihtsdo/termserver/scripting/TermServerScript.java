@@ -2,6 +2,7 @@ package org.ihtsdo.termserver.scripting;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.ihtsdo.termserver.scripting.dao.ReportConfiguration;
@@ -36,8 +37,8 @@ public abstract class TermServerScript implements RF2Constants {
 	
 	static Logger logger = LoggerFactory.getLogger(TermServerScript.class);
 	
-	protected static boolean debug = true;
-	protected static boolean dryRun = true;
+	protected boolean debug = true;
+	protected boolean dryRun = true;
 	protected static Integer headlessEnvironment = null;
 	protected boolean validateConceptOnUpdate = true;
 	protected boolean offlineMode = false;
@@ -58,6 +59,8 @@ public abstract class TermServerScript implements RF2Constants {
 	protected int processingLimit = NOT_SET;
 	private Date startTime;
 	private Map<String, Object> summaryDetails = new TreeMap<String, Object>();
+	//Concepts loaded ahead of time in bulk, keyed on branch and SCTID.  Each is handed out once.
+	private Map<String, Concept> prefetchedConcepts = new ConcurrentHashMap<>();
 	protected boolean inputFileHasHeaderRow = false;
 	protected boolean runStandAlone = true; //Set to true to avoid loading concepts from Termserver.  Should be used with Dry Run only.
 	protected File inputFile;
@@ -74,6 +77,8 @@ public abstract class TermServerScript implements RF2Constants {
 	
 	protected Set<Concept> whiteListedConcepts = new HashSet<>();
 	protected Set<String> archiveEclWarningGiven = new HashSet<>();
+	//ECL expansions by branch.  Held per job so that jobs running alongside each other in a worker don't share them
+	private final Map<String, EclCache> eclCaches = new ConcurrentHashMap<>();
 
 	protected GraphLoader gl = GraphLoader.getGraphLoader();
 	private ReportManager reportManager;
@@ -128,6 +133,7 @@ public abstract class TermServerScript implements RF2Constants {
 	static {
 		GsonBuilder gsonBuilder = new GsonBuilder();
 		gsonBuilder.registerTypeAdapter(Relationship.class, new RelationshipSerializer());
+		gsonBuilder.registerTypeAdapterFactory(new LazyDescriptionsAdapterFactory());
 		gsonBuilder.setPrettyPrinting();
 		gsonBuilder.excludeFieldsWithoutExposeAnnotation();
 		gson = gsonBuilder.create();
@@ -360,7 +366,6 @@ public abstract class TermServerScript implements RF2Constants {
 		this.url = jobRun.getTerminologyServerUrl();
 		this.env = getEnv(url);
 		this.jobRun = jobRun;
-		EclCache.reset();
 		authenticatedCookie = jobRun.getAuthToken();
 		
 		if (jobRun != null && !StringUtils.isEmpty(jobRun.getProject())) {
@@ -494,6 +499,9 @@ public abstract class TermServerScript implements RF2Constants {
 			jobRun.setStatus(JobStatus.Failed);
 			jobRun.setDebugInfo(msg);
 			error(msg, e);
+			if (getReportManager() != null) {
+				getReportManager().abort();
+			}
 		} finally {
 			try {
 				if (!suppressOutput) {
@@ -566,7 +574,10 @@ public abstract class TermServerScript implements RF2Constants {
 	}
 	
 	protected void loadProjectSnapshot(boolean fsnOnly) throws TermServerScriptException, InterruptedException, IOException {
-		getArchiveManager().loadProjectSnapshot(fsnOnly);
+		//A worker may have several jobs loading at once, so take ownership of the archive manager and load as one step
+		synchronized (ArchiveManager.class) {
+			getArchiveManager().loadProjectSnapshot(fsnOnly);
+		}
 		//Reset the report name to null here as it will have been set by the Snapshot Generator
 		setReportName(null);
 	}
@@ -614,6 +625,13 @@ public abstract class TermServerScript implements RF2Constants {
 	}
 	
 	protected Concept loadConcept(TermServerClient client, String sctId, String branchPath) throws TermServerScriptException {
+		if (client == tsClient) {
+			Concept prefetched = prefetchedConcepts.remove(branchPath + ":" + sctId);
+			if (prefetched != null) {
+				debug ("Using prefetched " + prefetched + " from TS branch " + branchPath);
+				return prefetched;
+			}
+		}
 		Concept concept =  gl.getConcept(sctId);
 		try {
 			debug ("Loading: " + concept + " from TS branch " + branchPath);
@@ -635,6 +653,54 @@ public abstract class TermServerScript implements RF2Constants {
 		}
 	}
 	
+	/**
+	 * Loads the concepts from the TS in bulk, so that subsequent calls to loadConcept for them
+	 * don't each need a round trip.  A prefetched concept is discarded if it's updated before being loaded.
+	 */
+	protected void prefetchConcepts(Collection<String> sctIds, String branchPath) throws TermServerScriptException {
+		if (sctIds.isEmpty()) {
+			return;
+		}
+		debug ("Prefetching " + sctIds.size() + " concepts from TS branch " + branchPath);
+		for (Concept loadedConcept : tsClient.getConcepts(sctIds, branchPath)) {
+			loadedConcept.setLoaded(true);
+			convertAxiomsToRelationships(loadedConcept, loadedConcept.getClassAxioms());
+			convertAxiomsToRelationships(loadedConcept, loadedConcept.getAdditionalAxioms());
+			prefetchedConcepts.put(branchPath + ":" + loadedConcept.getConceptId(), loadedConcept);
+		}
+	}
+	
+	protected void discardPrefetched(String sctId, String branchPath) {
+		if (sctId != null) {
+			prefetchedConcepts.remove(branchPath + ":" + sctId);
+		}
+	}
+	
+	/**
+	 * Refset members may refer to a description, in which case it's the concept holding that
+	 * description that's out of date.  If we can't tell which concept that is, discard them all.
+	 */
+	protected void discardPrefetchedOwner(String componentId, String branchPath) {
+		if (componentId == null || prefetchedConcepts.isEmpty()) {
+			return;
+		}
+		if (SnomedUtils.isConceptSctid(componentId)) {
+			discardPrefetched(componentId, branchPath);
+			return;
+		}
+		for (Map.Entry<String, Concept> entry : prefetchedConcepts.entrySet()) {
+			if (entry.getKey().startsWith(branchPath + ":") && entry.getValue().getDescription(componentId) != null) {
+				prefetchedConcepts.remove(entry.getKey());
+				return;
+			}
+		}
+		discardPrefetched(branchPath);
+	}
+	
+	protected void discardPrefetched(String branchPath) {
+		prefetchedConcepts.keySet().removeIf(key -> key.startsWith(branchPath + ":"));
+	}
+	
 	protected RefsetMember loadRefsetMember(String uuid) throws TermServerScriptException {
 		return loadRefsetMember(uuid, project.getBranchPath());
 	}
@@ -691,6 +757,7 @@ public abstract class TermServerScript implements RF2Constants {
 				}
 				
 				debug ("Updating state of " + c + (info == null?"":info));
+				discardPrefetched(c.getConceptId(), t.getBranchPath());
 				return tsClient.updateConcept(c, t.getBranchPath());
 			} else {
 				return c;
@@ -705,6 +772,40 @@ public abstract class TermServerScript implements RF2Constants {
 		}
 	}
 	
+	/**
+	 * Updates the concepts together as a single bulk change, rather than one call each.
+	 * @return the concepts as now held on the task branch
+	 */
+	protected List<Concept> updateConcepts(Task t, List<Concept> concepts, String info) throws TermServerScriptException {
+		try {
+			for (Concept c : concepts) {
+				convertStatedRelationshipsToAxioms(c, false);
+			}
+			if (!dryRun) {
+				if (validateConceptOnUpdate) {
+					for (Concept c : concepts) {
+						validateConcept(t, c);
+					}
+				}
+				
+				debug ("Updating state of " + concepts.size() + " concepts in bulk" + (info == null?"":info));
+				for (Concept c : concepts) {
+					discardPrefetched(c.getConceptId(), t.getBranchPath());
+				}
+				return tsClient.updateConcepts(concepts, t.getBranchPath());
+			} else {
+				return concepts;
+			}
+		} catch (ValidationFailure e) {
+			throw e;
+		} catch (Exception e) {
+			String excpStr =  e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+			String msg = "Failed to update " + concepts.size() + " concepts in TS due to " + excpStr;
+			error (msg, e);
+			throw new TermServerScriptException(msg,e); 
+		}
+	}
+	
 	private void validateConcept(Task t, Concept c) throws TermServerScriptException {
 		//We need to populate new components with UUIDs for validation
 		Concept uuidClone = c.cloneWithUUIDs();
@@ -935,6 +1036,7 @@ public abstract class TermServerScript implements RF2Constants {
 		try {
 			debug ((dryRun ?"Dry run deleting ":"Deleting ") + c );
 			if (!dryRun) {
+				discardPrefetched(c.getConceptId(), t.getBranchPath());
 				tsClient.deleteConcept(c.getConceptId(), t.getBranchPath());
 			}
 			return CHANGE_MADE;
@@ -948,6 +1050,8 @@ public abstract class TermServerScript implements RF2Constants {
 		try {
 			debug ((dryRun ?"Dry run deleting ":"Deleting ") + uuid );
 			if (!dryRun) {
+				//We don't know which concept this member belongs to
+				discardPrefetched(t.getBranchPath());
 				tsClient.deleteRefsetMember(uuid, t.getBranchPath(), false);  //Don't force!
 			}
 			return CHANGE_MADE;
@@ -960,6 +1064,7 @@ public abstract class TermServerScript implements RF2Constants {
 	protected int updateRefsetMember(Task t, RefsetMember r, String info) throws TermServerScriptException {
 		debug ( (dryRun? "Dry run ":"") + "Updating state of " + r + info);
 		if (!dryRun) {
+			discardPrefetchedOwner(r.getReferencedComponentId(), t.getBranchPath());
 			tsClient.updateRefsetMember(t.getBranchPath(), r, false); //Don't force delete
 		}
 		return CHANGE_MADE;
@@ -974,6 +1079,11 @@ public abstract class TermServerScript implements RF2Constants {
 	}
 	
 	public int getConceptsCount(String ecl) throws TermServerScriptException {
+		//Refset sizes can be counted locally if we've loaded the refset's members
+		Long refsetId = RefsetMembers.getMemberOfRefset(ecl);
+		if (refsetId != null && gl.isRefsetMembershipHeld(refsetId.toString())) {
+			return gl.getRefsetMemberConcepts(refsetId.toString()).size();
+		}
 		return tsClient.getConceptsCount(ecl, project.getBranchPath());
 	}
 	
@@ -1018,14 +1128,15 @@ public abstract class TermServerScript implements RF2Constants {
 			branch = historicECLBranch;
 		}
 		
-		EclCache cache = EclCache.getCache(branch, tsClient, gson, gl, quiet);
+		EclCache cache = eclCaches.computeIfAbsent(branch, b -> new EclCache(tsClient, gl));
 		boolean wasCached = cache.isCached(ecl);
-		Collection<Concept> concepts = cache.findConcepts(branch, ecl, useLocalStoreIfSimple); 
+		Collection<Concept> concepts = cache.findConcepts(branch, ecl, useLocalStoreIfSimple, quiet); 
 		int retry = 0;
-		if (concepts.size() == 0 && ++retry < 3) {
+		//Empty results are only cached when they came from the local graph, so there's no point asking again
+		if (concepts.size() == 0 && !cache.isCached(ecl) && ++retry < 3) {
 			debug("No concepts returned. Double checking that result...");
 			try { Thread.sleep(3*1000); } catch (Exception e) {}
-			concepts = cache.findConcepts(branch, ecl, useLocalStoreIfSimple); 
+			concepts = cache.findConcepts(branch, ecl, useLocalStoreIfSimple, quiet); 
 		}
 		
 		//If this is the first time we've seen these results, check for duplicates
@@ -1213,11 +1324,11 @@ public abstract class TermServerScript implements RF2Constants {
 		}
 	}
 	
-	public void initialiseSummaryInformation(String key) {
+	public synchronized void initialiseSummaryInformation(String key) {
 		summaryDetails.put(key, new Integer(0));
 	}
 	
-	public void incrementSummaryInformation(String key, int incrementAmount) {
+	public synchronized void incrementSummaryInformation(String key, int incrementAmount) {
 		if (!summaryDetails.containsKey(key)) {
 			summaryDetails.put(key, new Integer(0));
 		}
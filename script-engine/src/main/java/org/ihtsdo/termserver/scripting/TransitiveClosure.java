@@ -1,56 +1,360 @@
 package org.ihtsdo.termserver.scripting;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.ihtsdo.otf.exception.TermServerScriptException;
 import org.ihtsdo.termserver.scripting.domain.Concept;
 import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+import org.ihtsdo.termserver.scripting.util.IntBitmap;
+import org.ihtsdo.termserver.scripting.util.SctIdMap;
 
+/**
+ * The inferred ancestors and descendants of every concept.  Each concept is given a dense
+ * integer index, allocated top down through the hierarchy so that a concept's ancestors
+ * tend to have nearby indexes, and each ancestor / descendant row is held as a compressed
+ * bitmap of those indexes rather than a set of boxed SCTIDs.
+ */
 public class TransitiveClosure implements RF2Constants {
 
-	Map<Long, Set<Long>> ancestorMap = Collections.synchronizedMap(new HashMap<Long, Set<Long>>());
-	Map<Long, Set<Long>> descendantMap = Collections.synchronizedMap(new HashMap<Long, Set<Long>>());
+	//Well beyond the depth of any real hierarchy, so we must be going round in circles
+	private static final int MAX_DEPTH = 500;
+
+	private SctIdMap<Concept> conceptIndex;
+	private IntBitmap[] ancestorRows;
+	private IntBitmap[] descendantRows;
 	
-	public void addConcept(Concept c) throws TermServerScriptException {
-		Long descendant = Long.parseLong(c.getConceptId());
-		//Calculate and add all my ancestors
-		Set<Long> ancestors = c.getAncestors(NOT_SET).stream()
-				.map(a -> Long.parseLong(a.getConceptId()))
-				.collect(Collectors.toSet());
-		ancestorMap.put(descendant, ancestors);
-		
-		//But also, each of these ancestors can add me as a descendant
-		for (Long ancestor : ancestors) {
-			//Have we seen this ancestor before?
-			Set<Long> descendants = descendantMap.get(ancestor);
-			if (descendants == null) {
-				descendants = Collections.synchronizedSet(new HashSet<Long>());
-				descendantMap.put(ancestor, descendants);
-			}
-			descendants.add(descendant);
+	//For an overlay, the index and rows are shared with the underlying closure until they're modified
+	private boolean sharedIndex = false;
+	private BitSet ownedDescendantRows;
+
+	public TransitiveClosure(Collection<Concept> concepts) {
+		conceptIndex = new SctIdMap<>(concepts.size());
+		allocateIndexes(concepts);
+		ancestorRows = new IntBitmap[conceptIndex.size()];
+		descendantRows = new IntBitmap[conceptIndex.size()];
+	}
+
+	private TransitiveClosure(TransitiveClosure base) {
+		conceptIndex = base.conceptIndex;
+		sharedIndex = true;
+		ancestorRows = base.ancestorRows.clone();
+		descendantRows = base.descendantRows.clone();
+		ownedDescendantRows = new BitSet(descendantRows.length);
+	}
+
+	/**
+	 * @return a closure which starts out the same as the base closure, and which can then be maintained
+	 * via updateAncestors without affecting the base.  Rows are only copied as they are changed, so the 
+	 * base must not itself be modified while the overlay is in use.
+	 */
+	public static TransitiveClosure overlay(TransitiveClosure base) {
+		return new TransitiveClosure(base);
+	}
+
+	private void allocateIndexes(Collection<Concept> concepts) {
+		//Walk down from the root first, then pick up whatever is not connected to it
+		Concept root = null;
+		for (Concept c : concepts) {
+			if (c.getConceptId().equals(SCTID_ROOT_CONCEPT.toString())) {
+				root = c;
+				break;
+			}
+		}
+		if (root != null) {
+			Deque<Concept> stack = new ArrayDeque<>();
+			stack.push(root);
+			while (!stack.isEmpty()) {
+				Concept c = stack.pop();
+				if (conceptIndex.containsKey(c.getConceptId())) {
+					continue;
+				}
+				conceptIndex.put(c.getConceptId(), c);
+				for (Concept child : c.getChildren(CharacteristicType.INFERRED_RELATIONSHIP)) {
+					if (!conceptIndex.containsKey(child.getConceptId())) {
+						stack.push(child);
+					}
+				}
+			}
+		}
+		for (Concept c : concepts) {
+			if (!conceptIndex.containsKey(c.getConceptId())) {
+				conceptIndex.put(c.getConceptId(), c);
+			}
 		}
 	}
-	
+
+	/**
+	 * Calculates the ancestors of every concept, working through each top level hierarchy
+	 * in parallel and reusing the rows already calculated for each concept's parents.
+	 * Descendant rows are then obtained by inverting the ancestor rows.
+	 */
+	public void build() throws TermServerScriptException {
+		int size = conceptIndex.size();
+		AtomicReferenceArray<IntBitmap> rows = new AtomicReferenceArray<>(size);
+		try {
+			Concept root = conceptIndex.get(SCTID_ROOT_CONCEPT.longValue());
+			if (root != null) {
+				new ArrayList<>(root.getChildren(CharacteristicType.INFERRED_RELATIONSHIP))
+					.parallelStream()
+					.forEach(topLevel -> populateHierarchy(topLevel, rows));
+			}
+			//Anything not reached from the top level hierarchies eg inactive concepts and the root itself
+			for (int idx = 0; idx < size; idx++) {
+				getAncestorRow(idx, rows, 0);
+			}
+		} catch (IllegalStateException e) {
+			throw new TermServerScriptException("Unable to calculate transitive closure", e);
+		}
+
+		for (int idx = 0; idx < size; idx++) {
+			ancestorRows[idx] = rows.get(idx);
+			descendantRows[idx] = new IntBitmap();
+		}
+
+		//Indexes are visited in ascending order, so each descendant row is only ever appended to
+		for (int idx = 0; idx < size; idx++) {
+			final int descendant = idx;
+			ancestorRows[idx].forEach(ancestor -> descendantRows[ancestor].add(descendant));
+		}
+	}
+
+	private void populateHierarchy(Concept topLevel, AtomicReferenceArray<IntBitmap> rows) {
+		BitSet visited = new BitSet(rows.length());
+		Deque<Concept> stack = new ArrayDeque<>();
+		stack.push(topLevel);
+		while (!stack.isEmpty()) {
+			Concept c = stack.pop();
+			int idx = conceptIndex.indexOf(Long.parseLong(c.getConceptId()));
+			if (idx == -1 || visited.get(idx)) {
+				continue;
+			}
+			visited.set(idx);
+			getAncestorRow(idx, rows, 0);
+			stack.addAll(c.getChildren(CharacteristicType.INFERRED_RELATIONSHIP));
+		}
+	}
+
+	private IntBitmap getAncestorRow(int idx, AtomicReferenceArray<IntBitmap> rows, int depth) {
+		IntBitmap row = rows.get(idx);
+		if (row != null) {
+			return row;
+		}
+		Concept c = conceptIndex.valueAt(idx);
+		if (depth > MAX_DEPTH) {
+			throw new IllegalStateException("Cycle detected in IS_A relationships at " + c);
+		}
+		row = new IntBitmap();
+		for (Concept parent : c.getParents(CharacteristicType.INFERRED_RELATIONSHIP)) {
+			int parentIdx = conceptIndex.indexOf(Long.parseLong(parent.getConceptId()));
+			if (parentIdx != -1 && parentIdx != idx) {
+				row.or(getAncestorRow(parentIdx, rows, depth + 1));
+				row.add(parentIdx);
+			}
+		}
+		//Two threads may calculate the same row, in which case they'll agree, so keep whichever got there first
+		return rows.compareAndSet(idx, null, row) ? row : rows.get(idx);
+	}
+
+	/**
+	 * Brings the closure up to date after the inferred parents of a concept have changed.
+	 * Only the ancestor rows of that concept and its descendants are recalculated, and only
+	 * the descendant rows of ancestors gained or lost are touched.  
+	 * Not safe to call while the closure is being read by other threads.
+	 */
+	public void updateAncestors(Concept c) throws TermServerScriptException {
+		int idx = getOrAddIndex(c);
+		Map<Integer, IntBitmap> recalculated = new HashMap<>();
+		try {
+			//A change to this concept's parents does not change its descendants, and only they can be affected
+			IntBitmap affected = new IntBitmap(descendantRows[idx]);
+			affected.add(idx);
+			if (recalculateRow(idx, affected, recalculated, 0).equals(ancestorRows[idx])) {
+				return;
+			}
+			PrimitiveIterator.OfInt affectedIndexes = affected.iterator();
+			while (affectedIndexes.hasNext()) {
+				recalculateRow(affectedIndexes.nextInt(), affected, recalculated, 0);
+			}
+		} catch (IllegalStateException e) {
+			throw new TermServerScriptException("Unable to update transitive closure for " + c, e);
+		}
+
+		for (Map.Entry<Integer, IntBitmap> entry : recalculated.entrySet()) {
+			int descendant = entry.getKey();
+			IntBitmap before = ancestorRows[descendant];
+			IntBitmap after = entry.getValue();
+			before.forEach(ancestor -> {
+				if (!after.contains(ancestor)) {
+					getOwnedDescendantRow(ancestor).remove(descendant);
+				}
+			});
+			after.forEach(ancestor -> {
+				if (!before.contains(ancestor)) {
+					getOwnedDescendantRow(ancestor).add(descendant);
+				}
+			});
+			ancestorRows[descendant] = after;
+		}
+	}
+
+	private IntBitmap recalculateRow(int idx, IntBitmap affected, Map<Integer, IntBitmap> recalculated, int depth) {
+		IntBitmap row = recalculated.get(idx);
+		if (row != null) {
+			return row;
+		}
+		Concept c = conceptIndex.valueAt(idx);
+		if (depth > MAX_DEPTH) {
+			throw new IllegalStateException("Cycle detected in IS_A relationships at " + c);
+		}
+		row = new IntBitmap();
+		for (Concept parent : c.getParents(CharacteristicType.INFERRED_RELATIONSHIP)) {
+			int parentIdx = getOrAddIndex(parent);
+			if (parentIdx != idx) {
+				//Parents outside of the affected rows are already correct
+				IntBitmap parentRow = affected.contains(parentIdx) ? 
+						recalculateRow(parentIdx, affected, recalculated, depth + 1) : ancestorRows[parentIdx];
+				row.or(parentRow);
+				row.add(parentIdx);
+			}
+		}
+		recalculated.put(idx, row);
+		return row;
+	}
+
+	private IntBitmap getOwnedDescendantRow(int idx) {
+		if (ownedDescendantRows != null && !ownedDescendantRows.get(idx)) {
+			descendantRows[idx] = new IntBitmap(descendantRows[idx]);
+			ownedDescendantRows.set(idx);
+		}
+		return descendantRows[idx];
+	}
+
+	private int getOrAddIndex(Concept c) {
+		int idx = indexOf(c);
+		if (idx == -1) {
+			//New concept, eg from a delta
+			if (sharedIndex) {
+				SctIdMap<Concept> shared = conceptIndex;
+				conceptIndex = new SctIdMap<>(shared.size() + 1024);
+				for (int i = 0; i < shared.size(); i++) {
+					conceptIndex.put(shared.keyAt(i), shared.valueAt(i));
+				}
+				sharedIndex = false;
+			}
+			conceptIndex.put(c.getConceptId(), c);
+			idx = conceptIndex.size() - 1;
+			if (idx >= ancestorRows.length) {
+				int newLength = Math.max(16, ancestorRows.length + (ancestorRows.length >> 3));
+				ancestorRows = Arrays.copyOf(ancestorRows, newLength);
+				descendantRows = Arrays.copyOf(descendantRows, newLength);
+			}
+			ancestorRows[idx] = new IntBitmap();
+			descendantRows[idx] = new IntBitmap();
+			if (ownedDescendantRows != null) {
+				ownedDescendantRows.set(idx);
+			}
+		}
+		return idx;
+	}
+
 	public int size() {
-		return descendantMap.values().stream()
-				.mapToInt(s -> s.size())
-				.sum();
+		int size = 0;
+		for (IntBitmap row : descendantRows) {
+			if (row != null) {
+				size += row.cardinality();
+			}
+		}
+		return size;
 	}
-	
+
 	public Set<Long> getAncestors (Concept c) {
-		long id = Long.parseLong(c.getConceptId());
-		if (!ancestorMap.containsKey(id)) {
-			return new HashSet<>();
-		}
-		return ancestorMap.get(id);
+		int idx = indexOf(c);
+		return idx == -1 ? Collections.emptySet() : new RowView(ancestorRows[idx]);
 	}
-	
+
 	public Set<Long> getDescendants (Concept c) {
-		long id = Long.parseLong(c.getConceptId());
-		if (!descendantMap.containsKey(id)) {
-			return new HashSet<>();
+		int idx = indexOf(c);
+		return idx == -1 ? Collections.emptySet() : new RowView(descendantRows[idx]);
+	}
+
+	/**
+	 * @return true if ancestor is a proper (ie not the same concept) ancestor of descendant
+	 */
+	public boolean isAncestorOf(Concept ancestor, Concept descendant) {
+		return isAncestorOf(indexOf(ancestor), indexOf(descendant));
+	}
+
+	public boolean isDescendantOf(Concept descendant, Concept ancestor) {
+		return isAncestorOf(indexOf(ancestor), indexOf(descendant));
+	}
+
+	/**
+	 * @return true if the concept is either the same as, or a descendant of, the ancestor
+	 */
+	public boolean isSelfOrDescendantOf(Concept c, Concept ancestor) {
+		int idx = indexOf(c);
+		int ancestorIdx = indexOf(ancestor);
+		return idx != -1 && (idx == ancestorIdx || isAncestorOf(ancestorIdx, idx));
+	}
+
+	private boolean isAncestorOf(int ancestorIdx, int descendantIdx) {
+		if (ancestorIdx == -1 || descendantIdx == -1) {
+			return false;
+		}
+		return ancestorRows[descendantIdx].contains(ancestorIdx);
+	}
+
+	private int indexOf(Concept c) {
+		return c == null ? -1 : indexOf(c.getConceptId());
+	}
+
+	private int indexOf(Object sctId) {
+		try {
+			return conceptIndex.indexOf(sctId instanceof Long ? (Long)sctId : Long.parseLong(sctId.toString()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Presents a row of the closure as the set of SCTIDs it represents
+	 */
+	private class RowView extends AbstractSet<Long> {
+		private final IntBitmap row;
+
+		RowView(IntBitmap row) {
+			this.row = row;
+		}
+
+		@Override
+		public Iterator<Long> iterator() {
+			PrimitiveIterator.OfInt indexes = row.iterator();
+			return new Iterator<Long>() {
+				@Override
+				public boolean hasNext() {
+					return indexes.hasNext();
+				}
+
+				@Override
+				public Long next() {
+					return conceptIndex.keyAt(indexes.nextInt());
+				}
+			};
+		}
+
+		@Override
+		public boolean contains(Object sctId) {
+			if (sctId == null) {
+				return false;
+			}
+			int idx = indexOf(sctId);
+			return idx != -1 && row.contains(idx);
+		}
+
+		@Override
+		public int size() {
+			return row.cardinality();
 		}
-		return descendantMap.get(id);
 	}
 }
@@ -0,0 +1,10 @@
+package org.ihtsdo.termserver.scripting.client;
+
+public interface TermServerCallListener {
+	/**
+	 * @param endpoint the method and path of the call, without branch paths or ids, eg "GET browser/concepts"
+	 * @param elapsedMs how long the server took to respond
+	 * @param failed true if the call could not be made, or the server reported an error of its own
+	 */
+	void called(String endpoint, long elapsedMs, boolean failed);
+}
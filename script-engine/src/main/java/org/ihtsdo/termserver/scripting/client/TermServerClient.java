@@ -3,10 +3,17 @@ package org.ihtsdo.termserver.scripting.client;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.ihtsdo.otf.rest.client.ExpressiveErrorHandler;
 import org.ihtsdo.otf.rest.client.Status;
 import org.ihtsdo.otf.rest.client.authoringservices.RestyOverrideAccept;
@@ -42,16 +49,25 @@ public class TermServerClient {
 		PUBLISHED, UNPUBLISHED, MIXED;
 	}
 	
+	public interface ArchiveConsumer {
+		void accept(InputStream archive) throws IOException, TermServerScriptException;
+	}
+	
 	public static SimpleDateFormat YYYYMMDD = new SimpleDateFormat("yyyyMMdd");
 	public static final int MAX_TRIES = 3;
 	public static final int retry = 15;
 	public static final int MAX_PAGE_SIZE = 10000; 
+	public static final int MAX_BULK_LOAD_SIZE = 500;
+	private static final int BULK_CHANGE_POLL_SECONDS = 2;
+	private static final int BULK_CHANGE_TIMEOUT_MINUTES = 30;
+	private static int connectionPoolSize = 0;
 	
 	protected static Gson gson;
 	static {
 		GsonBuilder gsonBuilder = new GsonBuilder();
 		gsonBuilder.setPrettyPrinting();
 		gsonBuilder.registerTypeAdapter(Relationship.class, new RelationshipSerializer());
+		gsonBuilder.registerTypeAdapterFactory(new LazyDescriptionsAdapterFactory());
 		gsonBuilder.excludeFieldsWithoutExposeAnnotation();
 		gson = gsonBuilder.create();
 	}
@@ -63,6 +79,7 @@ public class TermServerClient {
 	private static final String ALL_CONTENT_TYPE = "*/*";
 	private static final String SNOWOWL_CONTENT_TYPE = "application/json";
 	private final Set<SnowOwlClientEventListener> eventListeners;
+	private volatile TermServerCallListener callListener;
 	private Logger logger = LoggerFactory.getLogger(getClass());
 	public static boolean supportsIncludeUnpublished = true;
 
@@ -77,22 +94,84 @@ public class TermServerClient {
 		headers.add("Cookie", cookie);
 		headers.add("Accept", SNOWOWL_CONTENT_TYPE);
 		
-		restTemplate = new RestTemplateBuilder()
+		RestTemplateBuilder restTemplateBuilder = new RestTemplateBuilder()
 				.rootUri(this.url)
 				.additionalMessageConverters(new GsonHttpMessageConverter(gson))
-				.errorHandler(new ExpressiveErrorHandler())
-				.build();
+				.errorHandler(new ExpressiveErrorHandler());
+		if (connectionPoolSize > 0) {
+			restTemplateBuilder = restTemplateBuilder.requestFactory(() -> new HttpComponentsClientHttpRequestFactory(createPooledHttpClient()));
+		}
+		restTemplate = restTemplateBuilder.build();
 		
 		//Add a ClientHttpRequestInterceptor to the RestTemplate
 		restTemplate.getInterceptors().add(new ClientHttpRequestInterceptor(){
 			@Override
 			public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
 				request.getHeaders().addAll(headers);
-				return execution.execute(request, body);
+				TermServerCallListener listener = callListener;
+				if (listener == null) {
+					return execution.execute(request, body);
+				}
+				long start = System.currentTimeMillis();
+				boolean failed = true;
+				try {
+					ClientHttpResponse response = execution.execute(request, body);
+					//Errors in the request itself tell us nothing about how the server is coping
+					int status = response.getRawStatusCode();
+					failed = status >= 500 || status == HttpStatus.TOO_MANY_REQUESTS.value();
+					return response;
+				} finally {
+					listener.called(request.getMethod() + " " + getEndpoint(request.getURI().getPath()), System.currentTimeMillis() - start, failed);
+				}
 			}
 		}); 
 	}
 	
+	/**
+	 * Has each call made to the server from now on reported to this listener, or stops reporting if null
+	 */
+	public void setCallListener(TermServerCallListener callListener) {
+		this.callListener = callListener;
+	}
+	
+	/**
+	 * @return the path with branch paths, ids and dates removed, so that all calls to the same endpoint match
+	 */
+	static String getEndpoint(String path) {
+		StringBuilder endpoint = new StringBuilder();
+		for (String segment : path.split("/")) {
+			if (segment.matches("[a-z][a-z-]*")) {
+				endpoint.append(endpoint.length() == 0 ? "" : "/").append(segment);
+			}
+		}
+		return endpoint.toString();
+	}
+	
+	/**
+	 * Has clients created from now on keep their connections to the server open between calls, 
+	 * holding up to the given number of connections.  Resty's connections are pooled by the JVM, 
+	 * so for those to benefit this must be called before the first request is made.
+	 */
+	public static void setConnectionPoolSize(int poolSize) {
+		connectionPoolSize = poolSize;
+		if (poolSize > 0) {
+			System.setProperty("http.keepAlive", "true");
+			System.setProperty("http.maxConnections", Integer.toString(poolSize));
+		}
+	}
+	
+	private static CloseableHttpClient createPooledHttpClient() {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(connectionPoolSize);
+		//We only talk to the one server
+		connectionManager.setDefaultMaxPerRoute(connectionPoolSize);
+		return HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+				.evictIdleConnections(30, TimeUnit.SECONDS)
+				.build();
+	}
+	
 	public Branch getBranch(String branchPath) throws TermServerScriptException {
 		int retry = 0;
 		while (retry < 3) {
@@ -193,6 +272,97 @@ public class TermServerClient {
 			return restTemplate.getForObject(url, Concept.class);
 	}
 
+	/**
+	 * Loads the concepts in as few calls as possible.  Concepts which don't exist on the branch are not returned.
+	 */
+	public List<Concept> getConcepts(Collection<String> sctIds, String branchPath) throws TermServerScriptException {
+		List<String> ids = new ArrayList<>(sctIds);
+		List<Concept> concepts = new ArrayList<>();
+		for (int from = 0; from < ids.size(); from += MAX_BULK_LOAD_SIZE) {
+			Map<String, Object> bulkLoadRequest = new HashMap<>();
+			bulkLoadRequest.put("conceptIds", ids.subList(from, Math.min(ids.size(), from + MAX_BULK_LOAD_SIZE)));
+			try {
+				Concept[] loaded = restTemplate.postForObject(getConceptBrowserPath(branchPath) + "/bulk-load", 
+						new HttpEntity<>(bulkLoadRequest, headers), Concept[].class);
+				if (loaded != null) {
+					concepts.addAll(Arrays.asList(loaded));
+				}
+			} catch (RestClientException e) {
+				throw new TermServerScriptException(translateRestClientException(e));
+			}
+		}
+		logger.debug("Bulk loaded {} of {} concepts from {}", concepts.size(), ids.size(), branchPath);
+		return concepts;
+	}
+	
+	/**
+	 * Submits the concepts as a single bulk change and waits for it to complete
+	 * @return the updated concepts, as now held on the branch
+	 */
+	public List<Concept> updateConcepts(Collection<Concept> concepts, String branchPath) throws TermServerScriptException {
+		if (concepts.isEmpty()) {
+			return new ArrayList<>();
+		}
+		String bulkChangeUrl;
+		try {
+			ResponseEntity<String> response = restTemplate.exchange(
+					getConceptBrowserPath(branchPath) + "/bulk",
+					HttpMethod.POST,
+					new HttpEntity<>(concepts, headers),
+					String.class);
+			URI location = response.getHeaders().getLocation();
+			if (location == null) {
+				throw new TermServerScriptException("Bulk change of " + concepts.size() + " concepts on " + branchPath
+						+ " returned " + response.getStatusCode() + " without a location to follow");
+			}
+			bulkChangeUrl = location.toString();
+		} catch (RestClientException e) {
+			throw new TermServerScriptException(translateRestClientException(e));
+		}
+		logger.info("Bulk change of {} concepts submitted: {}", concepts.size(), bulkChangeUrl);
+		
+		List<String> updatedIds = new ArrayList<>();
+		try {
+			JSONObject bulkChange = waitForBulkChange(bulkChangeUrl);
+			if (bulkChange.has("conceptIds")) {
+				JSONArray conceptIds = bulkChange.getJSONArray("conceptIds");
+				for (int i = 0; i < conceptIds.length(); i++) {
+					updatedIds.add(conceptIds.get(i).toString());
+				}
+			}
+		} catch (JSONException e) {
+			throw new TermServerScriptException("Unable to parse status of bulk change " + bulkChangeUrl, e);
+		}
+		logger.info("Bulk change updated {} concepts", updatedIds.size());
+		return getConcepts(updatedIds, branchPath);
+	}
+	
+	private JSONObject waitForBulkChange(String bulkChangeUrl) throws TermServerScriptException, JSONException {
+		long timeout = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(BULK_CHANGE_TIMEOUT_MINUTES);
+		while (System.currentTimeMillis() < timeout) {
+			JSONObject bulkChange;
+			try {
+				bulkChange = new JSONObject(restTemplate.getForObject(bulkChangeUrl, String.class));
+			} catch (RestClientException e) {
+				throw new TermServerScriptException(translateRestClientException(e));
+			}
+			String status = bulkChange.getString("status");
+			if (status.equals("COMPLETED")) {
+				return bulkChange;
+			} else if (status.equals("FAILED")) {
+				String message = bulkChange.has("message") ? bulkChange.getString("message") : "no reason given";
+				throw new TermServerScriptException("Bulk change " + bulkChangeUrl + " failed: " + message);
+			}
+			try {
+				Thread.sleep(TimeUnit.SECONDS.toMillis(BULK_CHANGE_POLL_SECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TermServerScriptException("Interrupted while waiting for bulk change " + bulkChangeUrl, e);
+			}
+		}
+		throw new TermServerScriptException("Timed out after " + BULK_CHANGE_TIMEOUT_MINUTES + " minutes waiting for bulk change " + bulkChangeUrl);
+	}
+
 	public void deleteConcept(String sctId, String branchPath) throws TermServerScriptException {
 		try {
 			restTemplate.delete(getConceptsPath(sctId, branchPath));
@@ -258,7 +428,18 @@ public class TermServerClient {
 			JSONObject jsonObject = new JSONObject();
 			jsonObject.put("parent", parent);
 			jsonObject.put("name", branchName);
-			resty.json(url + "/branches", RestyHelper.content(jsonObject, SNOWOWL_CONTENT_TYPE));
+			//Made via Resty rather than the RestTemplate, so report the call ourselves
+			TermServerCallListener listener = callListener;
+			long start = System.currentTimeMillis();
+			boolean failed = true;
+			try {
+				resty.json(url + "/branches", RestyHelper.content(jsonObject, SNOWOWL_CONTENT_TYPE));
+				failed = false;
+			} finally {
+				if (listener != null) {
+					listener.called("POST " + getEndpoint(URI.create(url + "/branches").getPath()), System.currentTimeMillis() - start, failed);
+				}
+			}
 			final String branchPath = parent + "/" + branchName;
 			logger.info("Created branch {}", branchPath);
 			for (SnowOwlClientEventListener eventListener : eventListeners) {
@@ -386,14 +567,7 @@ public class TermServerClient {
 
 	public File export(String branchPath, String effectiveDate, ExportType exportType, ExtractType extractType, File saveLocation)
 			throws TermServerScriptException {
-		Map<String, Object> exportRequest = prepareExportRequest(branchPath, effectiveDate, exportType, extractType);
-		logger.info ("Initiating export with {}", exportRequest);
-		String exportLocationURL = initiateExport(exportRequest);
-		//INFRA-1489 Workaround
-		if (!exportLocationURL.startsWith("https://")) {
-			exportLocationURL = exportLocationURL.replace("http:/", "https://");
-			System.err.println("Malformed export location received, corrected to https://");
-		}
+		String exportLocationURL = locateExport(branchPath, effectiveDate, exportType, extractType);
 		if (saveLocation == null) {
 			try {
 				saveLocation = File.createTempFile("ts-extract", ".zip");
@@ -405,6 +579,48 @@ public class TermServerClient {
 		return recoveredArchive;
 	}
 	
+	/**
+	 * Passes the exported archive to the consumer as it downloads, rather than saving it first.
+	 * The stream is closed once the consumer returns.
+	 */
+	public void export(String branchPath, String effectiveDate, ExportType exportType, ExtractType extractType, ArchiveConsumer consumer)
+			throws TermServerScriptException {
+		String exportLocationURL = locateExport(branchPath, effectiveDate, exportType, extractType);
+		try {
+			logger.info("Streaming exported archive from {}", exportLocationURL);
+			RequestCallback requestCallback = request -> request.getHeaders()
+					.setAccept(Arrays.asList(MediaType.APPLICATION_OCTET_STREAM, MediaType.ALL));
+			restTemplate.execute(exportLocationURL + "/archive", HttpMethod.GET, requestCallback, clientHttpResponse -> {
+				try {
+					consumer.accept(clientHttpResponse.getBody());
+				} catch (TermServerScriptException e) {
+					throw new IOException(e);
+				}
+				return null;
+			});
+			logger.debug("Extract streaming complete");
+		} catch (RestClientException e) {
+			//Don't hide a failure of the consumer behind a download failure
+			if (e.getCause() instanceof IOException && e.getCause().getCause() instanceof TermServerScriptException) {
+				throw (TermServerScriptException) e.getCause().getCause();
+			}
+			throw new TermServerScriptException("Unable to stream exported archive from " + exportLocationURL, e);
+		}
+	}
+	
+	private String locateExport(String branchPath, String effectiveDate, ExportType exportType, ExtractType extractType)
+			throws TermServerScriptException {
+		Map<String, Object> exportRequest = prepareExportRequest(branchPath, effectiveDate, exportType, extractType);
+		logger.info ("Initiating export with {}", exportRequest);
+		String exportLocationURL = initiateExport(exportRequest);
+		//INFRA-1489 Workaround
+		if (!exportLocationURL.startsWith("https://")) {
+			exportLocationURL = exportLocationURL.replace("http:/", "https://");
+			System.err.println("Malformed export location received, corrected to https://");
+		}
+		return exportLocationURL;
+	}
+	
 	private Map<String, Object> prepareExportRequest(String branchPath, String effectiveDate, ExportType exportType, ExtractType extractType)
 			throws TermServerScriptException {
 		Map<String, Object> exportRequest = new HashMap<>();
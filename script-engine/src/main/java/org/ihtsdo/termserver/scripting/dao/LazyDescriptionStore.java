@@ -0,0 +1,357 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.apache.commons.io.FileUtils;
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.GraphLoader;
+import org.ihtsdo.termserver.scripting.TermServerScript;
+import org.ihtsdo.termserver.scripting.domain.Concept;
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+
+/**
+ * Holds the description and language refset rows of a snapshot on disk, recording only
+ * the position of each row against the concept it belongs to.  FSNs are set on concepts
+ * as the description files are indexed, but all other descriptions - and their langrefset
+ * entries - are only read and loaded into the GraphLoader the first time the concept's
+ * descriptions are accessed.
+ *
+ * Description files are indexed as they are encountered.  Language refset files can only
+ * be indexed once all description files are known (since the rows are grouped by the concept
+ * of the description they refer to) so are held back until complete() is called.
+ */
+public class LazyDescriptionStore implements RF2Constants {
+
+	//Row locations hold the file index in the high bits, and the byte offset in the low bits
+	private static final int OFFSET_BITS = 40;
+	private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+	private static final long FSN_TYPE = Long.parseLong(FULLY_SPECIFIED_NAME);
+	private static final int DESC_FIELDS = DES_IDX_TERM + 1;
+	private static final int LANG_FIELDS = LANG_IDX_REFCOMPID + 1;
+
+	private final GraphLoader gl;
+	private final List<File> files = new ArrayList<>();
+	private final List<Boolean> fileReleased = new ArrayList<>();
+	private final BitSet languageFiles = new BitSet();
+	private final Map<File, Boolean> pendingLanguageFiles = new LinkedHashMap<>();
+	private final List<File> stagingDirs = new ArrayList<>();
+	private final Map<Integer, RandomAccessFile> readers = new HashMap<>();
+	private byte[] readBuffer = new byte[4096];
+
+	//Description SCTID to the SCTID of its concept, sorted on description once indexing is complete
+	private long[] descriptionIds = new long[1024];
+	private long[] descriptionConcepts = new long[1024];
+	private int descriptionCount = 0;
+
+	//Location of each row, sorted on the concept it belongs to once indexing is complete
+	private long[] rowConcepts = new long[1024];
+	private long[] rowLocations = new long[1024];
+	private int rowCount = 0;
+
+	private volatile boolean indexComplete = false;
+
+	public LazyDescriptionStore(GraphLoader gl) {
+		this.gl = gl;
+	}
+
+	/**
+	 * Records the position of each row of a description (or text definition) file, setting the FSN
+	 * of each concept as we go.
+	 */
+	public void indexDescriptionFile(File file, Boolean isReleased) throws IOException, TermServerScriptException {
+		indexComplete = false;
+		int fileIdx = addFile(file, isReleased);
+		long start = System.currentTimeMillis();
+		int rowsBefore = rowCount;
+		scanRows(file, DESC_FIELDS, row -> {
+			long descriptionId = row.getLong(DES_IDX_ID);
+			long conceptId = row.getLong(DES_IDX_CONCEPTID);
+			addDescription(descriptionId, conceptId);
+			addRow(conceptId, fileIdx, row.getRowOffset());
+
+			if (row.isActive(DES_IDX_ACTIVE) && row.getLong(DES_IDX_TYPEID) == FSN_TYPE) {
+				String moduleId = row.getCachedString(DES_IDX_MODULID);
+				if (!gl.isExcluded(moduleId)) {
+					gl.getConcept(Long.toString(conceptId)).setFsn(row.getString(DES_IDX_TERM));
+				}
+			}
+		});
+		TermServerScript.info("Indexed " + (rowCount - rowsBefore) + " description rows of " + file.getName() + " in " + ((System.currentTimeMillis() - start) / 1000f) + "s");
+	}
+
+	/**
+	 * Language refset files will be indexed when complete() is called
+	 */
+	public void addLanguageFile(File file, Boolean isReleased) {
+		indexComplete = false;
+		pendingLanguageFiles.put(file, isReleased);
+	}
+
+	/**
+	 * The files of any archive staged to a temporary location will be removed on close()
+	 */
+	public void addStagingDir(File stagingDir) {
+		stagingDirs.add(stagingDir);
+	}
+
+	/**
+	 * Indexes any language refset files received, and hands this store to every concept
+	 * which has rows held within it.
+	 */
+	public void complete() throws IOException, TermServerScriptException {
+		sortPairs(descriptionIds, descriptionConcepts, 0, descriptionCount - 1);
+		indexComplete = true;
+
+		for (Map.Entry<File, Boolean> pending : pendingLanguageFiles.entrySet()) {
+			File file = pending.getKey();
+			Boolean isReleased = pending.getValue();
+			int fileIdx = addFile(file, isReleased);
+			languageFiles.set(fileIdx);
+			int rowsBefore = rowCount;
+			scanRows(file, LANG_FIELDS, row -> {
+				long descriptionId = row.getLong(LANG_IDX_REFCOMPID);
+				long conceptId = getConceptId(descriptionId);
+				if (conceptId == NOT_SET) {
+					//Not one of ours, so it will have to be loaded now
+					gl.loadLanguageRow(row.getRow(), isReleased);
+				} else {
+					addRow(conceptId, fileIdx, row.getRowOffset());
+				}
+			});
+			TermServerScript.info("Indexed " + (rowCount - rowsBefore) + " langrefset rows of " + file.getName());
+		}
+		pendingLanguageFiles.clear();
+		sortPairs(rowConcepts, rowLocations, 0, rowCount - 1);
+
+		int conceptCount = 0;
+		for (int idx = 0; idx < rowCount; idx++) {
+			if (idx == 0 || rowConcepts[idx] != rowConcepts[idx - 1]) {
+				gl.getConcept(Long.toString(rowConcepts[idx])).setLazyDescriptions(this);
+				conceptCount++;
+			}
+		}
+		TermServerScript.info("Descriptions of " + conceptCount + " concepts held on disk until required");
+	}
+
+	/**
+	 * Loads all the description and langrefset rows held for this concept into the GraphLoader
+	 */
+	public void materialise(Concept c) throws TermServerScriptException {
+		long conceptId = Long.parseLong(c.getConceptId());
+		for (int idx = lowerBound(rowConcepts, rowCount, conceptId); idx < rowCount && rowConcepts[idx] == conceptId; idx++) {
+			int fileIdx = (int) (rowLocations[idx] >>> OFFSET_BITS);
+			String[] lineItems = readRow(fileIdx, rowLocations[idx] & OFFSET_MASK);
+			if (languageFiles.get(fileIdx)) {
+				gl.loadLanguageRow(lineItems, fileReleased.get(fileIdx));
+			} else {
+				gl.loadDescriptionRow(lineItems, false, fileReleased.get(fileIdx));
+			}
+		}
+	}
+
+	/**
+	 * Ensures that the concept owning this description has had its descriptions loaded
+	 */
+	public void materialiseOwner(String descriptionId) throws TermServerScriptException {
+		//Until the index is complete, descriptions are not being held back
+		if (!indexComplete) {
+			return;
+		}
+		long conceptId;
+		try {
+			conceptId = getConceptId(Long.parseLong(descriptionId));
+		} catch (NumberFormatException e) {
+			return;
+		}
+		if (conceptId != NOT_SET) {
+			gl.getConcept(Long.toString(conceptId)).materialiseDescriptions();
+		}
+	}
+
+	private long getConceptId(long descriptionId) {
+		int idx = Arrays.binarySearch(descriptionIds, 0, descriptionCount, descriptionId);
+		return idx < 0 ? NOT_SET : descriptionConcepts[idx];
+	}
+
+	public void close() {
+		synchronized (readers) {
+			for (RandomAccessFile reader : readers.values()) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					TermServerScript.warn("Failed to close " + reader + " due to " + e.getMessage());
+				}
+			}
+			readers.clear();
+		}
+		for (File stagingDir : stagingDirs) {
+			try {
+				FileUtils.deleteDirectory(stagingDir);
+			} catch (IOException e) {
+				TermServerScript.warn("Failed to delete " + stagingDir + " due to " + e.getMessage());
+			}
+		}
+		stagingDirs.clear();
+	}
+
+	private int addFile(File file, Boolean isReleased) {
+		files.add(file);
+		fileReleased.add(isReleased);
+		return files.size() - 1;
+	}
+
+	private void addDescription(long descriptionId, long conceptId) {
+		if (descriptionCount == descriptionIds.length) {
+			descriptionIds = Arrays.copyOf(descriptionIds, descriptionCount * 2);
+			descriptionConcepts = Arrays.copyOf(descriptionConcepts, descriptionCount * 2);
+		}
+		descriptionIds[descriptionCount] = descriptionId;
+		descriptionConcepts[descriptionCount] = conceptId;
+		descriptionCount++;
+	}
+
+	private void addRow(long conceptId, int fileIdx, long offset) {
+		if (rowCount == rowConcepts.length) {
+			rowConcepts = Arrays.copyOf(rowConcepts, rowCount * 2);
+			rowLocations = Arrays.copyOf(rowLocations, rowCount * 2);
+		}
+		rowConcepts[rowCount] = conceptId;
+		rowLocations[rowCount] = ((long) fileIdx << OFFSET_BITS) | offset;
+		rowCount++;
+	}
+
+	private String[] readRow(int fileIdx, long offset) throws TermServerScriptException {
+		synchronized (readers) {
+			try {
+				RandomAccessFile reader = readers.get(fileIdx);
+				if (reader == null) {
+					reader = new RandomAccessFile(files.get(fileIdx), "r");
+					readers.put(fileIdx, reader);
+				}
+				reader.seek(offset);
+				int length = 0;
+				while (true) {
+					if (length == readBuffer.length) {
+						readBuffer = Arrays.copyOf(readBuffer, readBuffer.length * 2);
+					}
+					int read = reader.read(readBuffer, length, readBuffer.length - length);
+					if (read == -1) {
+						break;
+					}
+					int newline = indexOf(readBuffer, length, length + read, (byte) '\n');
+					if (newline != -1) {
+						length = newline;
+						break;
+					}
+					length += read;
+				}
+				if (length > 0 && readBuffer[length - 1] == '\r') {
+					length--;
+				}
+				return new String(readBuffer, 0, length, StandardCharsets.UTF_8).split(FIELD_DELIMITER);
+			} catch (IOException e) {
+				throw new TermServerScriptException("Failed to read row at " + offset + " of " + files.get(fileIdx), e);
+			}
+		}
+	}
+
+	private static int indexOf(byte[] bytes, int from, int to, byte target) {
+		for (int i = from; i < to; i++) {
+			if (bytes[i] == target) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private interface RowHandler {
+		void handle(RF2Tokenizer row) throws TermServerScriptException;
+	}
+
+	/**
+	 * Works through the rows of the file without creating Strings for fields we don't need.
+	 * The header row is skipped.
+	 */
+	private void scanRows(File file, int fieldsRequired, RowHandler handler) throws IOException, TermServerScriptException {
+		try (InputStream is = new FileInputStream(file)) {
+			RF2Tokenizer row = new RF2Tokenizer(is);
+			while (row.next()) {
+				if (row.getFieldCount() < fieldsRequired) {
+					throw new TermServerScriptException("Insufficient fields in row at offset " + row.getRowOffset() + ": " + String.join(FIELD_DELIMITER, row.getRow()));
+				}
+				try {
+					handler.handle(row);
+				} catch (NumberFormatException e) {
+					throw new TermServerScriptException("Expected SCTID in row at offset " + row.getRowOffset() + " of " + file.getName(), e);
+				}
+			}
+		}
+	}
+
+	private static int lowerBound(long[] keys, int size, long key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Sorts the pairs on key then value, keeping the two arrays aligned
+	 */
+	private static void sortPairs(long[] keys, long[] values, int low, int high) {
+		while (high - low > 16) {
+			int mid = (low + high) >>> 1;
+			long pivotKey = keys[mid];
+			long pivotValue = values[mid];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (compare(keys[i], values[i], pivotKey, pivotValue) < 0) {
+					i++;
+				}
+				while (compare(keys[j], values[j], pivotKey, pivotValue) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(keys, values, i++, j--);
+				}
+			}
+			//Recurse into the smaller side to keep the stack shallow
+			if (j - low < high - i) {
+				sortPairs(keys, values, low, j);
+				low = i;
+			} else {
+				sortPairs(keys, values, i, high);
+				high = j;
+			}
+		}
+		for (int i = low + 1; i <= high; i++) {
+			for (int j = i; j > low && compare(keys[j - 1], values[j - 1], keys[j], values[j]) > 0; j--) {
+				swap(keys, values, j, j - 1);
+			}
+		}
+	}
+
+	private static int compare(long key1, long value1, long key2, long value2) {
+		int result = Long.compare(key1, key2);
+		return result != 0 ? result : Long.compare(value1, value2);
+	}
+
+	private static void swap(long[] keys, long[] values, int i, int j) {
+		long key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		long value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+}
@@ -0,0 +1,64 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.io.IOException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Supplies the rows of an RF2 file, so that GraphLoader does not need to know whether they come 
+ * from text or a binary image.  Rows can be taken whole, already split into their fields, via nextRow.
+ * Alternatively step through them with next and read only the fields needed, as primitives where 
+ * possible, which saves the source creating a String for every field of every row.  
+ * The two approaches should not be mixed when reading from the same source.
+ * Any header row is consumed by the source.
+ */
+public interface RF2RowSource {
+	
+	/**
+	 * @return the fields of the next row, or null when there are no more rows
+	 */
+	String[] nextRow() throws IOException;
+	
+	/**
+	 * Advances to the next row, whose fields are then read via the methods below
+	 * @return false when there are no more rows
+	 */
+	boolean next() throws IOException;
+	
+	/**
+	 * @return the fields of the current row.  As with String.split, trailing empty fields are dropped.
+	 */
+	String[] getRow();
+	
+	/**
+	 * @return the number of fields in the current row.  Sources that split rows may have 
+	 * dropped trailing empty fields, as getRow does.
+	 */
+	int getFieldCount();
+	
+	boolean isEmpty(int field);
+	
+	/**
+	 * Parses an identifier (or any non-negative integer)
+	 */
+	long getLong(int field);
+	
+	boolean isActive(int field);
+	
+	/**
+	 * @return the field as a String, eg for a term
+	 */
+	String getString(int field);
+	
+	/**
+	 * @return the field as a String, reusing an earlier instance if this column has held the same value 
+	 * before.  Intended for columns with few distinct values, such as moduleId and effectiveTime
+	 */
+	String getCachedString(int field);
+	
+	/**
+	 * Values returned by getCachedString are also passed through this interner, so that the same
+	 * instance is shared with values read from other files, rather than just within this one.
+	 */
+	void setInterner(UnaryOperator<String> interner);
+	
+}
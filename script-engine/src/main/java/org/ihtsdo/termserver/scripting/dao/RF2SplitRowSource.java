@@ -0,0 +1,75 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.io.IOException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Provides field by field access to the current row for sources that split each row into Strings 
+ * in any case, so that the same loading code can be used whatever the source.
+ */
+public abstract class RF2SplitRowSource implements RF2RowSource {
+	
+	private String[] row;
+	private UnaryOperator<String> interner;
+	
+	/**
+	 * @return a source positioned on this one row, for code working with rows that have already been split
+	 */
+	public static RF2RowSource of(String[] row) {
+		RF2SplitRowSource source = new RF2SplitRowSource() {
+			@Override
+			public String[] nextRow() {
+				return null;
+			}
+		};
+		source.row = row;
+		return source;
+	}
+
+	@Override
+	public boolean next() throws IOException {
+		row = nextRow();
+		return row != null;
+	}
+
+	@Override
+	public String[] getRow() {
+		return row;
+	}
+
+	@Override
+	public int getFieldCount() {
+		return row.length;
+	}
+
+	@Override
+	public boolean isEmpty(int field) {
+		return getString(field).isEmpty();
+	}
+
+	@Override
+	public long getLong(int field) {
+		return Long.parseLong(getString(field));
+	}
+
+	@Override
+	public boolean isActive(int field) {
+		return getString(field).equals("1");
+	}
+
+	@Override
+	public String getString(int field) {
+		//Trailing empty fields will have been dropped
+		return field < row.length ? row[field] : "";
+	}
+
+	@Override
+	public String getCachedString(int field) {
+		return interner == null ? getString(field) : interner.apply(getString(field));
+	}
+
+	@Override
+	public void setInterner(UnaryOperator<String> interner) {
+		this.interner = interner;
+	}
+}
@@ -0,0 +1,28 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+
+public class RF2TextRowSource extends RF2SplitRowSource implements RF2Constants {
+	
+	private BufferedReader br;
+	private boolean isHeaderLine = true;
+	
+	public RF2TextRowSource(InputStream is) {
+		//We don't close this reader as the stream may be a zip with further entries still to be read
+		br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public String[] nextRow() throws IOException {
+		String line = br.readLine();
+		if (isHeaderLine && line != null) {
+			isHeaderLine = false;
+			line = br.readLine();
+		}
+		return line == null ? null : line.split(FIELD_DELIMITER);
+	}
+
+}
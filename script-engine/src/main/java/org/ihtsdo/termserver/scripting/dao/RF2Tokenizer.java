@@ -0,0 +1,345 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+
+/**
+ * Reads tab delimited RF2 rows straight from the UTF-8 bytes of a stream, recording where each
+ * field starts and ends within a shared buffer rather than splitting the line into Strings.
+ * Callers can then parse SCTIDs and effective times directly to primitives, and only create
+ * Strings for the fields they actually need.
+ *
+ * When used as an RF2RowSource, each column keeps a small cache of values it has already seen,
+ * so that low cardinality columns (moduleId, effectiveTime, typeId, refsetId etc) come back as
+ * the same String instance each time rather than a fresh copy per row.  Columns with too many
+ * distinct values to be worth remembering (identifiers, terms) stop being cached.  Given an
+ * interner, each value is passed through it as it is first cached, so that files loaded one after
+ * another share the same instances.
+ *
+ * As with RF2TextRowSource, the header row is skipped and the stream is not closed,
+ * since it may be a zip with further entries still to be read.
+ */
+public class RF2Tokenizer implements RF2RowSource, RF2Constants {
+
+	private static final int INITIAL_BUFFER = 1 << 16;
+	private static final int MAX_CACHED_VALUES = 1024;
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	private static final long TABS = ONES * '\t';
+	private static final long LINE_FEEDS = ONES * '\n';
+
+	private final InputStream is;
+	private byte[] buffer = new byte[INITIAL_BUFFER];
+	private int limit = 0;
+	private int position = 0;
+	private long bufferOffset = 0;
+	private boolean endOfStream = false;
+	private boolean isHeaderLine = true;
+
+	private int lineStart;
+	private int[] fieldStarts = new int[16];
+	private int[] fieldEnds = new int[16];
+	private int fieldCount = 0;
+	private ColumnCache[] columnCaches = new ColumnCache[16];
+	private UnaryOperator<String> interner;
+
+	public RF2Tokenizer(InputStream is) {
+		this.is = is;
+	}
+
+	/**
+	 * Advances to the next data row, skipping the header and any blank lines
+	 * @return false when there are no more rows
+	 */
+	@Override
+	public boolean next() throws IOException {
+		while (readLine()) {
+			if (isHeaderLine) {
+				isHeaderLine = false;
+				continue;
+			}
+			if (fieldCount == 1 && fieldStarts[0] == fieldEnds[0]) {
+				continue;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public String[] nextRow() throws IOException {
+		return next() ? getRow() : null;
+	}
+
+	/**
+	 * @return the fields of the current row.  As with String.split, trailing empty fields are dropped.
+	 */
+	@Override
+	public String[] getRow() {
+		int count = fieldCount;
+		while (count > 1 && fieldStarts[count - 1] == fieldEnds[count - 1]) {
+			count--;
+		}
+		String[] row = new String[count];
+		for (int i = 0; i < count; i++) {
+			row[i] = getCachedString(i);
+		}
+		return row;
+	}
+
+	@Override
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * @return the position in the stream of the start of the current row
+	 */
+	public long getRowOffset() {
+		return bufferOffset + lineStart;
+	}
+
+	@Override
+	public boolean isEmpty(int field) {
+		checkField(field);
+		return fieldStarts[field] == fieldEnds[field];
+	}
+
+	/**
+	 * Parses an identifier (or any non-negative integer) without creating a String
+	 */
+	@Override
+	public long getLong(int field) {
+		checkField(field);
+		int start = fieldStarts[field];
+		int end = fieldEnds[field];
+		if (start == end || end - start > 18) {
+			throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+		}
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = buffer[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Parses an effective time (or active flag) as an int
+	 * @return the value, or NOT_SET if the field is empty, as for unpublished components
+	 */
+	public int getInt(int field) {
+		checkField(field);
+		if (fieldStarts[field] == fieldEnds[field]) {
+			return NOT_SET;
+		}
+		long value = getLong(field);
+		if (value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("For input string: \"" + getString(field) + "\" exceeds int range");
+		}
+		return (int) value;
+	}
+
+	@Override
+	public boolean isActive(int field) {
+		checkField(field);
+		return fieldEnds[field] - fieldStarts[field] == 1 && buffer[fieldStarts[field]] == '1';
+	}
+
+	/**
+	 * @return a new String for this field, eg for a term
+	 */
+	@Override
+	public String getString(int field) {
+		checkField(field);
+		return decode(buffer, fieldStarts[field], fieldEnds[field]);
+	}
+
+	/**
+	 * @return the String for this field, reusing an earlier instance if this column has held the same value before
+	 */
+	@Override
+	public String getCachedString(int field) {
+		checkField(field);
+		if (field >= columnCaches.length) {
+			columnCaches = Arrays.copyOf(columnCaches, field + 1);
+		}
+		ColumnCache cache = columnCaches[field];
+		if (cache == null) {
+			cache = new ColumnCache(interner);
+			columnCaches[field] = cache;
+		}
+		return cache.get(buffer, fieldStarts[field], fieldEnds[field]);
+	}
+
+	@Override
+	public void setInterner(UnaryOperator<String> interner) {
+		this.interner = interner;
+		//Values already cached would not have been interned
+		Arrays.fill(columnCaches, null);
+	}
+
+	private void checkField(int field) {
+		if (field < 0 || field >= fieldCount) {
+			throw new IndexOutOfBoundsException("Field " + field + " requested from row with " + fieldCount + " fields");
+		}
+	}
+
+	/**
+	 * Finds the fields of the next line in a single pass, examining the buffer eight bytes
+	 * at a time for tabs and line feeds
+	 */
+	private boolean readLine() throws IOException {
+		while (true) {
+			byte[] buf = buffer;
+			int wordLimit = limit - 7;
+			int fieldStart = position;
+			int i = position;
+			fieldCount = 0;
+			while (i < limit) {
+				int base = i;
+				long matches;
+				if (i < wordLimit) {
+					long word = (long) LONGS.get(buf, i);
+					matches = zeroBytes(word ^ TABS) | zeroBytes(word ^ LINE_FEEDS);
+					i += 8;
+				} else {
+					byte b = buf[i++];
+					matches = (b == '\t' || b == '\n') ? 0x80L : 0L;
+				}
+				while (matches != 0) {
+					int idx = base + (Long.numberOfTrailingZeros(matches) >>> 3);
+					matches &= matches - 1;
+					//A byte following a match can be falsely flagged, so check what we actually have
+					byte b = buf[idx];
+					if (b == '\t') {
+						addField(fieldStart, idx);
+						fieldStart = idx + 1;
+					} else if (b == '\n') {
+						endLine(fieldStart, idx);
+						position = idx + 1;
+						return true;
+					}
+				}
+			}
+			if (endOfStream) {
+				if (position < limit) {
+					//Final line has no line terminator
+					endLine(fieldStart, limit);
+					position = limit;
+					return true;
+				}
+				fieldCount = 0;
+				return false;
+			}
+			//Line is incomplete, so read more and go through it again
+			fill();
+		}
+	}
+
+	private void endLine(int fieldStart, int end) {
+		if (end > fieldStart && buffer[end - 1] == '\r') {
+			end--;
+		}
+		addField(fieldStart, end);
+		lineStart = position;
+	}
+
+	/**
+	 * @return a word with the high bit set in (at least) the lowest byte which is zero
+	 */
+	private static long zeroBytes(long word) {
+		return (word - ONES) & ~word & HIGH_BITS;
+	}
+
+	private void fill() throws IOException {
+		//Move the partial line to the start of the buffer, growing it if the line fills it
+		int remaining = limit - position;
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, remaining);
+			bufferOffset += position;
+			position = 0;
+			limit = remaining;
+		} else if (limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		int read = is.read(buffer, limit, buffer.length - limit);
+		if (read == -1) {
+			endOfStream = true;
+		} else {
+			limit += read;
+		}
+	}
+
+	private void addField(int start, int end) {
+		if (fieldCount == fieldStarts.length) {
+			fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+			fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+		}
+		fieldStarts[fieldCount] = start;
+		fieldEnds[fieldCount] = end;
+		fieldCount++;
+	}
+
+	private static String decode(byte[] bytes, int start, int end) {
+		return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Open addressing table of the values seen in one column, looked up directly from the buffer
+	 */
+	private static class ColumnCache {
+		private final byte[][] keys = new byte[MAX_CACHED_VALUES * 2][];
+		private final String[] values = new String[MAX_CACHED_VALUES * 2];
+		private int size = 0;
+		private boolean saturated = false;
+		private final UnaryOperator<String> interner;
+
+		ColumnCache(UnaryOperator<String> interner) {
+			this.interner = interner;
+		}
+
+		String get(byte[] bytes, int start, int end) {
+			if (saturated) {
+				return decode(bytes, start, end);
+			}
+			int hash = 1;
+			for (int i = start; i < end; i++) {
+				hash = 31 * hash + bytes[i];
+			}
+			int mask = keys.length - 1;
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (keys[slot] != null) {
+				byte[] key = keys[slot];
+				if (Arrays.equals(key, 0, key.length, bytes, start, end)) {
+					return values[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			String value = decode(bytes, start, end);
+			if (size == MAX_CACHED_VALUES) {
+				saturated = true;
+			} else {
+				//Columns that saturate stop adding to the intern table once they do
+				if (interner != null) {
+					value = interner.apply(value);
+				}
+				keys[slot] = Arrays.copyOfRange(bytes, start, end);
+				values[slot] = value;
+				size++;
+			}
+			return value;
+		}
+	}
+}
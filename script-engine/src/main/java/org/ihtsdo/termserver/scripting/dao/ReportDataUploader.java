@@ -9,9 +9,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.*;
 
 @Service
 public class ReportDataUploader {
@@ -56,6 +54,44 @@ public class ReportDataUploader {
         }
     }
 
+    /**
+     * Opens a stream to the given location that uploads as it is written to, completing
+     * the upload when closed.  When not using the cloud, the data is staged in a local
+     * temporary file and written out on close, as per upload().
+     */
+    public OutputStream openUploadStream(File outputFile) throws TermServerScriptException {
+        //In case we're running on a PC we need to convert backslashes to forward
+        String filePath = outputFile.getPath().replaceAll("\\\\", "/");
+        if (s3Manager.isUseCloud()) {
+            ResourceConfiguration.Cloud cloud = reportDataUploaderConfig.getCloud();
+            return new S3MultipartOutputStream(s3Manager.getS3Client(), cloud.getBucketName(), getKey(cloud.getPath(), filePath));
+        }
+
+        try {
+            File tempFile = File.createTempFile("report-upload-", ".tmp");
+            return new BufferedOutputStream(new FileOutputStream(tempFile)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                        upload(outputFile, tempFile);
+                    } catch (TermServerScriptException e) {
+                        throw new IOException(e);
+                    } finally {
+                        tempFile.delete();
+                    }
+                }
+            };
+        } catch (IOException e) {
+            throw new TermServerScriptException(e);
+        }
+    }
+
+    private String getKey(String path, String filePath) {
+        String key = (path == null ? "" : path) + "/" + filePath;
+        return key.replaceAll("/{2,}", "/").replaceFirst("^/", "");
+    }
+
     public void setReportDataUploaderConfig(ReportDataUploaderConfig reportDataUploaderConfig, S3Manager s3Manager) {
         this.reportDataUploaderConfig = reportDataUploaderConfig;
         this.s3Manager = s3Manager;
@@ -23,6 +23,11 @@ public class ReportManager implements RF2Constants {
 	boolean writeToS3 = false;
 	ReportS3FileManager reportS3FileManager;
 	
+	//Output is handed off to a writer thread per destination so that reporting isn't held up by I/O
+	private ReportSink fileSink;
+	private ReportSink sheetSink;
+	private ReportSink s3Sink;
+	
 	protected int numberOfDistinctReports = 1;
 	protected TermServerScript ts;
 	protected String env;
@@ -73,78 +78,167 @@ public class ReportManager implements RF2Constants {
 		tabNames = Arrays.asList(new String[] {"Sheet1"});
 	}
 	
+	/**
+	 * Queues the line for each active destination.  Writing happens asynchronously, so
+	 * a return of true indicates that the line was accepted, not that it has been written.
+	 */
 	public boolean writeToReportFile(int reportIdx, String line) throws TermServerScriptException {
 		boolean writeSuccess = false;
 		if (writeToFile) {
-			writeSuccess = reportFileManager.writeToReportFile(reportIdx, line, false);
+			getFileSink().submit(() -> reportFileManager.writeToReportFile(reportIdx, line, false));
+			writeSuccess = true;
 		}
 		
 		if (writeToSheet) {
-			writeSuccess = reportSheetManager.writeToReportFile(reportIdx, line, false);
+			getSheetSink().submit(() -> reportSheetManager.writeToReportFile(reportIdx, line, false));
+			writeSuccess = true;
 		}
 
 		if (writeToS3) {
-			writeSuccess = reportS3FileManager.writeToReportFile(reportIdx, line, false);
+			getS3Sink().submit(() -> reportS3FileManager.writeToReportFile(reportIdx, line, false));
+			writeSuccess = true;
 		}
 		return writeSuccess;
 	}
 	
+	private synchronized ReportSink getFileSink() {
+		if (fileSink == null) {
+			fileSink = new ReportSink("file");
+		}
+		return fileSink;
+	}
+	
+	private synchronized ReportSink getSheetSink() {
+		if (sheetSink == null) {
+			sheetSink = new ReportSink("sheet");
+		}
+		return sheetSink;
+	}
+	
+	private synchronized ReportSink getS3Sink() {
+		if (s3Sink == null) {
+			s3Sink = new ReportSink("s3");
+		}
+		return s3Sink;
+	}
+	
 	PrintWriter getPrintWriter(String fileName) throws TermServerScriptException {
 		return reportFileManager.getPrintWriter(fileName);
 	}
 
+	/**
+	 * Waits for all queued output to be written before flushing.  When closing, the writer
+	 * threads are also stopped - they'll be restarted should anything further be written.
+	 */
 	public void flushFiles(boolean andClose, boolean withWait) throws TermServerScriptException {
 		//Watch that we might have written to RF2 files, even if writeToFile is set to false
 		if (writeToFile) {
-			reportFileManager.flushFiles(andClose);
+			drain(getFileSink(), andClose, () -> reportFileManager.flushFiles(andClose));
 		}
 		
 		if (writeToSheet) {
-			reportSheetManager.flushWithWait();
-			if (andClose) {
-				// format the columns in the spreadsheet
-				reportSheetManager.formatSpreadSheetColumns();
-				System.out.println("See Google Sheet: " + reportSheetManager.getUrl());
-			}
+			drain(getSheetSink(), andClose, () -> {
+				reportSheetManager.flushWithWait();
+				if (andClose) {
+					// format the columns in the spreadsheet
+					reportSheetManager.formatSpreadSheetColumns();
+					System.out.println("See Google Sheet: " + reportSheetManager.getUrl());
+				}
+			});
 		}
 
 		if (writeToS3) {
-			reportS3FileManager.flushFiles(andClose);
-			if (andClose) {
-				try {
+			drain(getS3Sink(), andClose, () -> {
+				reportS3FileManager.flushFiles(andClose);
+				if (andClose) {
 					reportS3FileManager.postProcess();
-				} catch (Exception e) {
-					throw new TermServerScriptException(e);
 				}
+			});
+		}
+	}
+	
+	/**
+	 * For a job that has failed, stops every writer thread.  Whatever has been written so far is
+	 * flushed to the local files and sheet, while the S3 uploads are abandoned rather than completed.
+	 */
+	public void abort() {
+		ReportSink file;
+		ReportSink sheet;
+		ReportSink s3;
+		synchronized (this) {
+			file = fileSink;
+			sheet = sheetSink;
+			s3 = s3Sink;
+			fileSink = null;
+			sheetSink = null;
+			s3Sink = null;
+		}
+		closeQuietly(file, () -> reportFileManager.flushFiles(true));
+		closeQuietly(sheet, () -> reportSheetManager.flushWithWait());
+		closeQuietly(s3, () -> {});
+		if (reportS3FileManager != null) {
+			reportS3FileManager.abortUploads();
+		}
+	}
+	
+	private void closeQuietly(ReportSink sink, ReportSink.Task finalTask) {
+		if (sink != null) {
+			try {
+				sink.close(finalTask);
+			} catch (TermServerScriptException e) {
+				//The sink has most likely already failed, which may be why we're aborting
+				TermServerScript.warn("Failed to close report output: " + e.getMessage());
 			}
 		}
 	}
 	
+	private void drain(ReportSink sink, boolean andClose, ReportSink.Task finalTask) throws TermServerScriptException {
+		if (andClose) {
+			detach(sink);
+			sink.close(finalTask);
+		} else {
+			sink.submitAndWait(finalTask);
+		}
+	}
+	
+	private synchronized void detach(ReportSink sink) {
+		if (sink == fileSink) {
+			fileSink = null;
+		} else if (sink == sheetSink) {
+			sheetSink = null;
+		} else if (sink == s3Sink) {
+			s3Sink = null;
+		}
+	}
+	
+	/**
+	 * Requests a flush without waiting for it, or for anything queued before it
+	 */
 	public void flushFilesSoft() throws TermServerScriptException {
 		if (writeToFile) {
-			reportFileManager.flushFiles(false);
+			getFileSink().submit(() -> reportFileManager.flushFiles(false));
 		}
 		
 		if (writeToSheet) {
-			reportSheetManager.flushSoft();
+			getSheetSink().submit(() -> reportSheetManager.flushSoft());
 		}
 
 		if (writeToS3) {
-			reportS3FileManager.flushFiles(false);
+			getS3Sink().submit(() -> reportS3FileManager.flushFiles(false));
 		}
 	}
 	
 	public void initialiseReportFiles(String[] columnHeaders) throws TermServerScriptException {
 			if (writeToFile) {
-				reportFileManager.initialiseReportFiles(columnHeaders);
+				getFileSink().submitAndWait(() -> reportFileManager.initialiseReportFiles(columnHeaders));
 			}
 			
 			if (writeToSheet) {
-				reportSheetManager.initialiseReportFiles(columnHeaders);
+				getSheetSink().submitAndWait(() -> reportSheetManager.initialiseReportFiles(columnHeaders));
 			}
 
 			if (writeToS3) {
-				reportS3FileManager.initialiseReportFiles(columnHeaders);
+				getS3Sink().submitAndWait(() -> reportS3FileManager.initialiseReportFiles(columnHeaders));
 			}
 	}
 	
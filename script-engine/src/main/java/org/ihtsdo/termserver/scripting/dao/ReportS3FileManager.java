@@ -4,12 +4,16 @@ import org.ihtsdo.otf.exception.TermServerScriptException;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Project;
 import org.ihtsdo.termserver.scripting.TermServerScript;
 import org.ihtsdo.termserver.scripting.transformer.DataTransformer;
+import org.ihtsdo.termserver.scripting.transformer.RowTransformer;
 import org.ihtsdo.termserver.scripting.util.ExceptionUtils;
 
 import java.io.File;
-import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
 
 public class ReportS3FileManager extends ReportFileManager {
 
@@ -25,13 +29,10 @@ public class ReportS3FileManager extends ReportFileManager {
     private ReportDataUploader reportDataUploader;
     private DataTransformer dataTransformer;
 
-    // Do not delete as the worker is reset every time is starts.
-    // So might as well keep the files
-    private boolean deleteTempFiles = true;
-    private boolean deleteLocalReports = false;
-
-    private Map<File, File> localReportsToTransformedReports;
-    private Map<File, File> transformedReportsToS3Reports;
+    private List<File> s3ReportFiles;
+    private RowTransformer[] rowTransformers;
+    private List<OutputStream> uploadStreams = new ArrayList<>();
+    private volatile IOException flushFailure;
 
     public ReportS3FileManager(ReportManager owner,
                                ReportDataUploader reportDataUploader,
@@ -41,98 +42,103 @@ public class ReportS3FileManager extends ReportFileManager {
         this.dataTransformer = dataTransformer;
     }
 
-    protected void postProcess() throws TermServerScriptException {
-        localReportsToTransformedReports = new LinkedHashMap<>();
-        transformedReportsToS3Reports = new LinkedHashMap<>();
+    /**
+     * Rather than writing local files to be transformed and uploaded once the report is
+     * complete, each report tab is transformed as it is written and streamed to S3.
+     */
+    @Override
+    public void initialiseReportFiles(String[] columnHeaders) throws TermServerScriptException {
+        s3ReportFiles = mapReportsFilesToS3();
+        rowTransformers = new RowTransformer[s3ReportFiles.size()];
+        for (int reportIdx = 0; reportIdx < rowTransformers.length; reportIdx++) {
+            File s3ReportFile = s3ReportFiles.get(reportIdx);
+            String targetS3Path = reportDataUploader.getUploadLocation(S3_BUCKET_PROTOCOL, S3_BUCKET_DOMAIN) + File.separator + s3ReportFile.getPath();
+            TermServerScript.info("Outputting Report to " + cleanFileName(targetS3Path));
+            try {
+                OutputStream uploadStream = reportDataUploader.openUploadStream(s3ReportFile);
+                uploadStreams.add(uploadStream);
+                rowTransformers[reportIdx] = dataTransformer.openTransform(uploadStream);
+            } catch (IOException e) {
+                throw new TermServerScriptException("Failed to start upload of " + s3ReportFile.getPath(), e);
+            }
+            writeToReportFile(reportIdx, columnHeaders[reportIdx], false);
+        }
+    }
 
-        // the report has finished so do post processing
+    @Override
+    public boolean writeToReportFile(int reportIdx, String line, boolean delayWrite) throws TermServerScriptException {
         try {
-            // create the file mapping for the transformation/s
-            mapReportsFilesToS3();
-
-            // transform the report/s
-            TermServerScript.info("Transforming reports...");
-            transformReports();
-
-            // upload the file/s to s3
-            TermServerScript.info("Uploading reports to S3...");
-            uploadReports();
-
-            // delete the local reports
-            deleteReports();
-        } catch (Exception e) {
-            String msg = "Failed to complete transform and upload the report" + ExceptionUtils.getExceptionCause("", e);
-            throw new TermServerScriptException(msg);
+            rowTransformers[reportIdx].addRow(line);
+        } catch (IOException e) {
+            throw new TermServerScriptException("Unable to output report line: " + line, e);
         }
+        return true;
     }
 
-    private void mapReportsFilesToS3() {
-        String branchPath = getBranchPath();
-        String reportName = getReportName();
-
-        String baseSheetName = S3_DIRECTORY
-                .replaceAll(REPORT_NAME_KEY, reportName)
-                .replaceAll(BRANCH_PATH_KEY, branchPath);
-
-        for (int index = 0; index < reportFiles.length; index++) {
-            File localReportFile = reportFiles[index];
-            File transformedFile = new File (localReportFile.getPath() + dataTransformer.getFileExtension());
-            File s3File = new File(baseSheetName + S3_SHEET + (index+1) + dataTransformer.getFileExtension());
-
-            localReportsToTransformedReports.put(localReportFile, transformedFile);
-            transformedReportsToS3Reports.put(transformedFile, s3File);
+    @Override
+    public void flushFiles(boolean andClose) {
+        // Closing - which completes the uploads - is left to postProcess
+        if (rowTransformers != null) {
+            for (RowTransformer rowTransformer : rowTransformers) {
+                try {
+                    rowTransformer.flush();
+                } catch (IOException e) {
+                    // Keep hold of the failure so the report isn't completed with data missing
+                    TermServerScript.error("Failed to flush report output to S3", e);
+                    flushFailure = e;
+                }
+            }
         }
     }
 
-    protected void transformReports() throws Exception {
-        // Process the report
-        File localReportFile = null;
-        File locals3ReportFile = null;
-        for (Map.Entry<File, File> entry : localReportsToTransformedReports.entrySet()) {
+    protected void postProcess() throws TermServerScriptException {
+        if (flushFailure != null) {
+            abortUploads();
+            throw new TermServerScriptException("Failed to upload the report to S3", flushFailure);
+        }
+
+        // the report has finished so complete the uploads, all tabs at once
+        TermServerScript.info("Completing upload of reports to S3...");
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        IntStream.range(0, rowTransformers.length).parallel().forEach(reportIdx -> {
             try {
-                // transform form the reports
-                localReportFile = entry.getKey();
-                locals3ReportFile = entry.getValue();
-                dataTransformer.transform(localReportFile, locals3ReportFile);
+                rowTransformers[reportIdx].close();
             } catch (Exception e) {
-                String msg = "Failed to complete transform " +
-                        localReportFile != null ? localReportFile.getPath() : "" + " to " +
-                        locals3ReportFile != null ? locals3ReportFile.getPath() : "";
-                throw new Exception(msg, e);
+                failures.add(s3ReportFiles.get(reportIdx).getPath() + ExceptionUtils.getExceptionCause("", e));
             }
+        });
+        if (!failures.isEmpty()) {
+            String msg = "Failed to complete transform and upload the report: " + String.join(", ", failures);
+            throw new TermServerScriptException(msg);
         }
     }
 
-    protected void uploadReports() throws Exception {
-        File locals3ReportFile = null;
-        File s3ReportFile = null;
-        for (Map.Entry<File, File> entry : transformedReportsToS3Reports.entrySet()) {
-            try {
-                // transform form the reports
-                locals3ReportFile = entry.getKey();
-                s3ReportFile = entry.getValue();
-                String filePath = File.separator + s3ReportFile.getPath();
-                String targetS3Path = reportDataUploader.getUploadLocation(S3_BUCKET_PROTOCOL, S3_BUCKET_DOMAIN) + filePath;
-                TermServerScript.info("Outputting Report to " + cleanFileName(targetS3Path));
-                reportDataUploader.upload(s3ReportFile, locals3ReportFile);
-            } catch (Exception e) {
-                String msg = "Failed to upload " +
-                        locals3ReportFile != null ? locals3ReportFile.getPath() : "" +
-                        " to " + s3ReportFile != null ? s3ReportFile.getPath() : "";
-                throw new Exception(msg, e);
+    /**
+     * Abandons the uploads of a report that won't be completed, so that no incomplete
+     * multipart uploads are left behind on S3
+     */
+    public void abortUploads() {
+        for (OutputStream uploadStream : uploadStreams) {
+            if (uploadStream instanceof S3MultipartOutputStream) {
+                ((S3MultipartOutputStream) uploadStream).abort();
             }
         }
+        uploadStreams.clear();
     }
 
-    private void deleteReports() {
-        if (deleteTempFiles) {
-            TermServerScript.info("Deleting local report file...");
-            deleteFiles(localReportsToTransformedReports.keySet().stream().toArray(File[]::new));
-        }
-        if (deleteLocalReports) {
-            TermServerScript.info("Deleting local transformed report file...");
-            deleteFiles(localReportsToTransformedReports.values().stream().toArray(File[]::new));
+    private List<File> mapReportsFilesToS3() {
+        String branchPath = getBranchPath();
+        String reportName = getReportName();
+
+        String baseSheetName = S3_DIRECTORY
+                .replaceAll(REPORT_NAME_KEY, reportName)
+                .replaceAll(BRANCH_PATH_KEY, branchPath);
+
+        List<File> s3Files = new ArrayList<>();
+        for (int index = 0; index < owner.getNumberOfDistinctReports(); index++) {
+            s3Files.add(new File(baseSheetName + S3_SHEET + (index+1) + dataTransformer.getFileExtension()));
         }
+        return s3Files;
     }
 
     private String getBranchPath() {
@@ -147,16 +153,6 @@ public class ReportS3FileManager extends ReportFileManager {
         return branchPath;
     }
 
-    protected void deleteFiles(File[] files) {
-        if (files != null) {
-            Arrays.stream(files).forEach(file -> {
-                if (file != null && file.exists()) {
-                    file.delete();
-                }
-            });
-        }
-    }
-
     // we clean the filenames up as depending on config and
     // different modes of operation sometimes you end up with multiple slashes
     private String cleanFileName(String filename) {
@@ -171,27 +167,6 @@ public class ReportS3FileManager extends ReportFileManager {
         // get the path for all the reports (this is the way it's done for csv files)
         return cleanFileName(reportDataUploader.getUploadLocation(S3_BUCKET_PROTOCOL, S3_BUCKET_DOMAIN) +
                 File.separator +
-                transformedReportsToS3Reports.values().stream().findFirst().get().getParentFile()) + File.separator;
-    }
-
-    public boolean isDeleteLocalReports() {
-        return deleteLocalReports;
-    }
-
-    public void setDeleteLocalReports(boolean deleteLocalReports) {
-        this.deleteLocalReports = deleteLocalReports;
-    }
-
-    public boolean isDeleteTempFiles() {
-        return deleteTempFiles;
-    }
-
-    public void setDeleteTempFiles(boolean deleteTempFiles) {
-        this.deleteTempFiles = deleteTempFiles;
-    }
-
-    public void deleteAllLocalFiles() {
-        setDeleteLocalReports(true);
-        setDeleteTempFiles(true);
+                s3ReportFiles.get(0).getParentFile()) + File.separator;
     }
 }
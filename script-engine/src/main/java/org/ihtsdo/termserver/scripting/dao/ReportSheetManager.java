@@ -1,6 +1,8 @@
 package org.ihtsdo.termserver.scripting.dao;
 
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
@@ -13,15 +15,16 @@ import com.google.api.services.sheets.v4.SheetsScopes;
 import com.google.api.services.sheets.v4.model.*;
 
 import java.io.*;
-import java.net.SocketTimeoutException;
 import java.security.GeneralSecurityException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.ihtsdo.otf.exception.TermServerScriptException;
 import org.ihtsdo.termserver.scripting.TermServerScript;
 import org.ihtsdo.termserver.scripting.domain.RF2Constants;
 import org.ihtsdo.termserver.scripting.util.StringUtils;
+import org.ihtsdo.termserver.scripting.util.TokenBucket;
 
 public class ReportSheetManager implements RF2Constants, ReportProcessor {
 
@@ -30,7 +33,13 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 	private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
 	private static final String CLIENT_SECRET_DIR = "secure/google-api-secret.json";
 	private static final int MAX_REQUEST_RATE = 10;
-	private static final int MAX_WRITE_ATTEMPTS = 3;
+	private static final int MAX_WRITE_ATTEMPTS = 5;
+	private static final int MAX_PENDING_ROWS = 2000;
+	private static final long BACKOFF_BASE_MS = 2 * 1000;
+	private static final long BACKOFF_MAX_MS = 64 * 1000;
+	
+	//Sheets allows 60 write requests per minute per user, shared by every report in this process
+	private static final TokenBucket WRITE_QUOTA = new TokenBucket(60, 60, 5);
 	
 	Map<Integer, Integer> tabRowsCount;
 	Map<Integer, Integer> maxTabColumns;
@@ -46,7 +55,13 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 	static public String targetFolderId = "1bIRADym0omCgbD7064U-D24XGqAEg3gt";  //Fallback location
 	
 	Date lastWriteTime;
-	List<ValueRange> dataToBeWritten = new ArrayList<>();
+	TokenBucket writeQuota = WRITE_QUOTA;
+	//Rows for each tab are contiguous, so are held as one block per tab, starting at the row index given
+	Map<Integer, List<RowData>> rowsToBeWritten = new TreeMap<>();
+	Map<Integer, Integer> firstRowToBeWritten = new HashMap<>();
+	int rowsPending = 0;
+	//Changes to the sheet structure are sent in the same request as the next block of rows
+	List<Request> requestsToBeSent = new ArrayList<>();
 	SimpleDateFormat df = new SimpleDateFormat("yyyyMMdd_HHmmss");
 	Map<Integer, Integer> tabLineCount;
 	Map<Integer, Integer> linesWrittenPerTab = new HashMap<>();
@@ -55,6 +70,13 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 	public ReportSheetManager(ReportManager owner) {
 		this.owner = owner;
 	}
+	
+	//Allows an existing sheet to be written to via any endpoint, at any rate
+	ReportSheetManager(Sheets sheetsService, Spreadsheet sheet, TokenBucket writeQuota) {
+		this.sheetsService = sheetsService;
+		this.sheet = sheet;
+		this.writeQuota = writeQuota;
+	}
 
 	/**
 	 * Creates an authorized Credential object.
@@ -103,21 +125,8 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 			}
 			Spreadsheet requestBody = new Spreadsheet();
 			Sheets.Spreadsheets.Create request = sheetsService.spreadsheets().create(requestBody);
-			int attempt = 0;
-			while (sheet == null) {
-				try {
-					sheet = request.execute();
-				} catch (Exception e) {
-					System.out.println("Failed to initialise sheet due to " + e.getMessage());
-					if (++attempt < 3 ) {
-						System.out.println("Retrying..." + attempt);
-						try {
-							Thread.sleep(5 * 1000);
-						} catch (Exception i) {}
-					} else {
-						throw e;
-					}
-				}
+			if (sheet == null) {
+				sheet = execute(request, "Initialise sheet");
 			}
 			System.out.println("Created: " + sheet.getSpreadsheetUrl());
 			
@@ -132,7 +141,7 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 				.setSupportsTeamDrives(true)
 				.execute();
 			System.out.println("Spreadsheet shared");
-		} catch (IOException | GeneralSecurityException e) {
+		} catch (IOException | GeneralSecurityException | InterruptedException e) {
 			throw new IllegalStateException("Unable to initialise Google Sheets connection",e);
 		}
 		
@@ -140,76 +149,95 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 
 	@Override
 	public void initialiseReportFiles(String[] columnHeaders) throws TermServerScriptException {
-		tabLineCount = new HashMap<>();
 		init();
 		try {
-			List<Request> requests = new ArrayList<>();
 			String titleStr = owner.getScript().getReportName() + " " + df.format(new Date()) + "_" + owner.getEnv();
 			if (owner.getScript().getJobRun() != null && owner.getScript().getJobRun().getUser() != null) {
 				titleStr += "_" + owner.getScript().getJobRun().getUser().toLowerCase();
 			}
-			requests.add(new Request()
+			requestsToBeSent.add(new Request()
 					.setUpdateSpreadsheetProperties(new UpdateSpreadsheetPropertiesRequest()
 							.setProperties(new SpreadsheetProperties()
 									.setTitle(titleStr))
 									.setFields("title")));
-			
-			tabRowsCount = new HashMap<>();
-			populateColumnsPerTab(columnHeaders);
-			int tabIdx = 0;
-			for (String header : columnHeaders) {
-				Request request = null;
-				//Calculate the number of columns from the header, 
-				//divide the total max cells by both columns and tab count
-				int maxColumns = header.split(COMMA).length;
-				int maxRows = MAX_ROW_INCREMENT ;
-				tabRowsCount.put(tabIdx, maxRows);
-				currentCellCount += maxColumns * maxRows;
-				TermServerScript.debug("Tab " + tabIdx + " rows/cols set to " + maxRows + "/" + maxColumns);
-				SheetProperties properties = new SheetProperties()
-						.setTitle(owner.getTabNames().get(tabIdx))
-						.setGridProperties(new GridProperties().setRowCount(maxRows).setColumnCount(maxColumns));
-				
-				//Sheet 0 already exists, just update - it it's been specified
-				if (tabIdx == 0) {
-					request = new Request().setUpdateSheetProperties(new UpdateSheetPropertiesRequest().setProperties(properties).setFields("title, gridProperties"));
-				} else {
-					properties.setSheetId(new Integer(tabIdx));
-					request = new Request().setAddSheet(new AddSheetRequest().setProperties(properties));
-				}
-				requests.add(request);
-				writeToReportFile(tabIdx, header, true);
-				tabIdx++;
-				numberOfSheets++;
-			}
-			
-			executeRequests(requests);
-
-			flush();
+			initialiseTabs(columnHeaders, owner.getTabNames());
 			moveFile(sheet.getSpreadsheetId());
 		} catch (Exception e) {
 			throw new TermServerScriptException ("Unable to initialise Google Sheet headers",e);
 		}
 	}
+	
+	void initialiseTabs(String[] columnHeaders, List<String> tabNames) throws TermServerScriptException {
+		tabLineCount = new HashMap<>();
+		tabRowsCount = new HashMap<>();
+		populateColumnsPerTab(columnHeaders);
+		int tabIdx = 0;
+		for (String header : columnHeaders) {
+			Request request = null;
+			//Calculate the number of columns from the header, 
+			//divide the total max cells by both columns and tab count
+			int maxColumns = header.split(COMMA).length;
+			int maxRows = MAX_ROW_INCREMENT ;
+			tabRowsCount.put(tabIdx, maxRows);
+			currentCellCount += maxColumns * maxRows;
+			TermServerScript.debug("Tab " + tabIdx + " rows/cols set to " + maxRows + "/" + maxColumns);
+			SheetProperties properties = new SheetProperties()
+					.setTitle(tabNames.get(tabIdx))
+					.setGridProperties(new GridProperties().setRowCount(maxRows).setColumnCount(maxColumns));
+			
+			//Sheet 0 already exists, just update - it it's been specified
+			if (tabIdx == 0) {
+				request = new Request().setUpdateSheetProperties(new UpdateSheetPropertiesRequest().setProperties(properties).setFields("title, gridProperties"));
+			} else {
+				properties.setSheetId(new Integer(tabIdx));
+				request = new Request().setAddSheet(new AddSheetRequest().setProperties(properties));
+			}
+			requestsToBeSent.add(request);
+			writeToReportFile(tabIdx, header, true);
+			tabIdx++;
+			numberOfSheets++;
+		}
+		//Creation of the tabs goes along with the headers
+		flush();
+	}
 
 	private void executeRequests(List<Request> requests) throws IOException, InterruptedException {
-		//Execute creation of tabs
 		BatchUpdateSpreadsheetRequest batch = new BatchUpdateSpreadsheetRequest();
 		batch.setRequests(requests);
-		int retry = 0;
-		boolean createdOK = false;
-		while (!createdOK && retry < 3) {
+		execute(sheetsService.spreadsheets().batchUpdate(sheet.getSpreadsheetId(), batch), "Update of sheet");
+	}
+	
+	/**
+	 * Makes the request once the write quota allows, retrying with exponential backoff
+	 * if it fails for any reason other than the request itself being invalid
+	 */
+	private <T> T execute(AbstractGoogleClientRequest<T> request, String description) throws IOException, InterruptedException {
+		int attempt = 0;
+		while (true) {
+			writeQuota.acquire();
 			try {
-				BatchUpdateSpreadsheetResponse responses = sheetsService.spreadsheets().batchUpdate(sheet.getSpreadsheetId(), batch).execute();
-				createdOK = true;
-			} catch (SocketTimeoutException e) {
-				if (++retry < 3) {
-					System.err.println("Timeout received from Google. Retrying after short nap.");
-					Thread.sleep(1000 * 10);
+				return request.execute();
+			} catch (IOException e) {
+				//If we're told about an invalid argument, trying again won't improve the situation!
+				boolean invalidArgument = e.getMessage() != null && e.getMessage().contains("INVALID_ARGUMENT");
+				if (++attempt >= MAX_WRITE_ATTEMPTS || invalidArgument) {
+					throw e;
+				}
+				if (e instanceof GoogleJsonResponseException && ((GoogleJsonResponseException)e).getStatusCode() == 429) {
+					writeQuota.empty();
 				}
+				long delay = getBackoff(attempt);
+				TermServerScript.warn(description + " failed due to " + e.getMessage() + ", trying again in " + delay + "ms");
+				Thread.sleep(delay);
 			}
 		}
 	}
+	
+	private long getBackoff(int attempt) {
+		//Doubling each time, with up to a second's jitter so that competing processes don't retry in step
+		long delay = Math.min(BACKOFF_BASE_MS << (attempt - 1), BACKOFF_MAX_MS);
+		return delay + ThreadLocalRandom.current().nextLong(1000);
+	}
 
 	private int populateColumnsPerTab(String[] columnHeaders) {
 		maxTabColumns = new HashMap<>();
@@ -236,10 +264,9 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 		
 		addDataToBWritten(tabIdx, line);
 		
-		//Are we getting close to the limits of what can be written?
-		if (dataToBeWritten.size() > 2000) {
-			System.err.println("Attempting to write > 2000 rows to sheets, pausing...");
-			try { Thread.sleep(MAX_REQUEST_RATE*1000); } catch (Exception e) {}
+		//Don't let too much build up in a single request
+		if (rowsPending >= MAX_PENDING_ROWS) {
+			flushWithWait();
 		}
 		
 		//Do we have a total count for this tab?  Save 3 to allow for Data truncated message
@@ -268,7 +295,7 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 		return true;
 	}
 	
-	private void expandTabRows(int tabIdx) throws TermServerScriptException {
+	private void expandTabRows(int tabIdx) {
 		AppendDimensionRequest dimRequest = new AppendDimensionRequest();
 		dimRequest.setDimension("ROWS")
 			.setSheetId(tabIdx)
@@ -276,92 +303,77 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 		
 		Request request = new Request();
 		request.setAppendDimension(dimRequest);
-		try {
-			executeRequests(Collections.singletonList(request));
-		} catch (InterruptedException | IOException e) {
-			throw new TermServerScriptException("Unable to expand rows in tabIdx: " + tabIdx, e);
-		}
-		
+		//Will be sent ahead of the rows that need it
+		requestsToBeSent.add(request);
 	}
 
 	private void addDataToBWritten(int tabIdx, String line) throws TermServerScriptException {
-		List<Object> data = StringUtils.csvSplitAsObject(line);
-		List<List<Object>> cells = Arrays.asList(data);
-		//Increment the current row position so we create the correct range
-		tabLineCount.merge(tabIdx, 1, Integer::sum);
 		if (!maxTabColumns.containsKey(tabIdx)) {
 			throw new TermServerScriptException("Attempt to write to sheet " + tabIdx + " but sheet not known to SheetManager. Check list of tab names initialised");
 		}
-		int maxColumn = maxTabColumns.get(tabIdx);
-		String maxColumnStr = Character.toString((char)('A' + maxColumn));
-		String range = "'" + owner.getTabNames().get(tabIdx) + "'!A" + tabLineCount.get(tabIdx) + ":" + maxColumnStr +  tabLineCount.get(tabIdx); 
-		dataToBeWritten.add(new ValueRange()
-					.setRange(range)
-					.setValues(cells));
-		
+		List<CellData> cells = new ArrayList<>();
+		for (Object item : StringUtils.csvSplitAsObject(line)) {
+			//As with RAW input, values are stored as given rather than parsed
+			cells.add(new CellData().setUserEnteredValue(new ExtendedValue().setStringValue(item.toString())));
+		}
+		//Increment the current row position so we know where the block starts
+		int rowIdx = tabLineCount.merge(tabIdx, 1, Integer::sum) - 1;
+		firstRowToBeWritten.putIfAbsent(tabIdx, rowIdx);
+		rowsToBeWritten.computeIfAbsent(tabIdx, k -> new ArrayList<>()).add(new RowData().setValues(cells));
+		rowsPending++;
 	}
 
 	public void flushWithWait() throws TermServerScriptException {
-		flush(false, true);  //Not optional, also wait
+		flush(false);  //Not optional, the write quota determines any wait
 	}
 	
 	public void flush() throws TermServerScriptException {
-		flush(false, false);  //Not optional, don't wait
+		flush(false);  //Not optional
 	}
 
 	public void flushSoft() throws TermServerScriptException {
-		flush(true, false); //optional, don't wait
+		flush(true); //optional
 	}
 	
-	private void flush(boolean optional, boolean withWait) throws TermServerScriptException {
-		//Are we ready to flush?
-		//How long is it since we last wrote to the file?  Write every 5 seconds
-		if (lastWriteTime != null) {
-			long secondsSinceLastWrite = (new Date().getTime()-lastWriteTime.getTime())/1000;
-			if (secondsSinceLastWrite < MAX_REQUEST_RATE) {
-				if (withWait) {
-					try { Thread.sleep(MAX_REQUEST_RATE - secondsSinceLastWrite); } catch (InterruptedException e) {}
-				} else if (optional) {
-					return;
-				}
-			}
+	private void flush(boolean optional) throws TermServerScriptException {
+		if (sheet == null || (rowsPending == 0 && requestsToBeSent.isEmpty())) {
+			return;
 		}
 		
-		//Execute update of data values
-		if (sheet != null) {
-			BatchUpdateValuesRequest body = new BatchUpdateValuesRequest()
-				.setValueInputOption(RAW)
-				.setData(dataToBeWritten);
-			try {
-				TermServerScript.info(new Date() + " flushing to sheets");
-				int writeAttempts = 0;
-				boolean writeSuccess = false;
-				while (!writeSuccess && writeAttempts <= MAX_WRITE_ATTEMPTS) {
-					try {
-						sheetsService.spreadsheets().values().batchUpdate(sheet.getSpreadsheetId(),body)
-						.execute();
-						writeSuccess = true;
-					}catch(Exception e) {
-						//If we're told about an invalid argument, trying again won't improve the situation!
-						if (writeAttempts <= MAX_WRITE_ATTEMPTS && !e.getMessage().contains("INVALID_ARGUMENT")) {
-							try {
-								TermServerScript.warn("Exception from Google Sheets, sleeping then trying again");
-								Thread.sleep(30*1000);
-							} catch (InterruptedException e1) {}
-							TermServerScript.info(e.getMessage() + " trying again...");
-						} else {
-							throw (e);
-						}
-					}
-					writeAttempts++;
-				}
-			} catch (IOException e) {
-				throw new TermServerScriptException("Unable to update spreadsheet " + sheet.getSpreadsheetUrl(), e);
-			} finally {
-				lastWriteTime = new Date();
-				dataToBeWritten.clear();
+		//Optional flushes are skipped until we've a worthwhile amount to send, or it's been a 
+		//while since we last wrote, and then only if we're within the quota
+		if (optional) {
+			long secondsSinceLastWrite = lastWriteTime == null ? MAX_REQUEST_RATE : (new Date().getTime()-lastWriteTime.getTime())/1000;
+			if ((secondsSinceLastWrite < MAX_REQUEST_RATE && rowsPending < MAX_PENDING_ROWS / 2) || !writeQuota.hasToken()) {
+				return;
 			}
 		}
+		
+		//Send structural changes and all pending rows as a single request, with a block of rows per tab
+		List<Request> requests = new ArrayList<>(requestsToBeSent);
+		for (Map.Entry<Integer, List<RowData>> entry : rowsToBeWritten.entrySet()) {
+			int tabIdx = entry.getKey();
+			requests.add(new Request().setUpdateCells(new UpdateCellsRequest()
+					.setStart(new GridCoordinate()
+							.setSheetId(tabIdx)
+							.setRowIndex(firstRowToBeWritten.get(tabIdx))
+							.setColumnIndex(0))
+					.setRows(entry.getValue())
+					.setFields("userEnteredValue")));
+		}
+		
+		try {
+			TermServerScript.info(new Date() + " flushing " + rowsPending + " rows to sheets");
+			executeRequests(requests);
+		} catch (IOException | InterruptedException e) {
+			throw new TermServerScriptException("Unable to update spreadsheet " + sheet.getSpreadsheetUrl(), e);
+		} finally {
+			lastWriteTime = new Date();
+			requestsToBeSent.clear();
+			rowsToBeWritten.clear();
+			firstRowToBeWritten.clear();
+			rowsPending = 0;
+		}
 	}
 	
 	public void moveFile(String fileId) throws IOException {
@@ -390,7 +402,6 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 
 	public boolean formatSpreadSheetColumns() {
 		boolean writeSuccess = false;
-		BatchUpdateSpreadsheetRequest batch = new BatchUpdateSpreadsheetRequest();
 		List<Request> requests = new ArrayList<>();
 
 		for (int tabIdx = 0; tabIdx < numberOfSheets; tabIdx++) {
@@ -406,25 +417,12 @@ public class ReportSheetManager implements RF2Constants, ReportProcessor {
 			autoResizeDimensionsRequest.setDimensions(dimensionRange);
 			requests.add(new Request().setAutoResizeDimensions(autoResizeDimensionsRequest));
 		}
-		batch.setRequests(requests);
-
 		TermServerScript.info("Formatting Goggle SpreadSheet Sheet/s (Columns to auto size).");
-		int writeAttempts = 0;
-		while (!writeSuccess && writeAttempts <= MAX_WRITE_ATTEMPTS) {
-			try {
-				sheetsService.spreadsheets().batchUpdate(sheet.getSpreadsheetId(), batch).execute();
-				writeSuccess = true;
-			} catch (Exception e) {
-				if (writeAttempts <= MAX_WRITE_ATTEMPTS) {
-					try {
-						TermServerScript.warn("Exception from Google Sheets, sleeping then trying again");
-						Thread.sleep(30 * 1000);
-					} catch (InterruptedException e1) {
-					}
-					TermServerScript.info(e.getMessage() + " trying again...");
-				}
-			}
-			writeAttempts++;
+		try {
+			executeRequests(requests);
+			writeSuccess = true;
+		} catch (IOException | InterruptedException e) {
+			TermServerScript.warn("Unable to format spreadsheet columns due to " + e.getMessage());
 		}
 		return writeSuccess;
 	}
@@ -0,0 +1,141 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.util.concurrent.*;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.TermServerScript;
+
+/**
+ * Sits between the reporting thread(s) and a single ReportProcessor, so that rate limiting
+ * and retries on the output side (eg Google Sheets) happen on a writer thread of its own
+ * rather than holding up the analysis.  Work is queued in the order submitted and carried
+ * out one item at a time, so the processor itself need not be thread safe.  The queue is
+ * bounded - if the writer falls too far behind, submitters wait for space.
+ *
+ * A failure on the writer thread is reported back to the next caller to submit or wait, and
+ * any further rows are discarded rather than left to fill the queue.
+ */
+class ReportSink {
+
+	interface Task {
+		void run() throws Exception;
+	}
+
+	private static final int DEFAULT_CAPACITY = 50000;
+
+	private final String name;
+	private final BlockingQueue<Task> queue;
+	private final Thread writer;
+	private volatile Exception failure;
+	private volatile boolean stopRequested = false;
+	private volatile int rowsDiscarded = 0;
+
+	ReportSink(String name) {
+		this(name, DEFAULT_CAPACITY);
+	}
+
+	ReportSink(String name, int capacity) {
+		this.name = name;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.writer = new Thread(this::drain, "report-sink-" + name);
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Queue work for the writer thread, waiting only if the queue is full
+	 */
+	void submit(Task task) throws TermServerScriptException {
+		checkFailure();
+		try {
+			queue.put(task);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TermServerScriptException("Interrupted while queuing output for " + name, e);
+		}
+	}
+
+	/**
+	 * Queue work and wait for it - and so everything queued before it - to complete
+	 */
+	void submitAndWait(Task task) throws TermServerScriptException {
+		Barrier barrier = new Barrier(task);
+		submit(barrier);
+		try {
+			barrier.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TermServerScriptException("Interrupted while waiting for output to " + name, e);
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Drain everything outstanding, then stop the writer thread
+	 */
+	void close(Task finalTask) throws TermServerScriptException {
+		try {
+			submitAndWait(finalTask);
+		} finally {
+			stopRequested = true;
+			writer.interrupt();
+		}
+	}
+
+	private void drain() {
+		while (!stopRequested) {
+			Task task;
+			try {
+				task = queue.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+			try {
+				if (failure == null || task instanceof Barrier) {
+					task.run();
+				} else {
+					rowsDiscarded++;
+				}
+			} catch (Exception e) {
+				if (failure == null) {
+					TermServerScript.error("Failed to write report output to " + name, e);
+					failure = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Always run, even after a failure, so that nobody is left waiting on it
+	 */
+	private class Barrier implements Task {
+		private final Task task;
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		Barrier(Task task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() throws Exception {
+			try {
+				if (failure == null) {
+					task.run();
+				}
+			} finally {
+				done.countDown();
+			}
+		}
+	}
+
+	private void checkFailure() throws TermServerScriptException {
+		Exception e = failure;
+		if (e != null) {
+			String msg = "Report output to " + name + " failed" + (rowsDiscarded > 0 ? " (" + rowsDiscarded + " subsequent rows discarded)" : "");
+			if (e instanceof TermServerScriptException) {
+				throw new TermServerScriptException(msg + ": " + e.getMessage(), e);
+			}
+			throw new TermServerScriptException(msg, e);
+		}
+	}
+}
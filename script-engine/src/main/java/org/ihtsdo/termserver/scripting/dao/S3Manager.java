@@ -24,6 +24,7 @@ public class S3Manager {
 
     private StandAloneResourceConfig standAloneResourceConfig;
     private ResourceManager resourceManager;
+    private AmazonS3 s3Client;
 
     public S3Manager(StandAloneResourceConfig standAloneResourceConfig) {
         this.standAloneResourceConfig = standAloneResourceConfig;
@@ -58,6 +59,28 @@ public class S3Manager {
             if (resourceManager != null) {
                 return resourceManager;
             }
+            try {
+                SimpleStorageResourceLoader simpleStorageResourceLoader = new SimpleStorageResourceLoader(getS3Client());
+                simpleStorageResourceLoader.setTaskExecutor(task -> {
+                });
+                resourceManager = new ResourceManager(standAloneResourceConfig, simpleStorageResourceLoader);
+            } catch (Throwable t) {
+                final String msg = "Error when trying get the resource manager for S3 via :" + standAloneResourceConfig;
+                throw new TermServerScriptException(msg, t);
+            }
+        }
+        return  resourceManager;
+    }
+
+    public AmazonS3 getS3Client() throws TermServerScriptException {
+
+        if (s3Client != null) {
+            return s3Client;
+        }
+        synchronized (this) {
+            if (s3Client != null) {
+                return s3Client;
+            }
             try {
                 AWSCredentialsProvider awsCredProv;
                 if (awsKey == null || awsKey.isEmpty()) {
@@ -69,20 +92,16 @@ public class S3Manager {
                     TermServerScript.info("Connecting to S3 with locally specified account: " + awsKey);
                 }
 
-                AmazonS3 s3Client = AmazonS3ClientBuilder.standard()
+                s3Client = AmazonS3ClientBuilder.standard()
                         .withCredentials(awsCredProv)
                         .withRegion(region)
                         .build();
-                SimpleStorageResourceLoader simpleStorageResourceLoader = new SimpleStorageResourceLoader(s3Client);
-                simpleStorageResourceLoader.setTaskExecutor(task -> {
-                });
-                resourceManager = new ResourceManager(standAloneResourceConfig, simpleStorageResourceLoader);
             } catch (Throwable t) {
-                final String msg = "Error when trying get the resource manager for S3 via :" + standAloneResourceConfig;
+                final String msg = "Error when trying get the S3 client via :" + standAloneResourceConfig;
                 throw new TermServerScriptException(msg, t);
             }
         }
-        return  resourceManager;
+        return s3Client;
     }
 
     public boolean isUseCloud() {
@@ -0,0 +1,200 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Uploads whatever is written to it to S3 as it goes, without staging it on disk.
+ * Once a part's worth of data has been written it is uploaded in the background,
+ * so that several parts - and the parts of several streams - are in flight at
+ * once.  The number of parts held in memory for each stream is bounded, so
+ * writing blocks if the uploads fall behind.  Anything smaller than a single part
+ * is uploaded in one go when the stream is closed.
+ */
+public class S3MultipartOutputStream extends OutputStream {
+
+    // S3 requires every part but the last to be at least 5MB
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    private static final int MAX_PARTS_IN_FLIGHT = 4;
+
+    private static final ExecutorService PART_UPLOADERS = Executors.newFixedThreadPool(8, r -> {
+        Thread t = new Thread(r, "s3-part-uploader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AmazonS3 s3Client;
+    private final String bucketName;
+    private final String key;
+    private final int partSize;
+    private final Semaphore partsInFlight = new Semaphore(MAX_PARTS_IN_FLIGHT);
+    private final List<Future<PartETag>> parts = new ArrayList<>();
+
+    private byte[] buffer;
+    private int bufferPosition = 0;
+    private String uploadId;
+    private boolean closed = false;
+
+    public S3MultipartOutputStream(AmazonS3 s3Client, String bucketName, String key) {
+        this(s3Client, bucketName, key, DEFAULT_PART_SIZE);
+    }
+
+    public S3MultipartOutputStream(AmazonS3 s3Client, String bucketName, String key, int partSize) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("Part size must be at least " + MIN_PART_SIZE + " bytes");
+        }
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.partSize = partSize;
+        this.buffer = new byte[partSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (bufferPosition == partSize) {
+            uploadBuffer();
+        }
+        buffer[bufferPosition++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            if (bufferPosition == partSize) {
+                uploadBuffer();
+            }
+            int chunk = Math.min(len, partSize - bufferPosition);
+            System.arraycopy(b, off, buffer, bufferPosition, chunk);
+            bufferPosition += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    private void uploadBuffer() throws IOException {
+        checkForFailedParts();
+        try {
+            if (uploadId == null) {
+                uploadId = s3Client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key)).getUploadId();
+            }
+            partsInFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new IOException("Interrupted while uploading " + key, e);
+        } catch (RuntimeException e) {
+            abort();
+            throw new IOException("Unable to start upload of " + key, e);
+        }
+
+        UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(bucketName)
+                .withKey(key)
+                .withUploadId(uploadId)
+                .withPartNumber(parts.size() + 1)
+                .withInputStream(new ByteArrayInputStream(buffer, 0, bufferPosition))
+                .withPartSize(bufferPosition);
+        parts.add(PART_UPLOADERS.submit(() -> {
+            try {
+                return s3Client.uploadPart(request).getPartETag();
+            } finally {
+                partsInFlight.release();
+            }
+        }));
+        // The buffer now belongs to the upload
+        buffer = new byte[partSize];
+        bufferPosition = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (uploadId == null) {
+            // Not worth a multipart upload
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(bufferPosition);
+            try {
+                s3Client.putObject(bucketName, key, new ByteArrayInputStream(buffer, 0, bufferPosition), metadata);
+            } catch (RuntimeException e) {
+                throw new IOException("Unable to upload " + key, e);
+            }
+            buffer = null;
+            return;
+        }
+
+        if (bufferPosition > 0) {
+            uploadBuffer();
+        }
+        buffer = null;
+        try {
+            List<PartETag> partETags = new ArrayList<>();
+            for (Future<PartETag> part : parts) {
+                partETags.add(part.get());
+            }
+            partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+            s3Client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort();
+            throw new IOException("Interrupted while uploading " + key, e);
+        } catch (ExecutionException | RuntimeException e) {
+            abort();
+            throw new IOException("Unable to upload " + key, e instanceof ExecutionException ? e.getCause() : e);
+        }
+    }
+
+    private void checkForFailedParts() throws IOException {
+        for (Future<PartETag> part : parts) {
+            if (part.isDone()) {
+                try {
+                    part.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    abort();
+                    throw new IOException("Unable to upload " + key, e instanceof ExecutionException ? e.getCause() : e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Abandons the upload, discarding any parts already uploaded
+     */
+    public void abort() {
+        closed = true;
+        for (Future<PartETag> part : parts) {
+            part.cancel(true);
+        }
+        if (uploadId != null) {
+            try {
+                s3Client.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+            } catch (RuntimeException e) {
+                // Best effort, the upload has already failed
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Upload of " + key + " has been closed");
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
@@ -7,6 +7,9 @@ import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Component;
 import org.apache.commons.lang.StringUtils;
 import org.ihtsdo.otf.exception.TermServerScriptException;
 import org.ihtsdo.termserver.scripting.*;
+import org.ihtsdo.termserver.scripting.dao.LazyDescriptionStore;
+import org.ihtsdo.termserver.scripting.dao.RF2RowSource;
+import org.ihtsdo.termserver.scripting.dao.RF2SplitRowSource;
 import org.ihtsdo.termserver.scripting.util.SnomedUtils;
 import org.snomed.otf.owltoolkit.domain.ObjectPropertyAxiomRepresentation;
 
@@ -48,6 +51,10 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	@Expose
 	private List<Description> descriptions = new ArrayList<Description>();
 	
+	//Set while this concept's descriptions are held on disk, waiting to be read on first access
+	private transient volatile LazyDescriptionStore lazyDescriptions;
+	private transient boolean materialisingDescriptions = false;  //Guarded by this
+	
 	@SerializedName("relationships")
 	@Expose
 	private Set<Relationship> relationships = new HashSet<Relationship>();
@@ -103,14 +110,18 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	Set<Concept> statedChildren = new HashSet<>();
 	Set<Concept> inferredChildren = new HashSet<>();
 	
-	Collection<RelationshipGroup> statedRelationshipGroups;
-	Collection<RelationshipGroup> inferredRelationshipGroups;
+	//Views of the relationships and descriptions, built as required.  See getRelationshipIndex()
+	private transient volatile RelationshipIndex relationshipIndex;
+	private transient volatile DescriptionIndex descriptionIndex;
+	//Counts changes to the indexed properties of relationships with this concept as their source
+	private transient volatile int relationshipChanges;
 	
 	public void reset() {
 		assertionFailures = new ArrayList<String>();
-		statedRelationshipGroups = null;
-		inferredRelationshipGroups = null;
+		relationshipIndex = null;
+		descriptionIndex = null;
 		descriptions = new ArrayList<Description>();
+		lazyDescriptions = null;
 		relationships = new HashSet<Relationship>();
 		statedParents = new HashSet<>();
 		inferredParents = new HashSet<>();
@@ -282,34 +293,101 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	}
 
 	public List<Description> getDescriptions() {
+		materialiseDescriptions();
 		return descriptions;
 	}
 
 	public void setDescriptions(List<Description> descriptions) {
+		this.lazyDescriptions = null;
 		this.descriptions = descriptions;
 	}
+	
+	public void setLazyDescriptions(LazyDescriptionStore lazyDescriptions) {
+		this.lazyDescriptions = lazyDescriptions;
+	}
+	
+	/**
+	 * Reads in any descriptions (and their langrefset entries) still held on disk.
+	 */
+	public void materialiseDescriptions() {
+		if (lazyDescriptions != null) {
+			synchronized (this) {
+				LazyDescriptionStore store = lazyDescriptions;
+				//Loading the descriptions adds them back to this concept, which calls us again on this thread
+				if (store != null && !materialisingDescriptions) {
+					materialisingDescriptions = true;
+					try {
+						store.materialise(this);
+					} catch (TermServerScriptException e) {
+						throw new IllegalStateException("Failed to read descriptions of " + conceptId, e);
+					} finally {
+						materialisingDescriptions = false;
+					}
+					//Only cleared once complete, so other threads wait on the lock rather than see a partial list
+					lazyDescriptions = null;
+				}
+			}
+		}
+	}
 
 	public Set<Relationship> getRelationships() {
 		return relationships;
 	}
 	
+	/**
+	 * @return a new set of the matching relationships, or if no effective time is specified, a read only view
+	 */
 	public Set<Relationship> getRelationships(CharacteristicType characteristicType, ActiveState state, String effectiveTime) {
+		Set<Relationship> potentialMatches = getRelationships(characteristicType, state);
+		if (effectiveTime == null) {
+			return potentialMatches;
+		}
 		Set<Relationship> matches = new HashSet<Relationship>();
-		for (Relationship r : relationships) {
-			if (effectiveTime == null || r.getEffectiveTime().equals(effectiveTime)) {
-				if (characteristicType.equals(CharacteristicType.ALL) || r.getCharacteristicType().equals(characteristicType)) {
-					if (state.equals(ActiveState.BOTH) || (state.equals(ActiveState.ACTIVE) && r.isActive()) ||
-							(state.equals(ActiveState.INACTIVE) && !r.isActive())) {
-						matches.add(r);
-					}
-				}
+		for (Relationship r : potentialMatches) {
+			if (effectiveTime.equals(r.getEffectiveTime())) {
+				matches.add(r);
 			}
 		}
 		return matches;
 	}
 	
+	/**
+	 * @return a read only view of the matching relationships, which will not reflect later changes to this concept
+	 */
 	public Set<Relationship> getRelationships(CharacteristicType characteristicType, ActiveState activeState) {
-		return getRelationships(characteristicType, activeState, null);
+		return getRelationshipIndex().getRelationships(characteristicType, activeState);
+	}
+	
+	/**
+	 * The index is rebuilt if our relationships have been replaced or resized since it was built,
+	 * or if any of them has changed state, type, target or group.
+	 */
+	private RelationshipIndex getRelationshipIndex() {
+		RelationshipIndex index = relationshipIndex;
+		if (index == null || !index.isValidFor(relationships, relationshipChanges)) {
+			//Take the count of changes first, so that any change made while the index is built will invalidate it
+			int changes = relationshipChanges;
+			index = new RelationshipIndex(relationships, changes);
+			relationshipIndex = index;
+		}
+		return index;
+	}
+	
+	/**
+	 * Called by our relationships when a property we index them by changes
+	 */
+	void relationshipChanged() {
+		relationshipChanges++;
+	}
+	
+	private DescriptionIndex getDescriptionIndex() {
+		List<Description> current = getDescriptions();
+		DescriptionIndex index = descriptionIndex;
+		if (index == null || !index.isValidFor(current)) {
+			index = new DescriptionIndex(current);
+			descriptionIndex = index;
+		}
+		return index;
 	}
 	
 	//Gets relationships that match the triple + group + charType
@@ -344,15 +422,11 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 		return getRelationships(r.getCharacteristicType(), r.getType(), r.getTarget(), activeState);
 	}
 	
+	/**
+	 * @return a read only view of the matching relationships, which will not reflect later changes to this concept
+	 */
 	public Set<Relationship> getRelationships(CharacteristicType characteristicType, Concept type, ActiveState activeState) {
-		Set<Relationship> potentialMatches = getRelationships(characteristicType, activeState);
-		Set<Relationship> matches = new HashSet<Relationship>();
-		for (Relationship r : potentialMatches) {
-			if (type == null || r.getType().equals(type)) {
-				matches.add(r);
-			}
-		}
-		return matches;
+		return getRelationshipIndex().getRelationships(characteristicType, type, activeState);
 	}
 
 	public Set<Relationship> getRelationships(CharacteristicType charType, Concept[] targets, ActiveState state) {
@@ -518,6 +592,9 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 
 	@Override
 	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
 		if (!(other instanceof Concept)) {
 			return false;
 		}
@@ -678,45 +755,42 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	//then it must not also be preferred in the other dialect
 	public List<Description> getDescriptions(Acceptability acceptability, DescriptionType descriptionType, ActiveState activeState) throws TermServerScriptException {
 		List<Description> matchingDescriptions = new ArrayList<Description>();
-		for (Description thisDescription : getDescriptions(activeState)) {
-			//Is this description of the right type?
-			if (descriptionType == null || thisDescription.getType().equals(descriptionType)) {
-				//Are we working with JSON representation and acceptability map, or an RF2 representation
-				//with language refset entries?
-				if (thisDescription.getAcceptabilityMap() != null) {
-					if (acceptability.equals(Acceptability.BOTH) || thisDescription.getAcceptabilityMap().containsValue(acceptability)) {
-						if (acceptability.equals(Acceptability.BOTH)) {
-							matchingDescriptions.add(thisDescription);
-						} else if (acceptability.equals(Acceptability.PREFERRED) || !thisDescription.getAcceptabilityMap().containsValue(Acceptability.PREFERRED)) {
-							matchingDescriptions.add(thisDescription);
-						}
+		for (Description thisDescription : getDescriptionIndex().getDescriptions(descriptionType, activeState)) {
+			//Are we working with JSON representation and acceptability map, or an RF2 representation
+			//with language refset entries?
+			if (thisDescription.getAcceptabilityMap() != null) {
+				if (acceptability.equals(Acceptability.BOTH) || thisDescription.getAcceptabilityMap().containsValue(acceptability)) {
+					if (acceptability.equals(Acceptability.BOTH)) {
+						matchingDescriptions.add(thisDescription);
+					} else if (acceptability.equals(Acceptability.PREFERRED) || !thisDescription.getAcceptabilityMap().containsValue(Acceptability.PREFERRED)) {
+						matchingDescriptions.add(thisDescription);
 					}
-				} else if (!thisDescription.getLangRefsetEntries().isEmpty()) {
-					boolean match = false;
-					boolean preferredFound = false;
-					for (LangRefsetEntry l : thisDescription.getLangRefsetEntries(ActiveState.ACTIVE)) {
-						if (acceptability.equals(Acceptability.BOTH) || 
-							acceptability.equals(SnomedUtils.translateAcceptability(l.getAcceptabilityId()))) {
-							match = true;
-						} 
-						
-						if (l.getAcceptabilityId().equals(SCTID_PREFERRED_TERM)) {
-							preferredFound = true;
-						}
+				}
+			} else if (!thisDescription.getLangRefsetEntries().isEmpty()) {
+				boolean match = false;
+				boolean preferredFound = false;
+				for (LangRefsetEntry l : thisDescription.getLangRefsetEntries(ActiveState.ACTIVE)) {
+					if (acceptability.equals(Acceptability.BOTH) || 
+						acceptability.equals(SnomedUtils.translateAcceptability(l.getAcceptabilityId()))) {
+						match = true;
+					} 
+					
+					if (l.getAcceptabilityId().equals(SCTID_PREFERRED_TERM)) {
+						preferredFound = true;
 					}
-					//Did we find one, and if it's acceptable, did we also not find another preferred
-					if (match) {
-						if (acceptability.equals(Acceptability.ACCEPTABLE)) {
-							if (!preferredFound) {
-								matchingDescriptions.add(thisDescription);
-							}
-						} else {
+				}
+				//Did we find one, and if it's acceptable, did we also not find another preferred
+				if (match) {
+					if (acceptability.equals(Acceptability.ACCEPTABLE)) {
+						if (!preferredFound) {
 							matchingDescriptions.add(thisDescription);
 						}
+					} else {
+						matchingDescriptions.add(thisDescription);
 					}
-				} else {
-					TermServerScript.warn (thisDescription + " is active with no Acceptability map or Language Refset entries (since " + thisDescription.getEffectiveTime() + ").");
 				}
+			} else {
+				TermServerScript.warn (thisDescription + " is active with no Acceptability map or Language Refset entries (since " + thisDescription.getEffectiveTime() + ").");
 			}
 		}
 		return matchingDescriptions;
@@ -735,21 +809,17 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 		return matchingDescriptions;
 	}
 	
+	/**
+	 * @return a read only view of the matching descriptions, which will not reflect later changes to this concept
+	 */
 	public List<Description> getDescriptions(ActiveState a) {
-		List<Description> results = new ArrayList<Description>();
-		for (Description d : descriptions) {
-			if (SnomedUtils.descriptionHasActiveState(d, a)) {
-				results.add(d);
-			}
-		}
-		return results;
+		return getDescriptionIndex().getDescriptions(a);
 	}
 	
 	public List<Description> getDescriptions(ActiveState a, List<DescriptionType> types) {
 		List<Description> results = new ArrayList<Description>();
-		for (Description d : descriptions) {
-			if (SnomedUtils.descriptionHasActiveState(d, a) &&
-					types.contains(d.getType())) {
+		for (Description d : getDescriptions(a)) {
+			if (types.contains(d.getType())) {
 				results.add(d);
 			}
 		}
@@ -774,7 +844,7 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	}
 
 	public Description getDescription(String descriptionId) {
-		for (Description d : descriptions) {
+		for (Description d : getDescriptions()) {
 			if (d.getDescriptionId().equals(descriptionId)) {
 				return d;
 			}
@@ -788,18 +858,21 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	
 	public void addDescription(Description d, boolean allowDuplicateTerms) {
 		//Do we already have a description with this SCTID?
-		if (!allowDuplicateTerms && descriptions.contains(d)) {
+		if (!allowDuplicateTerms && getDescriptions().contains(d)) {
 			descriptions.remove(d);
 		}
 		
 		descriptions.add(d);
+		//A replacement leaves the list the same size, so the index wouldn't otherwise notice
+		descriptionIndex = null;
 		if (d.isActive() && d.getType().equals(DescriptionType.FSN)) {
 			this.setFsn(d.getTerm());
 		}
 	}
 	
 	public void removeDescription (Description d) {
-		descriptions.remove(d);
+		getDescriptions().remove(d);
+		descriptionIndex = null;
 	}
 
 	public Set<Concept> getParents(CharacteristicType characteristicType) {
@@ -878,7 +951,7 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 			String err = "Concept " + conceptId + " |" + getFsn() + "| has no descriptions";
 			throw new IllegalArgumentException(err);
 		}
-		for (Description d : descriptions) {
+		for (Description d : getDescriptions()) {
 			if (d.isActive() && d.getType().equals(DescriptionType.FSN)) {
 				return d;
 			}
@@ -888,7 +961,7 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	
 	public List<Description> getSynonyms(Acceptability Acceptability) {
 		List<Description> synonyms = new ArrayList<Description>();
-		for (Description d : descriptions) {
+		for (Description d : getDescriptions()) {
 			if (d.isActive() && d.getAcceptabilityMap().values().contains(Acceptability) && d.getType().equals(DescriptionType.SYNONYM)) {
 				synonyms.add(d);
 			}
@@ -898,7 +971,7 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 
 	public boolean hasTerm(String term, String langCode) {
 		boolean hasTerm = false;
-		for (Description d : descriptions) {
+		for (Description d : getDescriptions()) {
 			if (d.getTerm().equals(term) && d.getLang().equals(langCode)) {
 				hasTerm = true;
 				break;
@@ -1092,10 +1165,17 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	}
 	
 	public static Concept fillFromRf2(Concept c, String[] lineItems) {
-		c.setActive(lineItems[CON_IDX_ACTIVE].equals("1"));
-		c.setEffectiveTime(lineItems[CON_IDX_EFFECTIVETIME]);
-		c.setModuleId(lineItems[CON_IDX_MODULID]);
-		c.setDefinitionStatus(SnomedUtils.translateDefnStatus(lineItems[CON_IDX_DEFINITIONSTATUSID]));
+		return fillFromRf2(c, RF2SplitRowSource.of(lineItems));
+	}
+	
+	/**
+	 * Fills the concept from the current row of the source
+	 */
+	public static Concept fillFromRf2(Concept c, RF2RowSource row) {
+		c.setActive(row.isActive(CON_IDX_ACTIVE));
+		c.setEffectiveTime(row.getCachedString(CON_IDX_EFFECTIVETIME));
+		c.setModuleId(row.getCachedString(CON_IDX_MODULID));
+		c.setDefinitionStatus(SnomedUtils.translateDefnStatus(row.getCachedString(CON_IDX_DEFINITIONSTATUSID)));
 		return c;
 	}
 
@@ -1281,31 +1361,7 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	}
 	
 	public Collection<RelationshipGroup> getRelationshipGroups(CharacteristicType characteristicType, boolean includeIsA) {
-		Collection<RelationshipGroup> relationshipGroups = characteristicType.equals(CharacteristicType.STATED_RELATIONSHIP) ? statedRelationshipGroups : inferredRelationshipGroups;
-		if (relationshipGroups == null) {
-			Map<Integer, RelationshipGroup> groups = new HashMap<>();
-			//If we're including group 0, always add that in any event
-			for (Relationship r : getRelationships(characteristicType, ActiveState.ACTIVE)) {
-				if (!includeIsA && r.getType().equals(IS_A)) {
-					continue;
-				}
-				//Do we know about this Relationship Group yet?
-				RelationshipGroup group = groups.get(r.getGroupId());
-				if (group == null) {
-					group = new RelationshipGroup(r.getGroupId() , r);
-					groups.put(r.getGroupId(), group);
-				} else {
-					group.getRelationships().add(r);
-				}
-			}
-			relationshipGroups = groups.values();
-			if (characteristicType.equals(CharacteristicType.STATED_RELATIONSHIP)) {
-				statedRelationshipGroups = relationshipGroups;
-			} else {
-				inferredRelationshipGroups = relationshipGroups;
-			}
-		}
-		return relationshipGroups;
+		return getRelationshipIndex().getRelationshipGroups(characteristicType, includeIsA);
 	}
 
 	public int addRelationshipGroup(RelationshipGroup group, Set<Relationship> availableForReuse) {
@@ -1332,9 +1388,8 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 	}
 	
 	public void recalculateGroups() {
-		//Force recalculation of groups next time they're requested
-		statedRelationshipGroups = null;
-		inferredRelationshipGroups = null;
+		//Force recalculation of groups (and the other relationship views) next time they're requested
+		relationshipIndex = null;
 	}
 
 	
@@ -1475,7 +1530,7 @@ public class Concept extends Component implements RF2Constants, Comparable<Conce
 			return new ArrayList<>();
 		}
 		
-		return descriptions.stream()
+		return getDescriptions().stream()
 				.filter(d -> d.isActive())
 				.filter(d -> onlyPref == false || d.isPreferred())
 				.filter(d -> words.stream()
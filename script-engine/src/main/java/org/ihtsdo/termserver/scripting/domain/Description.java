@@ -5,6 +5,8 @@ import java.util.*;
 
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Component;
 import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.dao.RF2RowSource;
+import org.ihtsdo.termserver.scripting.dao.RF2SplitRowSource;
 import org.ihtsdo.termserver.scripting.util.AcceptabilityMode;
 import org.ihtsdo.termserver.scripting.util.SnomedUtils;
 
@@ -525,22 +527,29 @@ public class Description extends Component implements RF2Constants {
 	}
 	
 	public static void fillFromRf2(Description d, String[] lineItems) throws TermServerScriptException {
-		d.setDescriptionId(lineItems[DES_IDX_ID]);
+		fillFromRf2(d, RF2SplitRowSource.of(lineItems));
+	}
+	
+	/**
+	 * Fills the description from the current row of the source
+	 */
+	public static void fillFromRf2(Description d, RF2RowSource row) throws TermServerScriptException {
+		d.setDescriptionId(row.getString(DES_IDX_ID));
 		//d.setActive(lineItems[DES_IDX_ACTIVE].equals("1"));  //Set this directly when loading RF2
 		//Otherwise we'll inactivate the language refset entries prematurely
-		d.active=lineItems[DES_IDX_ACTIVE].equals("1");
+		d.active=row.isActive(DES_IDX_ACTIVE);
 		//Set effective time after active, since changing activate state resets effectiveTime
-		d.setEffectiveTime(lineItems[DES_IDX_EFFECTIVETIME].isEmpty()?null:lineItems[DES_IDX_EFFECTIVETIME]);
+		d.setEffectiveTime(row.isEmpty(DES_IDX_EFFECTIVETIME)?null:row.getCachedString(DES_IDX_EFFECTIVETIME));
 		if (d.getEffectiveTime() != null) {
 			d.setReleased(true);
 		}
 		boolean isPublished = d.isReleased() == null ? false :  d.isReleased();
-		d.setModuleId(lineItems[DES_IDX_MODULID], isPublished);
-		d.setCaseSignificance(SnomedUtils.translateCaseSignificanceToEnum(lineItems[DES_IDX_CASESIGNIFICANCEID]));
-		d.setConceptId(lineItems[DES_IDX_CONCEPTID]);
-		d.setLang(lineItems[DES_IDX_LANGUAGECODE]);
-		d.setTerm(lineItems[DES_IDX_TERM]);
-		d.setType(SnomedUtils.translateDescType(lineItems[DES_IDX_TYPEID]));
+		d.setModuleId(row.getCachedString(DES_IDX_MODULID), isPublished);
+		d.setCaseSignificance(SnomedUtils.translateCaseSignificanceToEnum(row.getCachedString(DES_IDX_CASESIGNIFICANCEID)));
+		d.setConceptId(row.getString(DES_IDX_CONCEPTID));
+		d.setLang(row.getCachedString(DES_IDX_LANGUAGECODE));
+		d.setTerm(row.getString(DES_IDX_TERM));
+		d.setType(SnomedUtils.translateDescType(row.getCachedString(DES_IDX_TYPEID)));
 	}
 
 	//A langrefset entry is an RF2 representation, where the acceptability map
@@ -731,4 +740,10 @@ public class Description extends Component implements RF2Constants {
 		}
 	}
 
+	/**
+	 * @return the active state, or null if it has not been set.  See DescriptionIndex
+	 */
+	Boolean getActiveState() {
+		return active;
+	}
 }
@@ -0,0 +1,102 @@
+package org.ihtsdo.termserver.scripting.domain;
+
+import java.util.*;
+
+import org.ihtsdo.termserver.scripting.util.SnomedUtils;
+
+/**
+ * A concept's descriptions grouped by active state and type, each worked out the first time
+ * it's asked for.  As with RelationshipIndex, the index is only valid for the list of
+ * descriptions it was built from, and only until one of them changes its active state or
+ * type - see Concept.getDescriptionIndex().  Descriptions don't hold the concept they belong
+ * to, so can't tell it when they change.  Instead, the index records the state and type of
+ * each description as it's built, and checks them again on each use.  Concepts have few
+ * enough descriptions for this to be cheap.
+ *
+ * Acceptability is held in lang refset entries and acceptability maps which are modified
+ * directly in many places, so it's not indexed here.  Filtering on acceptability is instead
+ * done over the (few) descriptions of the type asked for.
+ */
+class DescriptionIndex implements RF2Constants {
+
+	private static final ActiveState[] ACTIVE_STATES = ActiveState.values();
+
+	private final List<Description> descriptions;
+	private final Description[] indexed;
+	private final int[] indexedStates;
+
+	private final List<Description>[] byState;
+	private final Map<DescriptionType, List<Description>>[] byType;
+
+	@SuppressWarnings("unchecked")
+	DescriptionIndex(List<Description> descriptions) {
+		this.descriptions = descriptions;
+		//Record the states first, so that any change made while we're being built will invalidate us
+		this.indexed = descriptions.toArray(new Description[0]);
+		this.indexedStates = new int[indexed.length];
+		for (int i = 0; i < indexed.length; i++) {
+			indexedStates[i] = indexedState(indexed[i]);
+		}
+		byState = new List[ACTIVE_STATES.length];
+		byType = new Map[ACTIVE_STATES.length];
+	}
+
+	/**
+	 * @return false if the concept's descriptions have been replaced, added to or removed from,
+	 * or any of them has changed active state or type, since this index was created
+	 */
+	boolean isValidFor(List<Description> current) {
+		if (current != descriptions || current.size() != indexed.length) {
+			return false;
+		}
+		for (int i = 0; i < indexed.length; i++) {
+			//A description may have been replaced by another with the same id
+			if (current.get(i) != indexed[i] || indexedState(indexed[i]) != indexedStates[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int indexedState(Description d) {
+		int type = d.getType() == null ? 0 : d.getType().ordinal() + 1;
+		Boolean active = d.getActiveState();
+		int state = active == null ? 0 : (active ? 1 : 2);
+		return (type << 2) | state;
+	}
+
+	synchronized List<Description> getDescriptions(ActiveState activeState) {
+		int slot = activeState.ordinal();
+		if (byState[slot] == null) {
+			List<Description> matches = new ArrayList<>();
+			for (Description d : descriptions) {
+				if (SnomedUtils.descriptionHasActiveState(d, activeState)) {
+					matches.add(d);
+				}
+			}
+			byState[slot] = Collections.unmodifiableList(matches);
+		}
+		return byState[slot];
+	}
+
+	/**
+	 * @param type the type of description required, or null for any type
+	 */
+	synchronized List<Description> getDescriptions(DescriptionType type, ActiveState activeState) {
+		if (type == null) {
+			return getDescriptions(activeState);
+		}
+		int slot = activeState.ordinal();
+		if (byType[slot] == null) {
+			Map<DescriptionType, List<Description>> grouped = new EnumMap<>(DescriptionType.class);
+			for (Description d : getDescriptions(activeState)) {
+				if (d.getType() != null) {
+					grouped.computeIfAbsent(d.getType(), k -> new ArrayList<>()).add(d);
+				}
+			}
+			grouped.replaceAll((k, v) -> Collections.unmodifiableList(v));
+			byType[slot] = grouped;
+		}
+		return byType[slot].getOrDefault(type, Collections.emptyList());
+	}
+}
@@ -0,0 +1,37 @@
+package org.ihtsdo.termserver.scripting.domain;
+
+import java.io.IOException;
+
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Concepts may still have their descriptions held on disk, and Gson reads the descriptions
+ * field directly, so ensure they've been read in before a concept is serialised.
+ */
+public class LazyDescriptionsAdapterFactory implements TypeAdapterFactory {
+
+	@Override
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		if (!Concept.class.isAssignableFrom(type.getRawType())) {
+			return null;
+		}
+		final TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+		return new TypeAdapter<T>() {
+			@Override
+			public void write(JsonWriter out, T value) throws IOException {
+				if (value != null) {
+					((Concept) value).materialiseDescriptions();
+				}
+				delegate.write(out, value);
+			}
+
+			@Override
+			public T read(JsonReader in) throws IOException {
+				return delegate.read(in);
+			}
+		};
+	}
+}
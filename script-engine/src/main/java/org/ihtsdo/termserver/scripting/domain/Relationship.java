@@ -11,6 +11,7 @@ import org.ihtsdo.termserver.scripting.util.StringUtils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class Relationship extends Component implements IRelationshipTemplate, RF2Constants, Comparable<Relationship> {
 
@@ -158,7 +159,11 @@ public class Relationship extends Component implements IRelationshipTemplate, RF
 			this.effectiveTime = null;
 			setDirty();
 		}
+		boolean changed = this.active == null || this.active != newActiveState;
 		this.active = newActiveState;
+		if (changed) {
+			indexedPropertyChanged();
+		}
 	}
 
 	public String getRelationshipId() {
@@ -174,7 +179,11 @@ public class Relationship extends Component implements IRelationshipTemplate, RF
 	}
 
 	public void setType(Concept type) {
+		boolean changed = this.type != type;
 		this.type = type;
+		if (changed) {
+			indexedPropertyChanged();
+		}
 	}
 
 	public Concept getTarget() {
@@ -182,7 +191,11 @@ public class Relationship extends Component implements IRelationshipTemplate, RF
 	}
 
 	public void setTarget(Concept target) {
+		boolean changed = this.target != target;
 		this.target = target;
+		if (changed) {
+			indexedPropertyChanged();
+		}
 	}
 
 	public String getSourceId() {
@@ -198,7 +211,11 @@ public class Relationship extends Component implements IRelationshipTemplate, RF
 	}
 
 	public void setGroupId(int groupId) {
+		boolean changed = this.groupId != groupId;
 		this.groupId = groupId;
+		if (changed) {
+			indexedPropertyChanged();
+		}
 	}
 
 	public CharacteristicType getCharacteristicType() {
@@ -206,7 +223,11 @@ public class Relationship extends Component implements IRelationshipTemplate, RF
 	}
 
 	public void setCharacteristicType(CharacteristicType characteristicType) {
+		boolean changed = this.characteristicType != characteristicType;
 		this.characteristicType = characteristicType;
+		if (changed) {
+			indexedPropertyChanged();
+		}
 	}
 
 	public Modifier getModifier() {
@@ -266,20 +287,28 @@ public class Relationship extends Component implements IRelationshipTemplate, RF
 		if (StringUtils.isEmpty(relationshipId)) {
 			//Do not include the inactivation indicator, otherwise we might not
 			//be able to recognise the object in a set if it changes after being created.
-			return toString(true, false).hashCode();
+			//Concepts are held once by the GraphLoader, so this avoids building up a String as toString() would
+			int hash = Objects.hash(characteristicType, type, isConcrete() ? value : target, groupId);
+			if (axiomEntry != null) {
+				hash = 31 * hash + Objects.hashCode(axiomEntry.getId());
+			}
+			return hash;
 		} else {
 			return relationshipId.hashCode();
 		}
 	}
 
 	public boolean equals(Object other, boolean ignoreAxiom) {
+		if (other == this) {
+			return true;
+		}
 		if ((other instanceof Relationship) == false) {
 			return false;
 		}
 		Relationship rhs = ((Relationship) other);
 		
 		//Must be of the same characteristic type
-		if (!this.getCharacteristicType().equals(rhs.characteristicType)) {
+		if (this.getCharacteristicType() != rhs.characteristicType) {
 			return false;
 		}
 		
@@ -299,10 +328,18 @@ public class Relationship extends Component implements IRelationshipTemplate, RF
 		}
 		
 		//Otherwise compare type / target (or Value) / group 
+		if (this.groupId != rhs.groupId || !sameConcept(this.type, rhs.type)) {
+			return false;
+		}
 		if (isConcrete()) {
-			return (this.type.equals(rhs.type) && this.value.equals(rhs.value) && this.groupId == rhs.groupId);
+			return this.value.equals(rhs.value);
 		}
-		return (this.type.equals(rhs.type) && this.target.equals(rhs.target) && this.groupId == rhs.groupId);
+		return sameConcept(this.target, rhs.target);
+	}
+	
+	//The GraphLoader holds a single instance of each concept, so usually we can compare references
+	private static boolean sameConcept(Concept a, Concept b) {
+		return a == b || (a != null && a.equals(b));
 	}
 	
 	@Override
@@ -396,10 +433,17 @@ public class Relationship extends Component implements IRelationshipTemplate, RF
 	}
 
 	public void setSource(Concept source) {
+		Concept previous = this.source;
 		this.source = source;
 		if (source != null) {
 			this.sourceId = source.getConceptId();
 		}
+		if (previous != source) {
+			if (previous != null) {
+				previous.relationshipChanged();
+			}
+			indexedPropertyChanged();
+		}
 	}
 
 	public boolean isDeleted() {
@@ -535,4 +579,13 @@ public class Relationship extends Component implements IRelationshipTemplate, RF
 		return differences;
 	}
 
+	/**
+	 * Called after our active state, characteristic type, type, target or group changes, so that 
+	 * only our source concept needs to rebuild its index of relationships.  See RelationshipIndex
+	 */
+	private void indexedPropertyChanged() {
+		if (source != null) {
+			source.relationshipChanged();
+		}
+	}
 }
@@ -0,0 +1,116 @@
+package org.ihtsdo.termserver.scripting.domain;
+
+import java.util.*;
+
+/**
+ * A concept's relationships grouped by characteristic type, active state and type, along with
+ * its relationship groups, each worked out the first time it's asked for.  The index is only
+ * valid for the set of relationships it was built from, and only until one of the concept's
+ * relationships changes one of the properties indexed - see Concept.getRelationshipIndex().
+ *
+ * The collections returned are read only, and are never changed once built, so callers can
+ * continue iterating over them while modifying the concept.
+ */
+class RelationshipIndex implements RF2Constants {
+
+	private static final CharacteristicType[] CHAR_TYPES = CharacteristicType.values();
+	private static final ActiveState[] ACTIVE_STATES = ActiveState.values();
+
+	private final Set<Relationship> relationships;
+	private final int relationshipCount;
+	private final int relationshipChanges;
+
+	private final Set<Relationship>[] byCharTypeAndState;
+	private final Map<Concept, Set<Relationship>>[] byType;
+	private final Collection<RelationshipGroup>[] groups;
+
+	@SuppressWarnings("unchecked")
+	RelationshipIndex(Set<Relationship> relationships, int relationshipChanges) {
+		this.relationshipChanges = relationshipChanges;
+		this.relationships = relationships;
+		this.relationshipCount = relationships.size();
+		int slots = CHAR_TYPES.length * ACTIVE_STATES.length;
+		byCharTypeAndState = new Set[slots];
+		byType = new Map[slots];
+		groups = new Collection[CHAR_TYPES.length * 2];
+	}
+
+	/**
+	 * @return false if the concept's relationships have been replaced, added to or removed from,
+	 * or any of them has been modified, since this index was created
+	 */
+	boolean isValidFor(Set<Relationship> current, int currentChanges) {
+		return current == relationships
+				&& current.size() == relationshipCount
+				&& currentChanges == relationshipChanges;
+	}
+
+	synchronized Set<Relationship> getRelationships(CharacteristicType charType, ActiveState activeState) {
+		int slot = slot(charType, activeState);
+		if (byCharTypeAndState[slot] == null) {
+			Set<Relationship> matches = new HashSet<>();
+			for (Relationship r : relationships) {
+				if ((charType == CharacteristicType.ALL || r.getCharacteristicType() == charType)
+						&& hasActiveState(r, activeState)) {
+					matches.add(r);
+				}
+			}
+			byCharTypeAndState[slot] = Collections.unmodifiableSet(matches);
+		}
+		return byCharTypeAndState[slot];
+	}
+
+	synchronized Set<Relationship> getRelationships(CharacteristicType charType, Concept type, ActiveState activeState) {
+		if (type == null) {
+			return getRelationships(charType, activeState);
+		}
+		int slot = slot(charType, activeState);
+		if (byType[slot] == null) {
+			Map<Concept, Set<Relationship>> grouped = new HashMap<>();
+			for (Relationship r : getRelationships(charType, activeState)) {
+				if (r.getType() != null) {
+					grouped.computeIfAbsent(r.getType(), k -> new HashSet<>()).add(r);
+				}
+			}
+			grouped.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+			byType[slot] = grouped;
+		}
+		return byType[slot].getOrDefault(type, Collections.emptySet());
+	}
+
+	/**
+	 * The groups themselves may be modified, and those modifications will be seen until the index is rebuilt
+	 */
+	synchronized Collection<RelationshipGroup> getRelationshipGroups(CharacteristicType charType, boolean includeIsA) {
+		int slot = (charType.ordinal() * 2) + (includeIsA ? 1 : 0);
+		if (groups[slot] == null) {
+			Map<Integer, RelationshipGroup> grouped = new HashMap<>();
+			for (Relationship r : getRelationships(charType, ActiveState.ACTIVE)) {
+				if (!includeIsA && r.getType().equals(IS_A)) {
+					continue;
+				}
+				//Do we know about this Relationship Group yet?
+				RelationshipGroup group = grouped.get(r.getGroupId());
+				if (group == null) {
+					grouped.put(r.getGroupId(), new RelationshipGroup(r.getGroupId() , r));
+				} else {
+					group.getRelationships().add(r);
+				}
+			}
+			groups[slot] = Collections.unmodifiableCollection(grouped.values());
+		}
+		return groups[slot];
+	}
+
+	private static int slot(CharacteristicType charType, ActiveState activeState) {
+		return (charType.ordinal() * ACTIVE_STATES.length) + activeState.ordinal();
+	}
+
+	private static boolean hasActiveState(Relationship r, ActiveState activeState) {
+		switch (activeState) {
+			case ACTIVE : return r.isActive();
+			case INACTIVE : return !r.isActive();
+			default : return true;
+		}
+	}
+}
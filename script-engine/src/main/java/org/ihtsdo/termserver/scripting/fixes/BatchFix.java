@@ -2,6 +2,7 @@ package org.ihtsdo.termserver.scripting.fixes;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 import javax.mail.*;
@@ -12,7 +13,9 @@ import org.ihtsdo.otf.rest.client.Status;
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.*;
 import org.ihtsdo.otf.exception.TermServerScriptException;
 import org.ihtsdo.termserver.scripting.*;
+import org.ihtsdo.termserver.scripting.client.TermServerClient;
 import org.ihtsdo.termserver.scripting.domain.*;
+import org.ihtsdo.termserver.scripting.util.AdaptiveThrottle;
 import org.ihtsdo.termserver.scripting.util.HistAssocUtils;
 import org.ihtsdo.termserver.scripting.util.SnomedUtils;
 import org.snomed.otf.scheduler.domain.JobParameters;
@@ -33,6 +36,13 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 	protected int taskThrottle = 5;
 	protected int restartFromTask = NOT_SET;
 	protected int conceptThrottle = 2;
+	//Tasks worked on at once.  Only suitable for fixes that hold no state between concepts or tasks
+	protected int concurrentTasks = 1;
+	//Load each task's concepts in a single call, rather than one at a time as they're worked on.
+	//Only suitable for fixes that make all their changes through updateConcept, deleteConcept etc
+	//rather than calling tsClient directly, so that any prefetched copy is discarded when changed.
+	protected boolean prefetchConcepts = false;
+	protected int connectionPoolSize = NOT_SET;
 	protected String targetAuthor;
 	protected String targetReviewer;
 	protected String[] author_reviewer;
@@ -55,6 +65,10 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 	protected Map<Concept, Set<Concept>> historicallyRewiredPossEquivTo = new HashMap<>();
 	protected HistAssocUtils histAssocUtils = new HistAssocUtils(this);
 	private Batch currentBatch;
+	//When running tasks concurrently, replaces the fixed throttles
+	private AdaptiveThrottle throttle;
+	private static final long MIN_CALL_INTERVAL_MS = 200;
+	private static final long MAX_CALL_INTERVAL_MS = 30 * 1000;
 	
 	protected BatchFix (BatchFix clone) {
 		if (clone != null) {
@@ -192,69 +206,25 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 	protected void batchProcess(Batch batch) throws TermServerScriptException {
 		int currentTaskNum = 0;
 		this.currentBatch = batch;
+		this.throttle = null;
+		if (concurrentTasks > 1 && !dryRun) {
+			if (supportsConcurrency()) {
+				batchProcessConcurrently(batch);
+				return;
+			}
+			warn (getClass().getSimpleName() + " does not support concurrent tasks.  Processing tasks one at a time");
+		}
 		for (Task task : batch.getTasks()) {
 			try {
 				currentTaskNum++;
 				onNewTask(task);
-
-				//If we don't have any concepts in this task eg this is 100% ME file, then skip
-				if (task.size() == 0) {
-					info ("Skipping Task " + task.getSummary() + " - no concepts to process");
-					continue;
-				} else if (selfDetermining && restartPosition > 1 && currentTaskNum < restartPosition) {
-					//For self determining projects we'll restart based on a task count, rather than the line number in the input file
-					info ("Skipping Task " + task.getSummary() + " - restarting from task " + restartPosition);
-					continue;
-				} else if (restartFromTask != NOT_SET && currentTaskNum < restartFromTask) {
-					//For file driven batches, we'll use the r2 restartFromTask setting
-					info ("Skipping Task " + task.getSummary() + " - restarting from task " + restartFromTask);
+				if (skipTask(task, currentTaskNum)) {
 					continue;
-				} else if (task.size() > (taskSize + wiggleRoom)) {
-					warn (task + " contains " + task.size() + " concepts");
 				}
 				
 				//Create a task for this batch of concepts
 				createTask(task);
-				String xOfY =  (currentTaskNum) + " of " + batch.getTasks().size();
-				info ( (dryRun?"Dry Run " : "Created ") + "task (" + xOfY + "): " + task.getBranchPath());
-				incrementSummaryInformation("Tasks created",1);
-				
-				//Process each component
-				int conceptInTask = 0;
-				
-				//The components in the task might change during processing, so we'll drive this loop with a copy of the initial list
-				List<Component> components = new ArrayList<>(task.getComponents());
-				for (Component component : components) {
-					conceptInTask++;
-					processComponent(task, component, conceptInTask, xOfY);
-					//Update file after each component processed - if data limits allow
-					flushFilesSoft();  //Soft flush is optional
-				}
-				
-				if (!dryRun) {
-					populateEditPanel(task);
-					updateTask(task);
-					
-					Classification classification = null;
-					if (classifyTasks) {
-						info ("Classifying " + task);
-						classification = scaClient.classify(task.getKey());
-						debug(classification);
-					}
-					if (validateTasks) {
-						info ("Validating " + task);
-						Status status = scaClient.validate(task.getKey());
-						debug(status);
-					}
-					
-					if (classification != null) {
-						try {
-							tsClient.waitForCompletion(task.getBranchPath(), classification);
-						} catch (Exception e) {
-							error("Failed to wait for classification " + classification, e);
-						}
-					}
-				}
+				processTask(task, currentTaskNum, batch.getTasks().size());
 			} catch (Exception e) {
 				throw new TermServerScriptException("Failed to process batch " + task.getSummary() + " on task " + task.getKey(), e);
 			}
@@ -265,6 +235,148 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 			}
 		}
 	}
+	
+	/**
+	 * Fixes which run tasks concurrently share the concepts held in the GraphLoader between tasks,
+	 * so they must only change those concepts while holding the GraphLoader's lock, as
+	 * removeParentRelationship does.  Override to return true once a fix has been checked for this.
+	 * @return true if this fix may work on several tasks at once, otherwise -ct is ignored
+	 */
+	protected boolean supportsConcurrency() {
+		return false;
+	}
+	
+	/**
+	 * Works on several tasks at once, each on its own task branch.  Rather than sleeping for a fixed 
+	 * time between calls, all tasks share a throttle which paces calls according to how quickly - and
+	 * how reliably - the Terminology Server and Authoring Services are responding.  A task waiting
+	 * for its classification doesn't hold up work on the others.
+	 */
+	private void batchProcessConcurrently(Batch batch) throws TermServerScriptException {
+		throttle = new AdaptiveThrottle(MIN_CALL_INTERVAL_MS, MAX_CALL_INTERVAL_MS);
+		//The throttle learns how the TS is coping from each call made to it
+		tsClient.setCallListener(throttle::record);
+		info ("Processing " + batch.getTasks().size() + " tasks, " + concurrentTasks + " at a time");
+		ExecutorService executor = Executors.newFixedThreadPool(concurrentTasks);
+		List<Task> started = new ArrayList<>();
+		List<Future<?>> running = new ArrayList<>();
+		try {
+			int currentTaskNum = 0;
+			for (Task task : batch.getTasks()) {
+				currentTaskNum++;
+				int taskNum = currentTaskNum;
+				started.add(task);
+				running.add(executor.submit(() -> {
+					onNewTask(task);
+					if (!skipTask(task, taskNum)) {
+						createTask(task);
+						processTask(task, taskNum, batch.getTasks().size());
+					}
+					return null;
+				}));
+				
+				if (processingLimit > NOT_SET && currentTaskNum >= processingLimit) {
+					info ("Processing limit of " + processingLimit + " tasks reached.  No further tasks will be started");
+					break;
+				}
+			}
+			
+			for (int idx = 0; idx < running.size(); idx++) {
+				Task task = started.get(idx);
+				try {
+					running.get(idx).get();
+				} catch (ExecutionException e) {
+					throw new TermServerScriptException("Failed to process batch " + task.getSummary() + " on task " + task.getKey(), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TermServerScriptException("Interrupted while processing batch", e);
+		} finally {
+			executor.shutdownNow();
+			tsClient.setCallListener(null);
+			info ("Batch throttle finished at " + throttle);
+		}
+	}
+	
+	private boolean skipTask(Task task, int currentTaskNum) {
+		//If we don't have any concepts in this task eg this is 100% ME file, then skip
+		if (task.size() == 0) {
+			info ("Skipping Task " + task.getSummary() + " - no concepts to process");
+			return true;
+		} else if (selfDetermining && restartPosition > 1 && currentTaskNum < restartPosition) {
+			//For self determining projects we'll restart based on a task count, rather than the line number in the input file
+			info ("Skipping Task " + task.getSummary() + " - restarting from task " + restartPosition);
+			return true;
+		} else if (restartFromTask != NOT_SET && currentTaskNum < restartFromTask) {
+			//For file driven batches, we'll use the r2 restartFromTask setting
+			info ("Skipping Task " + task.getSummary() + " - restarting from task " + restartFromTask);
+			return true;
+		} else if (task.size() > (taskSize + wiggleRoom)) {
+			warn (task + " contains " + task.size() + " concepts");
+		}
+		return false;
+	}
+	
+	private void processTask(Task task, int currentTaskNum, int taskCount) throws Exception {
+		String xOfY =  (currentTaskNum) + " of " + taskCount;
+		info ( (dryRun?"Dry Run " : "Created ") + "task (" + xOfY + "): " + task.getBranchPath());
+		incrementSummaryInformation("Tasks created",1);
+		
+		//Process each component
+		int conceptInTask = 0;
+		
+		//The components in the task might change during processing, so we'll drive this loop with a copy of the initial list
+		List<Component> components = new ArrayList<>(task.getComponents());
+		if (prefetchConcepts && worksWithConcepts && !dryRun) {
+			Set<String> conceptIds = components.stream()
+					.map(Component::getId)
+					.collect(Collectors.toSet());
+			paced(() -> { prefetchConcepts(conceptIds, task.getBranchPath()); return null; });
+		}
+		for (Component component : components) {
+			conceptInTask++;
+			processComponent(task, component, conceptInTask, xOfY);
+			//Update file after each component processed - if data limits allow
+			flushFilesSoft();  //Soft flush is optional
+		}
+		
+		//Anything not loaded by the fix is of no further use
+		discardPrefetched(task.getBranchPath());
+		
+		if (!dryRun) {
+			populateEditPanel(task);
+			paced(() -> { updateTask(task); return null; });
+			
+			Classification classification = null;
+			if (classifyTasks) {
+				info ("Classifying " + task);
+				classification = paced(() -> scaClient.classify(task.getKey()));
+				debug(classification);
+			}
+			if (validateTasks) {
+				info ("Validating " + task);
+				Status status = paced(() -> scaClient.validate(task.getKey()));
+				debug(status);
+			}
+			
+			if (classification != null) {
+				try {
+					tsClient.waitForCompletion(task.getBranchPath(), classification);
+				} catch (Exception e) {
+					error("Failed to wait for classification " + classification, e);
+				}
+			}
+		}
+	}
+	
+	//Waits for the throttle, when there is one, before making the call
+	private <T> T paced(Callable<T> call) throws Exception {
+		if (throttle != null) {
+			throttle.acquire();
+		}
+		return call.call();
+	}
 
 	protected void onNewTask(Task task) {
 		// Override to do some processing for each new task;
@@ -272,7 +384,9 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 
 	private void createTask(Task task) throws TermServerScriptException, InterruptedException {
 		if (!dryRun) {
-			if (firstTaskCreated) {
+			if (throttle != null) {
+				throttle.acquire();
+			} else if (firstTaskCreated) {
 				debug ("Letting TS catch up - " + taskThrottle + "s nap.");
 				Thread.sleep(taskThrottle * 1000);
 			} else {
@@ -307,6 +421,9 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 						throw new TermServerScriptException("Maxed out failure attempts", e);
 					}
 					warn ("Task creation failed (" + e.getMessage() + "), retrying...");
+					if (throttle != null) {
+						throttle.acquire();
+					}
 				}
 			}
 		} else {
@@ -318,7 +435,9 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 
 	private void processComponent(Task task, Component component, int conceptInTask, String xOfY) throws TermServerScriptException {
 		try {
-			if (!dryRun && task.getComponents().indexOf(component) != 0) {
+			if (throttle != null) {
+				throttle.acquire();
+			} else if (!dryRun && task.getComponents().indexOf(component) != 0) {
 				Thread.sleep(conceptThrottle * 1000);
 			}
 			String info = " Task (" + xOfY + ") Concept (" + conceptInTask + " of " + task.getComponents().size() + ")";
@@ -334,18 +453,26 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 			}
 			incrementSummaryInformation("Total changes made", changesMade);
 		} catch (ValidationFailure f) {
-			if (++validationCount > maxFailures) { 
+			if (incrementValidationCount() > maxFailures) { 
 				warn ("Validation failures now " + validationCount);
 			}
 			report (f);
 		} catch (InterruptedException | TermServerScriptException e) {
 			report(task, component, Severity.CRITICAL, ReportActionType.API_ERROR, getMessage(e));
-			if (++failureCount >= maxFailures) {
+			if (incrementFailureCount() >= maxFailures) {
 				throw new TermServerScriptException ("Failure count exceeded " + maxFailures, e);
 			}
 		}
 	}
 
+	private synchronized int incrementFailureCount() {
+		return ++failureCount;
+	}
+	
+	private synchronized int incrementValidationCount() {
+		return ++validationCount;
+	}
+	
 	protected void report(ValidationFailure f) throws TermServerScriptException {
 		report(f.getTask(), f.getConcept(), f.getSeverity(), f.getReportActionType(), f.getMessage());
 	}
@@ -404,7 +531,7 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 	protected void init (JobRun jobRun) throws TermServerScriptException {
 		super.init(jobRun);
 		if (jobRun.getParamValue(DRY_RUN) != null) {
-			TermServerScript.dryRun = !jobRun.getParamValue(DRY_RUN).equals("N");
+			dryRun = !jobRun.getParamValue(DRY_RUN).equals("N");
 		}
 		if (jobRun.getParamValue(CONCEPTS_PER_TASK) != null) {
 			taskSize = Integer.parseInt(jobRun.getParamValue(CONCEPTS_PER_TASK));
@@ -417,7 +544,7 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 
 	protected void init (String[] args) throws TermServerScriptException {
 		if (args.length < 3) {
-			print("Usage: java <FixClass> [-a author][-a2 reviewer ][-n <taskSize>] [-r <restart position in file>] [-r2 <restart from task #>] [-l <limit> ] [-t taskCreationDelay] -c <authenticatedCookie> [-d <Y/N>] [-p <projectName>] -f <batch file Location>");
+			print("Usage: java <FixClass> [-a author][-a2 reviewer ][-n <taskSize>] [-r <restart position in file>] [-r2 <restart from task #>] [-l <limit> ] [-t taskCreationDelay] [-ct <concurrent tasks>] [-cp <connection pool size>] -c <authenticatedCookie> [-d <Y/N>] [-p <projectName>] -f <batch file Location>");
 			print(" d - dry run");
 			System.exit(-1);
 		}
@@ -428,6 +555,8 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 		boolean isTaskThrottle = false;
 		boolean isConceptThrottle = false;
 		boolean isRestartFromTask = false;
+		boolean isConcurrentTasks = false;
+		boolean isConnectionPoolSize = false;
 	
 		for (String thisArg : args) {
 			if (thisArg.equals("-a")) {
@@ -444,6 +573,16 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 				isTaskThrottle = true;
 			} else if (thisArg.equals("-t2")) {
 				isConceptThrottle = true;
+			} else if (thisArg.equals("-ct")) {
+				isConcurrentTasks = true;
+			} else if (thisArg.equals("-cp")) {
+				isConnectionPoolSize = true;
+			} else if (isConnectionPoolSize) {
+				connectionPoolSize = Integer.parseInt(thisArg);
+				isConnectionPoolSize = false;
+			} else if (isConcurrentTasks) {
+				concurrentTasks = Integer.parseInt(thisArg);
+				isConcurrentTasks = false;
 			} else if (isTaskThrottle) {
 				taskThrottle = Integer.parseInt(thisArg);
 				isTaskThrottle = false;
@@ -469,6 +608,14 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 			}
 		}
 		
+		//Concurrent tasks will want a connection each, and then some
+		if (connectionPoolSize == NOT_SET && concurrentTasks > 1) {
+			connectionPoolSize = concurrentTasks * 2;
+		}
+		if (connectionPoolSize > 0) {
+			TermServerClient.setConnectionPoolSize(connectionPoolSize);
+		}
+		
 		try {
 			super.init(args);
 		} catch (Exception e) {
@@ -706,21 +853,25 @@ public abstract class BatchFix extends TermServerScript implements RF2Constants
 		//Are we inactivating or deleting this relationship?
 		String msg;
 		ReportActionType action = ReportActionType.UNKNOWN;
-		if (!r.isReleased()) {
-			c.removeRelationship(r);
-			msg = "Deleted parent relationship: " + r.getTarget();
-			action = ReportActionType.RELATIONSHIP_DELETED;
-		} else {
-			r.setEffectiveTime(null);
-			r.setActive(false);
-			msg = "Inactivated parent relationship: " + r.getTarget();
-			action = ReportActionType.RELATIONSHIP_INACTIVATED;
+		//The concept may be one held in the GraphLoader, shared with other tasks running concurrently
+		synchronized (gl) {
+			if (!r.isReleased()) {
+				c.removeRelationship(r);
+				msg = "Deleted parent relationship: " + r.getTarget();
+				action = ReportActionType.RELATIONSHIP_DELETED;
+			} else {
+				r.setEffectiveTime(null);
+				r.setActive(false);
+				msg = "Inactivated parent relationship: " + r.getTarget();
+				action = ReportActionType.RELATIONSHIP_INACTIVATED;
+			}
+			
+			//Also remove this parent from both stated and inferred hierarchies
+			c.removeParent(CharacteristicType.STATED_RELATIONSHIP, r.getTarget());
+			c.removeParent(CharacteristicType.INFERRED_RELATIONSHIP, r.getTarget());
+			gl.inferredHierarchyChanged();
 		}
 		
-		//Also remove this parent from both stated and inferred hierarchies
-		c.removeParent(CharacteristicType.STATED_RELATIONSHIP, r.getTarget());
-		c.removeParent(CharacteristicType.INFERRED_RELATIONSHIP, r.getTarget());
-		
 		if (retained != null && !retained.isEmpty()) {
 			msg += " in favour of " + retained;
 		}
@@ -159,7 +159,7 @@ public class DrugsReTerming extends DrugBatchFix implements RF2Constants{
 
 	//Returns a list of descriptions on a concept, but with the active ones first
 	private List<Description> getDescriptionsSorted(Concept tsConcept) {
-		List<Description> sortedDescriptions = tsConcept.getDescriptions(ActiveState.ACTIVE);
+		List<Description> sortedDescriptions = new ArrayList<>(tsConcept.getDescriptions(ActiveState.ACTIVE));
 		sortedDescriptions.addAll(tsConcept.getDescriptions(ActiveState.INACTIVE));
 		return sortedDescriptions;
 	}
@@ -6,9 +6,10 @@ import java.util.*;
 
 import org.ihtsdo.otf.rest.client.terminologyserver.pojo.Project;
 import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.RefsetMembers;
 import org.ihtsdo.termserver.scripting.TermServerScript;
 import org.ihtsdo.termserver.scripting.domain.*;
-import org.ihtsdo.termserver.scripting.util.SnomedUtils;
+import org.ihtsdo.termserver.scripting.snapshot.SnapshotWriter.RF2Output;
 
 public class SnapshotGenerator extends TermServerScript {
 	
@@ -25,8 +26,10 @@ public class SnapshotGenerator extends TermServerScript {
 	protected String sRelSnapshotFilename;
 	protected String descSnapshotFilename;
 	protected String langSnapshotFilename;
+	protected String simpleRefsetSnapshotFilename;
 	protected String edition = "INT";
 	protected boolean leaveArchiveUncompressed = false;
+	protected SnapshotWriter snapshotWriter;
 	
 	protected static boolean runAsynchronously = true;
 	protected static boolean skipSave = false;
@@ -47,6 +50,16 @@ public class SnapshotGenerator extends TermServerScript {
 	protected String[] attribValHeader = new String[] {"id","effectiveTime","active","moduleId","refsetId","referencedComponentId","valueId"};
 	protected String[] assocHeader = new String[] {"id","effectiveTime","active","moduleId","refsetId","referencedComponentId","targetComponentId"};
 	protected String[] owlHeader = new String[] {"id","effectiveTime","active","moduleId","refsetId","referencedComponentId","owlExpression"};
+	protected String[] simpleRefsetHeader = new String[] {"id","effectiveTime","active","moduleId","refsetId","referencedComponentId"};
+	//The file name (within the Refset directory) and the additional columns of each refset file, by its number of columns
+	protected static final Map<Integer, String[]> refsetFiles = new HashMap<>();
+	static {
+		refsetFiles.put(6, new String[] {"Content/der2_Refset_Simple"});
+		refsetFiles.put(7, new String[] {"Map/der2_sRefset_SimpleMap", "mapTarget"});
+		refsetFiles.put(10, new String[] {"Map/der2_scccRefset_MapCorrelationOrigin", "mapTarget", "attributeId", "correlationId", "contentOriginId"});
+		refsetFiles.put(12, new String[] {"Map/der2_iissscRefset_ComplexMap", "mapGroup", "mapPriority", "mapRule", "mapAdvice", "mapTarget", "correlationId"});
+		refsetFiles.put(13, new String[] {"Map/der2_iisssccRefset_ExtendedMap", "mapGroup", "mapPriority", "mapRule", "mapAdvice", "mapTarget", "correlationId", "mapCategoryId"});
+	}
 	
 	
 	public static void main (String[] args) throws IOException, TermServerScriptException, InterruptedException {
@@ -60,22 +73,27 @@ public class SnapshotGenerator extends TermServerScript {
 			snapGen.startTimer();
 			snapGen.outputRF2();
 			snapGen.flushFiles(false, false);
-			if (!snapGen.leaveArchiveUncompressed) {	
-				SnomedUtils.createArchive(new File(snapGen.outputDirName));
-			}
 		} finally {
 			snapGen.finish();
 		}
 	}
 	
 	public void generateSnapshot (File dependencySnapshot, File previousReleaseSnapshot, File delta, File newLocation) throws TermServerScriptException {
+		generateSnapshot(dependencySnapshot, previousReleaseSnapshot, () -> loadArchive(delta, false, "Delta", false), newLocation);
+	}
+	
+	/**
+	 * As above, but with the delta loaded by the caller, eg directly from the Terminology Server
+	 * without first being saved to disk.
+	 */
+	public void generateSnapshot (File dependencySnapshot, File previousReleaseSnapshot, DeltaLoader deltaLoader, File newLocation) throws TermServerScriptException {
 		setQuiet(true);
 		init(newLocation, false);
 		if (dependencySnapshot != null) {
 			loadArchive(dependencySnapshot, false, "Snapshot", true);
 		}
 		loadArchive(previousReleaseSnapshot, false, "Snapshot", true);
-		loadArchive(delta, false, "Delta", false);
+		deltaLoader.loadDelta();
 		//Writing to disk can be done asynchronously and complete at any time.  We have the in-memory copy to work with.
 		//The disk copy will save time when we run again for the same project
 		
@@ -112,12 +130,21 @@ public class SnapshotGenerator extends TermServerScript {
 			
 			if (leaveArchiveUncompressed) {
 				packageDir = outputDir.getPath() + File.separator;
+				snapshotWriter = new SnapshotWriter();
+				info ("Outputting data to " + packageDir);
 			} else {
 				outputDirName = outputDir.getName();
 				packageRoot = outputDirName + File.separator + newLocation;
 				packageDir = packageRoot + (addTodaysDate?today:"") + File.separator;
+				//Files are compressed straight into the archive, named as if we'd zipped up the package directory
+				String zipFileName = new File(packageDir).getName() + ".zip";
+				int fileNameModifier = 1;
+				while (new File(zipFileName).exists()) {
+					zipFileName = new File(packageDir).getName() + "_" + fileNameModifier++ + ".zip";
+				}
+				snapshotWriter = new SnapshotWriter(new File(zipFileName), outputDirName + File.separator);
+				info ("Outputting data to " + zipFileName);
 			}
-			info ("Outputting data to " + packageDir);
 			initialiseFileHeaders();
 		}
 	}
@@ -126,102 +153,132 @@ public class SnapshotGenerator extends TermServerScript {
 		String termDir = packageDir +"Snapshot/Terminology/";
 		String refDir =  packageDir +"Snapshot/Refset/";
 		conSnapshotFilename = termDir + "sct2_Concept_Snapshot_"+edition+"_" + today + ".txt";
-		writeToRF2File(conSnapshotFilename, conHeader);
+		snapshotWriter.addFile(conSnapshotFilename, conHeader);
 		
 		relSnapshotFilename = termDir + "sct2_Relationship_Snapshot_"+edition+"_" + today + ".txt";
-		writeToRF2File(relSnapshotFilename, relHeader);
+		snapshotWriter.addFile(relSnapshotFilename, relHeader);
 		
 		relConcreteFilename = termDir + "sct2_RelationshipConcreteValues_Snapshot_"+edition+"_" + today + ".txt";
-		writeToRF2File(relConcreteFilename, relConcreteHeader);
+		snapshotWriter.addFile(relConcreteFilename, relConcreteHeader);
 
 		sRelSnapshotFilename = termDir + "sct2_StatedRelationship_Snapshot_"+edition+"_" + today + ".txt";
-		writeToRF2File(sRelSnapshotFilename, relHeader);
+		snapshotWriter.addFile(sRelSnapshotFilename, relHeader);
 		
 		descSnapshotFilename = termDir + "sct2_Description_Snapshot-"+languageCode+"_"+edition+"_" + today + ".txt";
-		writeToRF2File(descSnapshotFilename, descHeader);
+		snapshotWriter.addFile(descSnapshotFilename, descHeader);
 		
 		langSnapshotFilename = refDir + "Language/der2_cRefset_LanguageSnapshot-"+languageCode+"_"+edition+"_" + today + ".txt";
-		writeToRF2File(langSnapshotFilename, langHeader);
+		snapshotWriter.addFile(langSnapshotFilename, langHeader);
 		
 		attribValSnapshotFilename = refDir + "Content/der2_cRefset_AttributeValueSnapshot_"+edition+"_" + today + ".txt";
-		writeToRF2File(attribValSnapshotFilename, attribValHeader);
+		snapshotWriter.addFile(attribValSnapshotFilename, attribValHeader);
 		
 		assocSnapshotFilename = refDir + "Content/der2_cRefset_AssociationSnapshot_"+edition+"_" + today + ".txt";
-		writeToRF2File(assocSnapshotFilename, assocHeader);
+		snapshotWriter.addFile(assocSnapshotFilename, assocHeader);
 		
 		owlSnapshotFilename = termDir + "sct2_sRefset_OWLExpressionSnapshot_"+edition+"_" + today + ".txt";
-		writeToRF2File(owlSnapshotFilename, owlHeader);
-		
-		getRF2Manager().flushFiles(false);
+		snapshotWriter.addFile(owlSnapshotFilename, owlHeader);
 	}
 	
 	private void outputRF2() throws TermServerScriptException {
-		//Create new collection in case some other process looks at a new concept
-		Set<Concept> allConcepts = new HashSet<>(gl.getAllConcepts());
-		for (Concept thisConcept : allConcepts) {
-			outputRF2(thisConcept);
+		//Concepts are written out in parallel, so everything they write must be safe to call concurrently
+		snapshotWriter.write(gl.getAllConcepts(), c -> Long.parseLong(c.getId()), this::outputRF2);
+		outputRefsetMembers();
+		snapshotWriter.close();
+	}
+	
+	private void outputRefsetMembers() throws TermServerScriptException {
+		RefsetMembers refsetMembers = gl.getRefsetMembers();
+		if (refsetMembers == null) {
+			return;
+		}
+		//Simple refsets and each form of map refset have their own file, known by the number of columns
+		List<String[]> rows = new ArrayList<>();
+		Set<Integer> widths = new TreeSet<>();
+		int[] unrecognised = new int[1];
+		refsetMembers.forEachMemberRow(row -> {
+			if (!refsetFiles.containsKey(row.length)) {
+				unrecognised[0]++;
+				row = Arrays.copyOf(row, simpleRefsetHeader.length);
+			}
+			widths.add(row.length);
+			rows.add(row);
+		});
+		if (unrecognised[0] > 0) {
+			warn(unrecognised[0] + " refset members have an unrecognised number of columns.  Written as simple refset members.");
+		}
+		Map<Integer, String> filenames = new HashMap<>();
+		for (Integer columns : widths) {
+			String[] file = refsetFiles.get(columns);
+			String filename = packageDir + "Snapshot/Refset/" + file[0] + "Snapshot_" + edition + "_" + today + ".txt";
+			String[] header = Arrays.copyOf(simpleRefsetHeader, columns);
+			System.arraycopy(file, 1, header, simpleRefsetHeader.length, columns - simpleRefsetHeader.length);
+			snapshotWriter.addFile(filename, header);
+			filenames.put(columns, filename);
 		}
+		simpleRefsetSnapshotFilename = filenames.get(simpleRefsetHeader.length);
+		snapshotWriter.write(rows, row -> Long.parseLong(row[REF_IDX_REFCOMPID]), (row, out) -> out.write(filenames.get(row.length), row));
 	}
 	
-	protected void outputRF2(Concept c) throws TermServerScriptException {
-		writeToRF2File(conSnapshotFilename, c.toRF2());
+	protected void outputRF2(Concept c, RF2Output out) throws TermServerScriptException {
+		out.write(conSnapshotFilename, c.toRF2());
 		
 		for (Description d : c.getDescriptions(ActiveState.BOTH)) {
-			outputRF2(d);  //Will output langrefset and inactivation indicators in turn
+			outputRF2(d, out);  //Will output langrefset and inactivation indicators in turn
 		}
 		
 		for (Relationship r : c.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.BOTH)) {
-			outputRF2(r);
+			outputRF2(r, out);
 		}
 		
 		for (Relationship r : c.getRelationships(CharacteristicType.INFERRED_RELATIONSHIP, ActiveState.BOTH)) {
-			outputRF2(r);
+			outputRF2(r, out);
 		}
 		
 		for (InactivationIndicatorEntry i: c.getInactivationIndicatorEntries()) {
-			writeToRF2File(attribValSnapshotFilename, i.toRF2());
+			out.write(attribValSnapshotFilename, i.toRF2());
 		}
 		
 		for (AssociationEntry h: c.getAssociationEntries()) {
-			writeToRF2File(assocSnapshotFilename, h.toRF2());
+			out.write(assocSnapshotFilename, h.toRF2());
 		}
 		
 		for (AxiomEntry o: c.getAxiomEntries()) {
-			writeToRF2File(owlSnapshotFilename, o.toRF2());
+			out.write(owlSnapshotFilename, o.toRF2());
 		}
 	}
 
-	protected void outputRF2(Description d) throws TermServerScriptException {
-		writeToRF2File(descSnapshotFilename, d.toRF2());
+	protected void outputRF2(Description d, RF2Output out) throws TermServerScriptException {
+		out.write(descSnapshotFilename, d.toRF2());
 		
 		for (LangRefsetEntry lang : d.getLangRefsetEntries()) {
-			writeToRF2File(langSnapshotFilename, lang.toRF2());
+			out.write(langSnapshotFilename, lang.toRF2());
 		}
 		
 		for (InactivationIndicatorEntry inact : d.getInactivationIndicatorEntries()) {
-			writeToRF2File(attribValSnapshotFilename, inact.toRF2());
+			out.write(attribValSnapshotFilename, inact.toRF2());
 		}
 	}
 
-	protected void outputRF2(Relationship r) throws TermServerScriptException {
+	protected void outputRF2(Relationship r, RF2Output out) throws TermServerScriptException {
 		//Relationships that hail from an axiom will not be persisted as relationships
 		//We'll re-establish those on loading from the original axioms
 		if (r.fromAxiom()) {
 			return;
 		}
 		switch (r.getCharacteristicType()) {
-			case STATED_RELATIONSHIP : writeToRF2File(sRelSnapshotFilename, r.toRF2());
+			case STATED_RELATIONSHIP : out.write(sRelSnapshotFilename, r.toRF2());
 			break;
 			case INFERRED_RELATIONSHIP : 
-			default: outputRF2InferredRel(r);
+			default: outputRF2InferredRel(r, out);
 		}
 	}
 	
-	private void outputRF2InferredRel(Relationship r) throws TermServerScriptException {
+	private void outputRF2InferredRel(Relationship r, RF2Output out) throws TermServerScriptException {
 		if (r.isConcrete()) {
-			writeToRF2File(relConcreteFilename, r.toRF2());
+			out.write(relConcreteFilename, r.toRF2());
 		} else {
-			writeToRF2File(relSnapshotFilename, r.toRF2());
+			out.write(relSnapshotFilename, r.toRF2());
 		}
 	}
 
@@ -246,10 +303,6 @@ public class SnapshotGenerator extends TermServerScript {
 			debug("Writing RF2 Snapshot to disk" + (leaveArchiveUncompressed?".":" and compressing."));
 			try {
 				outputRF2();
-				getRF2Manager().flushFiles(true);
-				if (!leaveArchiveUncompressed) {	
-					SnomedUtils.createArchive(new File(outputDirName));
-				}
 				debug("Completed writing RF2 Snapshot to disk");
 			} catch (Exception e) {
 				error ("Failed to write archive to disk",e);
@@ -257,6 +310,10 @@ public class SnapshotGenerator extends TermServerScript {
 		}
 	}
 
+	public interface DeltaLoader {
+		void loadDelta() throws TermServerScriptException;
+	}
+
 	public static void setRunAsynchronously(boolean runAsynchronously) {
 		SnapshotGenerator.runAsynchronously = runAsynchronously;
 	}
@@ -0,0 +1,325 @@
+package org.ihtsdo.termserver.scripting.snapshot;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.TermServerScript;
+import org.ihtsdo.termserver.scripting.dao.RF2RowSource;
+import org.ihtsdo.termserver.scripting.dao.RF2SplitRowSource;
+import org.ihtsdo.termserver.scripting.dao.RF2Tokenizer;
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+
+/**
+ * A compact binary copy of the RF2 files of a snapshot archive, held alongside that archive
+ * so that subsequent loads can skip reading and splitting the text files.
+ *
+ * The image is a directory containing one section file per RF2 file (concepts, descriptions,
+ * relationships, axioms, language refsets, inactivation indicators, associations and MRCM)
+ * which are memory mapped when read.  Each field is stored as a variable length integer which
+ * either refers back to a value already seen in that column, or precedes a new UTF-8 value.
+ * Low cardinality columns such as moduleId, effectiveTime and refsetId therefore cost a byte or two
+ * per row and are returned as the same String instance each time.
+ *
+ * A header file is written last, recording the image format version and the size and modification
+ * time of each file of the archive it was created from - for an expanded archive, a changed file
+ * does not change the modification time of its directory.  An image without a matching header
+ * is not used.
+ */
+public class SnapshotImage implements RF2Constants {
+
+	public static final int IMAGE_VERSION = 2;
+	private static final int MAGIC = 0x53435449;  //"SCTI"
+	private static final String HEADER_FILE = "image.hdr";
+	private static final String SECTION_EXT = ".sec";
+	private static final String IMAGE_EXT = ".img";
+
+	//Columns with more distinct values than this are not worth remembering
+	private static final int MAX_COLUMN_DICTIONARY = 4096;
+
+	private File archive;
+	private File imageDir;
+
+	public SnapshotImage(File archive) {
+		this.archive = archive;
+		this.imageDir = new File(archive.getPath() + IMAGE_EXT);
+	}
+
+	public File getImageDir() {
+		return imageDir;
+	}
+
+	/**
+	 * @return true if an image exists for this archive in the current format and was created
+	 * from the archive as it currently stands on disk
+	 */
+	public boolean isAvailable() {
+		File header = new File(imageDir, HEADER_FILE);
+		if (!header.exists()) {
+			return false;
+		}
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(header)))) {
+			if (dis.readInt() != MAGIC || dis.readInt() != IMAGE_VERSION) {
+				return false;
+			}
+			int stampCount = dis.readInt();
+			List<String> imaged = new ArrayList<>(stampCount);
+			for (int i = 0; i < stampCount; i++) {
+				imaged.add(dis.readUTF());
+			}
+			return imaged.equals(getArchiveStamps());
+		} catch (IOException e) {
+			TermServerScript.warn("Unable to read snapshot image header " + header + " due to " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * @return the name, size and modification time of each file that goes into the image
+	 */
+	private List<String> getArchiveStamps() throws IOException {
+		List<String> stamps = new ArrayList<>();
+		if (archive.isDirectory()) {
+			try (Stream<Path> paths = Files.walk(archive.toPath())) {
+				for (Path path : paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+					String fileName = path.getFileName().toString();
+					if (isRF2File(fileName)) {
+						stamps.add(stamp(archive.toPath().relativize(path).toString(), path.toFile()));
+					}
+				}
+			}
+		} else {
+			stamps.add(stamp(archive.getName(), archive));
+		}
+		return stamps;
+	}
+
+	private String stamp(String name, File file) {
+		return name + "\t" + file.length() + "\t" + file.lastModified();
+	}
+
+	private static boolean isRF2File(String fileName) {
+		return fileName.endsWith(".txt") && (fileName.startsWith("sct2_") || fileName.startsWith("der2_"));
+	}
+
+	public void delete() {
+		try {
+			FileUtils.deleteDirectory(imageDir);
+		} catch (IOException e) {
+			TermServerScript.warn("Failed to delete snapshot image " + imageDir + " due to " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the RF2 files of the archive (expanded or zipped) and writes them out as an image.
+	 */
+	public void write() throws TermServerScriptException {
+		long start = System.currentTimeMillis();
+		delete();
+		try {
+			//Taken up front, so that a file changing while we read it makes the image stale
+			List<String> stamps = getArchiveStamps();
+			Files.createDirectories(imageDir.toPath());
+			int sectionCount = 0;
+			if (archive.isDirectory()) {
+				try (Stream<Path> paths = Files.walk(archive.toPath())) {
+					for (Path path : paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+						try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
+							sectionCount += writeSection(path.getFileName().toString(), is);
+						}
+					}
+				}
+			} else {
+				try (ZipInputStream zis = new ZipInputStream(new FileInputStream(archive))) {
+					ZipEntry ze = zis.getNextEntry();
+					while (ze != null) {
+						if (!ze.isDirectory()) {
+							sectionCount += writeSection(Paths.get(ze.getName()).getFileName().toString(), zis);
+						}
+						ze = zis.getNextEntry();
+					}
+				}
+			}
+
+			//Header goes last, so a partially written image will never be picked up
+			try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(new File(imageDir, HEADER_FILE)))) {
+				dos.writeInt(MAGIC);
+				dos.writeInt(IMAGE_VERSION);
+				dos.writeInt(stamps.size());
+				for (String stamp : stamps) {
+					dos.writeUTF(stamp);
+				}
+				dos.writeInt(sectionCount);
+			}
+			TermServerScript.info("Snapshot image of " + archive.getName() + " written with " + sectionCount + " sections in " + ((System.currentTimeMillis() - start) / 1000f) + "s");
+		} catch (IOException e) {
+			delete();
+			throw new TermServerScriptException("Failed to write snapshot image for " + archive, e);
+		}
+	}
+
+	private int writeSection(String fileName, InputStream is) throws IOException {
+		//Only the RF2 text files are of interest
+		if (!isRF2File(fileName)) {
+			return 0;
+		}
+		File sectionFile = new File(imageDir, fileName + SECTION_EXT);
+		RF2RowSource rows = new RF2Tokenizer(is);
+		//Section files are rewritten once complete so that the row count can go into the header
+		File bodyFile = new File(imageDir, fileName + ".tmp");
+		int rowCount = 0;
+		int columnCount = 0;
+		try (DataOutputStream body = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(bodyFile), 1 << 16))) {
+			List<Map<String, Integer>> dictionaries = new ArrayList<>();
+			String[] lineItems;
+			while ((lineItems = rows.nextRow()) != null) {
+				if (columnCount == 0) {
+					columnCount = lineItems.length;
+					for (int i = 0; i < columnCount; i++) {
+						dictionaries.add(new HashMap<>());
+					}
+				}
+				for (int i = 0; i < columnCount; i++) {
+					//Trailing empty fields are dropped by split, so treat as empty
+					String value = i < lineItems.length ? lineItems[i] : "";
+					Map<String, Integer> dictionary = dictionaries.get(i);
+					Integer idx = dictionary.get(value);
+					if (idx != null) {
+						writeVarInt(body, (idx << 1) | 1);
+					} else {
+						byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+						writeVarInt(body, bytes.length << 1);
+						body.write(bytes);
+						if (dictionary.size() < MAX_COLUMN_DICTIONARY) {
+							dictionary.put(value, dictionary.size());
+						}
+					}
+				}
+				rowCount++;
+			}
+		}
+
+		try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(sectionFile), 1 << 16))) {
+			dos.writeInt(MAGIC);
+			dos.writeInt(IMAGE_VERSION);
+			dos.writeInt(columnCount);
+			dos.writeInt(rowCount);
+			Files.copy(bodyFile.toPath(), dos);
+		} finally {
+			Files.deleteIfExists(bodyFile.toPath());
+		}
+		return 1;
+	}
+
+	/**
+	 * @return each section of the image, keyed on the name of the RF2 file it was created from.
+	 * Sections are in file name order, so the caller must put them into whatever order they need loading in.
+	 */
+	public Map<String, RF2RowSource> getSections() throws TermServerScriptException {
+		Map<String, RF2RowSource> sections = new TreeMap<>();
+		File[] sectionFiles = imageDir.listFiles((dir, name) -> name.endsWith(SECTION_EXT));
+		if (sectionFiles == null) {
+			throw new TermServerScriptException("Snapshot image " + imageDir + " could not be read");
+		}
+		for (File sectionFile : sectionFiles) {
+			String fileName = sectionFile.getName().substring(0, sectionFile.getName().length() - SECTION_EXT.length());
+			sections.put(fileName, new Section(sectionFile));
+		}
+		return sections;
+	}
+
+	private static void writeVarInt(DataOutputStream dos, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			dos.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dos.writeByte(value);
+	}
+
+	private static int readVarInt(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Reads the rows of a single section via a memory mapped buffer, rebuilding the
+	 * column dictionaries in the same order in which they were written.
+	 */
+	private static class Section extends RF2SplitRowSource {
+		private final File sectionFile;
+		private MappedByteBuffer buffer;
+		private int columnCount;
+		private int rowsRemaining;
+		private List<List<String>> dictionaries;
+		private byte[] scratch = new byte[1024];
+
+		Section(File sectionFile) {
+			this.sectionFile = sectionFile;
+		}
+
+		private void open() throws IOException {
+			try (FileChannel channel = FileChannel.open(sectionFile.toPath(), StandardOpenOption.READ)) {
+				//The mapping remains valid once the channel is closed
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			if (buffer.getInt() != MAGIC || buffer.getInt() != IMAGE_VERSION) {
+				throw new IOException("Unexpected format in snapshot image section " + sectionFile);
+			}
+			columnCount = buffer.getInt();
+			rowsRemaining = buffer.getInt();
+			dictionaries = new ArrayList<>();
+			for (int i = 0; i < columnCount; i++) {
+				dictionaries.add(new ArrayList<>());
+			}
+		}
+
+		@Override
+		public String[] nextRow() throws IOException {
+			if (buffer == null) {
+				open();
+			}
+			if (rowsRemaining == 0) {
+				buffer = null;
+				return null;
+			}
+			String[] lineItems = new String[columnCount];
+			for (int i = 0; i < columnCount; i++) {
+				int code = readVarInt(buffer);
+				List<String> dictionary = dictionaries.get(i);
+				if ((code & 1) == 1) {
+					lineItems[i] = dictionary.get(code >>> 1);
+				} else {
+					int length = code >>> 1;
+					if (length > scratch.length) {
+						scratch = new byte[length * 2];
+					}
+					buffer.get(scratch, 0, length);
+					String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+					if (dictionary.size() < MAX_COLUMN_DICTIONARY) {
+						dictionary.add(value);
+					}
+					lineItems[i] = value;
+				}
+			}
+			rowsRemaining--;
+			return lineItems;
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package org.ihtsdo.termserver.scripting.snapshot;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.ToLongFunction;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.TermServerScript;
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+import org.ihtsdo.termserver.scripting.util.SnomedUtils;
+
+/**
+ * Writes a set of RF2 files from the components held in memory, using all available cores.
+ * Components are sorted by SCTID and split into partitions, each of which is formatted by
+ * a worker thread into a buffer per file.  The buffers are then appended to their files in
+ * partition order - so rows appear in SCTID order of the component that owns them - with each
+ * file written (and when producing an archive, compressed) on its own thread.
+ *
+ * When producing an archive, each file is deflated to a temporary file as it is produced, and
+ * the zip is assembled from those once all files are complete.
+ */
+public class SnapshotWriter implements RF2Constants {
+
+	static final int DEFAULT_PARTITION_SIZE = 10000;
+	//Bounds how many formatted partitions may be waiting to be written
+	private static final int MAX_PARTITIONS_PENDING = 8;
+	private static final long MAX_ZIP_SIZE = 0xFFFFFFFFL;
+
+	public interface RF2Output {
+		void write(String fileName, Object[] columns) throws TermServerScriptException;
+	}
+
+	public interface ComponentOutput<T> {
+		void write(T component, RF2Output out) throws TermServerScriptException;
+	}
+
+	private final File archive;
+	private final String rootLocation;
+	private final int threads;
+	private int partitionSize = DEFAULT_PARTITION_SIZE;
+	private final List<RF2File> files = new ArrayList<>();
+	private final Map<String, Integer> fileIndexes = new HashMap<>();
+
+	/**
+	 * Writes each file to the location given by its name
+	 */
+	public SnapshotWriter() {
+		this(null, null);
+	}
+
+	/**
+	 * Writes each file into a new zip archive, named relative to the root location
+	 */
+	public SnapshotWriter(File archive, String rootLocation) {
+		this.archive = archive;
+		this.rootLocation = rootLocation;
+		this.threads = Runtime.getRuntime().availableProcessors();
+	}
+
+	public void addFile(String fileName, String[] header) throws TermServerScriptException {
+		if (fileIndexes.containsKey(fileName)) {
+			throw new TermServerScriptException(fileName + " has already been added to the snapshot");
+		}
+		RF2File file = new RF2File(fileName);
+		fileIndexes.put(fileName, files.size());
+		files.add(file);
+		StringBuilder line = new StringBuilder();
+		appendRow(line, header);
+		file.append(line.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	public <T> void write(Collection<T> components, ToLongFunction<T> sctId, ComponentOutput<T> output) throws TermServerScriptException {
+		long start = System.currentTimeMillis();
+		//Take a copy in case some other process adds a component while we're working
+		List<T> sorted = new ArrayList<>(components);
+		sorted.sort(Comparator.comparingLong(sctId));
+
+		ExecutorService formatters = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "snapshot-formatter");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			Deque<Future<byte[][]>> formatting = new ArrayDeque<>();
+			int nextPartition = 0;
+			int partitionCount = (sorted.size() + partitionSize - 1) / partitionSize;
+			while (nextPartition < partitionCount || !formatting.isEmpty()) {
+				//Keep the formatters busy, without getting too far ahead of the file writers
+				while (nextPartition < partitionCount && formatting.size() < threads + MAX_PARTITIONS_PENDING) {
+					List<T> partition = sorted.subList(nextPartition * partitionSize, Math.min(sorted.size(), (nextPartition + 1) * partitionSize));
+					formatting.add(formatters.submit(() -> format(partition, output)));
+					nextPartition++;
+				}
+				byte[][] formatted = formatting.removeFirst().get();
+				for (int idx = 0; idx < files.size(); idx++) {
+					if (formatted[idx].length > 0) {
+						files.get(idx).append(formatted[idx]);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TermServerScriptException("Interrupted while writing snapshot", e);
+		} catch (ExecutionException e) {
+			throw new TermServerScriptException("Failed to write snapshot due to " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			formatters.shutdownNow();
+		}
+		TermServerScript.debug("Formatted " + sorted.size() + " components into " + files.size() + " files in " + ((System.currentTimeMillis() - start) / 1000f) + "s");
+	}
+
+	private <T> byte[][] format(List<T> partition, ComponentOutput<T> output) throws TermServerScriptException {
+		StringBuilder[] buffers = new StringBuilder[files.size()];
+		RF2Output out = (fileName, columns) -> {
+			Integer idx = fileIndexes.get(fileName);
+			if (idx == null) {
+				throw new TermServerScriptException("Attempt to write to " + fileName + " which is not part of the snapshot");
+			}
+			if (buffers[idx] == null) {
+				buffers[idx] = new StringBuilder();
+			}
+			appendRow(buffers[idx], columns);
+		};
+		for (T component : partition) {
+			output.write(component, out);
+		}
+		byte[][] formatted = new byte[files.size()][];
+		for (int idx = 0; idx < files.size(); idx++) {
+			formatted[idx] = buffers[idx] == null ? new byte[0] : buffers[idx].toString().getBytes(StandardCharsets.UTF_8);
+		}
+		return formatted;
+	}
+
+	private void appendRow(StringBuilder line, Object[] columns) {
+		for (int x = 0; x < columns.length; x++) {
+			if (x > 0) {
+				line.append(TSV_FIELD_DELIMITER);
+			}
+			line.append(columns[x] == null ? "" : columns[x]);
+		}
+		line.append(LINE_DELIMITER);
+	}
+
+	/**
+	 * Waits for all files to be written and closes them, assembling the archive if one was requested.
+	 * @return the archive, or null if the files were written individually
+	 */
+	public File close() throws TermServerScriptException {
+		TermServerScriptException failure = null;
+		for (RF2File file : files) {
+			try {
+				file.close();
+			} catch (TermServerScriptException e) {
+				failure = failure == null ? e : failure;
+			}
+		}
+		try {
+			if (failure != null) {
+				throw failure;
+			}
+			if (archive != null) {
+				assembleArchive();
+				TermServerScript.info("Created archive: " + archive);
+			}
+		} finally {
+			for (RF2File file : files) {
+				file.discardDeflated();
+			}
+		}
+		return archive;
+	}
+
+	private void assembleArchive() throws TermServerScriptException {
+		int[] dosTime = toDosTime(LocalDateTime.now());
+		try (DataOutputStream zip = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(archive), 1024 * 1024))) {
+			ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+			DataOutputStream cd = new DataOutputStream(centralDirectory);
+			//DataOutputStream's count is an int, so track the offset ourselves
+			long offset = 0;
+			for (RF2File file : files) {
+				byte[] name = file.getEntryName().getBytes(StandardCharsets.UTF_8);
+				if (offset > MAX_ZIP_SIZE || file.uncompressedSize > MAX_ZIP_SIZE || file.deflated.length() > MAX_ZIP_SIZE) {
+					throw new TermServerScriptException("Snapshot too large to be archived without zip64: " + file.fileName);
+				}
+				//Local file header
+				writeInt(zip, 0x04034b50);
+				writeEntryDetails(zip, file, name, dosTime);
+				zip.write(name);
+				try (InputStream deflated = new BufferedInputStream(new FileInputStream(file.deflated))) {
+					byte[] buffer = new byte[64 * 1024];
+					int read;
+					while ((read = deflated.read(buffer)) != -1) {
+						zip.write(buffer, 0, read);
+					}
+				}
+				//Central directory entry
+				writeInt(cd, 0x02014b50);
+				writeShort(cd, 20);  //Version made by
+				writeEntryDetails(cd, file, name, dosTime);
+				writeShort(cd, 0);  //Comment length
+				writeShort(cd, 0);  //Disk number
+				writeShort(cd, 0);  //Internal attributes
+				writeInt(cd, 0);  //External attributes
+				writeInt(cd, offset);
+				cd.write(name);
+				offset += 30 + name.length + file.deflated.length();
+			}
+			long centralDirectoryOffset = offset;
+			if (centralDirectoryOffset > MAX_ZIP_SIZE) {
+				throw new TermServerScriptException("Snapshot too large to be archived without zip64: " + archive);
+			}
+			centralDirectory.writeTo(zip);
+			//End of central directory
+			writeInt(zip, 0x06054b50);
+			writeShort(zip, 0);
+			writeShort(zip, 0);
+			writeShort(zip, files.size());
+			writeShort(zip, files.size());
+			writeInt(zip, centralDirectory.size());
+			writeInt(zip, centralDirectoryOffset);
+			writeShort(zip, 0);
+		} catch (IOException e) {
+			throw new TermServerScriptException("Failed to create archive " + archive, e);
+		}
+	}
+
+	private void writeEntryDetails(DataOutputStream out, RF2File file, byte[] name, int[] dosTime) throws IOException {
+		writeShort(out, 20);  //Version needed to extract
+		writeShort(out, 0x0800);  //Names are UTF-8
+		writeShort(out, 8);  //Deflated
+		writeShort(out, dosTime[0]);
+		writeShort(out, dosTime[1]);
+		writeInt(out, file.crc.getValue());
+		writeInt(out, file.deflated.length());
+		writeInt(out, file.uncompressedSize);
+		writeShort(out, name.length);
+		writeShort(out, 0);  //Extra field length
+	}
+
+	//Zip headers are little endian
+	private static void writeShort(DataOutputStream out, int value) throws IOException {
+		out.writeByte(value & 0xFF);
+		out.writeByte((value >> 8) & 0xFF);
+	}
+
+	private static void writeInt(DataOutputStream out, long value) throws IOException {
+		writeShort(out, (int) (value & 0xFFFF));
+		writeShort(out, (int) ((value >> 16) & 0xFFFF));
+	}
+
+	private static int[] toDosTime(LocalDateTime t) {
+		int time = (t.getHour() << 11) | (t.getMinute() << 5) | (t.getSecond() / 2);
+		int date = ((t.getYear() - 1980) << 9) | (t.getMonthValue() << 5) | t.getDayOfMonth();
+		return new int[] { time, date };
+	}
+
+	void setPartitionSize(int partitionSize) {
+		this.partitionSize = partitionSize;
+	}
+
+	/**
+	 * One output file, appended to in order by its own thread.
+	 */
+	private class RF2File {
+		final String fileName;
+		final ExecutorService writer;
+		final Semaphore pending = new Semaphore(MAX_PARTITIONS_PENDING);
+		final OutputStream out;
+		final CRC32 crc = new CRC32();
+		Deflater deflater;
+		File deflated;
+		long uncompressedSize = 0;
+		volatile Exception failure;
+
+		RF2File(String fileName) throws TermServerScriptException {
+			this.fileName = fileName;
+			this.writer = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "snapshot-writer-" + new File(fileName).getName());
+				t.setDaemon(true);
+				return t;
+			});
+			try {
+				if (archive == null) {
+					out = new BufferedOutputStream(new FileOutputStream(SnomedUtils.ensureFileExists(fileName)), 1024 * 1024);
+				} else {
+					deflated = File.createTempFile("snapshot_entry-", ".deflated");
+					deflated.deleteOnExit();
+					deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+					out = new DeflaterOutputStream(new BufferedOutputStream(new FileOutputStream(deflated), 1024 * 1024), deflater, 64 * 1024);
+				}
+			} catch (IOException e) {
+				throw new TermServerScriptException("Unable to initialise " + fileName + " due to " + e.getMessage(), e);
+			}
+		}
+
+		String getEntryName() {
+			String entryName = fileName.startsWith(rootLocation) ? fileName.substring(rootLocation.length()) : fileName;
+			return entryName.replace(File.separatorChar, '/');
+		}
+
+		void append(byte[] bytes) throws TermServerScriptException {
+			checkFailure();
+			try {
+				pending.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TermServerScriptException("Interrupted while writing " + fileName, e);
+			}
+			writer.execute(() -> {
+				try {
+					if (failure == null) {
+						out.write(bytes);
+						crc.update(bytes);
+						uncompressedSize += bytes.length;
+					}
+				} catch (Exception e) {
+					failure = e;
+				} finally {
+					pending.release();
+				}
+			});
+		}
+
+		void close() throws TermServerScriptException {
+			writer.execute(() -> {
+				try {
+					out.close();
+				} catch (Exception e) {
+					failure = failure == null ? e : failure;
+				} finally {
+					if (deflater != null) {
+						deflater.end();
+					}
+				}
+			});
+			writer.shutdown();
+			try {
+				writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TermServerScriptException("Interrupted while writing " + fileName, e);
+			}
+			checkFailure();
+		}
+
+		void discardDeflated() {
+			if (deflated != null) {
+				deflated.delete();
+			}
+		}
+
+		private void checkFailure() throws TermServerScriptException {
+			if (failure != null) {
+				throw new TermServerScriptException("Failed to write " + fileName + " due to " + failure.getMessage(), failure);
+			}
+		}
+	}
+}
@@ -3,14 +3,16 @@ package org.ihtsdo.termserver.scripting.transformer;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvParser;
 import org.ihtsdo.termserver.scripting.util.StringUtils;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 
 public class CSVToJSONDataTransformer implements DataTransformer {
@@ -33,60 +35,99 @@ public class CSVToJSONDataTransformer implements DataTransformer {
 
     @Override
     public void transform(File input, File output) throws Exception {
-        JsonGenerator jsonGenerator = null;
-        try (BufferedWriter outputStream  = new BufferedWriter(new FileWriter(output, false))) {
+        try (JSONRowTransformer rowTransformer = new JSONRowTransformer(new BufferedOutputStream(new FileOutputStream(output, false)))) {
+            // process all rows
+            MappingIterator<String[]> mappingIterator = csvMapper.readerFor(String[].class).readValues(input);
+            while (mappingIterator.hasNextValue()) {
+                rowTransformer.addRow(mappingIterator.nextValue());
+            }
+        }
+    }
+
+    @Override
+    public RowTransformer openTransform(OutputStream output) throws IOException {
+        return new JSONRowTransformer(output);
+    }
+
+    @Override
+    public String getFileExtension() {
+        return FILE_EXTENSION;
+    }
+
+    /**
+     * Writes each row out as it is added, other than the last which
+     * is held back in case it needs to be excluded.
+     */
+    private class JSONRowTransformer implements RowTransformer {
+
+        private final ObjectReader rowReader = csvMapper.readerFor(String[].class);
+        private final JsonGenerator jsonGenerator;
+        private String[] headings = null;
+        private String[] heldRow = null;
+
+        JSONRowTransformer(OutputStream output) throws IOException {
             // create the Json mapper
             ObjectMapper mapper = new ObjectMapper();
-            jsonGenerator = mapper.getFactory().createGenerator(outputStream);
+            jsonGenerator = mapper.getFactory().createGenerator(output);
             jsonGenerator.useDefaultPrettyPrinter();
 
             // start of the report array
             jsonGenerator.writeStartArray();
+        }
 
-            // process all rows
-            MappingIterator<String[]> mappingIterator = csvMapper.readerFor(String[].class).readValues(input);
-            int rows = 1;
-            String[] headings = null;
+        @Override
+        public void addRow(String line) throws IOException {
+            MappingIterator<String[]> mappingIterator = rowReader.readValues(line);
             while (mappingIterator.hasNextValue()) {
-                String[] rowOLD = mappingIterator.nextValue();
-                String[] row = cleanRow(rowOLD); // clean row
+                addRow(mappingIterator.nextValue());
+            }
+        }
 
-                // simply ignore empty rows
-                if (row == null) {
-                    continue;
-                }
-                // The headings (simply store them for use later)
-                if (rows == 1) {
-                    headings = row;
-                    rows++;
-                    continue;
-                }
+        void addRow(String[] rowOLD) throws IOException {
+            String[] row = cleanRow(rowOLD); // clean row
 
-                boolean excludeRow = !mappingIterator.hasNextValue() && excludeLastRow;
-                if (!excludeRow) {
-                    jsonGenerator.writeStartObject();
-                    for (int index = 0; index < row.length; index++) {
-                        jsonGenerator.writeStringField(headings[index], row[index]);
-                    }
-                    jsonGenerator.writeEndObject();
-                }
+            // simply ignore empty rows
+            if (row == null) {
+                return;
             }
-            // end of the report array
-            jsonGenerator.writeEndArray();
-            jsonGenerator.close();
-        } catch (IOException e) {
-            throw e;
-        } finally {
-            // close the generator if we need to
-            if ( jsonGenerator != null && !jsonGenerator.isClosed()) {
-                jsonGenerator.close();
+            // The headings (simply store them for use later)
+            if (headings == null) {
+                headings = row;
+                return;
             }
+
+            if (heldRow != null) {
+                writeRow(heldRow);
+            }
+            heldRow = row;
         }
-    }
 
-    @Override
-    public String getFileExtension() {
-        return FILE_EXTENSION;
+        private void writeRow(String[] row) throws IOException {
+            jsonGenerator.writeStartObject();
+            for (int index = 0; index < row.length; index++) {
+                jsonGenerator.writeStringField(headings[index], row[index]);
+            }
+            jsonGenerator.writeEndObject();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            jsonGenerator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (heldRow != null && !excludeLastRow) {
+                    writeRow(heldRow);
+                }
+                // end of the report array
+                jsonGenerator.writeEndArray();
+            } finally {
+                // closes the output as well
+                jsonGenerator.close();
+            }
+        }
     }
 
     private String[] cleanRow(String[] row) {
@@ -1,6 +1,8 @@
 package org.ihtsdo.termserver.scripting.transformer;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 
 public interface DataTransformer {
 
@@ -12,6 +14,15 @@ public interface DataTransformer {
      */
     void transform(File input, File output) throws Exception;
 
+    /**
+     * Opens a transformation to which rows are supplied one at a time, so
+     * the output is produced as the report is written rather than afterwards.
+     * @param output The stream to write to, closed along with the transformation
+     * @return The transformation
+     * @throws IOException If the output cannot be started
+     */
+    RowTransformer openTransform(OutputStream output) throws IOException;
+
     /**
      * Gets the output file extension.
      * @return the file extension
@@ -0,0 +1,20 @@
+package org.ihtsdo.termserver.scripting.transformer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface RowTransformer extends Closeable {
+
+    /**
+     * Transforms a row as it would appear in the input file.
+     * @param line The row, the first being the headings
+     * @throws IOException If the row cannot be transformed or written
+     */
+    void addRow(String line) throws IOException;
+
+    /**
+     * Flushes any transformed rows to the output, other than any held back.
+     * @throws IOException If there are any errors
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,111 @@
+package org.ihtsdo.termserver.scripting.util;
+
+import java.util.*;
+
+/**
+ * Paces calls made from several threads to a shared service, sizing the gap between calls from
+ * what the service is telling us rather than a fixed sleep.  Calls are spaced out further when
+ * they fail or when an endpoint's latency rises well above its usual level - a sign the service 
+ * is struggling - and the gap is closed up again, a little at a time, while they succeed promptly.
+ * 
+ * Endpoints differ widely in how long they take, so each is compared only with its own baseline.
+ * That baseline drops straight to any faster latency seen, and drifts slowly up towards the current
+ * latency otherwise, so a service that has become slower for good is not treated as struggling forever.
+ */
+public class AdaptiveThrottle {
+
+	//Weight given to each new latency observation
+	private static final double LATENCY_SMOOTHING = 0.2;
+	//Weight given to each new latency observation when the baseline drifts up towards it
+	private static final double BASELINE_DECAY = 0.01;
+	//Latency this far above an endpoint's baseline is taken as the service slowing down
+	private static final double SLOW_FACTOR = 2.0;
+	private static final double BACK_OFF = 2.0;
+	private static final double EASE_OFF = 1.5;
+	private static final double RECOVER = 0.9;
+
+	private final long minIntervalMs;
+	private final long maxIntervalMs;
+	private double intervalMs;
+	private final Map<String, Endpoint> endpoints = new TreeMap<>();
+	private long nextSlot = 0;
+	private int calls = 0;
+	private int failures = 0;
+
+	/**
+	 * @param minIntervalMs the shortest gap allowed between the start of consecutive calls
+	 * @param maxIntervalMs the longest the gap may grow while the service is struggling
+	 */
+	public AdaptiveThrottle(long minIntervalMs, long maxIntervalMs) {
+		this.minIntervalMs = minIntervalMs;
+		this.maxIntervalMs = maxIntervalMs;
+		this.intervalMs = minIntervalMs;
+	}
+
+	/**
+	 * Waits until the next call may be made.  Each caller is given its own slot, so concurrent
+	 * callers are spaced out rather than released together.
+	 */
+	public void acquire() throws InterruptedException {
+		long waitMs;
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			long slot = Math.max(now, nextSlot);
+			nextSlot = slot + (long) intervalMs;
+			waitMs = slot - now;
+		}
+		if (waitMs > 0) {
+			Thread.sleep(waitMs);
+		}
+	}
+
+	/**
+	 * Records the outcome of a single call made to one of the service's endpoints
+	 */
+	public synchronized void record(String endpoint, long elapsedMs, boolean failed) {
+		calls++;
+		if (failed) {
+			failures++;
+			intervalMs = Math.max(intervalMs * BACK_OFF, 1000);
+		} else {
+			Endpoint e = endpoints.computeIfAbsent(endpoint, k -> new Endpoint());
+			e.record(elapsedMs);
+			if (e.isSlow()) {
+				intervalMs = (intervalMs * EASE_OFF) + 100;
+			} else {
+				intervalMs = intervalMs * RECOVER;
+			}
+		}
+		intervalMs = Math.min(maxIntervalMs, Math.max(minIntervalMs, intervalMs));
+	}
+
+	public synchronized long getIntervalMs() {
+		return (long) intervalMs;
+	}
+
+	public synchronized String toString() {
+		return "interval " + (long) intervalMs + "ms, " + failures + " failures in " + calls + " calls, latencies " + endpoints;
+	}
+
+	private static class Endpoint {
+		double latencyMs = -1;
+		double baselineMs = -1;
+
+		void record(long elapsedMs) {
+			latencyMs = latencyMs < 0 ? elapsedMs : (LATENCY_SMOOTHING * elapsedMs) + ((1 - LATENCY_SMOOTHING) * latencyMs);
+			if (baselineMs < 0 || latencyMs < baselineMs) {
+				baselineMs = latencyMs;
+			} else {
+				baselineMs += BASELINE_DECAY * (latencyMs - baselineMs);
+			}
+		}
+
+		boolean isSlow() {
+			return latencyMs > baselineMs * SLOW_FACTOR;
+		}
+
+		public String toString() {
+			return (long) latencyMs + "ms (baseline " + (long) baselineMs + "ms)";
+		}
+	}
+}
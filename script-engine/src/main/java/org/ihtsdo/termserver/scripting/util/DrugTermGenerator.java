@@ -473,7 +473,7 @@ public class DrugTermGenerator extends TermGenerator {
 	private boolean checkIngredientVariance(Concept c, CharacteristicType charType) throws TermServerScriptException {
 		boolean ingredientVariance = false;
 		//Now check the ingredients
-		Set<Relationship> ingredients = c.getRelationships(charType, HAS_ACTIVE_INGRED, ActiveState.ACTIVE);
+		Set<Relationship> ingredients = new HashSet<>(c.getRelationships(charType, HAS_ACTIVE_INGRED, ActiveState.ACTIVE));
 		ingredients.addAll( c.getRelationships(charType, HAS_PRECISE_INGRED, ActiveState.ACTIVE));
 		for (Relationship r : ingredients) {
 			Concept ingredient = GraphLoader.getGraphLoader().getConcept(r.getTarget().getConceptId());
@@ -548,7 +548,7 @@ public class DrugTermGenerator extends TermGenerator {
 	}
 	
 	private Set<String> getIngredientsWithStrengths(Concept c, boolean isFSN, String langRefset, CharacteristicType charType) throws TermServerScriptException {
-		Set<Relationship> ingredientRels = c.getRelationships(charType, HAS_ACTIVE_INGRED, ActiveState.ACTIVE);
+		Set<Relationship> ingredientRels = new HashSet<>(c.getRelationships(charType, HAS_ACTIVE_INGRED, ActiveState.ACTIVE));
 		ingredientRels.addAll(c.getRelationships(charType, HAS_PRECISE_INGRED, ActiveState.ACTIVE));
 		Set<String> ingredientsWithStrengths = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);  //Will naturally sort in alphabetical order
 		
@@ -586,7 +586,7 @@ public class DrugTermGenerator extends TermGenerator {
 	}
 
 	private List<Description> getOrderedIngredientDescriptions(Concept c, String langRefset, CharacteristicType charType) {
-		Set<Relationship> ingredientRels = c.getRelationships(charType, HAS_ACTIVE_INGRED, ActiveState.ACTIVE);
+		Set<Relationship> ingredientRels = new HashSet<>(c.getRelationships(charType, HAS_ACTIVE_INGRED, ActiveState.ACTIVE));
 		ingredientRels.addAll(c.getRelationships(charType, HAS_PRECISE_INGRED, ActiveState.ACTIVE));
 		return ingredientRels.stream()
 				.map(r -> GraphLoader.getGraphLoader().getConceptSafely(r.getTarget().getConceptId()))
@@ -0,0 +1,475 @@
+package org.ihtsdo.termserver.scripting.util;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative ints, organised in the same way as a roaring bitmap.
+ * Values are grouped on their high 16 bits, and each group is held either as a sorted
+ * array (when sparse) or as a 65536 bit bitmap (when dense), converting between the two
+ * as the group grows or shrinks.  Closure rows for concepts high in the hierarchy are
+ * therefore held as bitmaps while the far more numerous rows near the leaves stay small.
+ *
+ * Not thread safe - callers must arrange their own locking if the set is modified
+ * while being read.
+ */
+public class IntBitmap {
+
+	//An array container of this size takes the same space as a bitmap container
+	private static final int ARRAY_MAX = 4096;
+	private static final int BITMAP_WORDS = 1024;
+
+	private char[] keys = new char[0];
+	private Container[] containers = new Container[0];
+	private int cardinality = 0;
+
+	public IntBitmap() {
+	}
+
+	public IntBitmap(IntBitmap other) {
+		keys = Arrays.copyOf(other.keys, other.keys.length);
+		containers = new Container[other.containers.length];
+		for (int i = 0; i < containers.length; i++) {
+			containers[i] = other.containers[i].copy();
+		}
+		cardinality = other.cardinality;
+	}
+
+	public int cardinality() {
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	public boolean contains(int value) {
+		int idx = Arrays.binarySearch(keys, high(value));
+		return idx >= 0 && containers[idx].contains(low(value));
+	}
+
+	/**
+	 * @return true if the value was not already present
+	 */
+	public boolean add(int value) {
+		char high = high(value);
+		int idx = Arrays.binarySearch(keys, high);
+		if (idx < 0) {
+			idx = -idx - 1;
+			insertContainer(idx, high, new ArrayContainer());
+		}
+		Container container = containers[idx];
+		int before = container.cardinality();
+		containers[idx] = container.add(low(value));
+		if (containers[idx].cardinality() > before) {
+			cardinality++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the value was present
+	 */
+	public boolean remove(int value) {
+		int idx = Arrays.binarySearch(keys, high(value));
+		if (idx < 0) {
+			return false;
+		}
+		Container container = containers[idx];
+		int before = container.cardinality();
+		containers[idx] = container.remove(low(value));
+		if (containers[idx].cardinality() == before) {
+			return false;
+		}
+		cardinality--;
+		if (containers[idx].cardinality() == 0) {
+			removeContainer(idx);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds all values in the other bitmap to this one
+	 */
+	public void or(IntBitmap other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			int idx = Arrays.binarySearch(keys, other.keys[i]);
+			if (idx < 0) {
+				insertContainer(-idx - 1, other.keys[i], other.containers[i].copy());
+				cardinality += other.containers[i].cardinality();
+			} else {
+				int before = containers[idx].cardinality();
+				containers[idx] = containers[idx].or(other.containers[i]);
+				cardinality += containers[idx].cardinality() - before;
+			}
+		}
+	}
+
+	/**
+	 * @return true if this bitmap and the other have at least one value in common
+	 */
+	public boolean intersects(IntBitmap other) {
+		for (int i = 0; i < other.keys.length; i++) {
+			int idx = Arrays.binarySearch(keys, other.keys[i]);
+			if (idx >= 0 && containers[idx].intersects(other.containers[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void forEach(IntConsumer consumer) {
+		for (int i = 0; i < keys.length; i++) {
+			int base = keys[i] << 16;
+			containers[i].forEach(low -> consumer.accept(base | low));
+		}
+	}
+
+	public PrimitiveIterator.OfInt iterator() {
+		return new PrimitiveIterator.OfInt() {
+			int containerIdx = 0;
+			int next = advance(0, 0);
+
+			private int advance(int fromContainer, int fromLow) {
+				for (containerIdx = fromContainer; containerIdx < keys.length; containerIdx++, fromLow = 0) {
+					int low = fromLow > 0xFFFF ? -1 : containers[containerIdx].nextValue(fromLow);
+					if (low != -1) {
+						return (keys[containerIdx] << 16) | low;
+					}
+				}
+				return -1;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != -1;
+			}
+
+			@Override
+			public int nextInt() {
+				if (next == -1) {
+					throw new NoSuchElementException();
+				}
+				int current = next;
+				next = advance(containerIdx, (current & 0xFFFF) + 1);
+				return current;
+			}
+		};
+	}
+
+	public int[] toArray() {
+		int[] result = new int[cardinality];
+		int[] pos = new int[1];
+		forEach(v -> result[pos[0]++] = v);
+		return result;
+	}
+
+	private void insertContainer(int idx, char high, Container container) {
+		char[] newKeys = new char[keys.length + 1];
+		Container[] newContainers = new Container[containers.length + 1];
+		System.arraycopy(keys, 0, newKeys, 0, idx);
+		System.arraycopy(containers, 0, newContainers, 0, idx);
+		newKeys[idx] = high;
+		newContainers[idx] = container;
+		System.arraycopy(keys, idx, newKeys, idx + 1, keys.length - idx);
+		System.arraycopy(containers, idx, newContainers, idx + 1, containers.length - idx);
+		keys = newKeys;
+		containers = newContainers;
+	}
+
+	private void removeContainer(int idx) {
+		char[] newKeys = new char[keys.length - 1];
+		Container[] newContainers = new Container[containers.length - 1];
+		System.arraycopy(keys, 0, newKeys, 0, idx);
+		System.arraycopy(containers, 0, newContainers, 0, idx);
+		System.arraycopy(keys, idx + 1, newKeys, idx, keys.length - idx - 1);
+		System.arraycopy(containers, idx + 1, newContainers, idx, containers.length - idx - 1);
+		keys = newKeys;
+		containers = newContainers;
+	}
+
+	private static char high(int value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("IntBitmap cannot hold negative value " + value);
+		}
+		return (char) (value >>> 16);
+	}
+
+	private static char low(int value) {
+		return (char) value;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof IntBitmap)) {
+			return false;
+		}
+		IntBitmap that = (IntBitmap) other;
+		return cardinality == that.cardinality && Arrays.equals(toArray(), that.toArray());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	private abstract static class Container {
+		abstract int cardinality();
+		abstract boolean contains(char low);
+		//Add and remove return the container to use from now on, which may have changed type
+		abstract Container add(char low);
+		abstract Container remove(char low);
+		abstract Container or(Container other);
+		abstract boolean intersects(Container other);
+		abstract void forEach(IntConsumer consumer);
+		//Smallest value >= fromLow, or -1
+		abstract int nextValue(int fromLow);
+		abstract Container copy();
+	}
+
+	private static class ArrayContainer extends Container {
+		char[] values;
+		int size;
+
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		ArrayContainer(char[] values, int size) {
+			this.values = values;
+			this.size = size;
+		}
+
+		@Override
+		int cardinality() {
+			return size;
+		}
+
+		@Override
+		boolean contains(char low) {
+			return Arrays.binarySearch(values, 0, size, low) >= 0;
+		}
+
+		@Override
+		Container add(char low) {
+			//Values are frequently added in ascending order, so check the end first
+			int idx = (size == 0 || values[size - 1] < low) ? -size - 1 : Arrays.binarySearch(values, 0, size, low);
+			if (idx >= 0) {
+				return this;
+			}
+			if (size == ARRAY_MAX) {
+				return toBitmap().add(low);
+			}
+			idx = -idx - 1;
+			if (size == values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+			}
+			System.arraycopy(values, idx, values, idx + 1, size - idx);
+			values[idx] = low;
+			size++;
+			return this;
+		}
+
+		@Override
+		Container remove(char low) {
+			int idx = Arrays.binarySearch(values, 0, size, low);
+			if (idx >= 0) {
+				System.arraycopy(values, idx + 1, values, idx, size - idx - 1);
+				size--;
+			}
+			return this;
+		}
+
+		@Override
+		Container or(Container other) {
+			if (other instanceof BitmapContainer) {
+				return other.copy().or(this);
+			}
+			ArrayContainer that = (ArrayContainer) other;
+			char[] merged = new char[size + that.size];
+			int i = 0, j = 0, k = 0;
+			while (i < size && j < that.size) {
+				char a = values[i], b = that.values[j];
+				if (a < b) {
+					merged[k++] = a; i++;
+				} else if (b < a) {
+					merged[k++] = b; j++;
+				} else {
+					merged[k++] = a; i++; j++;
+				}
+			}
+			while (i < size) {
+				merged[k++] = values[i++];
+			}
+			while (j < that.size) {
+				merged[k++] = that.values[j++];
+			}
+			ArrayContainer result = new ArrayContainer(merged, k);
+			return k > ARRAY_MAX ? result.toBitmap() : result;
+		}
+
+		@Override
+		boolean intersects(Container other) {
+			for (int i = 0; i < size; i++) {
+				if (other.contains(values[i])) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		void forEach(IntConsumer consumer) {
+			for (int i = 0; i < size; i++) {
+				consumer.accept(values[i]);
+			}
+		}
+
+		@Override
+		int nextValue(int fromLow) {
+			int idx = Arrays.binarySearch(values, 0, size, (char) fromLow);
+			if (idx < 0) {
+				idx = -idx - 1;
+			}
+			return idx < size ? values[idx] : -1;
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 1)), size);
+		}
+
+		BitmapContainer toBitmap() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for (int i = 0; i < size; i++) {
+				bitmap.set(values[i]);
+			}
+			return bitmap;
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+		final long[] words;
+		int cardinality;
+
+		BitmapContainer() {
+			this(new long[BITMAP_WORDS], 0);
+		}
+
+		BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		void set(char low) {
+			long mask = 1L << low;
+			int w = low >>> 6;
+			if ((words[w] & mask) == 0) {
+				words[w] |= mask;
+				cardinality++;
+			}
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		Container add(char low) {
+			set(low);
+			return this;
+		}
+
+		@Override
+		Container remove(char low) {
+			long mask = 1L << low;
+			int w = low >>> 6;
+			if ((words[w] & mask) != 0) {
+				words[w] &= ~mask;
+				cardinality--;
+			}
+			return cardinality <= ARRAY_MAX ? toArrayContainer() : this;
+		}
+
+		@Override
+		Container or(Container other) {
+			if (other instanceof ArrayContainer) {
+				ArrayContainer that = (ArrayContainer) other;
+				for (int i = 0; i < that.size; i++) {
+					set(that.values[i]);
+				}
+			} else {
+				long[] thatWords = ((BitmapContainer) other).words;
+				int count = 0;
+				for (int i = 0; i < BITMAP_WORDS; i++) {
+					words[i] |= thatWords[i];
+					count += Long.bitCount(words[i]);
+				}
+				cardinality = count;
+			}
+			return this;
+		}
+
+		@Override
+		boolean intersects(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.intersects(this);
+			}
+			long[] thatWords = ((BitmapContainer) other).words;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				if ((words[i] & thatWords[i]) != 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		void forEach(IntConsumer consumer) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+				while (word != 0) {
+					consumer.accept((i << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		int nextValue(int fromLow) {
+			int w = fromLow >>> 6;
+			if (w >= BITMAP_WORDS) {
+				return -1;
+			}
+			long word = words[w] & (-1L << fromLow);
+			while (true) {
+				if (word != 0) {
+					return (w << 6) + Long.numberOfTrailingZeros(word);
+				}
+				if (++w == BITMAP_WORDS) {
+					return -1;
+				}
+				word = words[w];
+			}
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(Arrays.copyOf(words, BITMAP_WORDS), cardinality);
+		}
+
+		ArrayContainer toArrayContainer() {
+			char[] values = new char[cardinality];
+			int[] pos = new int[1];
+			forEach(v -> values[pos[0]++] = (char) v);
+			return new ArrayContainer(values, cardinality);
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package org.ihtsdo.termserver.scripting.util;
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * A map of SCTID to component which holds its keys as primitive longs in an open addressing
+ * (linear probing) table, and its values in a dense array in insertion order.  This avoids the
+ * HashMap.Node, boxed key and table overhead of a HashMap for each of the millions of
+ * components held in memory, and gives an int index for each component which other
+ * structures can make use of.
+ *
+ * Presented as a Map<String, V> so that it can stand in for the String keyed maps
+ * held by GraphLoader.  Reads are lock free unless they coincide with a write.
+ * Removal closes up the dense arrays and rebuilds the table, so it costs O(n) and moves
+ * every later entry down one index.  It is intended for the occasional component
+ * being dropped, not for bulk use.
+ */
+public class SctIdMap<V> extends AbstractMap<String, V> {
+
+	//SCTIDs are never zero, so this can mark an empty slot
+	private static final long EMPTY = 0L;
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private final StampedLock lock = new StampedLock();
+	private Table table;
+	private long[] denseKeys;
+	private Object[] values;
+	private int size = 0;
+
+	public SctIdMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public SctIdMap(int expectedSize) {
+		table = new Table(tableSizeFor(Math.max(expectedSize, 16)));
+		denseKeys = new long[Math.max(expectedSize, 16)];
+		values = new Object[denseKeys.length];
+	}
+
+	public V get(long sctId) {
+		long stamp = lock.tryOptimisticRead();
+		V value = find(table, values, sctId);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				value = find(table, values, sctId);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * @return the position of this SCTID in insertion order, or -1 if not held
+	 */
+	public int indexOf(long sctId) {
+		long stamp = lock.readLock();
+		try {
+			int slot = findSlot(table, sctId);
+			return slot == -1 ? -1 : table.slots[slot];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return the SCTID held at the given position in insertion order
+	 */
+	public long keyAt(int index) {
+		long stamp = lock.readLock();
+		try {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index " + index + " outside of " + size);
+			}
+			return denseKeys[index];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return the value held at the given position in insertion order
+	 */
+	@SuppressWarnings("unchecked")
+	public V valueAt(int index) {
+		long stamp = lock.readLock();
+		try {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index " + index + " outside of " + size);
+			}
+			return (V) values[index];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private V find(Table t, Object[] vals, long key) {
+		//During an optimistic read, the arrays may be modified underneath us,
+		//so be tolerant of inconsistencies.  The caller will validate and retry.
+		int slot = findSlot(t, key);
+		if (slot == -1) {
+			return null;
+		}
+		int idx = t.slots[slot];
+		return idx < vals.length ? (V) vals[idx] : null;
+	}
+
+	private static int findSlot(Table t, long key) {
+		int i = mix(key) & t.mask;
+		for (int probes = 0; probes <= t.mask; probes++) {
+			long k = t.keys[i];
+			if (k == key) {
+				return i;
+			} else if (k == EMPTY) {
+				return -1;
+			}
+			i = (i + 1) & t.mask;
+		}
+		return -1;
+	}
+
+	private static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	@Override
+	public V get(Object key) {
+		long sctId = toSctId(key);
+		return sctId == EMPTY ? null : get(sctId);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public V put(String key, V value) {
+		return put(toSctIdStrict(key), value);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(long sctId, V value) {
+		long stamp = lock.writeLock();
+		try {
+			int slot = findSlot(table, sctId);
+			if (slot != -1) {
+				int idx = table.slots[slot];
+				V previous = (V) values[idx];
+				values[idx] = value;
+				return previous;
+			}
+			insert(sctId, value);
+			return null;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public V computeIfAbsent(String key, Function<? super String, ? extends V> mappingFunction) {
+		long sctId = toSctIdStrict(key);
+		V value = get(sctId);
+		if (value != null) {
+			return value;
+		}
+		long stamp = lock.writeLock();
+		try {
+			//Another thread may have got there first
+			value = find(table, values, sctId);
+			if (value == null) {
+				value = mappingFunction.apply(key);
+				if (value != null) {
+					insert(sctId, value);
+				}
+			}
+			return value;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	//Caller must hold the write lock
+	private void insert(long sctId, V value) {
+		if (size == values.length) {
+			int newLength = values.length * 2;
+			denseKeys = Arrays.copyOf(denseKeys, newLength);
+			values = Arrays.copyOf(values, newLength);
+		}
+		//Keep load factor under 0.75 so probe sequences stay short
+		if ((size + 1) * 4L > table.keys.length * 3L) {
+			rehash(table.keys.length * 2);
+		}
+		denseKeys[size] = sctId;
+		values[size] = value;
+		table.put(sctId, size);
+		size++;
+	}
+
+	/**
+	 * @return the smallest power of two table which holds this many keys within the load factor
+	 */
+	private static int tableSizeFor(int keys) {
+		int minCapacity = (int) (keys * 4L / 3) + 1;
+		return Integer.highestOneBit(minCapacity - 1) << 1;
+	}
+
+	private void rehash(int newCapacity) {
+		Table newTable = new Table(newCapacity);
+		for (int i = 0; i < size; i++) {
+			newTable.put(denseKeys[i], i);
+		}
+		table = newTable;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return an unmodifiable copy of the values held at the time of the call, in insertion order.
+	 * Later changes to the map are not reflected in it.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Collection<V> values() {
+		long stamp = lock.readLock();
+		try {
+			List<Object> dense = Arrays.asList(Arrays.copyOf(values, size));
+			return (Collection<V>) Collections.unmodifiableList(dense);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public Set<Entry<String, V>> entrySet() {
+		long stamp = lock.readLock();
+		try {
+			Set<Entry<String, V>> entries = new LinkedHashSet<>();
+			for (int i = 0; i < size; i++) {
+				@SuppressWarnings("unchecked")
+				V value = (V) values[i];
+				entries.add(new SimpleImmutableEntry<>(Long.toString(denseKeys[i]), value));
+			}
+			return Collections.unmodifiableSet(entries);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V remove(Object key) {
+		long sctId = toSctId(key);
+		if (sctId == EMPTY) {
+			return null;
+		}
+		long stamp = lock.writeLock();
+		try {
+			int slot = findSlot(table, sctId);
+			if (slot == -1) {
+				return null;
+			}
+			int idx = table.slots[slot];
+			V removed = (V) values[idx];
+			int following = size - idx - 1;
+			System.arraycopy(denseKeys, idx + 1, denseKeys, idx, following);
+			System.arraycopy(values, idx + 1, values, idx, following);
+			size--;
+			denseKeys[size] = EMPTY;
+			values[size] = null;
+			//Linear probing can't simply empty the slot, and every later index has moved anyway
+			rehash(table.keys.length);
+			return removed;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			Arrays.fill(denseKeys, 0, size, EMPTY);
+			Arrays.fill(values, 0, size, null);
+			size = 0;
+			table = new Table(table.keys.length);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Parses an SCTID without creating any objects
+	 * @return the SCTID as a long, or 0 if the key is not a plain numeric identifier
+	 */
+	private static long toSctId(Object key) {
+		if (key instanceof Long) {
+			return (Long)key;
+		}
+		if (!(key instanceof String)) {
+			return EMPTY;
+		}
+		String str = (String)key;
+		int len = str.length();
+		if (len == 0 || len > 18) {
+			return EMPTY;
+		}
+		long result = 0;
+		for (int i = 0; i < len; i++) {
+			char c = str.charAt(i);
+			if (c < '0' || c > '9') {
+				return EMPTY;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	private static long toSctIdStrict(String key) {
+		long sctId = toSctId(key);
+		if (sctId == EMPTY) {
+			throw new IllegalArgumentException("'" + key + "' is not a valid SCTID");
+		}
+		return sctId;
+	}
+
+	private static class Table {
+		final long[] keys;
+		final int[] slots;
+		final int mask;
+
+		Table (int capacity) {
+			keys = new long[capacity];
+			slots = new int[capacity];
+			mask = capacity - 1;
+		}
+
+		void put(long key, int idx) {
+			int i = mix(key) & mask;
+			while (keys[i] != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			//Write the index before the key so that a racing reader cannot see the key without it
+			slots[i] = idx;
+			keys[i] = key;
+		}
+	}
+}
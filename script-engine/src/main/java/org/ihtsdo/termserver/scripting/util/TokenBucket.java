@@ -0,0 +1,62 @@
+package org.ihtsdo.termserver.scripting.util;
+
+/**
+ * Paces calls to a rate limited service.  The bucket holds up to capacity tokens and is topped
+ * up continuously so that, over any quota window, no more than the permitted number of calls
+ * are made, while allowing a short burst after a quiet spell.
+ */
+public class TokenBucket {
+
+	private final int capacity;
+	private final double tokensPerNano;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * @param requestsPerWindow the number of calls the service allows per window
+	 * @param windowSeconds the length of the quota window
+	 * @param capacity the largest burst allowed
+	 */
+	public TokenBucket(int requestsPerWindow, int windowSeconds, int capacity) {
+		this.capacity = capacity;
+		this.tokensPerNano = requestsPerWindow / (windowSeconds * 1_000_000_000d);
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * Takes a token, waiting until one is available
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		refill();
+		while (tokens < 1) {
+			long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+			wait(Math.max(1, waitNanos / 1_000_000), 0);
+			refill();
+		}
+		tokens--;
+	}
+
+	/**
+	 * @return true if a call could be made now without waiting
+	 */
+	public synchronized boolean hasToken() {
+		refill();
+		return tokens >= 1;
+	}
+
+	/**
+	 * Called when the service reports the quota as exceeded, since it has seen calls we
+	 * haven't - other processes using the same account, for example.
+	 */
+	public synchronized void empty() {
+		refill();
+		tokens = 0;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+	}
+}
@@ -0,0 +1,48 @@
+package org.ihtsdo.termserver.scripting;
+
+import java.io.*;
+
+import org.ihtsdo.termserver.scripting.dao.RF2Tokenizer;
+
+/**
+ * Compares the time taken to load an OWL axiom refset file parsing each expression on one
+ * thread with nothing cached - as the loader used to - against parsing on a pool of threads,
+ * both from cold and with the expressions already parsed by an earlier load.
+ * Not run as part of the build.  Usage: AxiomLoadBenchmark <sct2_sRefset_OWLExpression file> [iterations]
+ */
+public class AxiomLoadBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("Usage: AxiomLoadBenchmark <sct2_sRefset_OWLExpression file> [iterations]");
+			return;
+		}
+		File file = new File(args[0]);
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		int threads = Runtime.getRuntime().availableProcessors();
+		GraphLoader gl = GraphLoader.getGraphLoader();
+		//First pass of each warms up the JIT and the page cache
+		for (int i = 0; i <= iterations; i++) {
+			boolean report = i > 0;
+			time("single thread, cold", gl, file, 1, true, report);
+			time(threads + " threads, cold", gl, file, threads, true, report);
+			time(threads + " threads, reload", gl, file, threads, false, report);
+		}
+	}
+
+	private static void time(String label, GraphLoader gl, File file, int threads, boolean cold, boolean report) throws Exception {
+		gl.reset();
+		gl.setAxiomParseThreads(threads);
+		if (cold) {
+			gl.clearParsedAxioms();
+		}
+		long start = System.nanoTime();
+		try (InputStream is = new FileInputStream(file)) {
+			gl.loadAxioms(new RF2Tokenizer(is), false, true);
+		}
+		long elapsed = System.nanoTime() - start;
+		if (report) {
+			System.out.println(String.format("%-22s %6dms", label, elapsed / 1000000));
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package org.ihtsdo.termserver.scripting;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.domain.Concept;
+import org.junit.Test;
+
+public class ConceptClosureCacheTest {
+
+	private final Map<Concept, Set<Concept>> parents = new HashMap<>();
+	//How many times each concept's parents have been asked for, ie its closure calculated
+	private final Map<Concept, Integer> calculated = new HashMap<>();
+
+	private final Concept root = new Concept("138875005");
+	private final Concept clinicalFinding = new Concept("404684003");
+	private final Concept disease = new Concept("64572001");
+	private final Concept heartDisease = new Concept("56265001");
+	private final Concept infarction = new Concept("22298006");
+
+	@Test
+	public void closureTest() throws TermServerScriptException {
+		hierarchy();
+		ConceptClosureCache cache = createCache(ConceptClosureCache.DEFAULT_MAX_ENTRIES);
+		assertEquals(set(heartDisease, disease, clinicalFinding, root), cache.get(infarction));
+		assertEquals(set(disease, clinicalFinding, root), cache.get(heartDisease));
+		assertTrue(cache.get(root).isEmpty());
+		//Each concept's closure was only calculated once
+		assertEquals(Integer.valueOf(1), calculated.get(disease));
+		assertEquals(5, cache.size());
+		assertEquals(4 + 3 + 2 + 1, cache.getEntriesHeld());
+		try {
+			cache.get(infarction).clear();
+			fail("Closure should be read only");
+		} catch (UnsupportedOperationException expected) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void cycleTest() {
+		hierarchy();
+		//Disease made a child of one of its own descendants
+		parents.get(disease).add(heartDisease);
+		ConceptClosureCache cache = createCache(ConceptClosureCache.DEFAULT_MAX_ENTRIES);
+		try {
+			cache.get(infarction);
+			fail("Cycle should have been detected");
+		} catch (TermServerScriptException expected) {
+			assertTrue(expected.getMessage().contains("Cycle"));
+		}
+		//Closures outside of the cycle are unaffected
+		try {
+			assertEquals(set(root), cache.get(clinicalFinding));
+		} catch (TermServerScriptException e) {
+			fail("Unexpected " + e);
+		}
+	}
+
+	@Test
+	public void leastRecentlyUsedEvictionTest() throws TermServerScriptException {
+		hierarchy();
+		Concept[] leaves = new Concept[4];
+		String[] leafIds = { "19829001", "233604007", "53084003", "123037004" };
+		for (int i = 0; i < leaves.length; i++) {
+			leaves[i] = new Concept(leafIds[i]);
+			parents.put(leaves[i], set(disease));
+		}
+		//Disease's closure holds 2, each leaf 3
+		ConceptClosureCache cache = createCache(12);
+		cache.get(leaves[0]);
+		cache.get(leaves[1]);
+		cache.get(leaves[2]);
+		assertEquals(1 + 2 + 3 * 3, cache.getEntriesHeld());
+
+		//The fourth takes us to 15, over the limit, so we go back down to 9 by removing the least recently used.
+		//Disease was used in building every leaf's closure, so is kept while the first leaves go
+		cache.get(leaves[3]);
+		assertTrue(cache.getEntriesHeld() <= 9);
+		int before = calculated.get(disease);
+		cache.get(disease);
+		assertEquals(before, (int) calculated.get(disease));
+		cache.get(leaves[3]);
+		assertEquals(1, (int) calculated.get(leaves[3]));
+		cache.get(leaves[0]);
+		assertEquals(2, (int) calculated.get(leaves[0]));
+	}
+
+	private void hierarchy() {
+		parents.put(root, set());
+		parents.put(clinicalFinding, set(root));
+		parents.put(disease, set(clinicalFinding));
+		parents.put(heartDisease, set(disease));
+		parents.put(infarction, set(heartDisease));
+	}
+
+	private ConceptClosureCache createCache(long maxEntries) {
+		return new ConceptClosureCache(c -> {
+			calculated.merge(c, 1, Integer::sum);
+			return parents.get(c);
+		}, maxEntries);
+	}
+
+	private Set<Concept> set(Concept... concepts) {
+		return new HashSet<>(Arrays.asList(concepts));
+	}
+}
@@ -0,0 +1,160 @@
+package org.ihtsdo.termserver.scripting;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+import org.apache.commons.io.FileUtils;
+import org.ihtsdo.termserver.scripting.domain.Concept;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EclDiskCacheTest {
+
+	private static final String BRANCH = "MAIN/PROJECT";
+	private static final long HEAD = 1634567890123L;
+	private static final String[] SCTIDS = { "404684003", "64572001", "56265001", "22298006", "19829001",
+			"233604007", "53084003", "123037004", "80891009", "39607008" };
+
+	private File tempDir;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = Files.createTempDirectory("ecl_cache-").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void roundTripTest() {
+		EclDiskCache cache = new EclDiskCache(tempDir, 1024 * 1024);
+		cache.put(BRANCH, HEAD, "<< 404684003", concepts(SCTIDS));
+		long[] expected = Arrays.stream(SCTIDS).mapToLong(Long::parseLong).sorted().toArray();
+		assertArrayEquals(expected, cache.get(BRANCH, HEAD, "<< 404684003"));
+		//Held until the branch moves on
+		assertNull(cache.get(BRANCH, HEAD + 1, "<< 404684003"));
+		assertNull(cache.get("MAIN", HEAD, "<< 404684003"));
+
+		//And available to a new process
+		EclDiskCache restarted = new EclDiskCache(tempDir, 1024 * 1024);
+		assertArrayEquals(expected, restarted.get(BRANCH, HEAD, "<< 404684003"));
+		cache.put(BRANCH, HEAD, "<< 19829001", new ArrayList<>());
+		assertArrayEquals(new long[0], restarted.get(BRANCH, HEAD, "<< 19829001"));
+	}
+
+	@Test
+	public void evictionTest() throws IOException {
+		EclDiskCache sizing = new EclDiskCache(tempDir, Long.MAX_VALUE);
+		sizing.put(BRANCH, HEAD, "<< 404684003", concepts(SCTIDS));
+		long size = cacheFiles().get(0).length();
+		FileUtils.cleanDirectory(tempDir);
+
+		//Room for three expansions of the same size
+		EclDiskCache cache = new EclDiskCache(tempDir, size * 7 / 2);
+		cache.put(BRANCH, HEAD, "<< 404684003", concepts(SCTIDS));
+		age();
+		cache.put(BRANCH, HEAD, "<< 64572001", concepts(SCTIDS));
+		age();
+		cache.put(BRANCH, HEAD, "<< 56265001", concepts(SCTIDS));
+		age();
+		//Reading the first marks it as recently used
+		assertNotNull(cache.get(BRANCH, HEAD, "<< 404684003"));
+		age();
+		assertEquals(3, cacheFiles().size());
+
+		//The fourth takes us over the limit, so the least recently used are removed down to 3/4 of it
+		cache.put(BRANCH, HEAD, "<< 22298006", concepts(SCTIDS));
+		assertEquals(2, cacheFiles().size());
+		assertNotNull(cache.get(BRANCH, HEAD, "<< 404684003"));
+		assertNotNull(cache.get(BRANCH, HEAD, "<< 22298006"));
+		assertNull(cache.get(BRANCH, HEAD, "<< 64572001"));
+		assertNull(cache.get(BRANCH, HEAD, "<< 56265001"));
+	}
+
+	@Test
+	public void truncatedFileTest() throws IOException {
+		EclDiskCache cache = new EclDiskCache(tempDir, 1024 * 1024);
+		cache.put(BRANCH, HEAD, "<< 404684003", concepts(SCTIDS));
+		File file = cacheFiles().get(0);
+		byte[] content = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(content, content.length - 5));
+		assertNull(cache.get(BRANCH, HEAD, "<< 404684003"));
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void corruptCountTest() throws IOException {
+		EclDiskCache cache = new EclDiskCache(tempDir, 1024 * 1024);
+		cache.put(BRANCH, HEAD, "<< 404684003", concepts(SCTIDS));
+		File file = cacheFiles().get(0);
+		byte[] content = Files.readAllBytes(file.toPath());
+		//The count follows the magic number and the key, which is preceded by its length
+		int keyLength = ((content[4] & 0xFF) << 8) | (content[5] & 0xFF);
+		int countPos = 6 + keyLength;
+		for (int i = 0; i < 4; i++) {
+			content[countPos + i] = (byte) 0xFF;
+		}
+		Files.write(file.toPath(), content);
+		assertNull(cache.get(BRANCH, HEAD, "<< 404684003"));
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void garbageFileTest() throws IOException {
+		EclDiskCache cache = new EclDiskCache(tempDir, 1024 * 1024);
+		cache.put(BRANCH, HEAD, "<< 404684003", concepts(SCTIDS));
+		File file = cacheFiles().get(0);
+		byte[] garbage = new byte[200];
+		new Random(42).nextBytes(garbage);
+		Files.write(file.toPath(), garbage);
+		assertNull(cache.get(BRANCH, HEAD, "<< 404684003"));
+		assertFalse(file.exists());
+
+		//The entry can be cached again
+		cache.put(BRANCH, HEAD, "<< 404684003", concepts(SCTIDS));
+		assertNotNull(cache.get(BRANCH, HEAD, "<< 404684003"));
+	}
+
+	@Test
+	public void staleTempFilesTest() throws IOException {
+		File stale = new File(tempDir, "expansion-123.tmp");
+		File inProgress = new File(tempDir, "expansion-456.tmp");
+		Files.write(stale.toPath(), new byte[100]);
+		Files.write(inProgress.toPath(), new byte[100]);
+		stale.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000L);
+
+		EclDiskCache cache = new EclDiskCache(tempDir, 1024 * 1024);
+		assertNull(cache.get(BRANCH, HEAD, "<< 404684003"));
+		assertFalse(stale.exists());
+		//Could belong to another process still writing
+		assertTrue(inProgress.exists());
+	}
+
+	private List<Concept> concepts(String... sctIds) {
+		List<Concept> concepts = new ArrayList<>();
+		for (String sctId : sctIds) {
+			concepts.add(new Concept(sctId));
+		}
+		return concepts;
+	}
+
+	private List<File> cacheFiles() {
+		File[] files = tempDir.listFiles((dir, name) -> name.endsWith(".ecl"));
+		return files == null ? new ArrayList<>() : Arrays.asList(files);
+	}
+
+	/**
+	 * Moves every file held back in time, so that those written or read since are the most recent
+	 */
+	private void age() {
+		for (File file : tempDir.listFiles()) {
+			file.setLastModified(file.lastModified() - 10000);
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package org.ihtsdo.termserver.scripting;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.LocalEclEvaluator.UnsupportedEclException;
+import org.ihtsdo.termserver.scripting.dao.RF2Tokenizer;
+import org.ihtsdo.termserver.scripting.domain.Concept;
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocalEclEvaluatorTest implements RF2Constants {
+
+	private static final String ROOT = "138875005";
+	private static final String CLINICAL_FINDING = "404684003";
+	private static final String DISEASE = "64572001";
+	private static final String HEART_DISEASE = "56265001";
+	private static final String MYOCARDIAL_INFARCTION = "22298006";
+	private static final String LUNG_DISEASE = "19829001";
+	private static final String PNEUMONIA = "233604007";
+	private static final String BACTERIAL_PNEUMONIA = "53084003";
+	private static final String BODY_STRUCTURE = "123037004";
+	private static final String HEART = "80891009";
+	private static final String LUNG = "39607008";
+	private static final String MORPHOLOGY = "49755003";
+	private static final String INFARCT = "55641003";
+	private static final String ORGANISM = "410607006";
+	private static final String BACTERIA = "409822003";
+	private static final String ATTRIBUTE = "410662002";
+	private static final String FINDING_SITE = "363698007";
+	private static final String ASSOCIATED_MORPHOLOGY = "116676008";
+	private static final String CAUSATIVE_AGENT = "246075003";
+	private static final String INACTIVE_CONCEPT = "195967001";
+	private static final String REFSET = "723264001";
+
+	private static final String MODULE = "900000000000207008";
+	private static final String PRIMITIVE = "900000000000074008";
+	private static final String INFERRED = "900000000000011006";
+	private static final String EXISTENTIAL = "900000000000451002";
+
+	private LocalEclEvaluator evaluator;
+	private int relationshipCount = 0;
+
+	/*
+	 * 138875005 |Root|
+	 *   404684003 |Clinical finding|
+	 *     64572001 |Disease|
+	 *       56265001 |Heart disease|        finding site = heart (ungrouped)
+	 *         22298006 |MI|                 { finding site = heart, morphology = infarct }
+	 *       19829001 |Lung disease|
+	 *         233604007 |Pneumonia|         { finding site = lung }
+	 *           53084003 |Bacterial pneumonia|  { finding site = lung }, causative agent = bacteria (ungrouped)
+	 *   123037004 |Body structure|
+	 *     80891009 |Heart|, 39607008 |Lung|  members of 723264001
+	 *     49755003 |Morphology|
+	 *       55641003 |Infarct|
+	 *   410607006 |Organism|
+	 *     409822003 |Bacteria|
+	 *   410662002 |Attribute|
+	 *     363698007 |Finding site|, 116676008 |Associated morphology|, 246075003 |Causative agent|
+	 */
+	@Before
+	public void setUp() throws Exception {
+		GraphLoader gl = GraphLoader.getGraphLoader();
+		gl.reset();
+
+		List<String> concepts = new ArrayList<>();
+		for (String sctId : new String[] { ROOT, CLINICAL_FINDING, DISEASE, HEART_DISEASE, MYOCARDIAL_INFARCTION,
+				LUNG_DISEASE, PNEUMONIA, BACTERIAL_PNEUMONIA, BODY_STRUCTURE, HEART, LUNG, MORPHOLOGY, INFARCT,
+				ORGANISM, BACTERIA, ATTRIBUTE, FINDING_SITE, ASSOCIATED_MORPHOLOGY, CAUSATIVE_AGENT, IS_A.getConceptId() }) {
+			concepts.add(concept(sctId, true));
+		}
+		concepts.add(concept(INACTIVE_CONCEPT, false));
+		gl.loadConceptFile(rf2(concepts), true);
+
+		List<String> relationships = new ArrayList<>();
+		isA(relationships, ROOT, CLINICAL_FINDING, BODY_STRUCTURE, ORGANISM, ATTRIBUTE);
+		isA(relationships, CLINICAL_FINDING, DISEASE);
+		isA(relationships, DISEASE, HEART_DISEASE, LUNG_DISEASE);
+		isA(relationships, HEART_DISEASE, MYOCARDIAL_INFARCTION);
+		isA(relationships, LUNG_DISEASE, PNEUMONIA);
+		isA(relationships, PNEUMONIA, BACTERIAL_PNEUMONIA);
+		isA(relationships, BODY_STRUCTURE, HEART, LUNG, MORPHOLOGY);
+		isA(relationships, MORPHOLOGY, INFARCT);
+		isA(relationships, ORGANISM, BACTERIA);
+		isA(relationships, ATTRIBUTE, FINDING_SITE, ASSOCIATED_MORPHOLOGY, CAUSATIVE_AGENT, IS_A.getConceptId());
+		relationships.add(relationship(HEART_DISEASE, FINDING_SITE, HEART, 0));
+		relationships.add(relationship(MYOCARDIAL_INFARCTION, FINDING_SITE, HEART, 1));
+		relationships.add(relationship(MYOCARDIAL_INFARCTION, ASSOCIATED_MORPHOLOGY, INFARCT, 1));
+		relationships.add(relationship(PNEUMONIA, FINDING_SITE, LUNG, 1));
+		relationships.add(relationship(BACTERIAL_PNEUMONIA, FINDING_SITE, LUNG, 1));
+		relationships.add(relationship(BACTERIAL_PNEUMONIA, CAUSATIVE_AGENT, BACTERIA, 0));
+		gl.loadRelationships(CharacteristicType.INFERRED_RELATIONSHIP, rf2(relationships), true, false, true);
+
+		List<String> members = new ArrayList<>();
+		members.add(String.join("\t", "00000000-0000-0000-0000-000000000001", "20210131", "1", MODULE, REFSET, HEART));
+		members.add(String.join("\t", "00000000-0000-0000-0000-000000000002", "20210131", "1", MODULE, REFSET, LUNG));
+		gl.loadRefsetMemberFile(new RF2Tokenizer(rf2(members)));
+
+		evaluator = new LocalEclEvaluator(gl);
+	}
+
+	@Test
+	public void hierarchyTest() throws TermServerScriptException {
+		assertMatches(DISEASE, DISEASE);
+		assertMatches("< " + DISEASE, HEART_DISEASE, MYOCARDIAL_INFARCTION, LUNG_DISEASE, PNEUMONIA, BACTERIAL_PNEUMONIA);
+		assertMatches("<< " + DISEASE + " |Disease|", DISEASE, HEART_DISEASE, MYOCARDIAL_INFARCTION, LUNG_DISEASE, PNEUMONIA, BACTERIAL_PNEUMONIA);
+		assertMatches("<! " + DISEASE, HEART_DISEASE, LUNG_DISEASE);
+		assertMatches("<<! " + DISEASE, DISEASE, HEART_DISEASE, LUNG_DISEASE);
+		assertMatches("> " + MYOCARDIAL_INFARCTION, HEART_DISEASE, DISEASE, CLINICAL_FINDING, ROOT);
+		assertMatches(">> " + MYOCARDIAL_INFARCTION, MYOCARDIAL_INFARCTION, HEART_DISEASE, DISEASE, CLINICAL_FINDING, ROOT);
+		assertMatches(">! " + MYOCARDIAL_INFARCTION, HEART_DISEASE);
+		assertMatches(">>! " + MYOCARDIAL_INFARCTION, MYOCARDIAL_INFARCTION, HEART_DISEASE);
+	}
+
+	@Test
+	public void inactiveConceptTest() throws TermServerScriptException {
+		assertMatches(INACTIVE_CONCEPT);
+		assertMatches("<< " + INACTIVE_CONCEPT);
+		Set<String> any = evaluate("*");
+		assertTrue(any.contains(ROOT));
+		assertFalse(any.contains(INACTIVE_CONCEPT));
+		assertFalse(evaluate("< *").contains(ROOT));
+	}
+
+	@Test
+	public void inactivatedAfterCreationTest() throws TermServerScriptException {
+		//The evaluator is reused between queries, so must see concepts inactivated since it was created
+		GraphLoader.getGraphLoader().getConcept(BACTERIAL_PNEUMONIA).setActive(false);
+		assertMatches("<< " + PNEUMONIA, PNEUMONIA);
+		assertFalse(evaluate("*").contains(BACTERIAL_PNEUMONIA));
+	}
+
+	@Test
+	public void booleanOperatorTest() throws TermServerScriptException {
+		assertMatches("< " + DISEASE + " MINUS < " + LUNG_DISEASE, HEART_DISEASE, MYOCARDIAL_INFARCTION, LUNG_DISEASE);
+		assertMatches("<< " + HEART_DISEASE + " OR << " + PNEUMONIA, HEART_DISEASE, MYOCARDIAL_INFARCTION, PNEUMONIA, BACTERIAL_PNEUMONIA);
+		assertMatches("< " + DISEASE + " AND < " + LUNG_DISEASE + " AND << " + BACTERIAL_PNEUMONIA, BACTERIAL_PNEUMONIA);
+		//Brackets are needed to mix operators, and are evaluated first
+		assertMatches("<< " + DISEASE + " MINUS (<< " + HEART_DISEASE + " OR << " + PNEUMONIA + ")", DISEASE, LUNG_DISEASE);
+		assertMatches("(<< " + DISEASE + " MINUS << " + HEART_DISEASE + ") OR << " + PNEUMONIA, DISEASE, LUNG_DISEASE, PNEUMONIA, BACTERIAL_PNEUMONIA);
+		assertUnsupported("<< " + HEART_DISEASE + " OR << " + LUNG_DISEASE + " AND < " + DISEASE);
+	}
+
+	@Test
+	public void cardinalityTest() throws TermServerScriptException {
+		//Without a cardinality, at least one matching attribute is required
+		assertMatches("< " + CLINICAL_FINDING + " : " + FINDING_SITE + " = *", HEART_DISEASE, MYOCARDIAL_INFARCTION, PNEUMONIA, BACTERIAL_PNEUMONIA);
+		assertMatches("< " + CLINICAL_FINDING + " : [1..*] " + FINDING_SITE + " = *", HEART_DISEASE, MYOCARDIAL_INFARCTION, PNEUMONIA, BACTERIAL_PNEUMONIA);
+		assertMatches("< " + CLINICAL_FINDING + " : [0..0] " + FINDING_SITE + " = *", DISEASE, LUNG_DISEASE);
+		assertMatches("< " + CLINICAL_FINDING + " : [2..*] " + FINDING_SITE + " = *");
+		assertMatches("< " + CLINICAL_FINDING + " : [0..0] " + CAUSATIVE_AGENT + " = *, " + FINDING_SITE + " = << " + LUNG, PNEUMONIA);
+	}
+
+	@Test
+	public void notEqualsTest() throws TermServerScriptException {
+		assertMatches("< " + CLINICAL_FINDING + " : " + FINDING_SITE + " != " + HEART, PNEUMONIA, BACTERIAL_PNEUMONIA);
+		assertMatches("< " + CLINICAL_FINDING + " : " + FINDING_SITE + " != << " + BODY_STRUCTURE);
+	}
+
+	@Test
+	public void attributeGroupTest() throws TermServerScriptException {
+		//Ungrouped attributes each count as a group of their own
+		assertMatches("< " + CLINICAL_FINDING + " : { " + FINDING_SITE + " = " + HEART + " }", HEART_DISEASE, MYOCARDIAL_INFARCTION);
+		assertMatches("< " + CLINICAL_FINDING + " : { " + FINDING_SITE + " = " + HEART + ", " + ASSOCIATED_MORPHOLOGY + " = " + INFARCT + " }", MYOCARDIAL_INFARCTION);
+		//Bacterial pneumonia has both attributes, but not in the same group
+		assertMatches("< " + CLINICAL_FINDING + " : { " + FINDING_SITE + " = " + LUNG + ", " + CAUSATIVE_AGENT + " = " + BACTERIA + " }");
+		assertMatches("< " + CLINICAL_FINDING + " : " + FINDING_SITE + " = " + LUNG + ", " + CAUSATIVE_AGENT + " = " + BACTERIA, BACTERIAL_PNEUMONIA);
+		assertMatches("< " + CLINICAL_FINDING + " : [0..0] { " + FINDING_SITE + " = " + LUNG + " }", DISEASE, HEART_DISEASE, MYOCARDIAL_INFARCTION, LUNG_DISEASE);
+	}
+
+	@Test
+	public void memberOfTest() throws TermServerScriptException {
+		assertMatches("^ " + REFSET + " |Lateralizable body structure reference set|", HEART, LUNG);
+		assertMatches("<< " + BODY_STRUCTURE + " MINUS ^ " + REFSET, BODY_STRUCTURE, MORPHOLOGY, INFARCT);
+		assertMatches("< " + CLINICAL_FINDING + " : " + FINDING_SITE + " = ^ " + REFSET, HEART_DISEASE, MYOCARDIAL_INFARCTION, PNEUMONIA, BACTERIAL_PNEUMONIA);
+	}
+
+	@Test
+	public void unsupportedTest() {
+		//Refsets and concepts that we don't hold
+		assertUnsupported("^ 447562003");
+		assertUnsupported("<< 10000006");
+		//Constructs left to the terminology server
+		assertUnsupported("< " + BODY_STRUCTURE + " : R " + FINDING_SITE + " = *");
+		assertUnsupported("< " + CLINICAL_FINDING + " . " + FINDING_SITE);
+		assertUnsupported("< " + CLINICAL_FINDING + " : " + FINDING_SITE + " = #5");
+		assertUnsupported("<< " + CLINICAL_FINDING + " {{ term = \"heart\" }}");
+		assertUnsupported("<< " + CLINICAL_FINDING + " : { " + FINDING_SITE + " = * , { " + CAUSATIVE_AGENT + " = * } }");
+	}
+
+	private Set<String> evaluate(String ecl) throws TermServerScriptException {
+		return evaluator.evaluate(ecl).stream()
+				.map(Concept::getConceptId)
+				.collect(Collectors.toSet());
+	}
+
+	private void assertMatches(String ecl, String... expected) throws TermServerScriptException {
+		assertEquals(ecl, new HashSet<>(Arrays.asList(expected)), evaluate(ecl));
+	}
+
+	private void assertUnsupported(String ecl) {
+		try {
+			evaluator.evaluate(ecl);
+			fail("Expected '" + ecl + "' to be left to the terminology server");
+		} catch (UnsupportedEclException e) {
+			//Expected
+		} catch (TermServerScriptException e) {
+			fail("Unexpected " + e);
+		}
+	}
+
+	private String concept(String sctId, boolean active) {
+		return String.join("\t", sctId, "20210131", active ? "1" : "0", MODULE, PRIMITIVE);
+	}
+
+	private void isA(List<String> relationships, String parent, String... children) {
+		for (String child : children) {
+			relationships.add(relationship(child, IS_A.getConceptId(), parent, 0));
+		}
+	}
+
+	private String relationship(String source, String type, String destination, int group) {
+		String relationshipId = (100000 + ++relationshipCount) + "020";
+		return String.join("\t", relationshipId, "20210131", "1", MODULE, source, destination,
+				Integer.toString(group), type, INFERRED, EXISTENTIAL);
+	}
+
+	private InputStream rf2(List<String> rows) {
+		//The first row is taken as the header
+		String file = "header\n" + String.join("\n", rows) + "\n";
+		return new ByteArrayInputStream(file.getBytes(StandardCharsets.UTF_8));
+	}
+}
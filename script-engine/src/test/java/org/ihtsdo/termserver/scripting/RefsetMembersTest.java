@@ -0,0 +1,123 @@
+package org.ihtsdo.termserver.scripting;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+import org.junit.Test;
+
+public class RefsetMembersTest implements RF2Constants {
+
+	private static final String REFSET = "723264001";
+	private static final String MAP = "447562003";
+
+	@Test
+	public void loadAndQueryTest() {
+		RefsetMembers members = new RefsetMembers();
+		members.load(row("1", REFSET, "22298006"));
+		members.load(row("2", REFSET, "195967001"));
+		members.load(row("3", MAP, "22298006"));
+		//Map refsets may have several members for the same component
+		members.load(row("4", MAP, "22298006"));
+
+		assertTrue(members.isHeld(Long.parseLong(REFSET)));
+		assertFalse(members.isHeld(900000000000497000L));
+		assertEquals(2, members.getMemberCount(Long.parseLong(REFSET)));
+		assertEquals(1, members.getMemberCount(Long.parseLong(MAP)));
+		assertArrayEquals(new long[] {22298006L, 195967001L}, members.getMembers(Long.parseLong(REFSET)));
+		assertTrue(members.isMember(Long.parseLong(MAP), 22298006L));
+		assertFalse(members.isMember(Long.parseLong(MAP), 195967001L));
+		assertEquals(2, members.getRefsetsContaining(22298006L).size());
+	}
+
+	@Test
+	public void inactivationTest() {
+		RefsetMembers members = new RefsetMembers();
+		members.load(row("1", REFSET, "22298006"));
+		assertTrue(members.isMember(Long.parseLong(REFSET), 22298006L));
+
+		//A later inactive row removes the member, but the refset is still held
+		String[] inactive = row("1", REFSET, "22298006");
+		inactive[REF_IDX_ACTIVE] = "0";
+		members.load(inactive);
+		assertFalse(members.isMember(Long.parseLong(REFSET), 22298006L));
+		assertTrue(members.isHeld(Long.parseLong(REFSET)));
+		assertEquals(0, members.getMemberCount(Long.parseLong(REFSET)));
+	}
+
+	@Test
+	public void memberRowsTest() {
+		RefsetMembers members = new RefsetMembers();
+		members.load(row("1", REFSET, "22298006"));
+		//Map rows keep their additional columns, including empty ones
+		String[] mapRow = mapRow("2", "22298006", "I21.9");
+		members.load(mapRow);
+		List<String[]> rows = new ArrayList<>();
+		members.forEachMemberRow(rows::add);
+		assertEquals(2, rows.size());
+		for (String[] row : rows) {
+			if (row[REF_IDX_REFSETID].equals(MAP)) {
+				assertArrayEquals(mapRow, row);
+			} else {
+				assertArrayEquals(row("1", REFSET, "22298006"), row);
+			}
+		}
+	}
+
+	@Test
+	public void deltaTest() {
+		RefsetMembers members = new RefsetMembers();
+		//Enough members that they're merged into the arrays as they load
+		for (int i = 1; i <= 3000; i++) {
+			members.load(row(Integer.toString(i), REFSET, Integer.toString(100000 + i)));
+		}
+		assertEquals(3000, members.getMemberCount(Long.parseLong(REFSET)));
+
+		//A delta moves one member to another component, inactivates another and adds a third
+		members.load(row("10", REFSET, "22298006"));
+		String[] inactive = row("20", REFSET, "100020");
+		inactive[REF_IDX_ACTIVE] = "0";
+		members.load(inactive);
+		members.load(row("5000", REFSET, "195967001"));
+
+		long refsetId = Long.parseLong(REFSET);
+		assertEquals(3000, members.getMemberCount(refsetId));
+		assertFalse(members.isMember(refsetId, 100010L));
+		assertFalse(members.isMember(refsetId, 100020L));
+		assertTrue(members.isMember(refsetId, 22298006L));
+		assertTrue(members.isMember(refsetId, 195967001L));
+		assertTrue(members.isMember(refsetId, 100011L));
+
+		//Changes after the arrays have been read are seen too
+		inactive = row("5000", REFSET, "195967001");
+		inactive[REF_IDX_ACTIVE] = "0";
+		members.load(inactive);
+		assertFalse(members.isMember(refsetId, 195967001L));
+		List<String[]> rows = new ArrayList<>();
+		members.forEachMemberRow(rows::add);
+		assertEquals(2999, rows.size());
+	}
+
+	@Test
+	public void memberOfEclTest() {
+		assertEquals(Long.valueOf(MAP), RefsetMembers.getMemberOfRefset("^ 447562003 |ICD-10 complex map reference set|"));
+		assertEquals(Long.valueOf(REFSET), RefsetMembers.getMemberOfRefset("^723264001"));
+		assertNull(RefsetMembers.getMemberOfRefset("<< 723264001"));
+		assertNull(RefsetMembers.getMemberOfRefset("^ 723264001 AND << 404684003"));
+	}
+
+	private String[] row(String memberNum, String refsetId, String referencedComponentId) {
+		String memberId = "00000000-0000-0000-0000-" + String.format("%012d", Integer.parseInt(memberNum));
+		return new String[] { memberId, "20210131", "1", "900000000000207008", refsetId, referencedComponentId };
+	}
+
+	private String[] mapRow(String memberNum, String referencedComponentId, String mapTarget) {
+		String[] row = Arrays.copyOf(row(memberNum, MAP, referencedComponentId), 13);
+		String[] additional = { "1", "1", "TRUE", "ALWAYS " + mapTarget, mapTarget, "447561005", "447637006" };
+		System.arraycopy(additional, 0, row, REF_IDX_FIRST_ADDITIONAL, additional.length);
+		//An empty mapRule
+		row[REF_IDX_FIRST_ADDITIONAL + 2] = "";
+		return row;
+	}
+}
@@ -0,0 +1,256 @@
+package org.ihtsdo.termserver.scripting;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.domain.Concept;
+import org.ihtsdo.termserver.scripting.domain.RF2Constants;
+import org.junit.Test;
+
+/**
+ * Checks the closure built as bitmap rows against a naive calculation, and the closure maintained
+ * via updateAncestors against one built from scratch after the same changes
+ */
+public class TransitiveClosureTest implements RF2Constants {
+
+	//Enough that the rows near the root hold their indexes as dense bitmaps
+	private static final int CONCEPT_COUNT = 6000;
+
+	private final Random random = new Random(42);
+	private final List<Concept> concepts = new ArrayList<>();
+	private final Concept root = new Concept(SCTID_ROOT_CONCEPT.toString());
+	private final Concept clinicalFinding = new Concept("404684003");
+	private final Concept disease = new Concept("64572001");
+	private final Concept heartDisease = new Concept("56265001");
+	private final Concept cardiacFinding = new Concept("195967001");
+	private final Concept infarction = new Concept("22298006");
+
+	@Test
+	public void buildTest() throws TermServerScriptException {
+		namedHierarchy();
+		TransitiveClosure tc = build();
+		assertEquals(ids(heartDisease, cardiacFinding, disease, clinicalFinding, root), tc.getAncestors(infarction));
+		assertEquals(ids(disease, heartDisease, cardiacFinding, infarction), tc.getDescendants(clinicalFinding));
+		assertTrue(tc.getAncestors(root).isEmpty());
+		assertTrue(tc.isAncestorOf(clinicalFinding, infarction));
+		assertFalse(tc.isAncestorOf(infarction, clinicalFinding));
+		assertTrue(tc.isDescendantOf(infarction, disease));
+		assertTrue(tc.isSelfOrDescendantOf(infarction, infarction));
+		assertFalse(tc.isSelfOrDescendantOf(disease, heartDisease));
+		assertTrue(tc.getDescendants(root).contains(Long.parseLong(infarction.getConceptId())));
+		assertFalse(tc.getDescendants(root).contains("not an sctid"));
+		//Each ancestor of each concept
+		assertEquals(0 + 1 + 2 + 2 + 3 + 5, tc.size());
+	}
+
+	@Test
+	public void largeBuildTest() throws TermServerScriptException {
+		randomHierarchy();
+		TransitiveClosure tc = build();
+		Map<Concept, Set<Long>> expected = naiveAncestors();
+		int size = 0;
+		for (Concept c : concepts) {
+			assertEquals(c.toString(), expected.get(c), tc.getAncestors(c));
+			size += expected.get(c).size();
+		}
+		assertEquals(size, tc.size());
+		assertEquals(CONCEPT_COUNT, tc.getDescendants(root).size());
+		Map<Long, Concept> byId = new HashMap<>();
+		for (Concept c : concepts) {
+			byId.put(Long.parseLong(c.getConceptId()), c);
+		}
+		for (Concept c : concepts) {
+			for (Long ancestor : expected.get(c)) {
+				assertTrue(tc.getDescendants(byId.get(ancestor)).contains(Long.parseLong(c.getConceptId())));
+			}
+		}
+	}
+
+	@Test
+	public void addParentTest() throws TermServerScriptException {
+		randomHierarchy();
+		TransitiveClosure base = build();
+		TransitiveClosure tc = TransitiveClosure.overlay(base);
+		for (int i = 0; i < 20; i++) {
+			//Parents are always picked from earlier concepts, so no cycle is formed
+			Concept child = concepts.get(CONCEPT_COUNT / 2 + random.nextInt(CONCEPT_COUNT / 2));
+			Concept parent = concepts.get(1 + random.nextInt(CONCEPT_COUNT / 2));
+			addParent(child, parent);
+			tc.updateAncestors(child);
+		}
+		assertMatchesRebuild(tc);
+	}
+
+	@Test
+	public void removeParentTest() throws TermServerScriptException {
+		randomHierarchy();
+		TransitiveClosure tc = TransitiveClosure.overlay(build());
+		for (int i = 0; i < 20; i++) {
+			Concept child = concepts.get(1 + random.nextInt(CONCEPT_COUNT));
+			Set<Concept> parents = child.getParents(CharacteristicType.INFERRED_RELATIONSHIP);
+			//Keep at least one parent, as a real delta would
+			if (parents.size() > 1) {
+				removeParent(child, parents.iterator().next());
+				tc.updateAncestors(child);
+			}
+		}
+		assertMatchesRebuild(tc);
+	}
+
+	@Test
+	public void inactivationTest() throws TermServerScriptException {
+		randomHierarchy();
+		TransitiveClosure tc = TransitiveClosure.overlay(build());
+		for (int i = 0; i < 5; i++) {
+			Concept inactivated = concepts.get(1 + random.nextInt(CONCEPT_COUNT / 4));
+			//Its IS_A relationships are inactivated, and its children are given its parents instead
+			Set<Concept> parents = new HashSet<>(inactivated.getParents(CharacteristicType.INFERRED_RELATIONSHIP));
+			Set<Concept> children = new HashSet<>(inactivated.getChildren(CharacteristicType.INFERRED_RELATIONSHIP));
+			for (Concept parent : parents) {
+				removeParent(inactivated, parent);
+			}
+			tc.updateAncestors(inactivated);
+			for (Concept child : children) {
+				removeParent(child, inactivated);
+				for (Concept parent : parents) {
+					addParent(child, parent);
+				}
+				tc.updateAncestors(child);
+			}
+			assertTrue(tc.getAncestors(inactivated).isEmpty());
+			assertTrue(tc.getDescendants(inactivated).isEmpty());
+		}
+		assertMatchesRebuild(tc);
+	}
+
+	@Test
+	public void newConceptTest() throws TermServerScriptException {
+		randomHierarchy();
+		TransitiveClosure tc = TransitiveClosure.overlay(build());
+		Concept added = new Concept("233604007");
+		concepts.add(added);
+		addParent(added, concepts.get(100));
+		tc.updateAncestors(added);
+		//And a child for it
+		Concept child = concepts.get(CONCEPT_COUNT - 1);
+		addParent(child, added);
+		tc.updateAncestors(child);
+		assertTrue(tc.isAncestorOf(added, child));
+		assertMatchesRebuild(tc);
+	}
+
+	@Test
+	public void overlayLeavesBaseTest() throws TermServerScriptException {
+		randomHierarchy();
+		TransitiveClosure base = build();
+		Map<Concept, Set<Long>> ancestorsBefore = new HashMap<>();
+		Map<Concept, Set<Long>> descendantsBefore = new HashMap<>();
+		for (Concept c : concepts) {
+			ancestorsBefore.put(c, new HashSet<>(base.getAncestors(c)));
+			descendantsBefore.put(c, new HashSet<>(base.getDescendants(c)));
+		}
+		TransitiveClosure tc = TransitiveClosure.overlay(base);
+		Concept child = concepts.get(CONCEPT_COUNT - 10);
+		Concept parent = concepts.get(10);
+		addParent(child, parent);
+		tc.updateAncestors(child);
+		Concept added = new Concept("233604007");
+		addParent(added, child);
+		tc.updateAncestors(added);
+
+		assertTrue(tc.isAncestorOf(parent, added));
+		for (Concept c : concepts) {
+			assertEquals(ancestorsBefore.get(c), base.getAncestors(c));
+			assertEquals(descendantsBefore.get(c), base.getDescendants(c));
+		}
+		assertTrue(base.getAncestors(added).isEmpty());
+	}
+
+	@Test
+	public void cycleTest() throws TermServerScriptException {
+		namedHierarchy();
+		TransitiveClosure tc = TransitiveClosure.overlay(build());
+		addParent(clinicalFinding, infarction);
+		try {
+			tc.updateAncestors(clinicalFinding);
+			fail("Cycle should have been detected");
+		} catch (TermServerScriptException expected) {
+			//Expected
+		}
+	}
+
+	private void namedHierarchy() {
+		concepts.addAll(Arrays.asList(root, clinicalFinding, disease, heartDisease, cardiacFinding, infarction));
+		addParent(clinicalFinding, root);
+		addParent(disease, clinicalFinding);
+		addParent(heartDisease, disease);
+		addParent(cardiacFinding, clinicalFinding);
+		addParent(infarction, heartDisease);
+		addParent(infarction, cardiacFinding);
+	}
+
+	/**
+	 * Each concept has one to three parents from those created before it, which gives
+	 * plenty of concepts reached by more than one path
+	 */
+	private void randomHierarchy() {
+		concepts.add(root);
+		for (int i = 1; i <= CONCEPT_COUNT; i++) {
+			Concept c = new Concept(Long.toString((100000L + i) * 1000 + 10));
+			int parentCount = 1 + random.nextInt(3);
+			for (int p = 0; p < parentCount; p++) {
+				addParent(c, concepts.get(random.nextInt(i)));
+			}
+			concepts.add(c);
+		}
+	}
+
+	private TransitiveClosure build() throws TermServerScriptException {
+		TransitiveClosure tc = new TransitiveClosure(concepts);
+		tc.build();
+		return tc;
+	}
+
+	private void assertMatchesRebuild(TransitiveClosure tc) throws TermServerScriptException {
+		TransitiveClosure rebuilt = build();
+		for (Concept c : concepts) {
+			assertEquals(c.toString(), rebuilt.getAncestors(c), tc.getAncestors(c));
+			assertEquals(c.toString(), rebuilt.getDescendants(c), tc.getDescendants(c));
+		}
+		assertEquals(rebuilt.size(), tc.size());
+	}
+
+	private Map<Concept, Set<Long>> naiveAncestors() {
+		//Parents are always created before their children
+		Map<Concept, Set<Long>> ancestors = new HashMap<>();
+		for (Concept c : concepts) {
+			Set<Long> row = new HashSet<>();
+			for (Concept parent : c.getParents(CharacteristicType.INFERRED_RELATIONSHIP)) {
+				row.add(Long.parseLong(parent.getConceptId()));
+				row.addAll(ancestors.get(parent));
+			}
+			ancestors.put(c, row);
+		}
+		return ancestors;
+	}
+
+	private void addParent(Concept child, Concept parent) {
+		child.addParent(CharacteristicType.INFERRED_RELATIONSHIP, parent);
+		parent.addChild(CharacteristicType.INFERRED_RELATIONSHIP, child);
+	}
+
+	private void removeParent(Concept child, Concept parent) {
+		child.removeParent(CharacteristicType.INFERRED_RELATIONSHIP, parent);
+		parent.removeChild(CharacteristicType.INFERRED_RELATIONSHIP, child);
+	}
+
+	private Set<Long> ids(Concept... concepts) {
+		Set<Long> ids = new HashSet<>();
+		for (Concept c : concepts) {
+			ids.add(Long.parseLong(c.getConceptId()));
+		}
+		return ids;
+	}
+}
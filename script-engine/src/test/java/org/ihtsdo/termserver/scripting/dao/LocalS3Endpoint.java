@@ -0,0 +1,153 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Stands in for S3 - just enough of it for single and multipart uploads - so that uploads can be
+ * exercised offline.  Objects are held in memory, keyed on bucket and key.
+ */
+public class LocalS3Endpoint implements AutoCloseable {
+
+	private final HttpServer server;
+	private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+	private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+	private final AtomicInteger uploadIds = new AtomicInteger();
+	final AtomicInteger partsReceived = new AtomicInteger();
+
+	public LocalS3Endpoint() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+	}
+
+	public AmazonS3 createClient() {
+		return AmazonS3ClientBuilder.standard()
+				.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration("http://localhost:" + server.getAddress().getPort(), "us-east-1"))
+				.withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("local", "local")))
+				.withPathStyleAccessEnabled(true)
+				.withChunkedEncodingDisabled(true)
+				.build();
+	}
+
+	public byte[] getObject(String bucketName, String key) {
+		return objects.get(bucketName + "/" + key);
+	}
+
+	public int getUploadsInProgress() {
+		return uploads.size();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		String objectPath = exchange.getRequestURI().getPath().substring(1);
+		Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		String method = exchange.getRequestMethod();
+		byte[] body = readAll(exchange.getRequestBody());
+
+		if (method.equals("POST") && query.containsKey("uploads")) {
+			String uploadId = "upload-" + uploadIds.incrementAndGet();
+			uploads.put(uploadId, new ConcurrentHashMap<>());
+			respondXml(exchange, "<InitiateMultipartUploadResult><Bucket>" + bucketOf(objectPath) + "</Bucket><Key>" + keyOf(objectPath)
+					+ "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+		} else if (method.equals("PUT") && query.containsKey("uploadId")) {
+			uploads.get(query.get("uploadId")).put(Integer.parseInt(query.get("partNumber")), body);
+			partsReceived.incrementAndGet();
+			respondEmpty(exchange, md5(body));
+		} else if (method.equals("PUT")) {
+			objects.put(objectPath, body);
+			respondEmpty(exchange, md5(body));
+		} else if (method.equals("POST") && query.containsKey("uploadId")) {
+			Map<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+			ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+			for (byte[] part : new TreeMap<>(parts).values()) {
+				assembled.write(part);
+			}
+			objects.put(objectPath, assembled.toByteArray());
+			respondXml(exchange, "<CompleteMultipartUploadResult><Bucket>" + bucketOf(objectPath) + "</Bucket><Key>" + keyOf(objectPath)
+					+ "</Key><ETag>\"" + md5(assembled.toByteArray()) + "-" + parts.size() + "\"</ETag></CompleteMultipartUploadResult>");
+		} else if (method.equals("DELETE") && query.containsKey("uploadId")) {
+			uploads.remove(query.get("uploadId"));
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+		} else {
+			exchange.sendResponseHeaders(501, -1);
+			exchange.close();
+		}
+	}
+
+	private String bucketOf(String objectPath) {
+		return objectPath.substring(0, objectPath.indexOf('/'));
+	}
+
+	private String keyOf(String objectPath) {
+		return objectPath.substring(objectPath.indexOf('/') + 1);
+	}
+
+	private Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> query = new HashMap<>();
+		if (rawQuery != null) {
+			for (String param : rawQuery.split("&")) {
+				int eq = param.indexOf('=');
+				query.put(eq == -1 ? param : param.substring(0, eq), eq == -1 ? "" : param.substring(eq + 1));
+			}
+		}
+		return query;
+	}
+
+	private byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[64 * 1024];
+		int read;
+		while ((read = is.read(buffer)) != -1) {
+			bytes.write(buffer, 0, read);
+		}
+		return bytes.toByteArray();
+	}
+
+	private String md5(byte[] bytes) {
+		try {
+			StringBuilder hex = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("MD5").digest(bytes)) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void respondEmpty(HttpExchange exchange, String eTag) throws IOException {
+		exchange.getResponseHeaders().add("ETag", "\"" + eTag + "\"");
+		exchange.sendResponseHeaders(200, -1);
+		exchange.close();
+	}
+
+	private void respondXml(HttpExchange exchange, String xml) throws IOException {
+		byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/xml");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
@@ -0,0 +1,101 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.sheets.v4.model.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Stands in for the Google Sheets batchUpdate endpoint so that ReportSheetManager can be
+ * exercised offline.  Applies a per window request quota - answering 429 as Google does once
+ * it's exceeded - and a fixed latency, and counts what it receives.
+ */
+public class LocalSheetsEndpoint implements AutoCloseable {
+
+	private final HttpServer server;
+	private final int quota;
+	private final long windowMs;
+	private final long latencyMs;
+	private final Deque<Long> recentRequests = new ArrayDeque<>();
+
+	final AtomicInteger requests = new AtomicInteger();
+	final AtomicInteger rejected = new AtomicInteger();
+	final AtomicInteger rows = new AtomicInteger();
+	final AtomicInteger structuralChanges = new AtomicInteger();
+
+	public LocalSheetsEndpoint(int quota, long windowMs, long latencyMs) throws IOException {
+		this.quota = quota;
+		this.windowMs = windowMs;
+		this.latencyMs = latencyMs;
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	public String getRootUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/";
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			Thread.sleep(latencyMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		requests.incrementAndGet();
+		if (!withinQuota()) {
+			rejected.incrementAndGet();
+			respond(exchange, 429, "{\"error\":{\"code\":429,\"message\":\"Quota exceeded\",\"status\":\"RESOURCE_EXHAUSTED\"}}");
+			return;
+		}
+		InputStream body = exchange.getRequestBody();
+		if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+			body = new GZIPInputStream(body);
+		}
+		BatchUpdateSpreadsheetRequest batch = JacksonFactory.getDefaultInstance()
+				.fromInputStream(body, StandardCharsets.UTF_8, BatchUpdateSpreadsheetRequest.class);
+		if (batch.getRequests() != null) {
+			for (Request request : batch.getRequests()) {
+				if (request.getUpdateCells() != null) {
+					rows.addAndGet(request.getUpdateCells().getRows().size());
+				} else {
+					structuralChanges.incrementAndGet();
+				}
+			}
+		}
+		respond(exchange, 200, "{}");
+	}
+
+	private synchronized boolean withinQuota() {
+		long now = System.currentTimeMillis();
+		while (!recentRequests.isEmpty() && recentRequests.peekFirst() <= now - windowMs) {
+			recentRequests.removeFirst();
+		}
+		if (recentRequests.size() >= quota) {
+			return false;
+		}
+		recentRequests.addLast(now);
+		return true;
+	}
+
+	private void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
@@ -0,0 +1,61 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.io.*;
+
+/**
+ * Compares the time taken to read every row of an RF2 file via the split based
+ * RF2TextRowSource and via RF2Tokenizer, both as String[] rows and as typed fields.
+ * Not run as part of the build.  Usage: RF2TokenizerBenchmark <rf2 file> [iterations]
+ */
+public class RF2TokenizerBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: RF2TokenizerBenchmark <rf2 file> [iterations]");
+			return;
+		}
+		File file = new File(args[0]);
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		//First pass of each warms up the JIT and the page cache
+		for (int i = 0; i <= iterations; i++) {
+			boolean report = i > 0;
+			time("split", file, report, is -> drain(new RF2TextRowSource(is)));
+			time("tokenizer rows", file, report, is -> drain(new RF2Tokenizer(is)));
+			time("tokenizer fields", file, report, RF2TokenizerBenchmark::drainFields);
+		}
+	}
+
+	private static long drain(RF2RowSource rows) throws IOException {
+		long fields = 0;
+		String[] row;
+		while ((row = rows.nextRow()) != null) {
+			fields += row.length;
+		}
+		return fields;
+	}
+
+	private static long drainFields(InputStream is) throws IOException {
+		RF2Tokenizer rows = new RF2Tokenizer(is);
+		long checksum = 0;
+		while (rows.next()) {
+			checksum += rows.getLong(0) + rows.getFieldCount();
+		}
+		return checksum;
+	}
+
+	private static void time(String label, File file, boolean report, Reader reader) throws IOException {
+		long start = System.nanoTime();
+		long result;
+		try (InputStream is = new FileInputStream(file)) {
+			result = reader.read(is);
+		}
+		long elapsed = System.nanoTime() - start;
+		if (report) {
+			System.out.println(String.format("%-18s %6dms  (%d)", label, elapsed / 1000000, result));
+		}
+	}
+
+	private interface Reader {
+		long read(InputStream is) throws IOException;
+	}
+}
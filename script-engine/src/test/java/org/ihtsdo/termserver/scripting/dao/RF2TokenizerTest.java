@@ -0,0 +1,113 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.Test;
+
+public class RF2TokenizerTest {
+
+	private static final String HEADER = "id\teffectiveTime\tactive\tmoduleId\tconceptId\tlanguageCode\ttypeId\tterm\tcaseSignificanceId\r\n";
+
+	@Test
+	public void matchesSplitTest() throws IOException {
+		StringBuilder sb = new StringBuilder(HEADER);
+		for (int i = 0; i < 5000; i++) {
+			sb.append(i + 100022).append("\t20200131\t").append(i % 2).append("\t900000000000207008\t")
+				.append(i * 7 + 138875005).append("\ten\t900000000000013009\tTérm ").append(i).append(" ≥ 5\t900000000000448009\r\n");
+		}
+		//Bytes one away from a tab or line feed, which could be mistaken for them
+		sb.append("999\t\b\t\u000b\t\u000b\n\t\b\r\n");
+		//Blank line and a final row with no line terminator
+		sb.append("\r\n1000\t\t1\t900000000000207008\t138875005\ten\t900000000000003001\tLast");
+		String content = sb.toString();
+
+		List<String[]> expected = new ArrayList<>();
+		String[] lines = content.split("\r?\n");
+		for (int i = 1; i < lines.length; i++) {
+			if (!lines[i].isEmpty()) {
+				expected.add(lines[i].split("\t"));
+			}
+		}
+
+		//Deliver the bytes a few at a time, so that rows straddle reads
+		RF2Tokenizer rows = new RF2Tokenizer(new TrickleInputStream(content.getBytes(StandardCharsets.UTF_8), 7));
+		List<String[]> actual = new ArrayList<>();
+		String[] row;
+		while ((row = rows.nextRow()) != null) {
+			actual.add(row);
+		}
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i), actual.get(i));
+		}
+		//Low cardinality columns come back as the same instance
+		assertSame(actual.get(0)[3], actual.get(4999)[3]);
+	}
+
+	@Test
+	public void typedFieldsTest() throws IOException {
+		String content = HEADER 
+				+ "101013\t20170731\t1\t900000000000207008\t138875005\ten\t900000000000003001\tSNOMED CT Concept (SNOMED RT+CTV3)\t900000000000448009\n"
+				+ "101014\t\t0\t900000000000207008\tnot a number\ten\n";
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		RF2Tokenizer rows = new RF2Tokenizer(new ByteArrayInputStream(bytes));
+		assertTrue(rows.next());
+		assertEquals(9, rows.getFieldCount());
+		assertEquals(101013L, rows.getLong(0));
+		assertEquals(20170731, rows.getInt(1));
+		assertTrue(rows.isActive(2));
+		assertEquals(138875005L, rows.getLong(4));
+		assertEquals("SNOMED CT Concept (SNOMED RT+CTV3)", rows.getString(7));
+		assertEquals(HEADER.length(), rows.getRowOffset());
+
+		assertTrue(rows.next());
+		assertEquals(6, rows.getFieldCount());
+		assertTrue(rows.isEmpty(1));
+		assertEquals(-1, rows.getInt(1));
+		assertFalse(rows.isActive(2));
+		try {
+			rows.getLong(4);
+			fail("Expected NumberFormatException");
+		} catch (NumberFormatException e) {
+			assertTrue(e.getMessage().contains("not a number"));
+		}
+		try {
+			rows.getString(7);
+			fail("Expected IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			//Expected
+		}
+		assertFalse(rows.next());
+	}
+
+	@Test
+	public void longRowTest() throws IOException {
+		StringBuilder term = new StringBuilder();
+		while (term.length() < 200000) {
+			term.append("abcdefghij");
+		}
+		String content = HEADER + "1\t2\t" + term + "\n3\t4\n";
+		RF2Tokenizer rows = new RF2Tokenizer(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+		assertArrayEquals(new String[] {"1", "2", term.toString()}, rows.nextRow());
+		assertArrayEquals(new String[] {"3", "4"}, rows.nextRow());
+		assertNull(rows.nextRow());
+	}
+
+	private static class TrickleInputStream extends ByteArrayInputStream {
+		private final int maxRead;
+
+		TrickleInputStream(byte[] bytes, int maxRead) {
+			super(bytes);
+			this.maxRead = maxRead;
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			return super.read(b, off, Math.min(len, maxRead));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.util.*;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.sheets.v4.Sheets;
+import com.google.api.services.sheets.v4.model.Spreadsheet;
+import org.ihtsdo.termserver.scripting.util.TokenBucket;
+
+/**
+ * Writes a report to a LocalSheetsEndpoint and reports the throughput achieved and the number of
+ * requests made.  The quota window is compressed from a minute to a few seconds so that the
+ * benchmark completes quickly while still hitting the limit.
+ * Not run as part of the build.  Usage: ReportSheetManagerBenchmark [rows] [tabs]
+ */
+public class ReportSheetManagerBenchmark {
+
+	private static final int QUOTA = 60;
+	private static final int WINDOW_SECONDS = 6;
+	private static final long LATENCY_MS = 150;
+
+	public static void main(String[] args) throws Exception {
+		int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int tabCount = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		try (LocalSheetsEndpoint endpoint = new LocalSheetsEndpoint(QUOTA, WINDOW_SECONDS * 1000, LATENCY_MS)) {
+			Sheets sheets = new Sheets.Builder(new NetHttpTransport(), JacksonFactory.getDefaultInstance(), null)
+					.setRootUrl(endpoint.getRootUrl())
+					.setApplicationName("ReportSheetManagerBenchmark")
+					.build();
+			Spreadsheet sheet = new Spreadsheet().setSpreadsheetId("benchmark").setSpreadsheetUrl(endpoint.getRootUrl());
+			ReportSheetManager rsm = new ReportSheetManager(sheets, sheet, new TokenBucket(QUOTA, WINDOW_SECONDS, 5));
+
+			String[] headers = new String[tabCount];
+			List<String> tabNames = new ArrayList<>();
+			for (int tabIdx = 0; tabIdx < tabCount; tabIdx++) {
+				headers[tabIdx] = "SCTID, FSN, SemTag, Detail";
+				tabNames.add("Tab " + tabIdx);
+			}
+
+			long start = System.currentTimeMillis();
+			rsm.initialiseTabs(headers, tabNames);
+			for (int i = 0; i < rowCount; i++) {
+				rsm.writeToReportFile(i % tabCount, "\"" + (100000000 + i) + "\",\"Some concept (finding)\",\"(finding)\",\"Detail, with comma\"", false);
+			}
+			rsm.flushWithWait();
+			long elapsed = System.currentTimeMillis() - start;
+
+			System.out.println(String.format("%d rows to %d tabs in %dms (%.0f rows/s)", rowCount, tabCount, elapsed, rowCount * 1000d / elapsed));
+			System.out.println(String.format("%d requests, %d rejected for quota, %d rows and %d structural changes received",
+					endpoint.requests.get(), endpoint.rejected.get(), endpoint.rows.get(), endpoint.structuralChanges.get()));
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReportSinkTest {
+
+	@Test
+	public void testWritesInOrderOffCallingThread() throws Exception {
+		ReportSink sink = new ReportSink("test", 10);
+		List<Integer> written = new ArrayList<>();
+		Set<Thread> writers = ConcurrentHashMap.newKeySet();
+		for (int i = 0; i < 1000; i++) {
+			int row = i;
+			sink.submit(() -> {
+				writers.add(Thread.currentThread());
+				written.add(row);
+			});
+		}
+		sink.close(() -> {});
+		assertEquals(1000, written.size());
+		for (int i = 0; i < written.size(); i++) {
+			assertEquals(i, written.get(i).intValue());
+		}
+		assertFalse(writers.contains(Thread.currentThread()));
+	}
+
+	@Test
+	public void testFailureReportedToCaller() throws Exception {
+		ReportSink sink = new ReportSink("test");
+		sink.submit(() -> { throw new IllegalStateException("Disk full"); });
+		try {
+			sink.submitAndWait(() -> {});
+			fail("Expected writer failure to be reported");
+		} catch (TermServerScriptException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package org.ihtsdo.termserver.scripting.dao;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.ihtsdo.termserver.scripting.transformer.CSVToJSONDataTransformer;
+import org.ihtsdo.termserver.scripting.transformer.RowTransformer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class S3MultipartOutputStreamTest {
+
+	private static final String BUCKET = "reports";
+
+	@Test
+	public void testMultipartUpload() throws Exception {
+		byte[] data = new byte[S3MultipartOutputStream.MIN_PART_SIZE * 2 + 12345];
+		new Random(42).nextBytes(data);
+		try (LocalS3Endpoint s3 = new LocalS3Endpoint()) {
+			try (OutputStream os = new S3MultipartOutputStream(s3.createClient(), BUCKET, "jobs/big.bin", S3MultipartOutputStream.MIN_PART_SIZE)) {
+				//Write in uneven chunks to cross part boundaries mid write
+				for (int offset = 0; offset < data.length; offset += 100003) {
+					os.write(data, offset, Math.min(100003, data.length - offset));
+				}
+			}
+			assertEquals(3, s3.partsReceived.get());
+			assertEquals(0, s3.getUploadsInProgress());
+			assertArrayEquals(data, s3.getObject(BUCKET, "jobs/big.bin"));
+		}
+	}
+
+	@Test
+	public void testSmallUploadIsSinglePut() throws Exception {
+		try (LocalS3Endpoint s3 = new LocalS3Endpoint()) {
+			try (RowTransformer rows = new CSVToJSONDataTransformer().openTransform(
+					new S3MultipartOutputStream(s3.createClient(), BUCKET, "jobs/sheet1.json"))) {
+				rows.addRow("Stat, count");
+				rows.addRow("\"All Concepts\",477957");
+			}
+			assertEquals(0, s3.partsReceived.get());
+			String json = new String(s3.getObject(BUCKET, "jobs/sheet1.json"), StandardCharsets.UTF_8);
+			assertTrue(json.contains("\"All Concepts\""));
+			assertTrue(json.contains("\"477957\""));
+		}
+	}
+}
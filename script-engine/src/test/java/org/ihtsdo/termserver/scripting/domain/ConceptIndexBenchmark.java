@@ -0,0 +1,184 @@
+package org.ihtsdo.termserver.scripting.domain;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.ihtsdo.otf.exception.TermServerScriptException;
+import org.ihtsdo.termserver.scripting.util.SnomedUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the common relationship and description filters made against a concept, scanning
+ * and copying its full collections on every call - as Concept used to - against the indexed
+ * views it now returns.  Also times the indexed views when a relationship is changed between
+ * each call, which forces that concept's index to be rebuilt every time.
+ * Each benchmark makes one pass over all the concepts.
+ * Not run as part of the build.  Run via main, or with the usual JMH options (eg -p conceptCount=100000)
+ * by passing them to org.openjdk.jmh.Main with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConceptIndexBenchmark implements RF2Constants {
+
+	private static final String US_ENG_LANG_REFSET = "900000000000509007";
+	private static final String GB_ENG_LANG_REFSET = "900000000000508004";
+
+	@Param("50000")
+	public int conceptCount;
+
+	private List<Concept> concepts;
+	private Concept type;
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(ConceptIndexBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+
+	@Setup
+	public void setUp() {
+		concepts = createConcepts(conceptCount, new Random(42));
+		type = concepts.get(1);
+	}
+
+	@Benchmark
+	public long scanRelsByCharType() {
+		long count = 0;
+		for (Concept c : concepts) {
+			count += scan(c, CharacteristicType.STATED_RELATIONSHIP, null, ActiveState.ACTIVE).size();
+			count += scan(c, CharacteristicType.INFERRED_RELATIONSHIP, null, ActiveState.ACTIVE).size();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long indexRelsByCharType() {
+		long count = 0;
+		for (Concept c : concepts) {
+			count += c.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE).size();
+			count += c.getRelationships(CharacteristicType.INFERRED_RELATIONSHIP, ActiveState.ACTIVE).size();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long scanRelsByType() {
+		long count = 0;
+		for (Concept c : concepts) {
+			count += scan(c, CharacteristicType.INFERRED_RELATIONSHIP, type, ActiveState.ACTIVE).size();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long indexRelsByType() {
+		long count = 0;
+		for (Concept c : concepts) {
+			count += c.getRelationships(CharacteristicType.INFERRED_RELATIONSHIP, type, ActiveState.ACTIVE).size();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long scanPreferredTerms() {
+		long count = 0;
+		for (Concept c : concepts) {
+			count += scan(c, Acceptability.PREFERRED, DescriptionType.SYNONYM, ActiveState.ACTIVE).size();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long indexPreferredTerms() throws TermServerScriptException {
+		long count = 0;
+		for (Concept c : concepts) {
+			count += c.getDescriptions(Acceptability.PREFERRED, DescriptionType.SYNONYM, ActiveState.ACTIVE).size();
+		}
+		return count;
+	}
+
+	@Benchmark
+	public long indexRebuiltEachCall() {
+		long count = 0;
+		for (Concept c : concepts) {
+			Relationship changed = c.getRelationships().iterator().next();
+			changed.setGroupId(changed.getGroupId() + 1);
+			count += c.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE).size();
+			changed.setGroupId(changed.getGroupId() - 1);
+		}
+		return count;
+	}
+
+	private static List<Concept> createConcepts(int conceptCount, Random random) {
+		List<Concept> concepts = new ArrayList<>();
+		for (int i = 0; i < conceptCount; i++) {
+			concepts.add(new Concept(Long.toString(100000000L + i)));
+		}
+		List<Concept> types = concepts.subList(0, 10);
+		for (Concept c : concepts) {
+			addRelationships(c, CharacteristicType.STATED_RELATIONSHIP, 12, concepts, types, random);
+			addRelationships(c, CharacteristicType.INFERRED_RELATIONSHIP, 16, concepts, types, random);
+			addDescription(c, DescriptionType.FSN, true, Acceptability.PREFERRED);
+			addDescription(c, DescriptionType.SYNONYM, true, Acceptability.PREFERRED);
+			for (int d = 0; d < 3; d++) {
+				addDescription(c, DescriptionType.SYNONYM, true, Acceptability.ACCEPTABLE);
+			}
+			addDescription(c, DescriptionType.SYNONYM, false, Acceptability.ACCEPTABLE);
+		}
+		return concepts;
+	}
+
+	private static void addRelationships(Concept c, CharacteristicType charType, int count, List<Concept> concepts, List<Concept> types, Random random) {
+		for (int r = 0; r < count; r++) {
+			Concept target = concepts.get(random.nextInt(concepts.size()));
+			Relationship rel = new Relationship(c, types.get(random.nextInt(types.size())), target, random.nextInt(4));
+			rel.setCharacteristicType(charType);
+			//A third of the relationships have been inactivated
+			rel.setActive(r % 3 != 0);
+			c.addRelationship(rel);
+		}
+	}
+
+	private static void addDescription(Concept c, DescriptionType type, boolean active, Acceptability acceptability) {
+		Map<String, Acceptability> acceptabilityMap = new HashMap<>();
+		acceptabilityMap.put(US_ENG_LANG_REFSET, acceptability);
+		acceptabilityMap.put(GB_ENG_LANG_REFSET, acceptability);
+		String id = c.getConceptId() + c.getDescriptions().size();
+		c.addDescription(new Description(null, SCTID_CORE_MODULE, active, id, c.getConceptId(), type, "en",
+				type + " " + id, CaseSignificance.CASE_INSENSITIVE, acceptabilityMap), true);
+	}
+
+	//The filter previously made by Concept.getRelationships(charType, type, activeState)
+	private static Set<Relationship> scan(Concept c, CharacteristicType charType, Concept type, ActiveState activeState) {
+		Set<Relationship> matches = new HashSet<>();
+		for (Relationship r : c.getRelationships()) {
+			if ((charType == CharacteristicType.ALL || r.getCharacteristicType() == charType)
+					&& (activeState == ActiveState.BOTH || r.isActive() == (activeState == ActiveState.ACTIVE))
+					&& (type == null || r.getType().equals(type))) {
+				matches.add(r);
+			}
+		}
+		return matches;
+	}
+
+	//The filter previously made by Concept.getDescriptions(acceptability, type, activeState), for acceptability maps
+	private static List<Description> scan(Concept c, Acceptability acceptability, DescriptionType type, ActiveState activeState) {
+		List<Description> matches = new ArrayList<>();
+		for (Description d : c.getDescriptions()) {
+			if (SnomedUtils.descriptionHasActiveState(d, activeState) && d.getType().equals(type)
+					&& d.getAcceptabilityMap().containsValue(acceptability)) {
+				matches.add(d);
+			}
+		}
+		return matches;
+	}
+}
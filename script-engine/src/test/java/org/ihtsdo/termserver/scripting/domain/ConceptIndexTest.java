@@ -0,0 +1,180 @@
+package org.ihtsdo.termserver.scripting.domain;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the views Concept returns from its relationship and description indexes
+ * are rebuilt when - and only when - the concept's own relationships or descriptions change
+ */
+public class ConceptIndexTest implements RF2Constants {
+
+	private Concept concept;
+	private Concept other;
+	private Concept findingSite;
+	private Concept morphology;
+	private Concept heart;
+	private Relationship stated;
+	private Relationship inferred;
+	private Relationship otherInferred;
+	private int nextId = 1;
+
+	@Before
+	public void setUp() {
+		concept = new Concept("22298006");
+		other = new Concept("56265001");
+		findingSite = new Concept("363698007");
+		morphology = new Concept("116676008");
+		heart = new Concept("80891009");
+		stated = relationship(concept, findingSite, CharacteristicType.STATED_RELATIONSHIP);
+		inferred = relationship(concept, findingSite, CharacteristicType.INFERRED_RELATIONSHIP);
+		otherInferred = relationship(other, findingSite, CharacteristicType.INFERRED_RELATIONSHIP);
+		concept.addDescription(description("1", DescriptionType.FSN, "Myocardial infarction (disorder)"));
+		concept.addDescription(description("2", DescriptionType.SYNONYM, "Heart attack"));
+	}
+
+	@Test
+	public void unchangedTest() {
+		Set<Relationship> rels = inferred();
+		assertEquals(Collections.singleton(inferred), rels);
+		//Nothing has changed, so the same view is handed out again
+		assertSame(rels, inferred());
+		List<Description> descriptions = activeDescriptions();
+		assertSame(descriptions, activeDescriptions());
+		try {
+			rels.clear();
+			fail("View should be read only");
+		} catch (UnsupportedOperationException expected) {
+			//Expected
+		}
+	}
+
+	@Test
+	public void otherConceptChangedTest() {
+		Set<Relationship> rels = inferred();
+		List<Description> descriptions = activeDescriptions();
+		//Changes to another concept's relationships or descriptions don't affect our index
+		otherInferred.setActive(false);
+		otherInferred.setGroupId(2);
+		Description otherDescription = description("3", DescriptionType.SYNONYM, "Heart disease");
+		other.addDescription(otherDescription);
+		otherDescription.setActive(false);
+		assertSame(rels, inferred());
+		assertSame(descriptions, activeDescriptions());
+	}
+
+	@Test
+	public void relationshipSetterTest() {
+		Set<Relationship> before = inferred();
+		inferred.setActive(false);
+		assertTrue(inferred().isEmpty());
+		assertNotSame(before, inferred());
+
+		inferred.setActive(true);
+		inferred.setCharacteristicType(CharacteristicType.STATED_RELATIONSHIP);
+		assertTrue(inferred().isEmpty());
+		assertEquals(2, concept.getRelationships(CharacteristicType.STATED_RELATIONSHIP, ActiveState.ACTIVE).size());
+
+		stated.setType(morphology);
+		assertEquals(Collections.singleton(stated), concept.getRelationships(CharacteristicType.STATED_RELATIONSHIP, morphology, ActiveState.ACTIVE));
+
+		Collection<RelationshipGroup> groups = concept.getRelationshipGroups(CharacteristicType.STATED_RELATIONSHIP);
+		assertEquals(1, groups.size());
+		stated.setGroupId(2);
+		assertEquals(2, concept.getRelationshipGroups(CharacteristicType.STATED_RELATIONSHIP).size());
+	}
+
+	@Test
+	public void relationshipMovedTest() {
+		Set<Relationship> before = inferred();
+		//The concept losing the relationship still holds it in its set, so must see the change too
+		inferred.setSource(other);
+		assertNotSame(before, inferred());
+	}
+
+	@Test
+	public void relationshipsResizedTest() {
+		assertEquals(1, inferred().size());
+		Relationship added = relationship(concept, morphology, CharacteristicType.INFERRED_RELATIONSHIP);
+		assertEquals(new HashSet<>(Arrays.asList(inferred, added)), inferred());
+		concept.removeRelationship(added);
+		assertEquals(Collections.singleton(inferred), inferred());
+	}
+
+	@Test
+	public void relationshipsReplacedTest() {
+		assertEquals(1, inferred().size());
+		Relationship replacement = new Relationship(concept, findingSite, heart, 0);
+		replacement.setRelationshipId(Integer.toString(nextId++));
+		replacement.setCharacteristicType(CharacteristicType.INFERRED_RELATIONSHIP);
+		//Same size as before, but a different set
+		concept.setRelationships(new HashSet<>(Arrays.asList(stated, replacement)));
+		assertEquals(Collections.singleton(replacement), inferred());
+	}
+
+	@Test
+	public void descriptionSetterTest() {
+		assertEquals(1, synonyms().size());
+		Description fsn = concept.getDescriptions().get(0);
+		fsn.setType(DescriptionType.SYNONYM);
+		assertEquals(2, synonyms().size());
+		fsn.setActive(false);
+		assertEquals(1, synonyms().size());
+		assertEquals(1, concept.getDescriptions(ActiveState.INACTIVE).size());
+	}
+
+	@Test
+	public void descriptionsResizedTest() {
+		assertEquals(1, synonyms().size());
+		Description added = description("3", DescriptionType.SYNONYM, "Cardiac infarction");
+		concept.addDescription(added);
+		assertEquals(2, synonyms().size());
+		concept.removeDescription(added);
+		assertEquals(1, synonyms().size());
+	}
+
+	@Test
+	public void sameIdDescriptionReplacedTest() {
+		Description original = synonyms().get(0);
+		Description replacement = description(original.getDescriptionId(), DescriptionType.SYNONYM, "Heart attack");
+		concept.addDescription(replacement);
+		assertEquals(1, synonyms().size());
+		assertSame(replacement, synonyms().get(0));
+
+		//Also when replaced in place, leaving the list the same size
+		Description another = description(original.getDescriptionId(), DescriptionType.SYNONYM, "Heart attack");
+		List<Description> descriptions = concept.getDescriptions();
+		descriptions.set(descriptions.indexOf(replacement), another);
+		assertSame(another, synonyms().get(0));
+	}
+
+	private Set<Relationship> inferred() {
+		return concept.getRelationships(CharacteristicType.INFERRED_RELATIONSHIP, ActiveState.ACTIVE);
+	}
+
+	private List<Description> activeDescriptions() {
+		return concept.getDescriptions(ActiveState.ACTIVE);
+	}
+
+	private List<Description> synonyms() {
+		return concept.getDescriptions(ActiveState.ACTIVE, Collections.singletonList(DescriptionType.SYNONYM));
+	}
+
+	private Relationship relationship(Concept source, Concept type, CharacteristicType charType) {
+		Relationship r = new Relationship(source, type, heart, 1);
+		//Give each an id so that changes don't affect how they're held in the concept's set
+		r.setRelationshipId(Integer.toString(nextId++));
+		r.setCharacteristicType(charType);
+		source.addRelationship(r);
+		return r;
+	}
+
+	private Description description(String id, DescriptionType type, String term) {
+		return new Description(null, SCTID_CORE_MODULE, true, id, concept.getConceptId(), type, "en",
+				term, CaseSignificance.CASE_INSENSITIVE, new HashMap<>());
+	}
+}
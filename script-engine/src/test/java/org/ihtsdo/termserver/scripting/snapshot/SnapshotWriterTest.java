@@ -0,0 +1,97 @@
+package org.ihtsdo.termserver.scripting.snapshot;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SnapshotWriterTest {
+
+	private File tempDir;
+
+	@Before
+	public void setUp() throws Exception {
+		tempDir = Files.createTempDirectory("snapshot_writer-").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		FileUtils.deleteDirectory(tempDir);
+	}
+
+	@Test
+	public void testRowsWrittenInSctIdOrder() throws Exception {
+		String conFile = tempDir + "/Snapshot/Terminology/sct2_Concept_Snapshot.txt";
+		String descFile = tempDir + "/Snapshot/Terminology/sct2_Description_Snapshot.txt";
+		SnapshotWriter writer = new SnapshotWriter();
+		writer.setPartitionSize(7);
+		writer.addFile(conFile, new String[] {"id", "active"});
+		writer.addFile(descFile, new String[] {"id", "conceptId"});
+		writer.write(shuffledIds(1000), Long::longValue, (id, out) -> {
+			out.write(conFile, new Object[] {id, "1"});
+			//Not every concept writes to every file
+			if (id % 3 == 0) {
+				out.write(descFile, new Object[] {id + "011", id});
+				out.write(descFile, new Object[] {id + "012", id});
+			}
+		});
+		assertNull(writer.close());
+
+		List<String> concepts = Files.readAllLines(new File(conFile).toPath());
+		assertEquals(1001, concepts.size());
+		assertEquals("id\tactive", concepts.get(0));
+		for (int i = 1; i <= 1000; i++) {
+			assertEquals(i + "\t1", concepts.get(i));
+		}
+		List<String> descriptions = Files.readAllLines(new File(descFile).toPath());
+		assertEquals(1 + 333 * 2, descriptions.size());
+		assertEquals("3011\t3", descriptions.get(1));
+		assertEquals("999012\t999", descriptions.get(descriptions.size() - 1));
+	}
+
+	@Test
+	public void testFilesCompressedIntoArchive() throws Exception {
+		String root = tempDir + File.separator + "output" + File.separator;
+		String conFile = root + "SnomedCT_Test/Snapshot/Terminology/sct2_Concept_Snapshot.txt";
+		String emptyFile = root + "SnomedCT_Test/Snapshot/Refset/Content/der2_cRefset_AssociationSnapshot.txt";
+		File archive = new File(tempDir, "SnomedCT_Test.zip");
+		SnapshotWriter writer = new SnapshotWriter(archive, root);
+		writer.addFile(conFile, new String[] {"id", "term"});
+		writer.addFile(emptyFile, new String[] {"id", "targetComponentId"});
+		writer.write(shuffledIds(50000), Long::longValue, (id, out) -> out.write(conFile, new Object[] {id, "Term \u00e9 " + id}));
+		assertEquals(archive, writer.close());
+		//Nothing should have been staged uncompressed
+		assertFalse(new File(root).exists());
+
+		try (ZipFile zip = new ZipFile(archive)) {
+			assertEquals(2, zip.size());
+			ZipEntry conEntry = zip.getEntry("SnomedCT_Test/Snapshot/Terminology/sct2_Concept_Snapshot.txt");
+			assertNotNull(conEntry);
+			String[] lines = IOUtils.toString(zip.getInputStream(conEntry), StandardCharsets.UTF_8).split("\r\n");
+			assertEquals(50001, lines.length);
+			assertEquals("1\tTerm \u00e9 1", lines[1]);
+			assertEquals("50000\tTerm \u00e9 50000", lines[50000]);
+			ZipEntry emptyEntry = zip.getEntry("SnomedCT_Test/Snapshot/Refset/Content/der2_cRefset_AssociationSnapshot.txt");
+			assertEquals("id\ttargetComponentId\r\n", IOUtils.toString(zip.getInputStream(emptyEntry), StandardCharsets.UTF_8));
+		}
+	}
+
+	private List<Long> shuffledIds(int count) {
+		List<Long> ids = new ArrayList<>();
+		for (long id = 1; id <= count; id++) {
+			ids.add(id);
+		}
+		Collections.shuffle(ids, new Random(42));
+		return ids;
+	}
+}
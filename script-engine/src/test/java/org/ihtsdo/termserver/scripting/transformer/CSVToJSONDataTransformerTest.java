@@ -2,8 +2,10 @@ package org.ihtsdo.termserver.scripting.transformer;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
@@ -52,4 +54,28 @@ public class CSVToJSONDataTransformerTest {
 
         assertEquals(expectedOutputContent, outputContent);
     }
+
+    @Test
+    public void testStreamingTransformationExcludeLastRow () throws Exception {
+        DataTransformer dataTransformer = new CSVToJSONDataTransformer(true);
+
+        File input = new File(
+                URLDecoder.decode(
+                        this.getClass().getClassLoader().getResource("testInputReport2.csv").getFile(), "UTF-8"));
+        File expectedOutput = new File(
+                URLDecoder.decode(
+                        this.getClass().getClassLoader().getResource("testOutput-expected-single-exclude-last-row.json").getFile(), "UTF-8"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (RowTransformer rowTransformer = dataTransformer.openTransform(output)) {
+            for (String line : Files.readAllLines(input.toPath())) {
+                rowTransformer.addRow(line);
+            }
+        }
+
+        String outputContent = new String(output.toByteArray(), StandardCharsets.UTF_8).replace("\n", "");
+        String expectedOutputContent = new String(Files.readAllBytes(Paths.get(expectedOutput.getAbsolutePath()))).replace("\n", "");
+
+        assertEquals(expectedOutputContent, outputContent);
+    }
 }
@@ -0,0 +1,76 @@
+package org.ihtsdo.termserver.scripting.util;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+public class IntBitmapTest {
+
+	@Test
+	public void addRemoveContainsTest() {
+		IntBitmap bitmap = new IntBitmap();
+		assertTrue(bitmap.add(5));
+		assertFalse(bitmap.add(5));
+		assertTrue(bitmap.add(70000));
+		assertTrue(bitmap.contains(5));
+		assertTrue(bitmap.contains(70000));
+		assertFalse(bitmap.contains(6));
+		assertEquals(2, bitmap.cardinality());
+		assertTrue(bitmap.remove(5));
+		assertFalse(bitmap.remove(5));
+		assertArrayEquals(new int[] { 70000 }, bitmap.toArray());
+	}
+
+	@Test
+	public void denseContainerTest() {
+		//Enough values in one container to switch it to a bitmap, then back again
+		IntBitmap bitmap = new IntBitmap();
+		for (int i = 0; i < 10000; i++) {
+			bitmap.add(i * 3);
+		}
+		assertEquals(10000, bitmap.cardinality());
+		assertTrue(bitmap.contains(29997));
+		assertFalse(bitmap.contains(29998));
+		for (int i = 0; i < 9000; i++) {
+			bitmap.remove(i * 3);
+		}
+		assertEquals(1000, bitmap.cardinality());
+		assertTrue(bitmap.contains(27000));
+		assertFalse(bitmap.contains(26997));
+	}
+
+	@Test
+	public void orAndIterateTest() {
+		Random random = new Random(42);
+		TreeSet<Integer> expected = new TreeSet<>();
+		Set<Integer> expectedA = new HashSet<>();
+		IntBitmap a = new IntBitmap();
+		IntBitmap b = new IntBitmap();
+		for (int i = 0; i < 20000; i++) {
+			int value = random.nextInt(300000);
+			expected.add(value);
+			if (i % 2 == 0) {
+				a.add(value);
+				expectedA.add(value);
+			} else {
+				b.add(value);
+			}
+		}
+		IntBitmap union = new IntBitmap(a);
+		union.or(b);
+		assertEquals(expected.size(), union.cardinality());
+		assertTrue(union.intersects(a));
+
+		List<Integer> iterated = new ArrayList<>();
+		PrimitiveIterator.OfInt iterator = union.iterator();
+		while (iterator.hasNext()) {
+			iterated.add(iterator.nextInt());
+		}
+		assertEquals(new ArrayList<>(expected), iterated);
+
+		//The copy must not have been affected by the union
+		assertEquals(expectedA.size(), a.cardinality());
+	}
+}
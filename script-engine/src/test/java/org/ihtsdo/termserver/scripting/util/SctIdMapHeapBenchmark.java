@@ -0,0 +1,91 @@
+package org.ihtsdo.termserver.scripting.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the heap taken by GraphLoader's default ConcurrentHashMap store against SctIdMap,
+ * as switched by GraphLoader.setUsePrimitiveStore, for the same set of components.
+ * As in GraphLoader, each component holds its own id String, which the String keyed map
+ * shares as its key, so only the overhead of the map itself is compared.
+ * Run with a fixed heap (eg -Xms2g -Xmx2g) so that the GC doesn't resize it between readings.
+ * Not run as part of the build.  Usage: SctIdMapHeapBenchmark [components]
+ */
+public class SctIdMapHeapBenchmark {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_500_000;
+		List<Component> components = createComponents(count);
+
+		long concurrent = measure(() -> {
+			Map<String, Component> map = new ConcurrentHashMap<>();
+			components.forEach(c -> map.put(c.id, c));
+			return map;
+		});
+		long presized = measure(() -> {
+			Map<String, Component> map = new ConcurrentHashMap<>(count);
+			components.forEach(c -> map.put(c.id, c));
+			return map;
+		});
+		long primitive = measure(() -> {
+			Map<String, Component> map = new SctIdMap<>(count);
+			components.forEach(c -> map.put(c.id, c));
+			return map;
+		});
+
+		System.out.println(count + " components");
+		report("ConcurrentHashMap", concurrent, count);
+		report("ConcurrentHashMap (presized)", presized, count);
+		report("SctIdMap", primitive, count);
+	}
+
+	private static List<Component> createComponents(int count) {
+		Random random = new Random(42);
+		List<Component> components = new ArrayList<>(count);
+		Set<Long> used = new HashSet<>(count * 2);
+		while (components.size() < count) {
+			//Roughly the shape of International Edition concept ids, without the check digit
+			long sctId = (100000 + (long) (random.nextDouble() * 999999999L)) * 1000 + 10 + random.nextInt(10) * 100;
+			if (used.add(sctId)) {
+				components.add(new Component(Long.toString(sctId)));
+			}
+		}
+		return components;
+	}
+
+	private static long measure(java.util.function.Supplier<Map<String, Component>> builder) {
+		long before = usedHeap();
+		Map<String, Component> map = builder.get();
+		long after = usedHeap();
+		//Keep the map reachable until the reading has been taken
+		if (map.isEmpty()) {
+			throw new IllegalStateException("Nothing loaded");
+		}
+		return after - before;
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void report(String name, long bytes, int count) {
+		System.out.println(String.format("%-30s %,8d KB %6.1f bytes/component", name, bytes / 1024, (double) bytes / count));
+	}
+
+	private static class Component {
+		final String id;
+
+		Component(String id) {
+			this.id = id;
+		}
+	}
+}
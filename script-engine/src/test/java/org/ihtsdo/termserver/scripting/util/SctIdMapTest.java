@@ -0,0 +1,104 @@
+package org.ihtsdo.termserver.scripting.util;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+public class SctIdMapTest {
+
+	@Test
+	public void putAndGetTest() {
+		SctIdMap<String> map = new SctIdMap<>(4);
+		for (long i = 1; i <= 10000; i++) {
+			map.put(Long.toString(i * 1000 + 10), "c" + i);
+		}
+		assertEquals(10000, map.size());
+		assertEquals("c1", map.get("1010"));
+		assertEquals("c1", map.get(1010L));
+		assertEquals("c10000", map.get("10000010"));
+		assertNull(map.get("1011"));
+		assertNull(map.get("not an sctid"));
+		assertTrue(map.containsKey("5000010"));
+		
+		//Replacing a value keeps its position
+		map.put("1010", "replaced");
+		assertEquals("replaced", map.get("1010"));
+		assertEquals("replaced", map.values().iterator().next());
+		assertEquals(0, map.indexOf(1010L));
+	}
+	
+	@Test
+	public void computeIfAbsentTest() {
+		SctIdMap<String> map = new SctIdMap<>();
+		assertEquals("first", map.computeIfAbsent("138875005", k -> "first"));
+		assertEquals("first", map.computeIfAbsent("138875005", k -> "second"));
+		assertEquals(1, map.size());
+	}
+	
+	@Test
+	public void valuesInInsertionOrderTest() {
+		SctIdMap<String> map = new SctIdMap<>();
+		map.put("300", "a");
+		map.put("100", "b");
+		map.put("200", "c");
+		assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(map.values()));
+		assertEquals("300", map.entrySet().iterator().next().getKey());
+	}
+	
+	@Test
+	public void valuesUnaffectedByChangesTest() {
+		SctIdMap<String> map = new SctIdMap<>();
+		map.put("300", "a");
+		map.put("100", "b");
+		map.put("200", "c");
+		Collection<String> values = map.values();
+		map.remove("300");
+		map.put("400", "d");
+		map.put("100", "replaced");
+		assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(values));
+	}
+	
+	@Test
+	public void removeTest() {
+		SctIdMap<String> map = new SctIdMap<>(4);
+		for (long i = 1; i <= 1000; i++) {
+			map.put(Long.toString(i * 1000 + 10), "c" + i);
+		}
+		assertEquals("c1", map.remove("1010"));
+		assertNull(map.remove("1010"));
+		assertNull(map.remove("not an sctid"));
+		assertEquals(999, map.size());
+		assertNull(map.get("1010"));
+		assertFalse(map.containsKey("1010"));
+		
+		//Later entries move down, but are all still found
+		assertEquals("c2", map.valueAt(0));
+		assertEquals(0, map.indexOf(2010L));
+		for (long i = 2; i <= 1000; i++) {
+			assertEquals("c" + i, map.get(i * 1000 + 10));
+		}
+		
+		//And the key can be used again
+		map.put("1010", "again");
+		assertEquals(999, map.indexOf(1010L));
+		assertEquals(1000, map.size());
+	}
+	
+	@Test
+	public void clearTest() {
+		SctIdMap<String> map = new SctIdMap<>();
+		map.put("300", "a");
+		map.put("100", "b");
+		map.clear();
+		assertEquals(0, map.size());
+		assertTrue(map.isEmpty());
+		assertNull(map.get("300"));
+		assertTrue(map.values().isEmpty());
+		map.put("100", "c");
+		assertEquals("c", map.get("100"));
+		assertEquals(0, map.indexOf(100L));
+	}
+
+}